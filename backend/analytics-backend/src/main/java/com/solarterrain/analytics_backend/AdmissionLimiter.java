@@ -0,0 +1,167 @@
+package com.solarterrain.analytics_backend;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Concurrency limit with fair queueing, for {@link EstimationAdmissionFilter}.
+ * At most {@link #limit()} requests run at once; the rest wait in one FIFO
+ * queue per client, and freed slots go to the clients in turn, so a client
+ * with many queued requests does not starve one with a single request. The
+ * queue is bounded in total and per client; beyond that a request is
+ * refused.
+ *
+ * <p>
+ * The limit adapts to observed latency (AIMD): each request that finishes
+ * under the latency target while the limit was in use raises it by
+ * {@code 1/limit}, i.e. about one per limit's worth of requests; one that
+ * took longer, or failed, cuts it by {@code backoff}.
+ */
+final class AdmissionLimiter {
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoff;
+    private final int maxQueued;
+    private final int maxQueuedPerClient;
+
+    // Clients with waiting requests, in serving order; a client served goes to the back
+    private final Map<String, ArrayDeque<CompletableFuture<Permit>>> queues = new LinkedHashMap<>();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double meanLatencyNanos;
+
+    AdmissionLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetMs, double backoff,
+            int maxQueued, int maxQueuedPerClient) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        if (backoff <= 0 || backoff >= 1)
+            throw new IllegalArgumentException("backoff must be in (0, 1)");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.backoff = backoff;
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerClient = maxQueuedPerClient;
+        this.limit = initialLimit;
+        this.meanLatencyNanos = latencyTargetNanos;
+    }
+
+    /** A running request's slot; release it exactly when the request is over. */
+    final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /** @param failed the request failed on our side (e.g. a 5xx), which counts as overload */
+        void release(boolean failed) {
+            if (released.compareAndSet(false, true))
+                AdmissionLimiter.this.release(System.nanoTime() - startNanos, failed);
+        }
+    }
+
+    /**
+     * A permit for a request of {@code client}: completed at once if a slot
+     * is free, later when it is this request's turn, or null if the queue is
+     * full. A caller that stops waiting cancels the future; if that fails,
+     * the permit was granted meanwhile and must be used or released.
+     */
+    synchronized CompletableFuture<Permit> acquire(String client) {
+        if (inFlight < (int) limit && queued == 0) {
+            inFlight++;
+            return CompletableFuture.completedFuture(new Permit());
+        }
+        var queue = queues.get(client);
+        if (queued >= maxQueued || (queue != null && queue.size() >= maxQueuedPerClient))
+            return null;
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(client, queue);
+        }
+        var ticket = new CompletableFuture<Permit>();
+        queue.add(ticket);
+        queued++;
+        ticket.whenComplete((permit, error) -> {
+            if (ticket.isCancelled())
+                abandon(client, ticket);
+        });
+        return ticket;
+    }
+
+    private void release(long latencyNanos, boolean failed) {
+        synchronized (this) {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            meanLatencyNanos = 0.8 * meanLatencyNanos + 0.2 * latencyNanos;
+            if (failed || latencyNanos > latencyTargetNanos)
+                limit = Math.max(minLimit, limit * backoff);
+            else if (saturated)
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        grant();
+    }
+
+    /** Hands free slots to waiting clients in turn; completes tickets outside the lock. */
+    private void grant() {
+        while (true) {
+            CompletableFuture<Permit> ticket = null;
+            Permit permit;
+            synchronized (this) {
+                while (ticket == null && inFlight < (int) limit && !queues.isEmpty()) {
+                    var first = queues.entrySet().iterator().next();
+                    var queue = queues.remove(first.getKey());
+                    ticket = queue.poll();
+                    queued--;
+                    if (!queue.isEmpty())
+                        queues.put(first.getKey(), queue); // to the back of the line
+                    if (ticket.isDone())
+                        ticket = null; // its caller gave up
+                }
+                if (ticket == null)
+                    return;
+                inFlight++;
+                permit = new Permit();
+            }
+            if (!ticket.complete(permit)) {
+                synchronized (this) {
+                    inFlight--; // cancelled just now; the slot goes to the next one
+                }
+            }
+        }
+    }
+
+    private synchronized void abandon(String client, CompletableFuture<Permit> ticket) {
+        var queue = queues.get(client);
+        if (queue != null && queue.remove(ticket)) {
+            queued--;
+            if (queue.isEmpty())
+                queues.remove(client);
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    /**
+     * Seconds until a refused client could expect a slot: the queue ahead of
+     * it drained at the current limit and mean latency.
+     */
+    synchronized long retryAfterSeconds() {
+        double seconds = meanLatencyNanos / 1e9 * (queued + 1) / limit;
+        return Math.max(1L, Math.min(60L, (long) Math.ceil(seconds)));
+    }
+}
@@ -0,0 +1,180 @@
+package com.solarterrain.analytics_backend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Admission control for the public estimation endpoints, which fan out to
+ * many upstream calls and CPU-heavy shading: an {@link AdmissionLimiter}
+ * bounds how many run at once ({@code solar.admission.*}), adapting the
+ * bound to their latency. Requests over the bound wait, fairly per Firebase
+ * uid or, anonymous, per client IP, up to {@code max-wait-ms}; when the
+ * queue is full or the wait runs out the answer is 429 with
+ * {@code Retry-After}.
+ *
+ * <p>
+ * Runs after Spring Security, so the uid is known. The estimation
+ * endpoints answer asynchronously; their slot is held until the response
+ * is complete, not only until the servlet thread returns.
+ *
+ * <p>
+ * The client IP is the request's remote address. Behind a proxy that is
+ * the proxy's unless {@code server.forward-headers-strategy} resolves
+ * {@code X-Forwarded-For}, as the bundled configuration does; otherwise all
+ * anonymous users would share one client's queue.
+ */
+@Component
+public class EstimationAdmissionFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(EstimationAdmissionFilter.class);
+
+    static final Set<String> PATHS = Set.of("/api/solar/estimate", "/api/solar/estimate/sweep",
+            "/api/solar/orientation");
+
+    private final AdmissionLimiter limiter;
+    private final boolean enabled;
+    private final long maxWaitMs;
+    private final Counter rejected;
+
+    public EstimationAdmissionFilter(MeterRegistry meterRegistry,
+            @Value("${solar.admission.enabled:true}") boolean enabled,
+            @Value("${solar.admission.initial-limit:20}") int initialLimit,
+            @Value("${solar.admission.min-limit:4}") int minLimit,
+            @Value("${solar.admission.max-limit:200}") int maxLimit,
+            @Value("${solar.admission.latency-target-ms:5000}") long latencyTargetMs,
+            @Value("${solar.admission.backoff:0.9}") double backoff,
+            @Value("${solar.admission.max-queued:50}") int maxQueued,
+            @Value("${solar.admission.max-queued-per-client:5}") int maxQueuedPerClient,
+            @Value("${solar.admission.max-wait-ms:2000}") long maxWaitMs) {
+        this.limiter = new AdmissionLimiter(initialLimit, minLimit, maxLimit, latencyTargetMs, backoff, maxQueued,
+                maxQueuedPerClient);
+        this.enabled = enabled;
+        this.maxWaitMs = maxWaitMs;
+        this.rejected = Counter.builder("estimation.admission.rejected")
+                .description("Estimation requests refused with 429")
+                .register(meterRegistry);
+        Gauge.builder("estimation.admission.limit", limiter, AdmissionLimiter::limit)
+                .description("Estimation requests allowed to run at once")
+                .register(meterRegistry);
+        Gauge.builder("estimation.admission.in-flight", limiter, AdmissionLimiter::inFlight)
+                .description("Estimation requests running")
+                .register(meterRegistry);
+        Gauge.builder("estimation.admission.queued", limiter, AdmissionLimiter::queued)
+                .description("Estimation requests waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var client = client(request);
+        var permit = admit(client);
+        if (permit == null) {
+            rejected.increment();
+            long retryAfter = limiter.retryAfterSeconds();
+            log.debug("Estimation refused for {}: limit {}, {} queued", client, limiter.limit(), limiter.queued());
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.sendError(429, "Demasiados pedidos de estimativa; tente novamente mais tarde");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(permit, response));
+                async = true;
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            permit.release(true);
+            throw e;
+        } finally {
+            if (!async)
+                permit.release(response.getStatus() >= 500);
+        }
+    }
+
+    /** A slot for the client, waiting up to max-wait-ms for its turn; null when refused. */
+    private AdmissionLimiter.Permit admit(String client) {
+        var ticket = limiter.acquire(client);
+        if (ticket == null)
+            return null;
+        try {
+            return ticket.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return ticket.cancel(false) ? null : ticket.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!ticket.cancel(false))
+                ticket.join().release(false);
+            return null;
+        } catch (ExecutionException e) {
+            return null; // never completed exceptionally
+        }
+    }
+
+    /**
+     * The Firebase uid when authenticated, else the remote (forwarded)
+     * address; also keys the estimation WebSocket sessions.
+     */
+    public static String client(HttpServletRequest request) {
+        // Set by FirebaseAuthFilter; anonymous requests carry an AnonymousAuthenticationToken instead
+        if (SecurityContextHolder.getContext().getAuthentication() instanceof UsernamePasswordAuthenticationToken auth
+                && auth.getPrincipal() instanceof String uid)
+            return "uid:" + uid;
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static final class ReleaseOnCompletion implements AsyncListener {
+        private final AdmissionLimiter.Permit permit;
+        private final HttpServletResponse response;
+
+        ReleaseOnCompletion(AdmissionLimiter.Permit permit, HttpServletResponse response) {
+            this.permit = permit;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release(response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
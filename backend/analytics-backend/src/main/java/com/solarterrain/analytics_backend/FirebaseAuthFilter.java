@@ -1,6 +1,5 @@
 package com.solarterrain.analytics_backend;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,15 +18,35 @@ import java.io.IOException;
 public class FirebaseAuthFilter extends OncePerRequestFilter {
     private static final Logger log = LoggerFactory.getLogger(FirebaseAuthFilter.class);
 
+    /**
+     * Request attribute holding the {@link FirebaseInitializer.State} when a
+     * token arrived but could not be verified yet; the security entry point
+     * then answers 503 instead of 403.
+     */
+    public static final String AUTH_UNAVAILABLE = FirebaseAuthFilter.class.getName() + ".UNAVAILABLE";
+
+    private final FirebaseInitializer firebase;
+
+    public FirebaseAuthFilter(FirebaseInitializer firebase) {
+        this.firebase = firebase;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String header = request.getHeader("Authorization");
         if (header != null && header.startsWith("Bearer ")) {
+            if (!firebase.isReady()) {
+                // Carry on unauthenticated: public endpoints still serve, protected ones get a 503
+                log.debug("Firebase {}; token not verified for path {}", firebase.state(), request.getRequestURI());
+                request.setAttribute(AUTH_UNAVAILABLE, firebase.state());
+                filterChain.doFilter(request, response);
+                return;
+            }
             String token = header.substring(7);
             try {
                 log.debug("Verifying Firebase ID token for path {}", request.getRequestURI());
-                FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+                FirebaseToken decoded = firebase.auth().verifyIdToken(token);
                 String uid = decoded.getUid();
                 UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(uid, null, null);
                 SecurityContextHolder.getContext().setAuthentication(auth);
@@ -0,0 +1,154 @@
+package com.solarterrain.analytics_backend;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.cloud.FirestoreClient;
+import com.google.cloud.firestore.Firestore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Initializes the Firebase app off the startup path. Reading the service
+ * account and opening the Firestore channel take seconds, and a missing key
+ * used to fail the whole boot; now nothing happens until
+ * {@link #initializeAsync()} is first called, by the startup warm-up or by
+ * the first request carrying a token, and the work runs on its own thread.
+ * Until it succeeds only token verification is unavailable: public
+ * endpoints serve as usual.
+ */
+@Component
+public class FirebaseInitializer {
+    private static final Logger log = LoggerFactory.getLogger(FirebaseInitializer.class);
+
+    public enum State {
+        NOT_STARTED, INITIALIZING, READY,
+        /** Disabled, no key configured, or initialization failed; see the log. */
+        UNAVAILABLE
+    }
+
+    @Value("${firebase.enabled:true}")
+    boolean enabled;
+    @Value("${firebase.key.path:}")
+    String firebaseKeyPathProp;
+    @Value("${firebase.project-id:}")
+    String firebaseProjectId;
+
+    private final AtomicReference<CompletableFuture<FirebaseApp>> app = new AtomicReference<>();
+    private volatile State state = State.NOT_STARTED;
+
+    public State state() {
+        return state;
+    }
+
+    /** Whether tokens can be verified now; starts initialization if nothing has yet. */
+    public boolean isReady() {
+        if (state == State.NOT_STARTED)
+            initializeAsync();
+        return state == State.READY;
+    }
+
+    /** Starts initialization once, on a daemon thread; later calls return the same future. */
+    public CompletableFuture<FirebaseApp> initializeAsync() {
+        var existing = app.get();
+        if (existing != null)
+            return existing;
+        var future = new CompletableFuture<FirebaseApp>();
+        if (!app.compareAndSet(null, future))
+            return app.get();
+
+        if (!enabled) {
+            log.info("Firebase disabled (firebase.enabled=false); authenticated endpoints unavailable");
+            state = State.UNAVAILABLE;
+            future.completeExceptionally(new IllegalStateException("Firebase disabled"));
+            return future;
+        }
+        state = State.INITIALIZING;
+        var thread = new Thread(() -> {
+            try {
+                var initialized = initialize();
+                future.complete(initialized);
+                state = State.READY;
+                ping(initialized);
+            } catch (Exception e) {
+                log.error("Firebase initialization failed; authenticated endpoints unavailable: {}", e.getMessage());
+                state = State.UNAVAILABLE;
+                future.completeExceptionally(e);
+            }
+        }, "firebase-init");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /** @throws IllegalStateException if Firebase is not {@link State#READY} */
+    public FirebaseAuth auth() {
+        return FirebaseAuth.getInstance(readyApp());
+    }
+
+    /** @throws IllegalStateException if Firebase is not {@link State#READY} */
+    public Firestore firestore() {
+        return FirestoreClient.getFirestore(readyApp());
+    }
+
+    private FirebaseApp readyApp() {
+        if (state != State.READY)
+            throw new IllegalStateException("Firebase is " + state);
+        return app.get().join();
+    }
+
+    private FirebaseApp initialize() throws IOException {
+        if (!FirebaseApp.getApps().isEmpty())
+            return FirebaseApp.getInstance();
+
+        String keyPath = System.getenv("FIREBASE_KEY_PATH");
+        if (keyPath == null || keyPath.isBlank()) {
+            if (firebaseKeyPathProp != null && !firebaseKeyPathProp.isBlank()) {
+                keyPath = firebaseKeyPathProp;
+                log.info("Using firebase.key.path property");
+            }
+        }
+        log.info("Resolved service account path={}", keyPath);
+        if (keyPath == null || keyPath.isBlank()) {
+            throw new IllegalStateException(
+                    "Environment variable FIREBASE_KEY_PATH or property firebase.key.path not set");
+        }
+        Path p = Path.of(keyPath);
+        if (!Files.exists(p)) {
+            throw new IllegalStateException("Service account file not found at " + p);
+        }
+        try (FileInputStream serviceAccount = new FileInputStream(p.toFile())) {
+            FirebaseOptions.Builder ob = FirebaseOptions.builder()
+                    .setCredentials(GoogleCredentials.fromStream(serviceAccount));
+            if (firebaseProjectId != null && !firebaseProjectId.isBlank()) {
+                ob.setProjectId(firebaseProjectId);
+                log.info("Using explicit firebase.project-id={}", firebaseProjectId);
+            }
+            FirebaseApp initialized = FirebaseApp.initializeApp(ob.build());
+            log.info("FirebaseApp initialized successfully");
+            return initialized;
+        }
+    }
+
+    // Opens the Firestore channel now rather than on the first real write
+    private static void ping(FirebaseApp app) {
+        try {
+            FirestoreClient.getFirestore(app).collection("__startupCheck").document("ping")
+                    .set(Map.of("ts", System.currentTimeMillis()));
+            log.info("Firestore ping scheduled");
+        } catch (Exception e) {
+            log.warn("Startup ping failed: {}", e.getMessage());
+        }
+    }
+}
@@ -4,12 +4,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.Http403ForbiddenEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.http.HttpMethod;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.List;
 
 @Configuration
@@ -57,8 +60,24 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.DELETE, "/api/solar/sites/**").authenticated() // deletar terrenos requer
                                                                                            // autenticação
                 .anyRequest().permitAll());
+        http.exceptionHandling(eh -> eh.authenticationEntryPoint(authenticationEntryPoint()));
         http.addFilterBefore(firebaseAuthFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
 
+    // 403 como antes, exceto quando havia token mas a Firebase ainda não podia verificá-lo
+    private static AuthenticationEntryPoint authenticationEntryPoint() {
+        var forbidden = new Http403ForbiddenEntryPoint();
+        return (request, response, authException) -> {
+            var state = request.getAttribute(FirebaseAuthFilter.AUTH_UNAVAILABLE);
+            if (state == null) {
+                forbidden.commence(request, response, authException);
+                return;
+            }
+            if (state != FirebaseInitializer.State.UNAVAILABLE)
+                response.setHeader("Retry-After", "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Autenticação ainda não disponível");
+        };
+    }
+
 }
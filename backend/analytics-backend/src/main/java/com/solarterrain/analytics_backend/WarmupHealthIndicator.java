@@ -0,0 +1,63 @@
+package com.solarterrain.analytics_backend;
+
+import com.solarterrain.analytics_backend.solar.EstimationWarmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readiness gate ({@code /actuator/health/readiness}, as "warmup"). Once the
+ * application is up, a background thread starts Firebase initialization and
+ * runs the synthetic estimates of {@link EstimationWarmup}; the indicator is
+ * DOWN until both are over, so a load balancer only sends traffic to a warm
+ * instance. Firebase that ends up unavailable does not hold readiness back,
+ * as public estimates still work without it.
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+    private static final Logger log = LoggerFactory.getLogger(WarmupHealthIndicator.class);
+
+    private final FirebaseInitializer firebase;
+    private final EstimationWarmup estimationWarmup;
+
+    private volatile boolean estimatesDone;
+    private volatile int estimates;
+    private volatile long estimatesMs;
+
+    public WarmupHealthIndicator(FirebaseInitializer firebase, EstimationWarmup estimationWarmup) {
+        this.firebase = firebase;
+        this.estimationWarmup = estimationWarmup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        var thread = new Thread(() -> {
+            firebase.initializeAsync();
+            long start = System.nanoTime();
+            estimates = estimationWarmup.run();
+            estimatesMs = (System.nanoTime() - start) / 1_000_000;
+            estimatesDone = true;
+            log.info("Warm-up: {} synthetic estimates in {} ms", estimates, estimatesMs);
+        }, "startup-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        var state = firebase.state();
+        boolean firebaseSettled = state == FirebaseInitializer.State.READY
+                || state == FirebaseInitializer.State.UNAVAILABLE;
+        var health = firebaseSettled && estimatesDone ? Health.up() : Health.down();
+        health.withDetail("firebase", state);
+        if (estimatesDone)
+            health.withDetail("estimates", estimates).withDetail("estimatesMs", estimatesMs);
+        else
+            health.withDetail("estimates", "running");
+        return health.build();
+    }
+}
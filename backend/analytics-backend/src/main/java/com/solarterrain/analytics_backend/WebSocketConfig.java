@@ -0,0 +1,26 @@
+package com.solarterrain.analytics_backend;
+
+import com.solarterrain.analytics_backend.solar.EstimationSessionHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final EstimationSessionHandler estimationSessionHandler;
+
+    public WebSocketConfig(EstimationSessionHandler estimationSessionHandler) {
+        this.estimationSessionHandler = estimationSessionHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Same open origin policy as the REST CORS config (web and mobile clients)
+        registry.addHandler(estimationSessionHandler, "/ws/solar/estimate")
+                .addInterceptors(estimationSessionHandler)
+                .setAllowedOriginPatterns("*");
+    }
+}
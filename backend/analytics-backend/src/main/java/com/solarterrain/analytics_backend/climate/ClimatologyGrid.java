@@ -0,0 +1,214 @@
+package com.solarterrain.analytics_backend.climate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Regular lat/lng grid of monthly climate normals in a compact binary file.
+ *
+ * <p>
+ * Layout (little endian): a 64 byte header (magic, version, min lat, min lng,
+ * step, rows, cols, months, variables, source fingerprint) followed by one 16-bit fixed-point
+ * value per node, month and {@link Variable}, node-major. All twelve months
+ * of a node are therefore contiguous, so a bilinear lookup touches four
+ * small runs of the file. The file is memory-mapped read-only and shared by
+ * all threads.
+ */
+public final class ClimatologyGrid {
+
+    /** Stored quantities with their fixed-point scale. */
+    public enum Variable {
+        /** Mean daily bright sunshine, hours. */
+        SUN_HOURS(100),
+        /** Daytime cloud cover, percent. */
+        CLOUD_COVER(100),
+        /** Mean air temperature, degrees Celsius. */
+        TEMPERATURE(100),
+        /** Relative humidity, percent. */
+        HUMIDITY(100),
+        /** Days with at least 1 mm of rain. */
+        RAINY_DAYS(100),
+        /** Solar efficiency factor used by the estimator, 0..1. */
+        EFFICIENCY(10000);
+
+        final double scale;
+
+        Variable(double scale) {
+            this.scale = scale;
+        }
+    }
+
+    public static final int MONTHS = 12;
+    public static final int VARIABLES = Variable.values().length;
+
+    private static final int MAGIC = 0x31435450; // "PTC1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int VALUES_PER_NODE = MONTHS * VARIABLES;
+
+    private final ByteBuffer buffer;
+    private final double minLat;
+    private final double minLng;
+    private final double step;
+    private final int rows;
+    private final int cols;
+
+    private ClimatologyGrid(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Not a climatology grid (bad magic or version)");
+        this.minLat = buffer.getDouble(8);
+        this.minLng = buffer.getDouble(16);
+        this.step = buffer.getDouble(24);
+        this.rows = buffer.getInt(32);
+        this.cols = buffer.getInt(36);
+        if (buffer.getInt(40) != MONTHS || buffer.getInt(44) != VARIABLES)
+            throw new IllegalArgumentException("Climatology grid has an unexpected shape");
+        long expected = HEADER_BYTES + (long) rows * cols * VALUES_PER_NODE * Short.BYTES;
+        if (buffer.capacity() != expected)
+            throw new IllegalArgumentException("Climatology grid is truncated");
+    }
+
+    /**
+     * Maps an existing grid file read-only.
+     */
+    public static ClimatologyGrid open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ClimatologyGrid(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Builds an in-memory grid. {@code values} holds
+     * {@code rows * cols * MONTHS * VARIABLES} entries, node-major (row, col),
+     * then month, then variable.
+     */
+    public static ClimatologyGrid create(double minLat, double minLng, double step, int rows, int cols,
+            double[] values) {
+        if (values.length != rows * cols * VALUES_PER_NODE)
+            throw new IllegalArgumentException("Expected " + rows * cols * VALUES_PER_NODE + " values");
+
+        var buffer = ByteBuffer.allocate(HEADER_BYTES + values.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putDouble(8, minLat)
+                .putDouble(16, minLng)
+                .putDouble(24, step)
+                .putInt(32, rows)
+                .putInt(36, cols)
+                .putInt(40, MONTHS)
+                .putInt(44, VARIABLES);
+        var variables = Variable.values();
+        for (int i = 0; i < values.length; i++) {
+            double scaled = Math.round(values[i] * variables[i % VARIABLES].scale);
+            buffer.putShort(HEADER_BYTES + i * Short.BYTES,
+                    (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled)));
+        }
+        return new ClimatologyGrid(buffer);
+    }
+
+    /**
+     * Writes the grid atomically, so a concurrent reader never maps a
+     * half-written file.
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var source = buffer.duplicate().clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean covers(double lat, double lng) {
+        return lat >= minLat && lat <= minLat + (rows - 1) * step
+                && lng >= minLng && lng <= minLng + (cols - 1) * step;
+    }
+
+    /**
+     * Bilinearly interpolated normals at a point, indexed by
+     * {@link #index(int, Variable)}. Points outside the grid take the value
+     * of the nearest edge.
+     */
+    public double[] sample(double lat, double lng) {
+        double y = clamp((lat - minLat) / step, rows - 1);
+        double x = clamp((lng - minLng) / step, cols - 1);
+        int r0 = Math.min((int) y, rows - 2);
+        int c0 = Math.min((int) x, cols - 2);
+        double fy = y - r0;
+        double fx = x - c0;
+
+        int n00 = node(r0, c0);
+        int n01 = node(r0, c0 + 1);
+        int n10 = node(r0 + 1, c0);
+        int n11 = node(r0 + 1, c0 + 1);
+        double w00 = (1 - fy) * (1 - fx);
+        double w01 = (1 - fy) * fx;
+        double w10 = fy * (1 - fx);
+        double w11 = fy * fx;
+
+        var variables = Variable.values();
+        double[] out = new double[VALUES_PER_NODE];
+        for (int i = 0; i < VALUES_PER_NODE; i++) {
+            double v = w00 * value(n00, i) + w01 * value(n01, i) + w10 * value(n10, i) + w11 * value(n11, i);
+            out[i] = v / variables[i % VARIABLES].scale;
+        }
+        return out;
+    }
+
+    /**
+     * Position of a value in {@link #sample}'s result, {@code month} in 1..12.
+     */
+    public static int index(int month, Variable variable) {
+        return (month - 1) * VARIABLES + variable.ordinal();
+    }
+
+    /**
+     * Fingerprint of the inputs the grid was built from (see
+     * {@link #withSource}), 0 when not recorded.
+     */
+    public long source() {
+        return buffer.getLong(48);
+    }
+
+    /** A copy of this grid recording {@code source} as the fingerprint of its inputs. */
+    public ClimatologyGrid withSource(long source) {
+        var copy = ByteBuffer.allocate(buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(buffer.duplicate().clear()).putLong(48, source);
+        return new ClimatologyGrid(copy.clear());
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public double step() {
+        return step;
+    }
+
+    private int node(int row, int col) {
+        return HEADER_BYTES + (row * cols + col) * VALUES_PER_NODE * Short.BYTES;
+    }
+
+    private short value(int nodeOffset, int i) {
+        return buffer.getShort(nodeOffset + i * Short.BYTES);
+    }
+
+    private static double clamp(double v, double max) {
+        return Math.max(0.0, Math.min(max, v));
+    }
+}
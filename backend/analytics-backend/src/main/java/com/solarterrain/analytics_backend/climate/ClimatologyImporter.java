@@ -0,0 +1,182 @@
+package com.solarterrain.analytics_backend.climate;
+
+import com.solarterrain.analytics_backend.climate.ClimatologyGrid.Variable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link ClimatologyGrid} from station normals in CSV form:
+ *
+ * <pre>
+ * station,lat,lng,month,temperature_c,sunshine_hours,humidity_pct,rainy_days
+ * </pre>
+ *
+ * with {@code sunshine_hours} the monthly total. Cloud cover and the
+ * efficiency factor are derived from relative sunshine (sunshine over day
+ * length), then every grid node takes the inverse-distance-weighted mean of
+ * all stations. Lines starting with {@code #} are comments.
+ *
+ * <p>
+ * Usage: {@code ClimatologyImporter <stations.csv> <output.bin> [stepDeg]}
+ */
+public final class ClimatologyImporter {
+
+    /** Supported bounds, matching the estimator's Portugal validation. */
+    public static final double MIN_LAT = 36.8;
+    public static final double MAX_LAT = 42.3;
+    public static final double MIN_LNG = -9.6;
+    public static final double MAX_LNG = -6.0;
+    public static final double DEFAULT_STEP = 0.05;
+    /** Version of the interpolation; bump it when a change should rebuild existing grids. */
+    public static final int FIT_VERSION = 1;
+
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+    // Representative day of year for each month (Klein, 1977)
+    private static final int[] MID_MONTH_DAY = { 17, 47, 75, 105, 135, 162, 198, 228, 258, 288, 318, 344 };
+
+    record Station(String name, double lat, double lng, double[] values) {
+    }
+
+    private ClimatologyImporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ClimatologyImporter <stations.csv> <output.bin> [stepDeg]");
+            System.exit(2);
+        }
+        double step = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_STEP;
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            var stations = readStations(reader);
+            var grid = interpolate(stations, step);
+            grid.write(Path.of(args[1]));
+            System.out.printf("Wrote %dx%d grid from %d stations to %s%n", grid.rows(), grid.cols(),
+                    stations.size(), args[1]);
+        }
+    }
+
+    public static ClimatologyGrid importStations(Reader csv, double step) throws IOException {
+        return interpolate(readStations(csv), step);
+    }
+
+    static List<Station> readStations(Reader csv) throws IOException {
+        var byName = new LinkedHashMap<String, Station>();
+        var filled = new LinkedHashMap<String, Integer>();
+        var reader = new BufferedReader(csv);
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("station,"))
+                continue;
+
+            String[] f = line.split(",");
+            if (f.length != 8)
+                throw new IllegalArgumentException("Line " + lineNo + ": expected 8 columns");
+            String name = f[0];
+            double lat = Double.parseDouble(f[1]);
+            double lng = Double.parseDouble(f[2]);
+            int month = Integer.parseInt(f[3]);
+            if (month < 1 || month > 12)
+                throw new IllegalArgumentException("Line " + lineNo + ": month out of range");
+
+            var station = byName.computeIfAbsent(name,
+                    n -> new Station(n, lat, lng, new double[ClimatologyGrid.MONTHS * ClimatologyGrid.VARIABLES]));
+            derive(station, month, Double.parseDouble(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]),
+                    Double.parseDouble(f[7]));
+            filled.merge(name, 1, Integer::sum);
+        }
+
+        for (Map.Entry<String, Integer> e : filled.entrySet()) {
+            if (e.getValue() != ClimatologyGrid.MONTHS)
+                throw new IllegalArgumentException("Station " + e.getKey() + " does not have 12 months");
+        }
+        if (byName.isEmpty())
+            throw new IllegalArgumentException("No stations found");
+        return new ArrayList<>(byName.values());
+    }
+
+    private static void derive(Station station, int month, double temperature, double sunshineTotal,
+            double humidity, double rainyDays) {
+        double sunHours = sunshineTotal / DAYS_IN_MONTH[month - 1];
+        double relativeSunshine = Math.min(1.0, sunHours / dayLengthHours(station.lat(), month));
+
+        double[] v = station.values();
+        v[ClimatologyGrid.index(month, Variable.SUN_HOURS)] = sunHours;
+        v[ClimatologyGrid.index(month, Variable.CLOUD_COVER)] = 100.0 * (1.0 - relativeSunshine);
+        v[ClimatologyGrid.index(month, Variable.TEMPERATURE)] = temperature;
+        v[ClimatologyGrid.index(month, Variable.HUMIDITY)] = humidity;
+        v[ClimatologyGrid.index(month, Variable.RAINY_DAYS)] = rainyDays;
+        v[ClimatologyGrid.index(month, Variable.EFFICIENCY)] = efficiencyFactor(relativeSunshine);
+    }
+
+    /**
+     * Linear fit of the former nationwide table (0.65 in January to 0.98 in
+     * July at Lisbon's relative sunshine), so estimates stay on the same scale.
+     */
+    static double efficiencyFactor(double relativeSunshine) {
+        return Math.max(0.40, Math.min(0.99, 0.08 + 1.18 * relativeSunshine));
+    }
+
+    static double dayLengthHours(double lat, int month) {
+        double declination = Math.toRadians(23.45 * Math.sin(Math.toRadians(360.0 * (284 + MID_MONTH_DAY[month - 1]) / 365.0)));
+        double cosSunset = -Math.tan(Math.toRadians(lat)) * Math.tan(declination);
+        return 2.0 * Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, cosSunset)))) / 15.0;
+    }
+
+    static ClimatologyGrid interpolate(List<Station> stations, double step) {
+        int rows = (int) Math.round((MAX_LAT - MIN_LAT) / step) + 1;
+        int cols = (int) Math.round((MAX_LNG - MIN_LNG) / step) + 1;
+        int perNode = ClimatologyGrid.MONTHS * ClimatologyGrid.VARIABLES;
+        double[] values = new double[rows * cols * perNode];
+        double[] weights = new double[stations.size()];
+
+        for (int r = 0; r < rows; r++) {
+            double lat = MIN_LAT + r * step;
+            double kmPerDegLng = 111.32 * Math.cos(Math.toRadians(lat));
+            for (int c = 0; c < cols; c++) {
+                double lng = MIN_LNG + c * step;
+
+                // Inverse distance squared; a node on a station takes its values
+                double total = 0;
+                int exact = -1;
+                for (int s = 0; s < stations.size(); s++) {
+                    double dy = (stations.get(s).lat() - lat) * 111.32;
+                    double dx = (stations.get(s).lng() - lng) * kmPerDegLng;
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 < 1e-6) {
+                        exact = s;
+                        break;
+                    }
+                    weights[s] = 1.0 / d2;
+                    total += weights[s];
+                }
+
+                int base = (r * cols + c) * perNode;
+                for (int i = 0; i < perNode; i++) {
+                    double v;
+                    if (exact >= 0) {
+                        v = stations.get(exact).values()[i];
+                    } else {
+                        v = 0;
+                        for (int s = 0; s < stations.size(); s++) {
+                            v += weights[s] * stations.get(s).values()[i];
+                        }
+                        v /= total;
+                    }
+                    values[base + i] = v;
+                }
+            }
+        }
+        return ClimatologyGrid.create(MIN_LAT, MIN_LNG, step, rows, cols, values);
+    }
+}
@@ -0,0 +1,140 @@
+package com.solarterrain.analytics_backend.climate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Location-specific monthly climate normals for the supported area. The grid
+ * lives in {@code ${solar.data-dir}/climatology} and is memory-mapped at
+ * startup; when the file is missing, or was built from other station
+ * normals, grid step or importer fit, it is (re)built from the bundled
+ * station normals. Lookups are a bilinear read of the mapped file.
+ */
+@Component
+public class ClimatologyStore {
+    private static final Logger log = LoggerFactory.getLogger(ClimatologyStore.class);
+
+    static final String BUNDLED_STATIONS = "/climatology/pt-station-normals.csv";
+    static final String GRID_FILE = "pt-monthly-normals.bin";
+
+    private final ClimatologyGrid grid;
+
+    @Autowired
+    public ClimatologyStore(@Value("${solar.data-dir:./data}") String dataDir) {
+        this(load(Path.of(dataDir, "climatology", GRID_FILE)));
+    }
+
+    public ClimatologyStore(ClimatologyGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Store over an in-memory grid built from the bundled station normals,
+     * for tools that run without a data directory.
+     */
+    public static ClimatologyStore fromBundledStations() {
+        try {
+            return new ClimatologyStore(importBundled());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read bundled station normals", e);
+        }
+    }
+
+    /**
+     * Monthly normals at a point, or null when the point is outside the grid
+     * or no grid could be loaded.
+     */
+    public MonthlyClimate lookup(double lat, double lng) {
+        if (grid == null || !grid.covers(lat, lng))
+            return null;
+        return new MonthlyClimate(grid.sample(lat, lng));
+    }
+
+    private static ClimatologyGrid load(Path file) {
+        try {
+            byte[] stations = bundledStations();
+            long source = fingerprint(stations, ClimatologyImporter.DEFAULT_STEP);
+            if (Files.exists(file)) {
+                if (builtFrom(file, source))
+                    return opened(file);
+                log.info("Climatology grid {} was built from other station normals or settings, rebuilding", file);
+            } else {
+                log.info("Building climatology grid {} from bundled station normals", file);
+            }
+            importStations(stations).withSource(source).write(file);
+            return opened(file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Climatology grid unavailable, falling back to national averages: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean builtFrom(Path file, long source) {
+        try {
+            return ClimatologyGrid.open(file).source() == source;
+        } catch (IOException | RuntimeException e) {
+            return false; // unreadable: rebuild it
+        }
+    }
+
+    private static ClimatologyGrid opened(Path file) throws IOException {
+        var grid = ClimatologyGrid.open(file);
+        log.info("Mapped climatology grid {} ({}x{} nodes, {} deg)", file, grid.rows(), grid.cols(), grid.step());
+        return grid;
+    }
+
+    /**
+     * Identifies what a grid was built from: the station normals, the grid
+     * step and the importer's fit, so a change to any of them rebuilds it.
+     */
+    static long fingerprint(byte[] stations, double step) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(stations);
+            digest.update(ByteBuffer.allocate(12).putDouble(step).putInt(ClimatologyImporter.FIT_VERSION).array());
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ClimatologyGrid importBundled() throws IOException {
+        return importStations(bundledStations());
+    }
+
+    private static ClimatologyGrid importStations(byte[] stations) throws IOException {
+        try (var reader = new InputStreamReader(new ByteArrayInputStream(stations), StandardCharsets.UTF_8)) {
+            return ClimatologyImporter.importStations(reader, ClimatologyImporter.DEFAULT_STEP);
+        }
+    }
+
+    private static byte[] bundledStations() throws IOException {
+        try (var in = ClimatologyStore.class.getResourceAsStream(BUNDLED_STATIONS)) {
+            if (in == null)
+                throw new IOException("Missing resource " + BUNDLED_STATIONS);
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Interpolated normals for one location, months 1..12.
+     */
+    public record MonthlyClimate(double[] values) {
+        public double get(int month, ClimatologyGrid.Variable variable) {
+            return values[ClimatologyGrid.index(month, variable)];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.solarterrain.analytics_backend.geo;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a polygon ring for storage.
+ *
+ * <p>
+ * Coordinates are fixed-point at 1e-7 degrees (about 1 cm). The first
+ * vertex is stored as is and each following one as the difference from its
+ * predecessor, zigzag-mapped and written as a base-128 varint, so
+ * neighbouring vertices of a parcel take 2-4 bytes per axis instead of ~20
+ * characters of GeoJSON. Layout: version byte, vertex count, then lat/lng
+ * deltas per vertex. The ring is stored open, as drawn.
+ */
+public final class GeometryCodec {
+    private static final int VERSION = 1;
+    private static final double SCALE = 1e7;
+    private static final int FRACTION_DIGITS = 7;
+
+    private GeometryCodec() {
+    }
+
+    public static byte[] encode(List<LatLng> ring) {
+        var out = new ByteArrayOutputStream(2 + ring.size() * 6);
+        out.write(VERSION);
+        writeVarint(out, ring.size());
+        long lat = 0, lng = 0;
+        for (var p : ring) {
+            long fixedLat = Math.round(p.lat() * SCALE);
+            long fixedLng = Math.round(p.lng() * SCALE);
+            writeVarint(out, zigzag(fixedLat - lat));
+            writeVarint(out, zigzag(fixedLng - lng));
+            lat = fixedLat;
+            lng = fixedLng;
+        }
+        return out.toByteArray();
+    }
+
+    public static List<LatLng> decode(byte[] data) {
+        var in = new Reader(data);
+        int n = (int) in.varint();
+        var ring = new ArrayList<LatLng>(n);
+        long lat = 0, lng = 0;
+        for (int i = 0; i < n; i++) {
+            lat += unzigzag(in.varint());
+            lng += unzigzag(in.varint());
+            ring.add(new LatLng(lat / SCALE, lng / SCALE));
+        }
+        return ring;
+    }
+
+    /**
+     * GeoJSON Polygon text written straight from the encoded bytes, without
+     * building intermediate coordinate objects. Coordinates print exactly as
+     * stored, at most seven decimals; the ring is closed as GeoJSON requires.
+     */
+    public static String toGeoJson(byte[] data) {
+        var in = new Reader(data);
+        int n = (int) in.varint();
+        var out = new StringBuilder(48 + n * 24);
+        out.append("{\"type\":\"Polygon\",\"coordinates\":[[");
+        long lat = 0, lng = 0, firstLat = 0, firstLng = 0;
+        for (int i = 0; i < n; i++) {
+            lat += unzigzag(in.varint());
+            lng += unzigzag(in.varint());
+            if (i == 0) {
+                firstLat = lat;
+                firstLng = lng;
+            } else {
+                out.append(',');
+            }
+            appendPosition(out, lng, lat);
+        }
+        if (n > 0 && (lat != firstLat || lng != firstLng)) {
+            out.append(',');
+            appendPosition(out, firstLng, firstLat);
+        }
+        return out.append("]]}").toString();
+    }
+
+    private static void appendPosition(StringBuilder out, long lng, long lat) {
+        out.append('[');
+        appendFixed(out, lng);
+        out.append(',');
+        appendFixed(out, lat);
+        out.append(']');
+    }
+
+    private static void appendFixed(StringBuilder out, long value) {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        long whole = value / (long) SCALE;
+        long fraction = value % (long) SCALE;
+        out.append(whole);
+        if (fraction == 0)
+            return;
+        out.append('.');
+        int digits = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        String text = Long.toString(fraction);
+        for (int pad = text.length(); pad < digits; pad++) {
+            out.append('0');
+        }
+        out.append(text);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            if (data.length == 0 || data[0] != VERSION)
+                throw new IllegalArgumentException("Unsupported geometry encoding");
+            this.data = data;
+            this.pos = 1;
+        }
+
+        long varint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= data.length)
+                    throw new IllegalArgumentException("Truncated geometry");
+                byte b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return v;
+            }
+            throw new IllegalArgumentException("Malformed geometry varint");
+        }
+    }
+}
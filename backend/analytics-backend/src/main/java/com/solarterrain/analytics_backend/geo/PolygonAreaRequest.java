@@ -4,13 +4,18 @@ import java.util.List;
 
 /**
  * Request payload containing a polygon (list of coordinates) for which to
- * estimate solar potential.
+ * estimate solar potential. System parameters left null take the configured
+ * defaults.
  */
 public record PolygonAreaRequest(
         List<LatLng> points,
         Integer year,
         Double panelEfficiency, // module efficiency (0-1)
         Double performanceRatio, // system losses combined (0-1)
-        Double dcPowerPerM2 // kWp per m2 of usable area (derived from efficiency)
+        Double dcPowerPerM2, // kWp per m2 of usable area (derived from efficiency)
+        Double usableFraction, // share of the area covered by panels (0-1)
+        Double tiltDeg, // panel tilt from horizontal
+        Double azimuthDeg, // compass bearing, 180 = south
+        Integer deadlineMs // time budget for the answer; server default when null
 ) {
 }
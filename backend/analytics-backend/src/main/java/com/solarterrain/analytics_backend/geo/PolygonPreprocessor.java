@@ -0,0 +1,114 @@
+package com.solarterrain.analytics_backend.geo;
+
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cleans a user polygon before estimation. Polygons exported from GIS
+ * tools often carry thousands of vertices, repeated points or
+ * self-intersections; the first make every point-in-polygon test expensive
+ * and the others can break the geodesic area.
+ *
+ * <p>
+ * Consecutive duplicates and the closing vertex are dropped, an invalid
+ * ring is repaired with JTS {@link GeometryFixer} (a ring that repairs into
+ * several parts keeps the largest; holes are dropped, as the rest of the
+ * pipeline only handles a single ring), and the ring is oriented
+ * counter-clockwise. The result holds that exact ring, for the area, and a
+ * topology-preserving simplification of it for grid sampling, whose
+ * tolerance follows the parcel size so that the sampling cost depends on
+ * the precision needed rather than on the vertex count of the input.
+ */
+public final class PolygonPreprocessor {
+    private static final double METRES_PER_DEG_LAT = 111_320.0;
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private PolygonPreprocessor() {
+    }
+
+    /**
+     * @param exact    cleaned ring, counter-clockwise, not closed
+     * @param sampling simplified ring for point-in-polygon sampling
+     * @param repaired whether the input was not a valid simple polygon
+     */
+    public record Result(List<LatLng> exact, List<LatLng> sampling, int inputVertices, boolean repaired) {
+    }
+
+    /**
+     * @param toleranceM         smallest simplification tolerance, metres
+     * @param relativeTolerance  tolerance as a fraction of the bounding-box
+     *                           diagonal, for large parcels; the larger wins
+     */
+    public static Result prepare(List<LatLng> points, double toleranceM, double relativeTolerance) {
+        if (points == null || points.size() < 3)
+            throw new IllegalArgumentException("Polygon requires >=3 points");
+
+        var coords = new ArrayList<Coordinate>(points.size() + 1);
+        for (var p : points) {
+            var c = new Coordinate(p.lng(), p.lat());
+            if (coords.isEmpty() || !coords.get(coords.size() - 1).equals2D(c))
+                coords.add(c);
+        }
+        if (coords.size() > 1 && coords.get(0).equals2D(coords.get(coords.size() - 1)))
+            coords.remove(coords.size() - 1);
+        if (coords.size() < 3)
+            throw new IllegalArgumentException("Polygon requires >=3 distinct points");
+        coords.add(new Coordinate(coords.get(0)));
+
+        Polygon polygon = FACTORY.createPolygon(coords.toArray(Coordinate[]::new));
+        boolean repaired = !polygon.isValid();
+        if (repaired)
+            polygon = largestPolygon(GeometryFixer.fix(polygon));
+        if (polygon == null || polygon.isEmpty() || polygon.getArea() == 0)
+            throw new IllegalArgumentException("Polygon has no area");
+        polygon = FACTORY.createPolygon(counterClockwise(polygon.getExteriorRing().getCoordinates()));
+
+        var envelope = polygon.getEnvelopeInternal();
+        double diagonalM = Math.hypot(envelope.getHeight(),
+                envelope.getWidth() * Math.cos(Math.toRadians(envelope.centre().y))) * METRES_PER_DEG_LAT;
+        // Degrees of latitude; conservative along longitude, whose degrees are shorter
+        double toleranceDeg = Math.max(toleranceM, diagonalM * relativeTolerance) / METRES_PER_DEG_LAT;
+        var simplified = toleranceDeg > 0
+                ? (Polygon) TopologyPreservingSimplifier.simplify(polygon, toleranceDeg)
+                : polygon;
+
+        return new Result(toRing(polygon), toRing(simplified), points.size(), repaired);
+    }
+
+    private static Polygon largestPolygon(Geometry geometry) {
+        Polygon largest = null;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            if (geometry.getGeometryN(i) instanceof Polygon part
+                    && (largest == null || part.getArea() > largest.getArea()))
+                largest = part;
+        }
+        return largest;
+    }
+
+    private static Coordinate[] counterClockwise(Coordinate[] ring) {
+        if (Orientation.isCCW(ring))
+            return ring;
+        var reversed = new Coordinate[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            reversed[i] = ring[ring.length - 1 - i];
+        }
+        return reversed;
+    }
+
+    private static List<LatLng> toRing(Polygon polygon) {
+        var coords = polygon.getExteriorRing().getCoordinates();
+        var ring = new ArrayList<LatLng>(coords.length - 1);
+        for (int i = 0; i < coords.length - 1; i++) {
+            ring.add(new LatLng(coords[i].y, coords[i].x));
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,79 @@
+package com.solarterrain.analytics_backend.geo;
+
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a polygon into square tiles of a fixed size in metres, each clipped
+ * to the polygon. Tiles start at the south-west corner of the polygon's
+ * bounding box; a tile the polygon crosses more than once yields one piece
+ * per part. Tiles wholly inside the polygon are taken as they are, without
+ * an intersection.
+ */
+public final class PolygonTiler {
+    private static final double METRES_PER_DEG_LAT = 111_320.0;
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private PolygonTiler() {
+    }
+
+    /**
+     * @param ring         piece outline, counter-clockwise, not closed
+     * @param areaFraction share of the polygon's area in this piece
+     */
+    public record Piece(List<LatLng> ring, double areaFraction) {
+    }
+
+    public static List<Piece> tile(List<LatLng> ring, double tileSizeM) {
+        var coords = new Coordinate[ring.size() + 1];
+        for (int i = 0; i < ring.size(); i++) {
+            coords[i] = new Coordinate(ring.get(i).lng(), ring.get(i).lat());
+        }
+        coords[ring.size()] = new Coordinate(coords[0]);
+        var polygon = FACTORY.createPolygon(coords);
+        double totalArea = polygon.getArea();
+        var prepared = PreparedGeometryFactory.prepare(polygon);
+
+        var bounds = polygon.getEnvelopeInternal();
+        double dLat = tileSizeM / METRES_PER_DEG_LAT;
+        double dLng = tileSizeM / (METRES_PER_DEG_LAT * Math.cos(Math.toRadians(bounds.centre().y)));
+        int rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / dLat));
+        int cols = Math.max(1, (int) Math.ceil(bounds.getWidth() / dLng));
+
+        var pieces = new ArrayList<Piece>();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double minLat = bounds.getMinY() + r * dLat;
+                double minLng = bounds.getMinX() + c * dLng;
+                var tile = FACTORY.toGeometry(new Envelope(minLng, minLng + dLng, minLat, minLat + dLat));
+                if (!prepared.intersects(tile))
+                    continue;
+                Geometry clipped = prepared.containsProperly(tile) ? tile : polygon.intersection(tile);
+                for (int k = 0; k < clipped.getNumGeometries(); k++) {
+                    if (clipped.getGeometryN(k) instanceof Polygon part && part.getArea() > 0)
+                        pieces.add(new Piece(toRing(part), part.getArea() / totalArea));
+                }
+            }
+        }
+        return pieces;
+    }
+
+    private static List<LatLng> toRing(Polygon polygon) {
+        var coords = polygon.getExteriorRing().getCoordinates();
+        boolean ccw = Orientation.isCCW(coords);
+        var ring = new ArrayList<LatLng>(coords.length - 1);
+        for (int i = 0; i < coords.length - 1; i++) {
+            var c = coords[ccw ? i : coords.length - 2 - i];
+            ring.add(new LatLng(c.y, c.x));
+        }
+        return ring;
+    }
+}
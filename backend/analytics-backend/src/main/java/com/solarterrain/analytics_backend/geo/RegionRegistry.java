@@ -0,0 +1,238 @@
+package com.solarterrain.analytics_backend.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Regions the estimator supports, from boundary polygons in GeoJSON: the
+ * bundled {@code /regions/pt-regions.geojson} (mainland Portugal, Madeira,
+ * Azores) or {@code solar.regions.file}. Each feature carries an
+ * {@code id}, a {@code name}, the data {@code providers} available there
+ * and {@code defaults} that override the global ones. Estimates only use a
+ * provider the region declares; without it they use the region defaults.
+ *
+ * <p>
+ * Boundaries are simplified outlines, so each is widened by
+ * {@code solar.regions.buffer-deg} to keep coastal parcels in. Every
+ * polygon part is a prepared geometry in an STR-tree; a lookup is an
+ * envelope query plus a covers test against the few candidates.
+ */
+@Component
+public class RegionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(RegionRegistry.class);
+
+    static final String BUNDLED_REGIONS = "/regions/pt-regions.geojson";
+
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+    private static final double DEFAULT_BUFFER_DEG = 0.02; // ~2 km
+
+    // Data sources a region can declare
+    public static final String GOOGLE_SOLAR = "google-solar";
+    public static final String GOOGLE_ELEVATION = "google-elevation";
+    public static final String CLIMATOLOGY_GRID = "climatology-grid";
+    public static final String PVGIS = "pvgis";
+    public static final String PVGIS_YIELD_GRID = "pvgis-yield-grid";
+    static final List<String> PROVIDERS = List.of(GOOGLE_SOLAR, GOOGLE_ELEVATION, CLIMATOLOGY_GRID, PVGIS,
+            PVGIS_YIELD_GRID);
+
+    /**
+     * Per-region overrides of the global estimation defaults; null keeps the
+     * global value.
+     *
+     * @param fallbackKWhPerKWp annual yield assumed when PVGIS is unavailable
+     * @param ghiKWhPerM2       annual global horizontal irradiation, which
+     *                          scales the weather where there is no
+     *                          climatology grid
+     */
+    public record Defaults(Double tiltDeg, Double azimuthDeg, Double usableFraction, Double fallbackKWhPerKWp,
+            Double ghiKWhPerM2) {
+    }
+
+    /**
+     * @param providers names of the data sources available in the region,
+     *                  e.g. {@link #CLIMATOLOGY_GRID} or {@link #PVGIS_YIELD_GRID}
+     */
+    public record Region(String id, String name, Set<String> providers, Defaults defaults) {
+        public boolean has(String provider) {
+            return providers.contains(provider);
+        }
+
+        /** The known data sources this region lacks, whose defaults stand in for them. */
+        public List<String> absentProviders() {
+            return PROVIDERS.stream().filter(p -> !providers.contains(p)).toList();
+        }
+    }
+
+    private record Part(Region region, PreparedGeometry boundary) {
+    }
+
+    private final List<Region> regions;
+    private final STRtree index = new STRtree();
+
+    @Autowired
+    public RegionRegistry(@Value("${solar.regions.file:}") String file,
+            @Value("${solar.regions.buffer-deg:0.02}") double bufferDeg) throws IOException {
+        this(file.isBlank() ? bundledStream() : Files.newInputStream(Path.of(file)), bufferDeg);
+        log.info("Loaded {} supported regions from {}", regions.size(), file.isBlank() ? BUNDLED_REGIONS : file);
+    }
+
+    RegionRegistry(InputStream geoJson, double bufferDeg) throws IOException {
+        var regions = new ArrayList<Region>();
+        try (geoJson) {
+            var root = new ObjectMapper().readTree(geoJson);
+            for (var feature : root.path("features")) {
+                var region = region(feature.path("properties"));
+                regions.add(region);
+                var boundary = GeometryFixer.fix(geometry(feature.path("geometry"))).buffer(bufferDeg);
+                for (int i = 0; i < boundary.getNumGeometries(); i++) {
+                    var part = boundary.getGeometryN(i);
+                    index.insert(part.getEnvelopeInternal(), new Part(region, PreparedGeometryFactory.prepare(part)));
+                }
+            }
+        }
+        index.build();
+        this.regions = List.copyOf(regions);
+    }
+
+    /** The bundled mainland, Madeira and Azores boundaries. */
+    public static RegionRegistry bundled() {
+        try {
+            return new RegionRegistry(bundledStream(), DEFAULT_BUFFER_DEG);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read bundled regions", e);
+        }
+    }
+
+    public List<Region> regions() {
+        return regions;
+    }
+
+    /** The region containing the point, if any. */
+    public Optional<Region> regionAt(double lat, double lng) {
+        return regionOf(FACTORY.createPoint(new Coordinate(lng, lat)));
+    }
+
+    /**
+     * The region that entirely contains the polygon, if any. A ring that
+     * does not form a valid polygon is tested by its vertices.
+     */
+    public Optional<Region> regionOf(List<LatLng> ring) {
+        if (ring.isEmpty())
+            return Optional.empty();
+        var coords = new Coordinate[ring.size()];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(ring.get(i).lng(), ring.get(i).lat());
+        }
+        Geometry shape = FACTORY.createMultiPointFromCoords(coords);
+        if (coords.length >= 3) {
+            var closed = new Coordinate[coords.length + 1];
+            System.arraycopy(coords, 0, closed, 0, coords.length);
+            closed[coords.length] = coords[0];
+            Polygon polygon = FACTORY.createPolygon(closed);
+            if (polygon.isValid())
+                shape = polygon;
+        }
+        return regionOf(shape);
+    }
+
+    /**
+     * Whether any region reaches into the box, e.g. to skip work for grid
+     * cells that are all sea.
+     */
+    public boolean intersects(double minLat, double minLng, double maxLat, double maxLng) {
+        var envelope = new Envelope(minLng, maxLng, minLat, maxLat);
+        var box = FACTORY.toGeometry(envelope);
+        for (Object candidate : index.query(envelope)) {
+            if (((Part) candidate).boundary().intersects(box))
+                return true;
+        }
+        return false;
+    }
+
+    private Optional<Region> regionOf(Geometry shape) {
+        Envelope envelope = shape.getEnvelopeInternal();
+        for (Object candidate : index.query(envelope)) {
+            var part = (Part) candidate;
+            if (part.boundary().covers(shape))
+                return Optional.of(part.region());
+        }
+        return Optional.empty();
+    }
+
+    private static Region region(JsonNode properties) {
+        var providers = new ArrayList<String>();
+        properties.path("providers").forEach(p -> providers.add(p.asText()));
+        var defaults = properties.path("defaults");
+        return new Region(properties.path("id").asText(), properties.path("name").asText(), Set.copyOf(providers),
+                new Defaults(number(defaults, "tiltDeg"), number(defaults, "azimuthDeg"),
+                        number(defaults, "usableFraction"), number(defaults, "fallbackKWhPerKWp"),
+                        number(defaults, "ghiKWhPerM2")));
+    }
+
+    private static Double number(JsonNode node, String field) {
+        var value = node.get(field);
+        return value != null && value.isNumber() ? value.doubleValue() : null;
+    }
+
+    private static Geometry geometry(JsonNode geometry) {
+        var coordinates = geometry.path("coordinates");
+        return switch (geometry.path("type").asText()) {
+            case "Polygon" -> polygon(coordinates);
+            case "MultiPolygon" -> {
+                var polygons = new Polygon[coordinates.size()];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = polygon(coordinates.get(i));
+                }
+                yield FACTORY.createMultiPolygon(polygons);
+            }
+            default -> throw new IllegalArgumentException("Unsupported region geometry " + geometry.path("type"));
+        };
+    }
+
+    private static Polygon polygon(JsonNode rings) {
+        var holes = new LinearRing[Math.max(0, rings.size() - 1)];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = ring(rings.get(i + 1));
+        }
+        return FACTORY.createPolygon(ring(rings.get(0)), holes);
+    }
+
+    private static LinearRing ring(JsonNode positions) {
+        var coords = new Coordinate[positions.size()];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(positions.get(i).get(0).asDouble(), positions.get(i).get(1).asDouble());
+        }
+        return FACTORY.createLinearRing(coords);
+    }
+
+    private static InputStream bundledStream() throws IOException {
+        var in = RegionRegistry.class.getResourceAsStream(BUNDLED_REGIONS);
+        if (in == null)
+            throw new IOException("Missing resource " + BUNDLED_REGIONS);
+        return in;
+    }
+}
@@ -0,0 +1,19 @@
+package com.solarterrain.analytics_backend.geo;
+
+import java.util.List;
+
+/**
+ * Request payload for a parameter sweep over one polygon: every combination
+ * of the listed values is estimated. A dimension left null or empty takes the
+ * configured default.
+ */
+public record SweepRequest(
+        List<LatLng> points,
+        List<Double> panelEfficiency,
+        List<Double> performanceRatio,
+        List<Double> usableFraction,
+        List<Double> tiltDeg,
+        List<Double> azimuthDeg,
+        Integer deadlineMs // time budget for the answer; server default when null
+) {
+}
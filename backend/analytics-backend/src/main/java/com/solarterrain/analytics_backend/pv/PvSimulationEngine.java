@@ -0,0 +1,211 @@
+package com.solarterrain.analytics_backend.pv;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Hourly PV yield over a typical year (8760 steps).
+ *
+ * <p>
+ * {@link #prepare} does the expensive, orientation-independent part once per
+ * location: sun position, Haurwitz clear-sky irradiance scaled month by month
+ * to the Angstrom-Prescott irradiation implied by the sunshine normals, and
+ * the Erbs beam/diffuse split. Night hours are dropped.
+ *
+ * <p>
+ * {@link #simulate} is then a single pass over primitive arrays per system
+ * configuration: isotropic-sky transposition to the plane of array, NOCT cell
+ * temperature, temperature derating, system losses and inverter clipping.
+ * It allocates only the result, so sweeping many configurations is cheap.
+ */
+@Component
+public class PvSimulationEngine {
+
+    public static final int HOURS_PER_YEAR = 8760;
+
+    private static final double SOLAR_CONSTANT = 1367.0; // W/m2
+    // FAO-56 Angstrom-Prescott coefficients for when no local calibration exists
+    private static final double ANGSTROM_A = 0.25;
+    private static final double ANGSTROM_B = 0.50;
+    private static final double DIURNAL_TEMPERATURE_SWING = 5.0; // +/- around the monthly mean, peak at 15h
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    /**
+     * Irradiance for a site from its monthly normals.
+     *
+     * @param sunHours     mean daily bright sunshine per month, hours (12 values)
+     * @param temperatureC mean air temperature per month (12 values)
+     */
+    public SiteIrradiance prepare(double latitude, double[] sunHours, double[] temperatureC) {
+        if (sunHours.length != 12 || temperatureC.length != 12)
+            throw new IllegalArgumentException("Expected 12 monthly values");
+
+        double phi = Math.toRadians(latitude);
+        double sinPhi = Math.sin(phi);
+        double cosPhi = Math.cos(phi);
+        double tanPhi = Math.tan(phi);
+
+        // Half the year is daylight; size generously and trim at the end
+        int capacity = HOURS_PER_YEAR * 5 / 8;
+        var month = new byte[capacity];
+        var hourOfYear = new short[capacity];
+        var ghi = new float[capacity];
+        var dni = new float[capacity];
+        var dhi = new float[capacity];
+        var cosZenith = new float[capacity];
+        var sunEast = new float[capacity];
+        var sunNorth = new float[capacity];
+        var ambient = new float[capacity];
+        var extraterrestrial = new float[capacity];
+
+        int n = 0;
+        int day = 0;
+        for (int m = 0; m < 12; m++) {
+            int monthStart = n;
+            double clearSkySum = 0; // Wh/m2 over the month
+            double extraterrestrialSum = 0;
+            double dayLengthSum = 0;
+
+            for (int d = 0; d < DAYS_IN_MONTH[m]; d++, day++) {
+                double dayAngle = 2 * Math.PI * (day + 1) / 365.0;
+                double declination = Math.toRadians(23.45 * Math.sin(2 * Math.PI * (284 + day + 1) / 365.0));
+                double sinDecl = Math.sin(declination);
+                double cosDecl = Math.cos(declination);
+                double eccentricity = 1.0 + 0.033 * Math.cos(dayAngle);
+                dayLengthSum += 2.0 * Math.toDegrees(Math.acos(clamp(-tanPhi * Math.tan(declination), -1, 1)))
+                        / 15.0;
+
+                for (int h = 0; h < 24; h++) {
+                    double hourAngle = Math.toRadians(15.0 * (h + 0.5 - 12.0)); // solar time, mid-hour
+                    double cosOmega = Math.cos(hourAngle);
+                    double cosZ = sinPhi * sinDecl + cosPhi * cosDecl * cosOmega;
+                    if (cosZ <= 0.0)
+                        continue;
+
+                    double g0 = SOLAR_CONSTANT * eccentricity * cosZ;
+                    double clear = 1098.0 * cosZ * Math.exp(-0.057 / cosZ); // Haurwitz
+                    month[n] = (byte) m;
+                    hourOfYear[n] = (short) (day * 24 + h);
+                    cosZenith[n] = (float) cosZ;
+                    sunEast[n] = (float) (-cosDecl * Math.sin(hourAngle));
+                    sunNorth[n] = (float) (cosPhi * sinDecl - sinPhi * cosDecl * cosOmega);
+                    ghi[n] = (float) clear;
+                    extraterrestrial[n] = (float) g0;
+                    ambient[n] = (float) (temperatureC[m]
+                            + DIURNAL_TEMPERATURE_SWING * Math.cos(2 * Math.PI * (h + 0.5 - 15.0) / 24.0));
+                    clearSkySum += clear;
+                    extraterrestrialSum += g0;
+                    n++;
+                }
+            }
+
+            // Scale clear sky so the month matches H = H0 (a + b * n/N)
+            double relativeSunshine = clamp(sunHours[m] / (dayLengthSum / DAYS_IN_MONTH[m]), 0, 1);
+            double target = extraterrestrialSum * (ANGSTROM_A + ANGSTROM_B * relativeSunshine);
+            double scale = clearSkySum > 0 ? target / clearSkySum : 0;
+
+            for (int i = monthStart; i < n; i++) {
+                double global = Math.min(ghi[i] * scale, extraterrestrial[i]);
+                double kt = global / extraterrestrial[i];
+                double diffuse = global * erbsDiffuseFraction(kt);
+                double cosZ = cosZenith[i];
+                ghi[i] = (float) global;
+                if (cosZ < 0.0175) { // sun within ~1 deg of the horizon: treat as all diffuse
+                    dhi[i] = (float) global;
+                    dni[i] = 0f;
+                } else {
+                    dhi[i] = (float) diffuse;
+                    dni[i] = (float) ((global - diffuse) / cosZ);
+                }
+            }
+        }
+
+        return new SiteIrradiance(n,
+                Arrays.copyOf(month, n),
+                Arrays.copyOf(hourOfYear, n),
+                Arrays.copyOf(ghi, n),
+                Arrays.copyOf(dni, n),
+                Arrays.copyOf(dhi, n),
+                Arrays.copyOf(cosZenith, n),
+                Arrays.copyOf(sunEast, n),
+                Arrays.copyOf(sunNorth, n),
+                Arrays.copyOf(ambient, n));
+    }
+
+    public PvSimulationResult simulate(SiteIrradiance site, PvSystemConfig config) {
+        return simulate(site, config, null);
+    }
+
+    /**
+     * Simulates one configuration. {@code beamLoss}, when given, holds the
+     * shaded fraction of direct irradiance for each daylight step.
+     */
+    public PvSimulationResult simulate(SiteIrradiance site, PvSystemConfig config, float[] beamLoss) {
+        double tilt = Math.toRadians(config.tiltDeg());
+        double azimuth = Math.toRadians(config.azimuthDeg());
+        // Panel normal as (east, north, up)
+        double nEast = Math.sin(tilt) * Math.sin(azimuth);
+        double nNorth = Math.sin(tilt) * Math.cos(azimuth);
+        double nUp = Math.cos(tilt);
+        double skyView = (1.0 + nUp) / 2.0;
+        double groundView = config.albedo() * (1.0 - nUp) / 2.0;
+
+        double kWp = config.peakPowerKWp();
+        double dcFactor = kWp / 1000.0 * (1.0 - config.systemLosses());
+        double tempCoefficient = config.tempCoefficient();
+        double noctFactor = (config.noctC() - 20.0) / 800.0;
+        double inverterEfficiency = config.inverterEfficiency();
+        double acLimit = kWp / config.dcAcRatio();
+
+        float[] ghi = site.ghi;
+        float[] dni = site.dni;
+        float[] dhi = site.dhi;
+        float[] cosZ = site.cosZenith;
+        float[] east = site.sunEast;
+        float[] north = site.sunNorth;
+        float[] ambient = site.ambientC;
+        byte[] month = site.month;
+
+        double[] monthly = new double[12];
+        double poaSum = 0;
+        double clipped = 0;
+        for (int i = 0; i < site.hours; i++) {
+            double cosIncidence = nEast * east[i] + nNorth * north[i] + nUp * cosZ[i];
+            double beam = cosIncidence > 0 ? dni[i] * cosIncidence : 0.0;
+            if (beamLoss != null)
+                beam *= 1.0 - beamLoss[i];
+            double poa = beam + dhi[i] * skyView + ghi[i] * groundView;
+
+            double cellC = ambient[i] + noctFactor * poa;
+            double dc = poa * dcFactor * (1.0 + tempCoefficient * (cellC - 25.0));
+            double ac = dc * inverterEfficiency;
+            if (ac > acLimit) {
+                clipped += ac - acLimit;
+                ac = acLimit;
+            }
+            monthly[month[i]] += ac; // kW over one hour = kWh
+            poaSum += poa;
+        }
+
+        double annual = 0;
+        for (double v : monthly) {
+            annual += v;
+        }
+        double irradiation = poaSum / 1000.0;
+        double performanceRatio = irradiation > 0 && kWp > 0 ? annual / (kWp * irradiation) : 0.0;
+        return new PvSimulationResult(annual, monthly, irradiation, performanceRatio, clipped);
+    }
+
+    static double erbsDiffuseFraction(double kt) {
+        if (kt <= 0.22)
+            return 1.0 - 0.09 * kt;
+        if (kt <= 0.80)
+            return 0.9511 - 0.1604 * kt + 4.388 * kt * kt - 16.638 * kt * kt * kt + 12.336 * kt * kt * kt * kt;
+        return 0.165;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -0,0 +1,13 @@
+package com.solarterrain.analytics_backend.pv;
+
+/**
+ * Yearly output of one simulated configuration. Energies are AC kWh,
+ * irradiation is plane-of-array kWh/m2.
+ */
+public record PvSimulationResult(
+        double annualEnergyKWh,
+        double[] monthlyEnergyKWh,
+        double annualIrradiationKWhM2,
+        double performanceRatio,
+        double clippedEnergyKWh) {
+}
@@ -0,0 +1,27 @@
+package com.solarterrain.analytics_backend.pv;
+
+/**
+ * One PV system layout to simulate. Angles are in degrees; azimuth is a
+ * compass bearing (180 = south, 90 = east) and tilt is measured from the
+ * horizontal.
+ */
+public record PvSystemConfig(
+        double peakPowerKWp,
+        double tiltDeg,
+        double azimuthDeg,
+        double systemLosses, // wiring, soiling, mismatch; fraction of DC
+        double inverterEfficiency,
+        double dcAcRatio, // DC peak over inverter AC rating, drives clipping
+        double tempCoefficient, // power change per degree C above 25
+        double noctC, // nominal operating cell temperature
+        double albedo) {
+
+    public static PvSystemConfig of(double peakPowerKWp, double tiltDeg, double azimuthDeg, double systemLosses) {
+        return new PvSystemConfig(peakPowerKWp, tiltDeg, azimuthDeg, systemLosses, 0.96, 1.2, -0.004, 45.0, 0.2);
+    }
+
+    public PvSystemConfig withOrientation(double tiltDeg, double azimuthDeg) {
+        return new PvSystemConfig(peakPowerKWp, tiltDeg, azimuthDeg, systemLosses, inverterEfficiency, dcAcRatio,
+                tempCoefficient, noctC, albedo);
+    }
+}
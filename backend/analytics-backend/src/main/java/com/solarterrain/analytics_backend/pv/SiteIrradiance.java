@@ -0,0 +1,73 @@
+package com.solarterrain.analytics_backend.pv;
+
+/**
+ * Hourly irradiance and sun geometry for one location over a typical year,
+ * daylight hours only, as parallel primitive arrays. Built once per site by
+ * {@link PvSimulationEngine#prepare} and then shared read-only by every
+ * configuration simulated there.
+ */
+public final class SiteIrradiance {
+    final int hours;
+    final byte[] month; // 0..11
+    final short[] hourOfYear; // 0..8759, for hourly loss tables
+    final float[] ghi; // W/m2
+    final float[] dni;
+    final float[] dhi;
+    final float[] cosZenith;
+    final float[] sunEast; // sin(zenith) * sin(azimuth)
+    final float[] sunNorth; // sin(zenith) * cos(azimuth)
+    final float[] ambientC;
+    final double annualGhiKWhM2;
+
+    SiteIrradiance(int hours, byte[] month, short[] hourOfYear, float[] ghi, float[] dni, float[] dhi,
+            float[] cosZenith, float[] sunEast, float[] sunNorth, float[] ambientC) {
+        this.hours = hours;
+        this.month = month;
+        this.hourOfYear = hourOfYear;
+        this.ghi = ghi;
+        this.dni = dni;
+        this.dhi = dhi;
+        this.cosZenith = cosZenith;
+        this.sunEast = sunEast;
+        this.sunNorth = sunNorth;
+        this.ambientC = ambientC;
+        double sum = 0;
+        for (int i = 0; i < hours; i++) {
+            sum += ghi[i];
+        }
+        this.annualGhiKWhM2 = sum / 1000.0;
+    }
+
+    /** Number of daylight hours in the year. */
+    public int hours() {
+        return hours;
+    }
+
+    /** Global horizontal irradiation over the year, kWh/m2. */
+    public double annualGhiKWhM2() {
+        return annualGhiKWhM2;
+    }
+
+    /** Hour of the (non-leap) year of daylight step {@code i}. */
+    public int hourOfYear(int i) {
+        return hourOfYear[i];
+    }
+
+    /** Beam irradiance of daylight step {@code i}, W/m2 normal to the sun. */
+    public double dni(int i) {
+        return dni[i];
+    }
+
+    /** Unit vector to the sun of step {@code i} as (east, north, up). */
+    public double sunEast(int i) {
+        return sunEast[i];
+    }
+
+    public double sunNorth(int i) {
+        return sunNorth[i];
+    }
+
+    public double cosZenith(int i) {
+        return cosZenith[i];
+    }
+}
@@ -0,0 +1,162 @@
+package com.solarterrain.analytics_backend.pv;
+
+import java.util.Arrays;
+
+/**
+ * The year's sun path at a site binned into sky patches of
+ * {@value #ELEVATION_BAND_DEG} deg of elevation by {@value #SECTOR_DEG} deg of
+ * azimuth. Only patches the sun actually crosses are kept, about 150 in
+ * Portugal.
+ *
+ * <p>
+ * A shading model then evaluates each patch once instead of every daylight
+ * hour. Patch losses are expanded back to hours for
+ * {@link PvSimulationEngine#simulate(SiteIrradiance, PvSystemConfig, float[])}
+ * or aggregated into a month x hour-of-day matrix, weighted by the beam
+ * irradiance on the horizontal that falls in each patch.
+ */
+public final class SkyPatches {
+    public static final int SECTOR_DEG = 15;
+    public static final int SECTORS = 360 / SECTOR_DEG;
+    public static final int ELEVATION_BAND_DEG = 6;
+    public static final int MONTH_HOURS = 12 * 24;
+
+    private final int[] stepPatch; // per daylight step
+    private final int[] sector; // per patch
+    private final int[] band;
+    private final double[] weight; // beam on the horizontal, Wh/m2 over the year
+
+    // Sparse month-hour x patch weights, for the matrix
+    private final int[] cellSlot;
+    private final int[] cellPatch;
+    private final double[] cellWeight;
+    private final double[] slotWeight;
+
+    private SkyPatches(int[] stepPatch, int[] sector, int[] band, double[] weight, int[] cellSlot, int[] cellPatch,
+            double[] cellWeight, double[] slotWeight) {
+        this.stepPatch = stepPatch;
+        this.sector = sector;
+        this.band = band;
+        this.weight = weight;
+        this.cellSlot = cellSlot;
+        this.cellPatch = cellPatch;
+        this.cellWeight = cellWeight;
+        this.slotWeight = slotWeight;
+    }
+
+    public static SkyPatches of(SiteIrradiance site) {
+        int bands = (90 + ELEVATION_BAND_DEG - 1) / ELEVATION_BAND_DEG;
+        int[] denseToPatch = new int[bands * SECTORS];
+        Arrays.fill(denseToPatch, -1);
+        int[] stepPatch = new int[site.hours];
+        int[] sector = new int[bands * SECTORS];
+        int[] band = new int[bands * SECTORS];
+        double[] weight = new double[bands * SECTORS];
+        int patches = 0;
+
+        // (slot, patch) pairs, keyed densely then compacted
+        double[] pairWeight = new double[MONTH_HOURS * bands * SECTORS];
+        double[] slotWeight = new double[MONTH_HOURS];
+
+        for (int i = 0; i < site.hours; i++) {
+            double elevation = Math.toDegrees(Math.asin(Math.min(1.0, site.cosZenith[i])));
+            double azimuth = Math.toDegrees(Math.atan2(site.sunEast[i], site.sunNorth[i])); // compass, 0 = north
+            if (azimuth < 0)
+                azimuth += 360;
+            int b = Math.min(bands - 1, (int) (elevation / ELEVATION_BAND_DEG));
+            int s = Math.min(SECTORS - 1, (int) (azimuth / SECTOR_DEG));
+            int dense = b * SECTORS + s;
+            int p = denseToPatch[dense];
+            if (p < 0) {
+                p = patches++;
+                denseToPatch[dense] = p;
+                sector[p] = s;
+                band[p] = b;
+            }
+            stepPatch[i] = p;
+
+            double beam = site.dni[i] * site.cosZenith[i];
+            int slot = site.month[i] * 24 + site.hourOfYear[i] % 24;
+            weight[p] += beam;
+            slotWeight[slot] += beam;
+            pairWeight[slot * bands * SECTORS + dense] += beam;
+        }
+
+        int pairs = 0;
+        for (double w : pairWeight) {
+            if (w > 0)
+                pairs++;
+        }
+        int[] cellSlot = new int[pairs];
+        int[] cellPatch = new int[pairs];
+        double[] cellWeight = new double[pairs];
+        int k = 0;
+        for (int idx = 0; idx < pairWeight.length; idx++) {
+            if (pairWeight[idx] > 0) {
+                cellSlot[k] = idx / (bands * SECTORS);
+                cellPatch[k] = denseToPatch[idx % (bands * SECTORS)];
+                cellWeight[k] = pairWeight[idx];
+                k++;
+            }
+        }
+
+        return new SkyPatches(stepPatch, Arrays.copyOf(sector, patches), Arrays.copyOf(band, patches),
+                Arrays.copyOf(weight, patches), cellSlot, cellPatch, cellWeight, slotWeight);
+    }
+
+    public int count() {
+        return sector.length;
+    }
+
+    /** Azimuth sector of patch {@code p}, compass degrees from {@code sector * SECTOR_DEG}. */
+    public int sector(int p) {
+        return sector[p];
+    }
+
+    public double elevationLowDeg(int p) {
+        return band[p] * ELEVATION_BAND_DEG;
+    }
+
+    public double elevationHighDeg(int p) {
+        return Math.min(90, (band[p] + 1) * ELEVATION_BAND_DEG);
+    }
+
+    /** Beam irradiation on the horizontal arriving from patch {@code p}, kWh/m2 per year. */
+    public double weightKWhM2(int p) {
+        return weight[p] / 1000.0;
+    }
+
+    /** Per daylight step beam loss, for the hourly simulation. */
+    public float[] stepLoss(double[] patchLoss) {
+        float[] loss = new float[stepPatch.length];
+        for (int i = 0; i < loss.length; i++) {
+            loss[i] = (float) patchLoss[stepPatch[i]];
+        }
+        return loss;
+    }
+
+    /** Annual beam loss fraction, weighted by irradiance. */
+    public double annualLoss(double[] patchLoss) {
+        double lost = 0, total = 0;
+        for (int p = 0; p < weight.length; p++) {
+            lost += weight[p] * patchLoss[p];
+            total += weight[p];
+        }
+        return total > 0 ? lost / total : 0.0;
+    }
+
+    /**
+     * Irradiance-weighted beam loss per month and hour of day, index
+     * {@code month0 * 24 + hour}; 0 where the sun is down.
+     */
+    public double[] monthHourLoss(double[] patchLoss) {
+        double[] matrix = new double[MONTH_HOURS];
+        for (int k = 0; k < cellSlot.length; k++) {
+            matrix[cellSlot[k]] += cellWeight[k] * patchLoss[cellPatch[k]];
+        }
+        for (int slot = 0; slot < MONTH_HOURS; slot++) {
+            matrix[slot] = slotWeight[slot] > 0 ? matrix[slot] / slotWeight[slot] : 0.0;
+        }
+        return matrix;
+    }
+}
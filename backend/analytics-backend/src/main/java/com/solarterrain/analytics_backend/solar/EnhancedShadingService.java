@@ -1,99 +1,279 @@
 package com.solarterrain.analytics_backend.solar;
 
 import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import com.solarterrain.analytics_backend.upstream.SingleFlight;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToDoubleFunction;
 
 @Service
 public class EnhancedShadingService {
 
-    @Value("${google.api.key:}")
-    private String googleApiKey;
+    private static final double METRES_PER_DEG_LAT = 111_320.0;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String ELEVATION_API_URL = "https://maps.googleapis.com/maps/api/elevation/json";
+    @Value("${solar.shading.grid-size:10}")
+    int gridSize; // samples per side of the elevation grid
+
+    private final ElevationTileStore elevationTiles;
+    private final SingleFlight<AreaKey, ShadingAnalysis> inFlight = new SingleFlight<>();
+
+    public EnhancedShadingService(ElevationTileStore elevationTiles) {
+        this.elevationTiles = elevationTiles;
+    }
 
     /**
      * Calculate detailed shading analysis using real elevation data
      */
     public ShadingAnalysis calculateDetailedShading(double latitude, double longitude,
             List<Map<String, Double>> polygon) {
-        try {
-            // Get elevation data for the area
-            var elevationData = getElevationDataForArea(polygon);
-
-            // Calculate shadow patterns for different times of day and seasons
-            var morningShading = calculateShadingForTime(latitude, longitude, elevationData, 8); // 8 AM
-            var noonShading = calculateShadingForTime(latitude, longitude, elevationData, 12); // 12 PM
-            var eveningShading = calculateShadingForTime(latitude, longitude, elevationData, 17); // 5 PM
-
-            // Calculate seasonal variations
-            var winterShading = calculateSeasonalShading(latitude, longitude, elevationData, "winter");
-            var summerShading = calculateSeasonalShading(latitude, longitude, elevationData, "summer");
-
-            // Calculate average shading throughout the year
-            double averageShading = (morningShading + noonShading + eveningShading + winterShading + summerShading)
-                    / 5.0;
-
-            return new ShadingAnalysis(
-                    averageShading,
-                    morningShading,
-                    noonShading,
-                    eveningShading,
-                    winterShading,
-                    summerShading,
-                    elevationData,
-                    calculateShadowMap(elevationData));
+        return calculateDetailedShadingAsync(latitude, longitude, polygon).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #calculateDetailedShading}: elevation is
+     * fetched without holding a thread, the shadow math then runs on the
+     * common pool.
+     */
+    public CompletableFuture<ShadingAnalysis> calculateDetailedShadingAsync(double latitude, double longitude,
+            List<Map<String, Double>> polygon) {
+        return calculateDetailedShadingAsync(latitude, longitude, polygon, UpstreamContext.interactive());
+    }
 
+    public CompletableFuture<ShadingAnalysis> calculateDetailedShadingAsync(double latitude, double longitude,
+            List<Map<String, Double>> polygon, UpstreamContext context) {
+        try {
+            // Same area requested concurrently (e.g. overlapping parcels): one elevation fetch and analysis
+            var key = new AreaKey(latitude, longitude, polygon.stream().map(Map::copyOf).toList(), gridSize);
+            return inFlight.run(key, context, () -> getElevationDataForAreaAsync(key.polygon(), context)
+                    .thenApplyAsync(elevationData -> analyzeShading(latitude, longitude, elevationData)))
+                    .exceptionally(e -> {
+                        System.err.println("Error calculating detailed shading: " + e.getMessage());
+                        // Return basic shading calculation as fallback
+                        return getBasicShadingAnalysis(latitude, longitude);
+                    });
         } catch (Exception e) {
             System.err.println("Error calculating detailed shading: " + e.getMessage());
-            // Return basic shading calculation as fallback
-            return getBasicShadingAnalysis(latitude, longitude);
+            return CompletableFuture.completedFuture(getBasicShadingAnalysis(latitude, longitude));
         }
     }
 
-    private List<ElevationPoint> getElevationDataForArea(List<Map<String, Double>> polygon) {
-        var elevationPoints = new ArrayList<ElevationPoint>();
+    private record AreaKey(double latitude, double longitude, List<Map<String, Double>> polygon, int gridSize) {
+    }
 
-        // Create a grid of points within the polygon
-        var bounds = calculateBounds(polygon);
-        var gridPoints = generateGridPoints(bounds, 10); // 10x10 grid for detailed analysis
+    /** Shading of one tile of a large parcel, see {@link #calculateTileShadingAsync}. */
+    public record TileShading(ShadingAnalysis analysis, ShadingLossMatrix losses) {
+    }
 
-        // Get elevation for each point
-        for (var point : gridPoints) {
-            if (isPointInPolygon(point, polygon)) {
-                var elevation = getElevationForPoint(point.lat(), point.lng());
-                elevationPoints.add(new ElevationPoint(point.lat(), point.lng(), elevation));
+    /**
+     * Shading of one tile of a large parcel. Terrain is sampled every
+     * {@code tileSizeM / (grid-size - 1)} metres over the piece's bounds grown
+     * by {@code haloM} on every side: samples inside the piece are the ones
+     * analysed, the halo around them only casts shadows, so a ridge in the
+     * neighbouring tile still shades this one.
+     */
+    public CompletableFuture<TileShading> calculateTileShadingAsync(double latitude, double longitude,
+            List<LatLng> piece, double tileSizeM, double haloM, SkyPatches patches, UpstreamContext context) {
+        var polygon = piece.stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList();
+        var bounds = calculateBounds(polygon);
+        double stepM = tileSizeM / (gridSize - 1);
+        double stepLat = stepM / METRES_PER_DEG_LAT;
+        double stepLng = stepLat / Math.cos(Math.toRadians((bounds.minLat + bounds.maxLat) / 2));
+        // Whole steps, so the samples inside the piece do not depend on the halo
+        int haloSteps = (int) Math.ceil(haloM / stepM);
+
+        // Inside points first: they are the receivers
+        var inside = new ArrayList<LatLng>();
+        var halo = new ArrayList<LatLng>();
+        int rows = (int) ((bounds.maxLat - bounds.minLat) / stepLat) + 1 + 2 * haloSteps;
+        int cols = (int) ((bounds.maxLng - bounds.minLng) / stepLng) + 1 + 2 * haloSteps;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                var point = new LatLng(bounds.minLat + (i - haloSteps) * stepLat,
+                        bounds.minLng + (j - haloSteps) * stepLng);
+                (isPointInPolygon(point, polygon) ? inside : halo).add(point);
             }
         }
+        int receivers = inside.size();
+        var points = new ArrayList<LatLng>(inside);
+        points.addAll(halo);
+
+        return elevationTiles.getElevationsAsync(points, context).thenApplyAsync(elevations -> {
+            var samples = new ArrayList<ElevationPoint>(points.size());
+            for (int i = 0; i < points.size(); i++) {
+                samples.add(new ElevationPoint(points.get(i).lat(), points.get(i).lng(), elevations[i]));
+            }
+            return new TileShading(analyzeShading(latitude, longitude, samples, receivers),
+                    shadingLosses(samples, receivers, patches));
+        }).exceptionally(e -> {
+            System.err.println("Error calculating tile shading: " + e.getMessage());
+            return basicTileShading(latitude, longitude, patches);
+        });
+    }
 
-        return elevationPoints;
+    /** Fallback of {@link #calculateTileShadingAsync}: the basic analysis, no terrain losses. */
+    TileShading basicTileShading(double latitude, double longitude, SkyPatches patches) {
+        return new TileShading(getBasicShadingAnalysis(latitude, longitude),
+                new ShadingLossMatrix(patches, 0, new double[0]));
     }
 
-    private double getElevationForPoint(double latitude, double longitude) {
-        try {
-            String url = String.format(Locale.US, "%s?locations=%.6f,%.6f&key=%s",
-                    ELEVATION_API_URL, latitude, longitude, googleApiKey);
+    ShadingAnalysis analyzeShading(double latitude, double longitude, List<ElevationPoint> elevationData) {
+        return analyzeShading(latitude, longitude, elevationData, elevationData.size());
+    }
+
+    /**
+     * Shading of the first {@code receivers} samples, with every sample
+     * casting shadows; the rest are terrain around the area of interest.
+     */
+    ShadingAnalysis analyzeShading(double latitude, double longitude, List<ElevationPoint> elevationData,
+            int receivers) {
+        int n = elevationData.size();
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        double[] elevation = new double[n];
+        for (int i = 0; i < n; i++) {
+            var point = elevationData.get(i);
+            lat[i] = point.latitude;
+            lng[i] = point.longitude;
+            elevation[i] = point.elevation;
+        }
+        double[] dist = SolarKernels.distanceMatrix(lat, lng);
+
+        // Same sun positions as the reference: 8 AM, noon, 5 PM, winter and summer solstice noon
+        double[] shading = SolarKernels.meanShadowIntensity(elevation, dist, new double[] {
+                calculateSunElevation(latitude, 8),
+                calculateSunElevation(latitude, 12),
+                calculateSunElevation(latitude, 17),
+                calculateSunElevationForSeason(latitude, -23.5),
+                calculateSunElevationForSeason(latitude, 23.5) }, receivers);
+        double averageShading = (shading[0] + shading[1] + shading[2] + shading[3] + shading[4]) / 5.0;
+
+        // Shadow map: first 100 points in a 10x10 grid, sun at noon over each point
+        int mapped = Math.min(receivers, 100);
+        double[] noonElevation = new double[mapped];
+        for (int i = 0; i < mapped; i++) {
+            noonElevation[i] = calculateSunElevation(lat[i], 12);
+        }
+        double[] mapIntensity = SolarKernels.shadowIntensity(elevation, dist, noonElevation, mapped);
+        var shadowMap = new ArrayList<List<Double>>(10);
+        for (int i = 0; i < 10; i++) {
+            var row = new ArrayList<Double>(10);
+            for (int j = 0; j < 10; j++) {
+                row.add(i * 10 + j < mapped ? mapIntensity[i * 10 + j] : 0.0);
+            }
+            shadowMap.add(row);
+        }
+
+        return new ShadingAnalysis(averageShading, shading[0], shading[1], shading[2], shading[3], shading[4],
+                receivers == n ? elevationData : List.copyOf(elevationData.subList(0, receivers)), shadowMap);
+    }
 
-            var response = restTemplate.getForObject(url, ElevationResponse.class);
+    /**
+     * Beam loss of each terrain sample for each sky patch the sun crosses.
+     * A patch is lost in proportion to how much of its elevation band lies
+     * below the terrain horizon in its azimuth sector, so each of the ~150
+     * patches is evaluated once per sample instead of every daylight hour.
+     */
+    public ShadingLossMatrix shadingLosses(List<ElevationPoint> elevationData, SkyPatches patches) {
+        return shadingLosses(elevationData, elevationData.size(), patches);
+    }
 
-            if (response != null && response.getResults() != null && !response.getResults().isEmpty()) {
-                return response.getResults().get(0).getElevation();
+    /** As above, for the first {@code receivers} samples, against all of them. */
+    ShadingLossMatrix shadingLosses(List<ElevationPoint> elevationData, int receivers, SkyPatches patches) {
+        int n = elevationData.size();
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        double[] elevation = new double[n];
+        for (int i = 0; i < n; i++) {
+            var point = elevationData.get(i);
+            lat[i] = point.latitude;
+            lng[i] = point.longitude;
+            elevation[i] = point.elevation;
+        }
+        double[] horizon = SolarKernels.horizonProfiles(lat, lng, elevation, SolarKernels.distanceMatrix(lat, lng),
+                SkyPatches.SECTOR_DEG, receivers);
+
+        int count = patches.count();
+        double[] loss = new double[receivers * count];
+        for (int i = 0; i < receivers; i++) {
+            for (int p = 0; p < count; p++) {
+                double low = patches.elevationLowDeg(p);
+                double high = patches.elevationHighDeg(p);
+                double blocked = (horizon[i * SkyPatches.SECTORS + patches.sector(p)] - low) / (high - low);
+                loss[i * count + p] = Math.max(0.0, Math.min(1.0, blocked));
             }
+        }
+        return new ShadingLossMatrix(patches, receivers, loss);
+    }
 
-            return 0.0; // Default elevation if API fails
-        } catch (Exception e) {
-            System.err.println("Error fetching elevation data: " + e.getMessage());
-            return 0.0;
+    /**
+     * Scalar reference for {@link #analyzeShading}, kept to check the
+     * kernels against.
+     */
+    ShadingAnalysis analyzeShadingReference(double latitude, double longitude, List<ElevationPoint> elevationData) {
+        // Calculate shadow patterns for different times of day and seasons
+        var morningShading = calculateShadingForTime(latitude, longitude, elevationData, 8); // 8 AM
+        var noonShading = calculateShadingForTime(latitude, longitude, elevationData, 12); // 12 PM
+        var eveningShading = calculateShadingForTime(latitude, longitude, elevationData, 17); // 5 PM
+
+        // Calculate seasonal variations
+        var winterShading = calculateSeasonalShading(latitude, longitude, elevationData, "winter");
+        var summerShading = calculateSeasonalShading(latitude, longitude, elevationData, "summer");
+
+        // Calculate average shading throughout the year
+        double averageShading = (morningShading + noonShading + eveningShading + winterShading + summerShading)
+                / 5.0;
+
+        return new ShadingAnalysis(
+                averageShading,
+                morningShading,
+                noonShading,
+                eveningShading,
+                winterShading,
+                summerShading,
+                elevationData,
+                calculateShadowMap(elevationData));
+    }
+
+    /**
+     * As {@link #calculateDetailedShading}, on the same grid, with elevations
+     * taken from {@code terrain} instead of the tile store; runs on the
+     * calling thread and never touches the network.
+     */
+    ShadingAnalysis calculateDetailedShading(double latitude, double longitude, List<Map<String, Double>> polygon,
+            ToDoubleFunction<LatLng> terrain) {
+        var bounds = calculateBounds(polygon);
+        var elevationPoints = new ArrayList<ElevationPoint>();
+        for (var point : generateGridPoints(bounds, gridSize)) {
+            if (isPointInPolygon(point, polygon))
+                elevationPoints.add(new ElevationPoint(point.lat(), point.lng(), terrain.applyAsDouble(point)));
         }
+        return analyzeShading(latitude, longitude, elevationPoints);
+    }
+
+    private CompletableFuture<List<ElevationPoint>> getElevationDataForAreaAsync(List<Map<String, Double>> polygon,
+            UpstreamContext context) {
+        // Create a grid of points within the polygon
+        var bounds = calculateBounds(polygon);
+        var gridPoints = generateGridPoints(bounds, gridSize); // gridSize x gridSize grid for detailed analysis
+        var insidePoints = gridPoints.stream().filter(point -> isPointInPolygon(point, polygon)).toList();
+
+        // Interpolated from the shared elevation lattice; only tiles never seen before are fetched
+        return elevationTiles.getElevationsAsync(insidePoints, context).thenApply(elevations -> {
+            var elevationPoints = new ArrayList<ElevationPoint>(insidePoints.size());
+            for (int i = 0; i < insidePoints.size(); i++) {
+                var point = insidePoints.get(i);
+                elevationPoints.add(new ElevationPoint(point.lat(), point.lng(), elevations[i]));
+            }
+            return elevationPoints;
+        });
     }
 
     private double calculateShadingForTime(double latitude, double longitude,
@@ -232,7 +412,7 @@ public class EnhancedShadingService {
         return shadowMap;
     }
 
-    private ShadingAnalysis getBasicShadingAnalysis(double latitude, double longitude) {
+    ShadingAnalysis getBasicShadingAnalysis(double latitude, double longitude) {
         // Fallback basic shading analysis
         return new ShadingAnalysis(
                 0.2, // average shading
@@ -396,55 +576,4 @@ public class EnhancedShadingService {
             return shadowMap;
         }
     }
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    public static class ElevationResponse {
-        @JsonProperty("results")
-        private List<ElevationResult> results;
-
-        @JsonProperty("status")
-        private String status;
-
-        public List<ElevationResult> getResults() {
-            return results;
-        }
-
-        public String getStatus() {
-            return status;
-        }
-
-        @JsonIgnoreProperties(ignoreUnknown = true)
-        public static class ElevationResult {
-            @JsonProperty("elevation")
-            private Double elevation;
-
-            @JsonProperty("location")
-            private Location location;
-
-            public Double getElevation() {
-                return elevation;
-            }
-
-            public Location getLocation() {
-                return location;
-            }
-
-            @JsonIgnoreProperties(ignoreUnknown = true)
-            public static class Location {
-                @JsonProperty("lat")
-                private Double lat;
-
-                @JsonProperty("lng")
-                private Double lng;
-
-                public Double getLat() {
-                    return lat;
-                }
-
-                public Double getLng() {
-                    return lng;
-                }
-            }
-        }
-    }
 }
@@ -0,0 +1,42 @@
+package com.solarterrain.analytics_backend.solar;
+
+/**
+ * Per-request system parameters of an estimate. A null field takes the
+ * service default ({@code solar.default.*}); {@code dcPowerPerM2}, when
+ * given, wins over {@code panelEfficiency}, and without either the peak
+ * power per m2 comes from the Google Solar samples or the weather.
+ * {@code performanceRatio} replaces the modelled loss chain (temperature,
+ * wiring, inverter) of the unshaded system; terrain shading still applies
+ * on top of it.
+ */
+public record EstimateOptions(
+        Double panelEfficiency, // module efficiency (0-1), i.e. kWp per m2 at 1 kW/m2
+        Double performanceRatio, // (0-1)
+        Double dcPowerPerM2, // kWp per m2 of usable area
+        Double usableFraction, // of the parcel area covered by panels (0-1)
+        Double tiltDeg, // from the horizontal
+        Double azimuthDeg) { // compass bearing, 180 = south
+
+    public static final EstimateOptions DEFAULTS = new EstimateOptions(null, null, null, null, null, null);
+
+    public EstimateOptions {
+        check("panelEfficiency", panelEfficiency, 0, 1);
+        check("performanceRatio", performanceRatio, 0, 1);
+        check("dcPowerPerM2", dcPowerPerM2, 0, 1);
+        check("usableFraction", usableFraction, 0, 1);
+        if (tiltDeg != null && !(tiltDeg >= 0 && tiltDeg <= 90))
+            throw new IllegalArgumentException("tiltDeg must be within [0, 90]");
+        if (azimuthDeg != null && !(azimuthDeg >= 0 && azimuthDeg <= 360))
+            throw new IllegalArgumentException("azimuthDeg must be within [0, 360]");
+    }
+
+    public EstimateOptions withOrientation(double tiltDeg, double azimuthDeg) {
+        return new EstimateOptions(panelEfficiency, performanceRatio, dcPowerPerM2, usableFraction, tiltDeg,
+                azimuthDeg);
+    }
+
+    private static void check(String name, Double value, double min, double max) {
+        if (value != null && !(value > min && value <= max))
+            throw new IllegalArgumentException(name + " must be within (" + min + ", " + max + "]");
+    }
+}
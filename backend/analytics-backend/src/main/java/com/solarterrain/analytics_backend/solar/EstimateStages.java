@@ -0,0 +1,43 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.PolygonPreprocessor;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.pv.SiteIrradiance;
+
+import java.util.List;
+
+/**
+ * The outputs of every estimate stage that does not depend on the system
+ * parameters: geometry, upstream samples, climate, terrain shading and the
+ * heatmap. Computed once per polygon; an estimate for any
+ * {@link EstimateOptions} then only needs the hourly simulation for its
+ * orientation and some arithmetic.
+ *
+ * @param parts one per tile of a large parcel, else a single part
+ * @param tiles    number of tiles, 0 when the parcel was not tiled
+ * @param degraded components that fell back because the deadline passed,
+ *                 sorted; such stages are not cached
+ */
+record EstimateStages(
+        PolygonPreprocessor.Result shape,
+        RegionRegistry.Region region,
+        double areaM2,
+        double centroidLat,
+        List<GoogleSolarClient.GoogleSolarDataPoint> googleSolarData,
+        List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeatherData,
+        EnhancedShadingService.ShadingAnalysis shadingAnalysis,
+        SiteIrradiance site,
+        ShadingLossMatrix losses,
+        List<Part> parts,
+        HeatmapGrid heatmap,
+        int tiles,
+        List<String> degraded) {
+
+    /**
+     * @param weight   share of the system's peak power
+     * @param beamLoss shaded fraction of direct irradiance per daylight step,
+     *                 or null when unshaded
+     */
+    record Part(double weight, float[] beamLoss) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.solarterrain.analytics_backend.solar;
+
+import java.util.List;
+
+/**
+ * Results of one polygon under many system configurations, in request
+ * order.
+ *
+ * @param best               index of the configuration with the highest annual energy
+ * @param stagesMs           time to compute (or fetch from cache) the shared stages
+ * @param sweepMs            time to evaluate every configuration
+ * @param degradedComponents stages answered from their fallback at the
+ *                           deadline, as in {@link SolarEstimate}
+ */
+public record EstimateSweep(double areaM2, List<Row> configurations, int best, long stagesMs, long sweepMs,
+        List<String> degradedComponents) {
+
+    public record Row(
+            EstimateOptions options, // as requested, nulls meaning the default
+            double tiltDeg,
+            double azimuthDeg,
+            double usableAreaM2,
+            double systemKWp,
+            double annualEnergyKWh,
+            double specificYieldKWhPerKWp,
+            double performanceRatio) {
+    }
+}
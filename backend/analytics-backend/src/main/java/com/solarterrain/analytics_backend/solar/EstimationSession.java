@@ -0,0 +1,478 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import com.solarterrain.analytics_backend.pv.PvSimulationResult;
+import com.solarterrain.analytics_backend.pv.SiteIrradiance;
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * State of one interactive estimation (one WebSocket connection) while the
+ * user edits a polygon.
+ *
+ * <p>
+ * The heatmap is a raster on a lattice anchored at the first polygon, so a
+ * cell keeps its identity across edits. The session keeps the covered cells
+ * with their computed values, plus terrain samples (one per
+ * {@code terrainStride} x {@code terrainStride} cells) and Google Solar
+ * samples (on a fixed coarse lattice) gathered so far. On an edit only the
+ * cells inside the region touched by the moved vertices are re-tested;
+ * newly covered cells are computed from cached samples, and only samples
+ * that are not cached yet are fetched. Cells waiting for a fetch are sent
+ * in a follow-up update when it completes.
+ *
+ * <p>
+ * Climate, the PV simulation per kWp and the shading baseline (including
+ * the sky-patch beam loss fed to the simulation) are fixed for the session
+ * so values do not flicker while dragging; a {@code refresh} recomputes the
+ * baseline and every cell.
+ */
+final class EstimationSession {
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+    private static final int MAX_BASELINE_SAMPLES = 100;
+
+    record Settings(double cellSizeM, int terrainStride, double solarStepDeg, int maxCells) {
+    }
+
+    private record Region(double minLat, double maxLat, double minLng, double maxLng) {
+        static Region of(List<LatLng> points) {
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+            for (LatLng p : points) {
+                minLat = Math.min(minLat, p.lat());
+                maxLat = Math.max(maxLat, p.lat());
+                minLng = Math.min(minLng, p.lng());
+                maxLng = Math.max(maxLng, p.lng());
+            }
+            return new Region(minLat, maxLat, minLng, maxLng);
+        }
+
+        Region union(Region other) {
+            if (other == null)
+                return this;
+            return new Region(Math.min(minLat, other.minLat), Math.max(maxLat, other.maxLat),
+                    Math.min(minLng, other.minLng), Math.max(maxLng, other.maxLng));
+        }
+    }
+
+    private record Cell(int row, int col, double shading, Map<String, Object> point) {
+    }
+
+    private final SolarEstimationService service;
+    private final GoogleSolarClient solarClient;
+    private final ElevationTileStore elevationTiles;
+    private final EnhancedShadingService shadingService;
+    private final Settings settings;
+    private final Consumer<Map<String, Object>> sink;
+
+    // Lattice anchored at the first polygon
+    private boolean anchored;
+    private double originLat;
+    private double originLng;
+    private double cellLat;
+    private double cellLng;
+
+    // Session-wide inputs, fixed at anchoring
+    private List<GoogleWeatherClient.MonthlyWeatherData> weather;
+    private double avgWeatherFactor;
+    private SiteIrradiance site;
+    private SkyPatches patches;
+    private PvSimulationResult perKwp; // unshaded
+    private PvSimulationResult perKwpShaded; // with terrain beam loss, once a baseline exists
+    private double beamShadingLoss;
+
+    // Raster mask: computed cells, and covered cells still waiting for samples
+    private final Map<Long, Cell> covered = new HashMap<>();
+    private final Set<Long> pending = new HashSet<>();
+    private double shadingSum;
+
+    private final Map<Long, Double> elevation = new HashMap<>();
+    private final Set<Long> elevationInFlight = new HashSet<>();
+    private final Map<Long, Double> solarYearly = new HashMap<>(); // NaN when Google had no data
+    private final Set<Long> solarInFlight = new HashSet<>();
+    private double kwpPerM2 = Double.NaN;
+
+    private double baselineShading = Double.NaN;
+    private double meanElevation;
+
+    private List<LatLng> polygon = List.of();
+    private RegionRegistry.Region supportedRegion; // fixed once anchored
+    private long seq;
+
+    EstimationSession(SolarEstimationService service, GoogleSolarClient solarClient,
+            ElevationTileStore elevationTiles, EnhancedShadingService shadingService, Settings settings,
+            Consumer<Map<String, Object>> sink) {
+        this.service = service;
+        this.solarClient = solarClient;
+        this.elevationTiles = elevationTiles;
+        this.shadingService = shadingService;
+        this.settings = settings;
+        this.sink = sink;
+    }
+
+    /**
+     * Applies an edited polygon. Messages are sent while holding the lock so
+     * a follow-up from a completed fetch can never overtake the edit that
+     * removed its cells.
+     */
+    synchronized void updatePolygon(List<LatLng> points) {
+        long start = System.nanoTime();
+        if (points == null || points.size() < 3)
+            throw new IllegalArgumentException("Polygon requires >=3 points");
+        double centroidLat = points.stream().mapToDouble(LatLng::lat).average().orElse(0);
+        double centroidLng = points.stream().mapToDouble(LatLng::lng).average().orElse(0);
+        var supported = service.supportedRegion(points);
+        if (anchored && !supported.id().equals(supportedRegion.id()))
+            throw new IllegalArgumentException("Polygon moved to another region; start a new session");
+        supportedRegion = supported;
+
+        if (!anchored) {
+            anchor(centroidLat, centroidLng, Region.of(points));
+        }
+
+        var bounds = Region.of(points);
+        long rows = (long) Math.ceil((bounds.maxLat() - bounds.minLat()) / cellLat) + 1;
+        long cols = (long) Math.ceil((bounds.maxLng() - bounds.minLng()) / cellLng) + 1;
+        if (rows * cols > settings.maxCells())
+            throw new IllegalArgumentException("Polygon too large for an interactive session");
+
+        Region dirty = dirtyRegion(polygon, points);
+        polygon = List.copyOf(points);
+
+        var removed = new ArrayList<int[]>();
+        var needed = new ArrayList<Long>();
+        if (dirty != null) {
+            int r0 = row(dirty.minLat()), r1 = row(dirty.maxLat());
+            int c0 = col(dirty.minLng()), c1 = col(dirty.maxLng());
+            for (int r = r0; r <= r1; r++) {
+                double lat = cellCenterLat(r);
+                for (int c = c0; c <= c1; c++) {
+                    long key = key(r, c);
+                    boolean inside = service.isPointInPolygon(lat, cellCenterLng(c), polygon);
+                    boolean was = covered.containsKey(key) || pending.contains(key);
+                    if (inside && !was) {
+                        pending.add(key);
+                        needed.add(key);
+                    } else if (!inside && was) {
+                        var cell = covered.remove(key);
+                        if (cell != null)
+                            shadingSum -= cell.shading();
+                        pending.remove(key);
+                        removed.add(new int[] { r, c });
+                    }
+                }
+            }
+        }
+
+        fetchMissingSamples(needed);
+        var added = computeReady();
+        send(update(added, removed, false, start));
+    }
+
+    /**
+     * Recomputes the shading baseline from all terrain gathered so far and
+     * every covered cell.
+     */
+    synchronized void refresh() {
+        long start = System.nanoTime();
+        if (!anchored)
+            return;
+        baselineShading = Double.NaN;
+        for (long key : covered.keySet()) {
+            pending.add(key);
+        }
+        covered.clear();
+        shadingSum = 0;
+        computeBaseline();
+        send(update(computeReady(), List.of(), true, start));
+    }
+
+    private void anchor(double centroidLat, double centroidLng, Region bounds) {
+        cellLat = settings.cellSizeM() / METERS_PER_DEG_LAT;
+        cellLng = settings.cellSizeM() / (METERS_PER_DEG_LAT * Math.cos(Math.toRadians(centroidLat)));
+        // Snap the origin so the lattice is independent of where the first vertex fell
+        originLat = Math.floor(bounds.minLat() / cellLat) * cellLat;
+        originLng = Math.floor(bounds.minLng() / cellLng) * cellLng;
+
+        weather = service.monthlyWeather(supportedRegion, centroidLat, centroidLng);
+        avgWeatherFactor = weather.stream().mapToDouble(GoogleWeatherClient.MonthlyWeatherData::getSolarEfficiencyFactor)
+                .average().orElse(0.8);
+        // Yield is linear in kWp (clipping scales with it too), so simulate once
+        site = service.prepareSite(centroidLat, weather);
+        patches = SkyPatches.of(site);
+        perKwp = service.simulatePv(site, supportedRegion, 1.0, null);
+        anchored = true;
+
+        var message = new LinkedHashMap<String, Object>();
+        message.put("type", "session");
+        message.put("originLat", originLat);
+        message.put("originLng", originLng);
+        message.put("cellLat", cellLat);
+        message.put("cellLng", cellLng);
+        message.put("cellSizeM", settings.cellSizeM());
+        send(message);
+    }
+
+    /**
+     * Bounding box of everything that may have changed coverage: when only
+     * vertices moved, the old and new positions of each moved vertex and its
+     * two neighbours; otherwise both outlines entirely.
+     */
+    private static Region dirtyRegion(List<LatLng> before, List<LatLng> after) {
+        if (before.size() != after.size())
+            return before.isEmpty() ? Region.of(after) : Region.of(after).union(Region.of(before));
+
+        Region dirty = null;
+        int n = after.size();
+        for (int i = 0; i < n; i++) {
+            if (before.get(i).equals(after.get(i)))
+                continue;
+            var touched = List.of(before.get(i), after.get(i), before.get((i + n - 1) % n), before.get((i + 1) % n),
+                    after.get((i + n - 1) % n), after.get((i + 1) % n));
+            dirty = Region.of(touched).union(dirty);
+        }
+        return dirty;
+    }
+
+    private void fetchMissingSamples(List<Long> cells) {
+        var terrainKeys = new ArrayList<Long>();
+        var terrainPoints = new ArrayList<LatLng>();
+        var solarKeys = new ArrayList<Long>();
+        for (long cell : cells) {
+            int r = row(cell), c = col(cell);
+            long t = terrainKey(r, c);
+            if (!elevation.containsKey(t) && elevationInFlight.add(t)) {
+                terrainKeys.add(t);
+                terrainPoints.add(new LatLng(terrainLat(row(t)), terrainLng(col(t))));
+            }
+            long s = solarKey(cellCenterLat(r), cellCenterLng(c));
+            if (!solarYearly.containsKey(s) && solarInFlight.add(s)) {
+                solarKeys.add(s);
+            }
+        }
+        if (terrainKeys.isEmpty() && solarKeys.isEmpty())
+            return;
+
+        var context = UpstreamContext.interactive();
+        CompletableFuture<Void> terrain = terrainKeys.isEmpty() ? CompletableFuture.completedFuture(null)
+                : elevationTiles.getElevationsAsync(terrainPoints, context).thenAccept(values -> {
+                    synchronized (this) {
+                        for (int i = 0; i < terrainKeys.size(); i++) {
+                            elevation.put(terrainKeys.get(i), values[i]);
+                            elevationInFlight.remove(terrainKeys.get(i));
+                        }
+                    }
+                });
+        var solar = solarKeys.stream().map(s -> solarClient
+                .getSolarDataAsync(row(s) * settings.solarStepDeg(), col(s) * settings.solarStepDeg(), context)
+                .thenAccept(result -> {
+                    Double yearly = result != null ? result.getYearlyEnergyDcKwh() : null;
+                    synchronized (this) {
+                        solarYearly.put(s, yearly != null ? yearly : Double.NaN);
+                        solarInFlight.remove(s);
+                        kwpPerM2 = Double.NaN;
+                    }
+                })).toArray(CompletableFuture[]::new);
+
+        var all = CompletableFuture.allOf(terrain, CompletableFuture.allOf(solar));
+        if (all.isDone()) {
+            // Everything came from caches below us; the caller's update carries the cells
+            if (all.isCompletedExceptionally())
+                releaseInFlight(terrainKeys, solarKeys);
+            return;
+        }
+        all.whenComplete((done, error) -> {
+            synchronized (this) {
+                if (error != null)
+                    releaseInFlight(terrainKeys, solarKeys);
+                long start = System.nanoTime();
+                var added = computeReady();
+                if (!added.isEmpty() || error != null)
+                    send(update(added, List.of(), false, start));
+            }
+        });
+    }
+
+    /** Leaves nothing stuck in flight after a failure; those cells retry on the next edit. */
+    private void releaseInFlight(List<Long> terrainKeys, List<Long> solarKeys) {
+        terrainKeys.forEach(elevationInFlight::remove);
+        solarKeys.forEach(solarInFlight::remove);
+    }
+
+    private List<Map<String, Object>> computeReady() {
+        if (Double.isNaN(baselineShading))
+            computeBaseline();
+        var added = new ArrayList<Map<String, Object>>();
+        if (Double.isNaN(baselineShading))
+            return added;
+
+        var it = pending.iterator();
+        while (it.hasNext()) {
+            long key = it.next();
+            int r = row(key), c = col(key);
+            double lat = cellCenterLat(r), lng = cellCenterLng(c);
+            Double elev = elevation.get(terrainKey(r, c));
+            Double yearly = solarYearly.get(solarKey(lat, lng));
+            if (elev == null || yearly == null)
+                continue;
+
+            double shading = SolarEstimationService.localShadingFactor(baselineShading, elev, meanElevation);
+            double googleFactor = SolarEstimationService.googleSolarFactor(yearly.isNaN() ? null : yearly);
+            var point = service.heatmapPoint(supportedRegion, lat, lng, googleFactor, shading, avgWeatherFactor,
+                    weather);
+            point.put("row", r);
+            point.put("col", c);
+            covered.put(key, new Cell(r, c, shading, point));
+            shadingSum += shading;
+            added.add(point);
+            it.remove();
+        }
+        return added;
+    }
+
+    /**
+     * Shading baseline from the terrain samples inside the polygon, using the
+     * same analysis as the one-shot estimate.
+     */
+    private void computeBaseline() {
+        var samples = new ArrayList<EnhancedShadingService.ElevationPoint>();
+        for (var e : elevation.entrySet()) {
+            double lat = terrainLat(row(e.getKey())), lng = terrainLng(col(e.getKey()));
+            if (service.isPointInPolygon(lat, lng, polygon))
+                samples.add(new EnhancedShadingService.ElevationPoint(lat, lng, e.getValue()));
+        }
+        if (samples.isEmpty())
+            return;
+        if (samples.size() > MAX_BASELINE_SAMPLES) {
+            // The shadow analysis is quadratic; an even subsample keeps it to a few ms
+            var thinned = new ArrayList<EnhancedShadingService.ElevationPoint>(MAX_BASELINE_SAMPLES);
+            double stride = samples.size() / (double) MAX_BASELINE_SAMPLES;
+            for (int i = 0; i < MAX_BASELINE_SAMPLES; i++) {
+                thinned.add(samples.get((int) (i * stride)));
+            }
+            samples = thinned;
+        }
+        double lat = samples.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLatitude).average()
+                .orElse(0);
+        double lng = samples.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLongitude).average()
+                .orElse(0);
+        baselineShading = shadingService.analyzeShading(lat, lng, samples).getAverageShading();
+        var losses = shadingService.shadingLosses(samples, patches);
+        perKwpShaded = service.simulatePv(site, supportedRegion, 1.0, losses.siteStepLoss());
+        beamShadingLoss = losses.siteAnnualLoss();
+        meanElevation = samples.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getElevation).average()
+                .orElse(0);
+    }
+
+    private Map<String, Object> update(List<Map<String, Object>> added, List<int[]> removed, boolean reset,
+            long startNanos) {
+        var message = new LinkedHashMap<String, Object>();
+        message.put("type", "update");
+        message.put("seq", ++seq);
+        message.put("reset", reset);
+        message.put("added", added);
+        message.put("removed", removed);
+        message.put("totals", totals());
+        message.put("computeMs", (System.nanoTime() - startNanos) / 1e6);
+        return message;
+    }
+
+    private Map<String, Object> totals() {
+        double areaM2 = service.polygonAreaM2(polygon);
+        double usableArea = areaM2 * service.usableFraction(supportedRegion);
+        if (Double.isNaN(kwpPerM2)) {
+            var samples = new ArrayList<GoogleSolarClient.GoogleSolarDataPoint>();
+            for (var e : solarYearly.entrySet()) {
+                if (!e.getValue().isNaN())
+                    samples.add(new GoogleSolarClient.GoogleSolarDataPoint(row(e.getKey()) * settings.solarStepDeg(),
+                            col(e.getKey()) * settings.solarStepDeg(), null, e.getValue(), null));
+            }
+            kwpPerM2 = service.calculateEnhancedKwpPerM2(supportedRegion, samples, weather);
+        }
+        double systemKWp = usableArea * kwpPerM2;
+        double averageShading = !covered.isEmpty() ? shadingSum / covered.size()
+                : Double.isNaN(baselineShading) ? 0.0 : baselineShading;
+
+        // Terrain loss is inside the shaded simulation; before any terrain arrives use the flat average
+        var yield = perKwpShaded != null ? perKwpShaded : perKwp;
+        double scale = systemKWp * (perKwpShaded != null ? 1.0 : 1.0 - averageShading);
+        var monthly = new ArrayList<Double>(12);
+        for (double kwh : yield.monthlyEnergyKWh()) {
+            monthly.add(kwh * scale);
+        }
+
+        var totals = new LinkedHashMap<String, Object>();
+        totals.put("areaM2", areaM2);
+        totals.put("usableAreaM2", usableArea);
+        totals.put("assumedSystemKWp", systemKWp);
+        totals.put("annualEnergyKWh", yield.annualEnergyKWh() * scale);
+        totals.put("monthlyEnergyKWh", monthly);
+        totals.put("annualIrradiationKWhM2", yield.annualIrradiationKWhM2());
+        totals.put("performanceRatio", yield.performanceRatio());
+        totals.put("averageShading", averageShading);
+        totals.put("annualBeamShadingLoss", beamShadingLoss);
+        totals.put("coveredCells", covered.size());
+        totals.put("pendingCells", pending.size());
+        return totals;
+    }
+
+    private void send(Map<String, Object> message) {
+        sink.accept(message);
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat - originLat) / cellLat);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor((lng - originLng) / cellLng);
+    }
+
+    private double cellCenterLat(int row) {
+        return originLat + (row + 0.5) * cellLat;
+    }
+
+    private double cellCenterLng(int col) {
+        return originLng + (col + 0.5) * cellLng;
+    }
+
+    private long terrainKey(int row, int col) {
+        return key(Math.floorDiv(row, settings.terrainStride()), Math.floorDiv(col, settings.terrainStride()));
+    }
+
+    private double terrainLat(int terrainRow) {
+        return originLat + (terrainRow + 0.5) * settings.terrainStride() * cellLat;
+    }
+
+    private double terrainLng(int terrainCol) {
+        return originLng + (terrainCol + 0.5) * settings.terrainStride() * cellLng;
+    }
+
+    private long solarKey(double lat, double lng) {
+        return key((int) Math.round(lat / settings.solarStepDeg()), (int) Math.round(lng / settings.solarStepDeg()));
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int col(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,203 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.EstimationAdmissionFilter;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket endpoint for interactive estimation while a polygon is being
+ * drawn or edited. Each connection owns an {@link EstimationSession}.
+ *
+ * <p>
+ * Client messages: {@code {"type":"polygon","points":[{"lat":..,"lng":..},..]}}
+ * after every edit, and {@code {"type":"refresh"}} to recompute all cells.
+ * The server answers with one {@code session} message, then {@code update}
+ * messages carrying added and removed cells plus the running totals, and
+ * {@code error} messages for rejected input.
+ *
+ * <p>
+ * Every edit fans out to upstream fetches and shading, like a POST
+ * estimate, so a client (Firebase uid or, anonymous, IP, as in
+ * {@link EstimationAdmissionFilter}) may hold at most
+ * {@code solar.session.max-per-client} connections; further handshakes get
+ * 429. Each connection may send {@code messages-per-second} messages on
+ * average, in bursts of up to {@code message-burst}; messages beyond that
+ * are answered with an {@code error} and ignored.
+ */
+@Component
+public class EstimationSessionHandler extends TextWebSocketHandler implements HandshakeInterceptor {
+    private static final Logger log = LoggerFactory.getLogger(EstimationSessionHandler.class);
+    private static final int SEND_TIME_LIMIT_MS = 5_000;
+    private static final int SEND_BUFFER_BYTES = 1 << 20;
+    private static final String CLIENT = "estimation.client";
+
+    record ClientMessage(String type, List<LatLng> points) {
+    }
+
+    private record Connection(EstimationSession session, WebSocketSession out, MessageBudget budget) {
+    }
+
+    /** Token bucket over one connection's messages. */
+    private static final class MessageBudget {
+        private final double perSecond;
+        private final double burst;
+        private double tokens;
+        private long refilledNanos = System.nanoTime();
+
+        MessageBudget(double perSecond, double burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        synchronized boolean tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledNanos) / 1e9 * perSecond);
+            refilledNanos = now;
+            if (tokens < 1)
+                return false;
+            tokens--;
+            return true;
+        }
+    }
+
+    private final SolarEstimationService estimationService;
+    private final GoogleSolarClient solarClient;
+    private final ElevationTileStore elevationTiles;
+    private final EnhancedShadingService shadingService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Map<String, Integer> sessionsPerClient = new ConcurrentHashMap<>();
+
+    @Value("${solar.session.cell-size-m:10}")
+    double cellSizeM;
+    @Value("${solar.session.terrain-stride:3}")
+    int terrainStride;
+    @Value("${solar.session.solar-sample-step-deg:0.002}")
+    double solarSampleStepDeg;
+    @Value("${solar.session.max-cells:20000}")
+    int maxCells;
+    @Value("${solar.session.max-per-client:3}")
+    int maxPerClient;
+    @Value("${solar.session.messages-per-second:5}")
+    double messagesPerSecond;
+    @Value("${solar.session.message-burst:10}")
+    int messageBurst;
+
+    public EstimationSessionHandler(SolarEstimationService estimationService, GoogleSolarClient solarClient,
+            ElevationTileStore elevationTiles, EnhancedShadingService shadingService, ObjectMapper objectMapper) {
+        this.estimationService = estimationService;
+        this.solarClient = solarClient;
+        this.elevationTiles = elevationTiles;
+        this.shadingService = shadingService;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Admits the handshake if the client is under its connection cap, which the connection then counts against. */
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler handler,
+            Map<String, Object> attributes) {
+        String client = client(request);
+        boolean[] admitted = { false };
+        sessionsPerClient.compute(client, (key, open) -> {
+            int count = open == null ? 0 : open;
+            admitted[0] = count < maxPerClient;
+            return admitted[0] ? count + 1 : open;
+        });
+        if (!admitted[0]) {
+            log.debug("Estimation session refused for {}: {} open", client, maxPerClient);
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return false;
+        }
+        attributes.put(CLIENT, client);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler handler,
+            Exception exception) {
+        // A failed upgrade never reaches afterConnectionClosed
+        if (exception != null)
+            release(client(request));
+    }
+
+    private static String client(ServerHttpRequest request) {
+        return request instanceof ServletServerHttpRequest servlet
+                ? EstimationAdmissionFilter.client(servlet.getServletRequest())
+                : "ip:" + request.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    private void release(String client) {
+        sessionsPerClient.computeIfPresent(client, (key, open) -> open > 1 ? open - 1 : null);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession socket) {
+        // Updates from completed fetches arrive on upstream threads; the decorator serializes sends
+        var out = new ConcurrentWebSocketSessionDecorator(socket, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES);
+        var settings = new EstimationSession.Settings(cellSizeM, terrainStride, solarSampleStepDeg, maxCells);
+        var session = new EstimationSession(estimationService, solarClient, elevationTiles, shadingService,
+                settings, message -> send(out, message));
+        connections.put(socket.getId(), new Connection(session, out,
+                new MessageBudget(messagesPerSecond, messageBurst)));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage text) {
+        var connection = connections.get(socket.getId());
+        if (connection == null)
+            return;
+        if (!connection.budget().tryTake()) {
+            send(connection.out(), Map.of("type", "error", "message", "Too many messages; send edits less often"));
+            return;
+        }
+        try {
+            var message = objectMapper.readValue(text.getPayload(), ClientMessage.class);
+            switch (message.type() == null ? "" : message.type()) {
+                case "polygon" -> connection.session().updatePolygon(message.points());
+                case "refresh" -> connection.session().refresh();
+                default -> throw new IllegalArgumentException("Unknown message type: " + message.type());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            send(connection.out(), Map.of("type", "error", "message", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        connections.remove(socket.getId());
+        if (socket.getAttributes().get(CLIENT) instanceof String client)
+            release(client);
+    }
+
+    private void send(WebSocketSession out, Map<String, Object> message) {
+        if (!out.isOpen())
+            return;
+        try {
+            out.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Dropping estimation update for session {}: {}", out.getId(), e.getMessage());
+        }
+    }
+}
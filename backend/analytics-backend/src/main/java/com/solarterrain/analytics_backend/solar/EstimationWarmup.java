@@ -0,0 +1,62 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Runs a few synthetic estimates before the instance takes traffic, so the
+ * first users do not pay for class loading and interpreted code in the
+ * shading kernels, the hourly simulation and the JSON writer. Estimates use
+ * {@link SolarEstimationService#estimateOffline} over rolling synthetic
+ * terrain and never call an upstream API or spend quota.
+ */
+@Component
+public class EstimationWarmup {
+    private static final Logger log = LoggerFactory.getLogger(EstimationWarmup.class);
+
+    // ~4 ha of irregular parcel near Évora
+    private static final List<LatLng> PARCEL = List.of(
+            new LatLng(38.5710, -7.9120), new LatLng(38.5712, -7.9095), new LatLng(38.5725, -7.9088),
+            new LatLng(38.5738, -7.9097), new LatLng(38.5735, -7.9121), new LatLng(38.5722, -7.9130));
+
+    @Value("${solar.warmup.iterations:10}")
+    int iterations; // 0 disables
+
+    private final SolarEstimationService estimationService;
+    private final ObjectMapper objectMapper;
+
+    public EstimationWarmup(SolarEstimationService estimationService, ObjectMapper objectMapper) {
+        this.estimationService = estimationService;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Runs the synthetic estimates on the calling thread; returns how many completed. */
+    public int run() {
+        int done = 0;
+        for (int i = 0; i < iterations; i++) {
+            // Shifted a little each time so no two runs sample the same points
+            double shift = i * 0.0007;
+            var parcel = PARCEL.stream().map(p -> new LatLng(p.lat() + shift, p.lng() + shift)).toList();
+            try {
+                var estimate = estimationService.estimateOffline(parcel, EstimationWarmup::terrain);
+                objectMapper.writeValue(OutputStream.nullOutputStream(), estimate);
+                done++;
+            } catch (Exception e) {
+                log.warn("Warm-up estimate {} failed: {}", i, e.toString());
+            }
+        }
+        return done;
+    }
+
+    /** Gentle hills a few hundred metres across, enough for some shade. */
+    private static double terrain(LatLng p) {
+        return 250.0 + 25.0 * Math.sin(p.lat() * 2400.0) * Math.cos(p.lng() * 2100.0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.upstream.UpstreamApi;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@Service
+public class GoogleElevationClient {
+
+    // Google accepts up to 512 locations per call; 256 keeps the URL well under its 16k limit
+    private static final int MAX_LOCATIONS_PER_REQUEST = 256;
+
+    @Value("${google.api.key:}")
+    private String googleApiKey;
+
+    @Value("${google.api.elevation.base-url:https://maps.googleapis.com/maps/api/elevation/json}")
+    private String elevationApiUrl;
+
+    private final UpstreamHttpClient http;
+    private final UpstreamQuotaManager quota;
+
+    public GoogleElevationClient(UpstreamHttpClient http, UpstreamQuotaManager quota) {
+        this.http = http;
+        this.quota = quota;
+    }
+
+    /**
+     * Elevation in meters for a single point, 0.0 if the API fails
+     */
+    public double getElevation(double latitude, double longitude) {
+        return getElevationsAsync(List.of(new LatLng(latitude, longitude))).join()[0];
+    }
+
+    /**
+     * Elevations for all points, in input order, batching as many locations
+     * per request as the API allows. Points of a failed batch get 0.0.
+     */
+    public CompletableFuture<double[]> getElevationsAsync(List<LatLng> points) {
+        return getElevationsAsync(points, UpstreamContext.interactive());
+    }
+
+    public CompletableFuture<double[]> getElevationsAsync(List<LatLng> points, UpstreamContext context) {
+        return fetch(points, context, true);
+    }
+
+    /**
+     * Like {@link #getElevationsAsync} but for callers that keep the values:
+     * a failed batch fails the future instead of reading as sea level, and
+     * points the API has no value for are NaN.
+     */
+    public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points, UpstreamContext context) {
+        return fetch(points, context, false);
+    }
+
+    private CompletableFuture<double[]> fetch(List<LatLng> points, UpstreamContext context, boolean lenient) {
+        if (points.isEmpty()) {
+            return CompletableFuture.completedFuture(new double[0]);
+        }
+        var batches = new ArrayList<CompletableFuture<double[]>>();
+        for (int start = 0; start < points.size(); start += MAX_LOCATIONS_PER_REQUEST) {
+            batches.add(fetchBatch(points.subList(start, Math.min(points.size(), start + MAX_LOCATIONS_PER_REQUEST)),
+                    context, lenient));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            double[] elevations = new double[points.size()];
+            int offset = 0;
+            for (var batch : batches) {
+                double[] part = batch.join();
+                System.arraycopy(part, 0, elevations, offset, part.length);
+                offset += part.length;
+            }
+            return elevations;
+        });
+    }
+
+    private CompletableFuture<double[]> fetchBatch(List<LatLng> batch, UpstreamContext context, boolean lenient) {
+        try {
+            String locations = batch.stream()
+                    .map(p -> String.format(Locale.US, "%.6f,%.6f", p.lat(), p.lng()))
+                    .collect(Collectors.joining("%7C"));
+            String url = String.format(Locale.US, "%s?locations=%s&key=%s", elevationApiUrl, locations, googleApiKey);
+
+            var elevations = quota
+                    .call(UpstreamApi.ELEVATION, context,
+                            () -> http.getJson(URI.create(url), ElevationResponse.class, context))
+                    .thenApply(response -> {
+                        if (!lenient && (response == null || !"OK".equals(response.getStatus())))
+                            throw new IllegalStateException("Elevation API status "
+                                    + (response != null ? response.getStatus() : null));
+                        double missing = lenient ? 0.0 : Double.NaN;
+                        double[] values = new double[batch.size()]; // Default elevation 0.0 if API fails
+                        Arrays.fill(values, missing);
+                        if (response != null && response.getResults() != null) {
+                            var results = response.getResults();
+                            for (int i = 0; i < Math.min(results.size(), values.length); i++) {
+                                Double elevation = results.get(i).getElevation();
+                                values[i] = elevation != null ? elevation : missing;
+                            }
+                        }
+                        return values;
+                    });
+            if (!lenient)
+                return elevations;
+            return elevations.exceptionally(e -> {
+                System.err.println("Error fetching elevation data: " + e.getMessage());
+                return new double[batch.size()];
+            });
+        } catch (Exception e) {
+            if (!lenient)
+                return CompletableFuture.failedFuture(e);
+            System.err.println("Error fetching elevation data: " + e.getMessage());
+            return CompletableFuture.completedFuture(new double[batch.size()]);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ElevationResponse {
+        @JsonProperty("results")
+        private List<ElevationResult> results;
+
+        @JsonProperty("status")
+        private String status;
+
+        public List<ElevationResult> getResults() {
+            return results;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        @JsonIgnoreProperties(ignoreUnknown = true)
+        public static class ElevationResult {
+            @JsonProperty("elevation")
+            private Double elevation;
+
+            @JsonProperty("location")
+            private Location location;
+
+            public Double getElevation() {
+                return elevation;
+            }
+
+            public Location getLocation() {
+                return location;
+            }
+
+            @JsonIgnoreProperties(ignoreUnknown = true)
+            public static class Location {
+                @JsonProperty("lat")
+                private Double lat;
+
+                @JsonProperty("lng")
+                private Double lng;
+
+                public Double getLat() {
+                    return lat;
+                }
+
+                public Double getLng() {
+                    return lng;
+                }
+            }
+        }
+    }
+}
@@ -3,17 +3,19 @@ package com.solarterrain.analytics_backend.solar;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.upstream.SingleFlight;
+import com.solarterrain.analytics_backend.upstream.UpstreamApi;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class GoogleSolarClient {
@@ -21,27 +23,50 @@ public class GoogleSolarClient {
     @Value("${google.api.key:}")
     private String googleApiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String SOLAR_API_BASE_URL = "https://solar.googleapis.com/v1";
+    @Value("${google.api.solar.base-url:https://solar.googleapis.com/v1}")
+    private String solarApiBaseUrl;
+
+    private final UpstreamHttpClient http;
+    private final UpstreamQuotaManager quota;
+    // Overlapping parcels sample the same points; one request per URL at a time
+    private final SingleFlight<String, GoogleSolarResult> inFlight = new SingleFlight<>();
+
+    public GoogleSolarClient(UpstreamHttpClient http, UpstreamQuotaManager quota) {
+        this.http = http;
+        this.quota = quota;
+    }
 
     /**
      * Get solar data for a specific location using Google Solar API
      */
     public GoogleSolarResult getSolarData(double latitude, double longitude) {
+        return getSolarDataAsync(latitude, longitude).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #getSolarData}; completes with null when
+     * the API fails.
+     */
+    public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude) {
+        return getSolarDataAsync(latitude, longitude, UpstreamContext.interactive());
+    }
+
+    public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude,
+            UpstreamContext context) {
         try {
             String url = String.format(Locale.US,
                     "%s/buildingInsights:findClosest?location.latitude=%.6f&location.longitude=%.6f&key=%s",
-                    SOLAR_API_BASE_URL, latitude, longitude, googleApiKey);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            return restTemplate.exchange(url, HttpMethod.GET, entity, GoogleSolarResult.class).getBody();
+                    solarApiBaseUrl, latitude, longitude, googleApiKey);
+
+            return inFlight.run(url, context, () -> quota.call(UpstreamApi.SOLAR, context,
+                    () -> http.getJson(URI.create(url), GoogleSolarResult.class, context)))
+                    .exceptionally(e -> {
+                        System.err.println("Error fetching Google Solar data: " + e.getMessage());
+                        return null;
+                    });
         } catch (Exception e) {
             System.err.println("Error fetching Google Solar data: " + e.getMessage());
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
     }
 
@@ -49,6 +74,20 @@ public class GoogleSolarClient {
      * Get solar insights for a region (polygon area)
      */
     public List<GoogleSolarDataPoint> getSolarDataForRegion(List<Map<String, Double>> polygon) {
+        return getSolarDataForRegionAsync(polygon).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #getSolarDataForRegion}; all sample points
+     * are requested concurrently.
+     */
+    public CompletableFuture<List<GoogleSolarDataPoint>> getSolarDataForRegionAsync(
+            List<Map<String, Double>> polygon) {
+        return getSolarDataForRegionAsync(polygon, UpstreamContext.interactive());
+    }
+
+    public CompletableFuture<List<GoogleSolarDataPoint>> getSolarDataForRegionAsync(
+            List<Map<String, Double>> polygon, UpstreamContext context) {
         // For now, we'll sample key points in the polygon and get solar data for each
         // In the future, Google may provide direct polygon analysis
 
@@ -56,17 +95,18 @@ public class GoogleSolarClient {
         var bounds = calculateBounds(polygon);
         var gridPoints = generateGridPoints(bounds, 5); // 5x5 grid for sampling
 
-        return gridPoints.stream()
-                .map(point -> {
-                    var solarData = getSolarData(point.lat(), point.lng());
-                    return new GoogleSolarDataPoint(
-                            point.lat(),
-                            point.lng(),
-                            solarData != null ? solarData.getSolarPotential() : null,
-                            solarData != null ? solarData.getYearlyEnergyDcKwh() : null,
-                            solarData != null ? solarData.getSunshineQuantiles() : null);
-                })
+        var requests = gridPoints.stream()
+                .map(point -> getSolarDataAsync(point.lat(), point.lng(), context)
+                        .thenApply(solarData -> new GoogleSolarDataPoint(
+                                point.lat(),
+                                point.lng(),
+                                solarData != null ? solarData.getSolarPotential() : null,
+                                solarData != null ? solarData.getYearlyEnergyDcKwh() : null,
+                                solarData != null ? solarData.getSunshineQuantiles() : null)))
                 .toList();
+
+        return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new))
+                .thenApply(done -> requests.stream().map(CompletableFuture::join).toList());
     }
 
     private Bounds calculateBounds(List<Map<String, Double>> polygon) {
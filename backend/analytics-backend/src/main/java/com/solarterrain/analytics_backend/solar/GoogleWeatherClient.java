@@ -2,16 +2,23 @@ package com.solarterrain.analytics_backend.solar;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.solarterrain.analytics_backend.climate.ClimatologyGrid.Variable;
+import com.solarterrain.analytics_backend.climate.ClimatologyStore;
+import com.solarterrain.analytics_backend.upstream.SingleFlight;
+import com.solarterrain.analytics_backend.upstream.UpstreamApi;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class GoogleWeatherClient {
@@ -19,56 +26,127 @@ public class GoogleWeatherClient {
     @Value("${google.api.key:}")
     private String googleApiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String WEATHER_API_BASE_URL = "https://weather.googleapis.com/v1";
+    @Value("${google.api.weather.base-url:https://weather.googleapis.com/v1}")
+    private String weatherApiBaseUrl;
+
+    // Used when no climatology grid is available
+    private static final List<MonthlyWeatherData> NATIONAL_PATTERNS = nationalPatterns();
+
+    private final UpstreamHttpClient http;
+    private final UpstreamQuotaManager quota;
+    private final ClimatologyStore climatologyStore;
+    // Concurrent estimates of one neighbourhood share the raw response; each converts its own
+    private final SingleFlight<String, GoogleWeatherResponse> inFlight = new SingleFlight<>();
+
+    public GoogleWeatherClient(UpstreamHttpClient http, UpstreamQuotaManager quota,
+            ClimatologyStore climatologyStore) {
+        this.http = http;
+        this.quota = quota;
+        this.climatologyStore = climatologyStore;
+    }
 
     /**
      * Get historical weather data for solar production calculations
      */
     public WeatherData getHistoricalWeatherData(double latitude, double longitude, int months) {
+        return getHistoricalWeatherDataAsync(latitude, longitude, months).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #getHistoricalWeatherData}.
+     */
+    public CompletableFuture<WeatherData> getHistoricalWeatherDataAsync(double latitude, double longitude,
+            int months) {
+        return getHistoricalWeatherDataAsync(latitude, longitude, months, UpstreamContext.interactive());
+    }
+
+    public CompletableFuture<WeatherData> getHistoricalWeatherDataAsync(double latitude, double longitude,
+            int months, UpstreamContext context) {
         try {
             // Get current weather and forecast data
             String url = String.format(Locale.US,
                     "%s/currentConditions:lookup?location.latitude=%.6f&location.longitude=%.6f&key=%s",
-                    WEATHER_API_BASE_URL, latitude, longitude, googleApiKey);
-
-            var response = restTemplate.getForObject(url, GoogleWeatherResponse.class);
-
-            if (response != null) {
-                return convertToWeatherData(response, latitude, longitude);
-            }
-
-            return null;
+                    weatherApiBaseUrl, latitude, longitude, googleApiKey);
+
+            return inFlight.run(url, context, () -> quota.call(UpstreamApi.WEATHER, context,
+                    () -> http.getJson(URI.create(url), GoogleWeatherResponse.class, context)))
+                    .thenApply(response -> response != null ? convertToWeatherData(response, latitude, longitude)
+                            : null)
+                    .exceptionally(e -> {
+                        System.err.println("Error fetching Google Weather data: " + e.getMessage());
+                        // Return default weather data for Portugal if API fails
+                        return getDefaultPortugalWeatherData(latitude, longitude);
+                    });
         } catch (Exception e) {
             System.err.println("Error fetching Google Weather data: " + e.getMessage());
-            // Return default weather data for Portugal if API fails
-            return getDefaultPortugalWeatherData(latitude, longitude);
+            return CompletableFuture.completedFuture(getDefaultPortugalWeatherData(latitude, longitude));
         }
     }
 
     /**
-     * Get monthly weather patterns that affect solar production
+     * Get monthly weather patterns that affect solar production, interpolated
+     * from the climatology grid at the given location
      */
     public List<MonthlyWeatherData> getMonthlyWeatherPatterns(double latitude, double longitude) {
-        var monthlyData = new java.util.ArrayList<MonthlyWeatherData>();
+        var climate = climatologyStore != null ? climatologyStore.lookup(latitude, longitude) : null;
+        if (climate == null) {
+            return NATIONAL_PATTERNS;
+        }
 
-        // Portugal monthly weather patterns (historical averages)
-        Map<Integer, MonthlyWeatherPattern> portugalPatterns = new HashMap<>();
-        portugalPatterns.put(1, new MonthlyWeatherPattern(12.5, 55, 120, 6.2, 0.65)); // January
-        portugalPatterns.put(2, new MonthlyWeatherPattern(14.1, 52, 110, 7.1, 0.70)); // February
-        portugalPatterns.put(3, new MonthlyWeatherPattern(16.8, 48, 95, 8.5, 0.75)); // March
-        portugalPatterns.put(4, new MonthlyWeatherPattern(18.9, 45, 80, 9.8, 0.82)); // April
-        portugalPatterns.put(5, new MonthlyWeatherPattern(22.3, 38, 60, 11.5, 0.88)); // May
-        portugalPatterns.put(6, new MonthlyWeatherPattern(26.1, 25, 25, 12.8, 0.95)); // June
-        portugalPatterns.put(7, new MonthlyWeatherPattern(28.7, 15, 5, 13.2, 0.98)); // July
-        portugalPatterns.put(8, new MonthlyWeatherPattern(28.9, 18, 10, 12.9, 0.96)); // August
-        portugalPatterns.put(9, new MonthlyWeatherPattern(26.2, 32, 45, 11.1, 0.90)); // September
-        portugalPatterns.put(10, new MonthlyWeatherPattern(21.8, 48, 85, 9.2, 0.78)); // October
-        portugalPatterns.put(11, new MonthlyWeatherPattern(16.9, 58, 115, 7.5, 0.68)); // November
-        portugalPatterns.put(12, new MonthlyWeatherPattern(13.8, 60, 130, 6.8, 0.62)); // December
+        var monthlyData = new ArrayList<MonthlyWeatherData>(12);
+        for (int month = 1; month <= 12; month++) {
+            monthlyData.add(new MonthlyWeatherData(
+                    month,
+                    climate.get(month, Variable.SUN_HOURS),
+                    climate.get(month, Variable.CLOUD_COVER),
+                    (int) Math.round(climate.get(month, Variable.RAINY_DAYS)),
+                    climate.get(month, Variable.TEMPERATURE),
+                    climate.get(month, Variable.HUMIDITY),
+                    climate.get(month, Variable.EFFICIENCY)));
+        }
+        return monthlyData;
+    }
+
+    /**
+     * The national patterns with the sun hours, and the efficiency factor
+     * that follows them, scaled by {@code sunScale}; for regions outside the
+     * climatology grid.
+     */
+    public List<MonthlyWeatherData> getScaledNationalPatterns(double sunScale) {
+        var monthlyData = new ArrayList<MonthlyWeatherData>(12);
+        for (var month : NATIONAL_PATTERNS) {
+            monthlyData.add(new MonthlyWeatherData(
+                    month.getMonth(),
+                    month.getAverageSunHours() * sunScale,
+                    month.getCloudCoverPercentage(),
+                    month.getRainyDays(),
+                    month.getTemperature(),
+                    month.getHumidity(),
+                    Math.min(1.0, month.getSolarEfficiencyFactor() * sunScale)));
+        }
+        return monthlyData;
+    }
 
+    private static List<MonthlyWeatherData> nationalPatterns() {
+        // Portugal monthly weather patterns (historical averages)
+        MonthlyWeatherPattern[] patterns = {
+                new MonthlyWeatherPattern(12.5, 55, 120, 6.2, 0.65), // January
+                new MonthlyWeatherPattern(14.1, 52, 110, 7.1, 0.70), // February
+                new MonthlyWeatherPattern(16.8, 48, 95, 8.5, 0.75), // March
+                new MonthlyWeatherPattern(18.9, 45, 80, 9.8, 0.82), // April
+                new MonthlyWeatherPattern(22.3, 38, 60, 11.5, 0.88), // May
+                new MonthlyWeatherPattern(26.1, 25, 25, 12.8, 0.95), // June
+                new MonthlyWeatherPattern(28.7, 15, 5, 13.2, 0.98), // July
+                new MonthlyWeatherPattern(28.9, 18, 10, 12.9, 0.96), // August
+                new MonthlyWeatherPattern(26.2, 32, 45, 11.1, 0.90), // September
+                new MonthlyWeatherPattern(21.8, 48, 85, 9.2, 0.78), // October
+                new MonthlyWeatherPattern(16.9, 58, 115, 7.5, 0.68), // November
+                new MonthlyWeatherPattern(13.8, 60, 130, 6.8, 0.62) // December
+        };
+
+        var monthlyData = new ArrayList<MonthlyWeatherData>(12);
         for (int month = 1; month <= 12; month++) {
-            var pattern = portugalPatterns.get(month);
+            var pattern = patterns[month - 1];
 
             monthlyData.add(new MonthlyWeatherData(
                     month,
@@ -79,8 +157,7 @@ public class GoogleWeatherClient {
                     pattern.humidity, // usando humidity do pattern
                     pattern.solarEfficiencyFactor)); // usando solarEfficiencyFactor do pattern
         }
-
-        return monthlyData;
+        return List.copyOf(monthlyData);
     }
 
     private double calculateSolarEfficiencyFactor(MonthlyWeatherPattern pattern) {
@@ -0,0 +1,184 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heatmap cells of an estimate, one primitive array per attribute instead of
+ * a map of boxed values per cell. Everything shared by the cells is stored
+ * once: the weather factor and the monthly efficiency profile, from which
+ * each cell's monthly production is its intensity times the profile.
+ *
+ * <p>
+ * Serialized as the array of objects clients have always received
+ * ({@code lat}, {@code lng}, {@code intensity}, ..., {@code color},
+ * {@code monthlyProduction}), written straight from the arrays.
+ */
+@JsonSerialize(using = HeatmapGrid.JsonWriter.class)
+public final class HeatmapGrid {
+
+    /** Colour classes, poor to excellent. */
+    static final String[] COLORS = { "#FF0000", "#FF8000", "#FFFF00", "#80FF00", "#00FF00" };
+    static final double DAYS_PER_MONTH = 30.44; // average
+
+    private final double weatherFactor;
+    private final double[] monthlyFactors;
+
+    private double[] lat;
+    private double[] lng;
+    private double[] intensity;
+    private double[] baseIntensity;
+    private double[] googleSolarFactor;
+    private double[] shadowFactor;
+    private byte[] color;
+    private int size;
+
+    /**
+     * @param weatherFactor  mean solar efficiency factor of the site's weather
+     * @param monthlyFactors solar efficiency factor of each month
+     * @param capacity       expected number of cells
+     */
+    HeatmapGrid(double weatherFactor, double[] monthlyFactors, int capacity) {
+        this.weatherFactor = weatherFactor;
+        this.monthlyFactors = monthlyFactors;
+        lat = new double[capacity];
+        lng = new double[capacity];
+        intensity = new double[capacity];
+        baseIntensity = new double[capacity];
+        googleSolarFactor = new double[capacity];
+        shadowFactor = new double[capacity];
+        color = new byte[capacity];
+    }
+
+    /** @param colorClass index into {@link #COLORS} */
+    void add(double cellLat, double cellLng, double cellIntensity, double cellBaseIntensity,
+            double cellGoogleSolarFactor, double cellShadowFactor, int colorClass) {
+        if (size == lat.length)
+            grow(Math.max(16, size * 2));
+        lat[size] = cellLat;
+        lng[size] = cellLng;
+        intensity[size] = cellIntensity;
+        baseIntensity[size] = cellBaseIntensity;
+        googleSolarFactor[size] = cellGoogleSolarFactor;
+        shadowFactor[size] = cellShadowFactor;
+        color[size] = (byte) colorClass;
+        size++;
+    }
+
+    private void grow(int capacity) {
+        lat = Arrays.copyOf(lat, capacity);
+        lng = Arrays.copyOf(lng, capacity);
+        intensity = Arrays.copyOf(intensity, capacity);
+        baseIntensity = Arrays.copyOf(baseIntensity, capacity);
+        googleSolarFactor = Arrays.copyOf(googleSolarFactor, capacity);
+        shadowFactor = Arrays.copyOf(shadowFactor, capacity);
+        color = Arrays.copyOf(color, capacity);
+    }
+
+    /**
+     * The cells of several grids with the same weather, in order; used to
+     * join the tiles of a large parcel.
+     */
+    static HeatmapGrid concat(List<HeatmapGrid> grids) {
+        if (grids.isEmpty())
+            throw new IllegalArgumentException("No grids to concatenate");
+        var first = grids.get(0);
+        int total = grids.stream().mapToInt(HeatmapGrid::size).sum();
+        var joined = new HeatmapGrid(first.weatherFactor, first.monthlyFactors, total);
+        for (var grid : grids) {
+            if (grid.weatherFactor != first.weatherFactor || !Arrays.equals(grid.monthlyFactors, first.monthlyFactors))
+                throw new IllegalArgumentException("Grids have different weather");
+            System.arraycopy(grid.lat, 0, joined.lat, joined.size, grid.size);
+            System.arraycopy(grid.lng, 0, joined.lng, joined.size, grid.size);
+            System.arraycopy(grid.intensity, 0, joined.intensity, joined.size, grid.size);
+            System.arraycopy(grid.baseIntensity, 0, joined.baseIntensity, joined.size, grid.size);
+            System.arraycopy(grid.googleSolarFactor, 0, joined.googleSolarFactor, joined.size, grid.size);
+            System.arraycopy(grid.shadowFactor, 0, joined.shadowFactor, joined.size, grid.size);
+            System.arraycopy(grid.color, 0, joined.color, joined.size, grid.size);
+            joined.size += grid.size;
+        }
+        return joined;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double lat(int cell) {
+        return lat[cell];
+    }
+
+    public double lng(int cell) {
+        return lng[cell];
+    }
+
+    public double intensity(int cell) {
+        return intensity[cell];
+    }
+
+    /** Production of a cell of {@code intensity} in a month with the given efficiency factor. */
+    static double monthlyProduction(double intensity, double monthlyFactor) {
+        return intensity * monthlyFactor * DAYS_PER_MONTH;
+    }
+
+    /** The cells as the maps they used to be built as; for tests against the reference. */
+    List<Map<String, Object>> toMaps() {
+        var maps = new ArrayList<Map<String, Object>>(size);
+        for (int i = 0; i < size; i++) {
+            var monthly = new ArrayList<Double>(monthlyFactors.length);
+            for (double factor : monthlyFactors) {
+                monthly.add(monthlyProduction(intensity[i], factor));
+            }
+            var point = new HashMap<String, Object>();
+            point.put("lat", lat[i]);
+            point.put("lng", lng[i]);
+            point.put("intensity", intensity[i]);
+            point.put("baseIntensity", baseIntensity[i]);
+            point.put("googleSolarFactor", googleSolarFactor[i]);
+            point.put("weatherFactor", weatherFactor);
+            point.put("shadowFactor", shadowFactor[i]);
+            point.put("color", COLORS[color[i]]);
+            point.put("monthlyProduction", monthly);
+            maps.add(point);
+        }
+        return maps;
+    }
+
+    static final class JsonWriter extends StdSerializer<HeatmapGrid> {
+        JsonWriter() {
+            super(HeatmapGrid.class);
+        }
+
+        @Override
+        public void serialize(HeatmapGrid grid, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartArray(grid, grid.size);
+            for (int i = 0; i < grid.size; i++) {
+                json.writeStartObject();
+                json.writeNumberField("lat", grid.lat[i]);
+                json.writeNumberField("lng", grid.lng[i]);
+                json.writeNumberField("intensity", grid.intensity[i]);
+                json.writeNumberField("baseIntensity", grid.baseIntensity[i]);
+                json.writeNumberField("googleSolarFactor", grid.googleSolarFactor[i]);
+                json.writeNumberField("weatherFactor", grid.weatherFactor);
+                json.writeNumberField("shadowFactor", grid.shadowFactor[i]);
+                json.writeStringField("color", COLORS[grid.color[i]]);
+                json.writeArrayFieldStart("monthlyProduction");
+                for (double factor : grid.monthlyFactors) {
+                    json.writeNumber(monthlyProduction(grid.intensity[i], factor));
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the panel orientation with the highest annual yield for a parcel,
+ * its terrain shading included, using the local hourly model on the cached
+ * estimation stages instead of one PVGIS call per candidate.
+ *
+ * <p>
+ * A coarse tilt x azimuth grid is evaluated in parallel, then a compass
+ * search refines the best grid point: it tries one step either way on each
+ * axis, moves to any improvement and halves the step otherwise, down to
+ * {@code solar.orientation.min-step-deg}. Both phases stop at
+ * {@code solar.orientation.time-budget-ms}, counted from when the stages
+ * are available, or at the request's deadline if that comes first; the
+ * answer is then the best orientation seen so far, flagged as not
+ * converged.
+ */
+@Service
+public class OrientationOptimizer {
+
+    @Value("${solar.orientation.tilt-step-deg:10}")
+    double tiltStepDeg;
+    @Value("${solar.orientation.azimuth-step-deg:30}")
+    double azimuthStepDeg;
+    @Value("${solar.orientation.min-step-deg:0.5}")
+    double minStepDeg;
+    @Value("${solar.orientation.time-budget-ms:3000}")
+    long timeBudgetMs;
+
+    private final SolarEstimationService estimationService;
+
+    public OrientationOptimizer(SolarEstimationService estimationService) {
+        this.estimationService = estimationService;
+    }
+
+    /**
+     * @param tiltDeg       grid tilts, 0 to 90
+     * @param azimuthDeg    grid azimuths, compass bearings from 0
+     * @param specificYield kWh/kWp per [tilt][azimuth]; null where the time
+     *                      budget ran out before the point was evaluated
+     */
+    public record YieldSurface(double[] tiltDeg, double[] azimuthDeg, Double[][] specificYield) {
+    }
+
+    /**
+     * @param optimum            estimate row of the best orientation found
+     * @param defaultOrientation the same system at the configured orientation
+     * @param evaluations        hourly simulations run
+     * @param converged          whether the refinement reached its minimum
+     *                           step within the time budget
+     * @param degradedComponents stages answered from their fallback at the
+     *                           request deadline
+     */
+    public record Result(EstimateSweep.Row optimum, EstimateSweep.Row defaultOrientation, YieldSurface surface,
+            int evaluations, boolean converged, long elapsedMs, List<String> degradedComponents) {
+    }
+
+    public CompletableFuture<Result> optimizeAsync(List<LatLng> points, EstimateOptions options,
+            UpstreamContext context) {
+        long start = System.nanoTime();
+        return estimationService.stagesAsync(points, context)
+                .thenApplyAsync(stages -> optimize(stages, options, start, context));
+    }
+
+    /** @param startNanos when the request arrived, for the reported elapsed time */
+    Result optimize(EstimateStages stages, EstimateOptions options, long startNanos, UpstreamContext context) {
+        // The budget is for the search; fetching the stages upstream does not eat into it, the deadline does
+        long deadline = System.nanoTime() + Math.min(timeBudgetMs * 1_000_000L, context.remainingNanos());
+        var evaluations = new AtomicInteger();
+        Evaluator yield = (tilt, azimuth) -> {
+            evaluations.incrementAndGet();
+            return estimationService.specificYield(stages, options, tilt, azimuth);
+        };
+
+        // The configured orientation is always evaluated, so there is an answer even on a spent budget
+        double bestTilt = estimationService.tiltDeg(stages, options);
+        double bestAzimuth = estimationService.azimuthDeg(stages, options);
+        double best = yield.at(bestTilt, bestAzimuth);
+
+        // Coarse grid, in parallel
+        double[] tilts = steps(0, 90, tiltStepDeg, true);
+        double[] azimuths = steps(0, 360, azimuthStepDeg, false);
+        var surface = new Double[tilts.length][azimuths.length];
+        SolarKernels.parallelFor(tilts.length * azimuths.length, 1, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                if (System.nanoTime() > deadline)
+                    return;
+                int t = k / azimuths.length;
+                int a = k % azimuths.length;
+                surface[t][a] = yield.at(tilts[t], azimuths[a]);
+            }
+        });
+        for (int t = 0; t < tilts.length; t++) {
+            for (int a = 0; a < azimuths.length; a++) {
+                if (surface[t][a] != null && surface[t][a] > best) {
+                    best = surface[t][a];
+                    bestTilt = tilts[t];
+                    bestAzimuth = azimuths[a];
+                }
+            }
+        }
+
+        // Compass search around the best grid point; the four neighbours run in parallel
+        double step = Math.max(tiltStepDeg, azimuthStepDeg) / 2;
+        boolean converged = false;
+        while (System.nanoTime() <= deadline) {
+            if (step < minStepDeg) {
+                converged = true;
+                break;
+            }
+            double[][] candidates = {
+                    { Math.min(90, bestTilt + step), bestAzimuth },
+                    { Math.max(0, bestTilt - step), bestAzimuth },
+                    { bestTilt, normalizeAzimuth(bestAzimuth + step) },
+                    { bestTilt, normalizeAzimuth(bestAzimuth - step) } };
+            double[] yields = new double[candidates.length];
+            SolarKernels.parallelFor(candidates.length, 1, (from, to) -> {
+                for (int c = from; c < to; c++) {
+                    yields[c] = yield.at(candidates[c][0], candidates[c][1]);
+                }
+            });
+            int improved = -1;
+            for (int c = 0; c < candidates.length; c++) {
+                if (yields[c] > best) {
+                    best = yields[c];
+                    improved = c;
+                }
+            }
+            if (improved < 0) {
+                step /= 2;
+            } else {
+                bestTilt = candidates[improved][0];
+                bestAzimuth = candidates[improved][1];
+            }
+        }
+
+        var rows = estimationService.sweep(stages,
+                List.of(options.withOrientation(bestTilt, bestAzimuth), options), startNanos).configurations();
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        return new Result(rows.get(0), rows.get(1), new YieldSurface(tilts, azimuths, surface), evaluations.get(),
+                converged, elapsedMs, stages.degraded());
+    }
+
+    @FunctionalInterface
+    private interface Evaluator {
+        double at(double tiltDeg, double azimuthDeg);
+    }
+
+    /** {@code from}, {@code from + step}, ... up to {@code to}, which is included only if {@code closed}. */
+    private static double[] steps(double from, double to, double step, boolean closed) {
+        int n = (int) Math.ceil((to - from) / step - 1e-9) + (closed ? 1 : 0);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.min(to, from + i * step);
+        }
+        return values;
+    }
+
+    private static double normalizeAzimuth(double azimuthDeg) {
+        double a = azimuthDeg % 360;
+        return a < 0 ? a + 360 : a;
+    }
+}
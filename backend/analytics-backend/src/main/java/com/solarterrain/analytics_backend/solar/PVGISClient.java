@@ -1,26 +1,108 @@
 package com.solarterrain.analytics_backend.solar;
 
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.upstream.SingleFlight;
+import com.solarterrain.analytics_backend.upstream.UpstreamApi;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 public class PVGISClient {
     private static final Logger log = LoggerFactory.getLogger(PVGISClient.class);
-    private final RestTemplate rt = new RestTemplate();
+
+    static final int LOSS_PERCENT = 14; // default system losses
+
+    @Value("${pvgis.api.base-url:https://re.jrc.ec.europa.eu/api/v5_2}")
+    String pvgisBaseUrl;
+
+    private final UpstreamHttpClient http;
+    private final UpstreamQuotaManager quota;
+    private final PvgisYieldStore yieldStore;
+    private final RegionRegistry regions;
+    // Keyed by request URI; every caller converts the shared body itself
+    private final SingleFlight<String, Map<?, ?>> inFlight = new SingleFlight<>();
+
+    public PVGISClient(UpstreamHttpClient http, UpstreamQuotaManager quota, PvgisYieldStore yieldStore,
+            RegionRegistry regions) {
+        this.http = http;
+        this.quota = quota;
+        this.yieldStore = yieldStore;
+        this.regions = regions;
+    }
 
     public PVGISResult pvcalc(double lat, double lon, double peakpower) {
-        log.info("Calling PVGIS for lat={}, lon={}, peakpower={}", lat, lon, peakpower);
+        return pvcalcAsync(lat, lon, peakpower).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #pvcalc}; completes with the Portugal
+     * fallback profile when PVGIS fails.
+     */
+    public CompletableFuture<PVGISResult> pvcalcAsync(double lat, double lon, double peakpower) {
+        return pvcalcAsync(lat, lon, peakpower, UpstreamContext.interactive());
+    }
+
+    /**
+     * PVGIS yield at the tilt and azimuth it finds optimal for the location
+     * (no terrain shading beyond its horizon data). Output is linear in
+     * peak power, so inside the harvested part of the local yield grid the
+     * answer is interpolated per kWp and scaled, without a remote call.
+     * Each source is used only where the region declares it; a region with
+     * neither gets its fallback yield.
+     */
+    public CompletableFuture<PVGISResult> pvcalcAsync(double lat, double lon, double peakpower,
+            UpstreamContext context) {
+        var region = regions.regionAt(lat, lon);
+        double[] perKwp = region.map(r -> r.has(RegionRegistry.PVGIS_YIELD_GRID)).orElse(true)
+                ? yieldStore.lookup(lat, lon)
+                : null;
+        if (perKwp != null) {
+            var monthlyValues = new ArrayList<Double>(perKwp.length);
+            double totalAnnual = 0.0;
+            for (double kwh : perKwp) {
+                monthlyValues.add(kwh * peakpower);
+                totalAnnual += kwh * peakpower;
+            }
+            return CompletableFuture.completedFuture(new PVGISResult(totalAnnual, monthlyValues));
+        }
+        if (!region.map(r -> r.has(RegionRegistry.PVGIS)).orElse(true))
+            return CompletableFuture.completedFuture(fallback(lat, lon, peakpower));
+        return withFallback(request(lat, lon, peakpower, context), lat, lon, peakpower);
+    }
+
+    /**
+     * Remote PVGIS yield of 1 kWp at optimal angles, failing instead of
+     * falling back; for {@link PvgisYieldHarvester}, which must not store the
+     * fallback profile.
+     */
+    CompletableFuture<PVGISResult> fetchPerKwpAsync(double lat, double lon, UpstreamContext context) {
+        return request(lat, lon, 1.0, context);
+    }
 
-        URI uri = UriComponentsBuilder.fromHttpUrl("https://re.jrc.ec.europa.eu/api/v5_2/PVcalc")
+    private CompletableFuture<PVGISResult> withFallback(CompletableFuture<PVGISResult> result, double lat,
+            double lon, double peakpower) {
+        return result.exceptionally(e -> {
+            log.error("PVGIS API error for lat={}, lon={}: {}", lat, lon, e.getMessage());
+            return fallback(lat, lon, peakpower);
+        });
+    }
+
+    private CompletableFuture<PVGISResult> request(double lat, double lon, double peakpower,
+            UpstreamContext context) {
+        URI uri = UriComponentsBuilder.fromUriString(pvgisBaseUrl + "/PVcalc")
                 .queryParam("lat", lat)
                 .queryParam("lon", lon)
                 .queryParam("peakpower", peakpower)
@@ -28,52 +110,56 @@ public class PVGISClient {
                 .queryParam("mountingplace", "free")
                 .queryParam("angle", 35) // optimal for Portugal
                 .queryParam("aspect", 0) // south-facing
-                .queryParam("loss", 14) // default system losses %
+                .queryParam("loss", LOSS_PERCENT)
                 .queryParam("optimalangles", 1)
                 .queryParam("outputformat", "json")
                 .build(true).toUri();
-        try {
-            ResponseEntity<?> rawResp = rt.getForEntity(uri, Map.class);
-            @SuppressWarnings("unchecked")
-            ResponseEntity<Map<String, Object>> resp = (ResponseEntity<Map<String, Object>>) rawResp;
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                throw new RuntimeException("PVGIS error status=" + resp.getStatusCode());
-            }
-            Map<String, Object> body = resp.getBody();
-            Map<String, Object> outputs = (Map<String, Object>) body.get("outputs");
-            Map<String, Object> monthly = (Map<String, Object>) outputs.get("monthly");
-            List<Map<String, Object>> monthlyData = (List<Map<String, Object>>) monthly.get("fixed");
+        return inFlight.run(uri.toString(), context, () -> {
+            log.info("Calling PVGIS for lat={}, lon={}, peakpower={}", lat, lon, peakpower);
+            return quota.call(UpstreamApi.PVGIS, context, () -> http.getJson(uri, Map.class, context))
+                    .thenApply(body -> (Map<?, ?>) body);
+        }).thenApply(this::toResult);
+    }
 
-            double totalAnnual = 0.0;
-            List<Double> monthlyValues = new ArrayList<>();
-            for (Map<String, Object> month : monthlyData) {
-                Object emValue = month.get("E_m");
-                double monthlyKWh = emValue instanceof Number ? ((Number) emValue).doubleValue() : 0.0;
-                monthlyValues.add(monthlyKWh);
-                totalAnnual += monthlyKWh;
-            }
+    @SuppressWarnings("unchecked")
+    private PVGISResult toResult(Map<?, ?> body) {
+        Map<String, Object> outputs = (Map<String, Object>) body.get("outputs");
+        Map<String, Object> monthly = (Map<String, Object>) outputs.get("monthly");
+        List<Map<String, Object>> monthlyData = (List<Map<String, Object>>) monthly.get("fixed");
 
-            Map<String, Object> totals = (Map<String, Object>) outputs.get("totals");
-            Map<String, Object> totalFixed = (Map<String, Object>) totals.get("fixed");
-            Object eyValue = totalFixed.get("E_y");
-            if (eyValue instanceof Number) {
-                totalAnnual = ((Number) eyValue).doubleValue();
-            }
+        double totalAnnual = 0.0;
+        List<Double> monthlyValues = new ArrayList<>();
+        for (Map<String, Object> month : monthlyData) {
+            Object emValue = month.get("E_m");
+            double monthlyKWh = emValue instanceof Number ? ((Number) emValue).doubleValue() : 0.0;
+            monthlyValues.add(monthlyKWh);
+            totalAnnual += monthlyKWh;
+        }
 
-            return new PVGISResult(totalAnnual, monthlyValues);
-        } catch (Exception e) {
-            log.error("PVGIS API error for lat={}, lon={}: {}", lat, lon, e.getMessage());
-            // Return default fallback values for Portugal
-            double fallbackKWhPerKWp = 1400; // conservative estimate for Portugal
-            double annualKWh = peakpower * fallbackKWhPerKWp;
-            List<Double> monthlyFallback = new ArrayList<>();
-            // Distribute annually with seasonal variation (summer higher, winter lower)
-            double[] monthlyFactors = { 0.06, 0.07, 0.09, 0.11, 0.12, 0.13, 0.14, 0.13, 0.11, 0.09, 0.07, 0.06 };
-            for (double factor : monthlyFactors) {
-                monthlyFallback.add(annualKWh * factor);
-            }
-            return new PVGISResult(annualKWh, monthlyFallback);
+        Map<String, Object> totals = (Map<String, Object>) outputs.get("totals");
+        Map<String, Object> totalFixed = (Map<String, Object>) totals.get("fixed");
+        Object eyValue = totalFixed.get("E_y");
+        if (eyValue instanceof Number) {
+            totalAnnual = ((Number) eyValue).doubleValue();
+        }
+
+        return new PVGISResult(totalAnnual, monthlyValues);
+    }
+
+    private PVGISResult fallback(double lat, double lon, double peakpower) {
+        // Conservative yield of the region, 1400 kWh/kWp (mainland) where it sets none
+        double fallbackKWhPerKWp = regions.regionAt(lat, lon)
+                .map(region -> region.defaults().fallbackKWhPerKWp())
+                .filter(Objects::nonNull)
+                .orElse(1400.0);
+        double annualKWh = peakpower * fallbackKWhPerKWp;
+        List<Double> monthlyFallback = new ArrayList<>();
+        // Distribute annually with seasonal variation (summer higher, winter lower)
+        double[] monthlyFactors = { 0.06, 0.07, 0.09, 0.11, 0.12, 0.13, 0.14, 0.13, 0.11, 0.09, 0.07, 0.06 };
+        for (double factor : monthlyFactors) {
+            monthlyFallback.add(annualKWh * factor);
         }
+        return new PVGISResult(annualKWh, monthlyFallback);
     }
 
     public record PVGISResult(double annualKWh, List<Double> monthlyKWh) {
@@ -0,0 +1,151 @@
+package com.solarterrain.analytics_backend.solar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * PVGIS hourly time series of one location, one primitive column per
+ * quantity: timestamp (epoch seconds, UTC), PV power, in-plane irradiance
+ * and air temperature. A multi-year series is a few hundred thousand rows,
+ * so nothing is boxed.
+ *
+ * <p>
+ * File layout (little endian): a 32 byte header (magic, version, lat, lon,
+ * rows) followed by the columns one after another: the timestamps as int64,
+ * then power, irradiance and temperature as float32.
+ */
+public final class PvgisHourlySeries {
+
+    private static final int MAGIC = 0x31534850; // "PHS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final double lat;
+    private final double lon;
+    private final long[] time;
+    private final float[] powerW;
+    private final float[] irradianceWm2;
+    private final float[] temperatureC;
+
+    /** Takes ownership of the columns, which must have the same length. */
+    PvgisHourlySeries(double lat, double lon, long[] time, float[] powerW, float[] irradianceWm2,
+            float[] temperatureC) {
+        if (powerW.length != time.length || irradianceWm2.length != time.length
+                || temperatureC.length != time.length)
+            throw new IllegalArgumentException("Columns have different lengths");
+        this.lat = lat;
+        this.lon = lon;
+        this.time = time;
+        this.powerW = powerW;
+        this.irradianceWm2 = irradianceWm2;
+        this.temperatureC = temperatureC;
+    }
+
+    public double lat() {
+        return lat;
+    }
+
+    public double lon() {
+        return lon;
+    }
+
+    public int size() {
+        return time.length;
+    }
+
+    /** Start of row {@code i} in epoch seconds, UTC. */
+    public long time(int i) {
+        return time[i];
+    }
+
+    /** PV output in W for the requested peak power; NaN when PVGIS computed none. */
+    public float powerW(int i) {
+        return powerW[i];
+    }
+
+    /** Global irradiance on the module plane, W/m2. */
+    public float irradianceWm2(int i) {
+        return irradianceWm2[i];
+    }
+
+    /** Air temperature at 2 m, degrees Celsius. */
+    public float temperatureC(int i) {
+        return temperatureC[i];
+    }
+
+    /**
+     * Mean energy per calendar month over the years in the series, kWh,
+     * January first; each row counts as one hour.
+     */
+    public double[] monthlyMeanKWh() {
+        double[] sums = new double[12];
+        int firstYear = Integer.MAX_VALUE;
+        int lastYear = Integer.MIN_VALUE;
+        for (int i = 0; i < time.length; i++) {
+            var t = Instant.ofEpochSecond(time[i]).atOffset(ZoneOffset.UTC);
+            firstYear = Math.min(firstYear, t.getYear());
+            lastYear = Math.max(lastYear, t.getYear());
+            if (!Float.isNaN(powerW[i]))
+                sums[t.getMonthValue() - 1] += powerW[i] / 1000.0;
+        }
+        int years = Math.max(1, lastYear - firstYear + 1);
+        for (int m = 0; m < 12; m++) {
+            sums[m] /= years;
+        }
+        return sums;
+    }
+
+    static PvgisHourlySeries read(Path file) throws IOException {
+        var buf = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+            throw new IOException("Not a PVGIS hourly series: " + file);
+        double lat = buf.getDouble(8);
+        double lon = buf.getDouble(16);
+        int rows = buf.getInt(24);
+        if (buf.capacity() != HEADER_BYTES + (long) rows * (Long.BYTES + 3 * Float.BYTES))
+            throw new IOException("Truncated PVGIS hourly series: " + file);
+        var time = new long[rows];
+        var power = new float[rows];
+        var irradiance = new float[rows];
+        var temperature = new float[rows];
+        buf.position(HEADER_BYTES);
+        buf.asLongBuffer().get(time);
+        buf.position(buf.position() + rows * Long.BYTES);
+        buf.asFloatBuffer().get(power);
+        buf.position(buf.position() + rows * Float.BYTES);
+        buf.asFloatBuffer().get(irradiance);
+        buf.position(buf.position() + rows * Float.BYTES);
+        buf.asFloatBuffer().get(temperature);
+        return new PvgisHourlySeries(lat, lon, time, power, irradiance, temperature);
+    }
+
+    /** Writes atomically so a concurrent reader never sees a partial series. */
+    void write(Path file) throws IOException {
+        int rows = time.length;
+        var buf = ByteBuffer.allocate(HEADER_BYTES + rows * (Long.BYTES + 3 * Float.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC).putInt(4, VERSION).putDouble(8, lat).putDouble(16, lon).putInt(24, rows);
+        buf.position(HEADER_BYTES);
+        buf.asLongBuffer().put(time);
+        buf.position(buf.position() + rows * Long.BYTES);
+        buf.asFloatBuffer().put(powerW);
+        buf.position(buf.position() + rows * Float.BYTES);
+        buf.asFloatBuffer().put(irradianceWm2);
+        buf.position(buf.position() + rows * Float.BYTES);
+        buf.asFloatBuffer().put(temperatureC);
+        Files.createDirectories(file.getParent());
+        var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, buf.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.upstream.SingleFlight;
+import com.solarterrain.analytics_backend.upstream.UpstreamApi;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-year PVGIS hourly series ({@code seriescalc}) for 1 kWp at optimal
+ * angles, the same system as {@link PVGISClient}. Responses are parsed while
+ * they stream in ({@link PvgisSeriesParser}) and cached per location, rounded
+ * to 0.01 degrees, as columnar files under {@code ${solar.data-dir}/pvgis/series};
+ * PV output scales linearly with peak power. Concurrent requests for the same
+ * location share one download. Parsing blocks on the response stream, so it
+ * runs on {@code pvgis.series.parse-threads} threads of its own, with at most
+ * {@code parse-queue} downloads waiting for one; beyond that a request fails.
+ *
+ * <p>
+ * Nothing in the estimate pipeline calls this yet: it is the data source
+ * for multi-year hourly simulations, which are still to come.
+ */
+@Component
+public class PvgisSeriesClient {
+    private static final Logger log = LoggerFactory.getLogger(PvgisSeriesClient.class);
+
+    @Value("${pvgis.api.base-url:https://re.jrc.ec.europa.eu/api/v5_2}")
+    String pvgisBaseUrl;
+    @Value("${pvgis.series.start-year:2005}")
+    int startYear;
+    @Value("${pvgis.series.end-year:2020}")
+    int endYear;
+
+    private final UpstreamHttpClient http;
+    private final UpstreamQuotaManager quota;
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final ExecutorService parser;
+    private final SingleFlight<String, PvgisHourlySeries> inFlight = new SingleFlight<>();
+
+    public PvgisSeriesClient(UpstreamHttpClient http, UpstreamQuotaManager quota, ObjectMapper objectMapper,
+            @Value("${solar.data-dir:./data}") String dataDir,
+            @Value("${pvgis.series.parse-threads:2}") int parseThreads,
+            @Value("${pvgis.series.parse-queue:8}") int parseQueue) {
+        this.http = http;
+        this.quota = quota;
+        this.objectMapper = objectMapper;
+        this.dir = Path.of(dataDir, "pvgis", "series");
+        var threads = new AtomicInteger();
+        this.parser = new ThreadPoolExecutor(parseThreads, parseThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parseQueue), r -> {
+                    Thread t = new Thread(r, "pvgis-series-parse-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        parser.shutdownNow();
+    }
+
+    /** Hourly series of 1 kWp near the point, from the file cache or PVGIS. */
+    public CompletableFuture<PvgisHourlySeries> hourlyPerKwpAsync(double lat, double lon, UpstreamContext context) {
+        double keyLat = Math.round(lat * 100) / 100.0;
+        double keyLon = Math.round(lon * 100) / 100.0;
+        String key = String.format(Locale.US, "%.2f_%.2f_%d-%d", keyLat, keyLon, startYear, endYear);
+        Path file = dir.resolve(key + ".bin");
+        var cached = cached(file);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        return inFlight.run(key, context, () -> {
+            // A download that ended since the check above wrote its file before leaving the flight
+            var written = cached(file);
+            if (written != null)
+                return CompletableFuture.completedFuture(written);
+            URI uri = UriComponentsBuilder.fromUriString(pvgisBaseUrl + "/seriescalc")
+                    .queryParam("lat", keyLat)
+                    .queryParam("lon", keyLon)
+                    .queryParam("startyear", startYear)
+                    .queryParam("endyear", endYear)
+                    .queryParam("pvcalculation", 1)
+                    .queryParam("peakpower", 1)
+                    .queryParam("pvtechchoice", "crystSi")
+                    .queryParam("mountingplace", "free")
+                    .queryParam("loss", PVGISClient.LOSS_PERCENT)
+                    .queryParam("optimalangles", 1)
+                    .queryParam("outputformat", "json")
+                    .build(true).toUri();
+            log.info("Calling PVGIS seriescalc for lat={}, lon={}, years {}-{}", keyLat, keyLon, startYear,
+                    endYear);
+            return quota.call(UpstreamApi.PVGIS, context, () -> http.getStream(uri, context))
+                    .thenCompose(body -> parseAsync(body, keyLat, keyLon, file));
+        });
+    }
+
+    /** The cached series, or null when there is none or it is unreadable. */
+    private static PvgisHourlySeries cached(Path file) {
+        if (!Files.exists(file))
+            return null;
+        try {
+            return PvgisHourlySeries.read(file);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable PVGIS series {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // Off the HTTP client's selector thread, which must never block on a body
+    private CompletableFuture<PvgisHourlySeries> parseAsync(InputStream body, double lat, double lon, Path file) {
+        try {
+            return CompletableFuture.supplyAsync(() -> parseAndStore(body, lat, lon, file), parser);
+        } catch (RejectedExecutionException e) {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // the rejection is the error worth reporting
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private PvgisHourlySeries parseAndStore(InputStream body, double lat, double lon, Path file) {
+        PvgisHourlySeries series;
+        try (body) {
+            series = PvgisSeriesParser.parse(body, objectMapper.getFactory(), lat, lon);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            series.write(file);
+        } catch (IOException e) {
+            log.warn("Could not cache PVGIS series {}: {}", file, e.getMessage());
+        }
+        return series;
+    }
+}
@@ -0,0 +1,138 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Token-by-token reader of a PVGIS {@code seriescalc} JSON response. Only
+ * {@code outputs.hourly} is read, straight into the columns of a
+ * {@link PvgisHourlySeries}; every other member ({@code inputs},
+ * {@code meta}, unused hourly fields) is skipped without being built, so a
+ * response of tens of megabytes never exists as a tree or as maps.
+ */
+final class PvgisSeriesParser {
+
+    private static final int INITIAL_ROWS = 8784; // one leap year
+
+    private long[] time = new long[INITIAL_ROWS];
+    private float[] power = new float[INITIAL_ROWS];
+    private float[] irradiance = new float[INITIAL_ROWS];
+    private float[] temperature = new float[INITIAL_ROWS];
+    private int rows;
+
+    // Consecutive rows share their date, so the epoch day is computed once per day
+    private int lastDate = -1;
+    private long lastEpochDay;
+
+    private PvgisSeriesParser() {
+    }
+
+    static PvgisHourlySeries parse(InputStream in, JsonFactory factory, double lat, double lon) throws IOException {
+        var reader = new PvgisSeriesParser();
+        try (JsonParser json = factory.createParser(in)) {
+            expect(json.nextToken(), JsonToken.START_OBJECT);
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String name = json.currentName();
+                json.nextToken();
+                if ("outputs".equals(name))
+                    reader.readOutputs(json);
+                else
+                    json.skipChildren();
+            }
+        }
+        return reader.series(lat, lon);
+    }
+
+    private void readOutputs(JsonParser json) throws IOException {
+        expect(json.currentToken(), JsonToken.START_OBJECT);
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String name = json.currentName();
+            json.nextToken();
+            if ("hourly".equals(name))
+                readHourly(json);
+            else
+                json.skipChildren();
+        }
+    }
+
+    private void readHourly(JsonParser json) throws IOException {
+        expect(json.currentToken(), JsonToken.START_ARRAY);
+        while (json.nextToken() == JsonToken.START_OBJECT) {
+            if (rows == time.length)
+                grow();
+            time[rows] = Long.MIN_VALUE;
+            power[rows] = Float.NaN;
+            irradiance[rows] = Float.NaN;
+            temperature[rows] = Float.NaN;
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String name = json.currentName();
+                JsonToken value = json.nextToken();
+                switch (name) {
+                    case "time" -> time[rows] = epochSeconds(json.getTextCharacters(), json.getTextOffset(),
+                            json.getTextLength());
+                    case "P" -> power[rows] = number(json, value);
+                    case "G(i)" -> irradiance[rows] = number(json, value);
+                    case "T2m" -> temperature[rows] = number(json, value);
+                    default -> json.skipChildren();
+                }
+            }
+            if (time[rows] == Long.MIN_VALUE)
+                throw new IOException("Hourly row " + rows + " has no time");
+            rows++;
+        }
+        expect(json.currentToken(), JsonToken.END_ARRAY);
+    }
+
+    private static float number(JsonParser json, JsonToken value) throws IOException {
+        return value.isNumeric() ? json.getFloatValue() : Float.NaN;
+    }
+
+    /** {@code yyyyMMdd:HHmm}, UTC, read from the parser's buffer without a String. */
+    private long epochSeconds(char[] chars, int offset, int length) throws IOException {
+        if (length != 13 || chars[offset + 8] != ':')
+            throw new IOException("Unexpected PVGIS time " + new String(chars, offset, length));
+        int date = digits(chars, offset, 8);
+        if (date != lastDate) {
+            lastEpochDay = LocalDate.of(date / 10000, date / 100 % 100, date % 100).toEpochDay();
+            lastDate = date;
+        }
+        int hour = digits(chars, offset + 9, 2);
+        int minute = digits(chars, offset + 11, 2);
+        return lastEpochDay * 86_400 + hour * 3_600L + minute * 60L;
+    }
+
+    private static int digits(char[] chars, int offset, int count) throws IOException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int d = chars[i] - '0';
+            if (d < 0 || d > 9)
+                throw new IOException("Unexpected digit in PVGIS time");
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private void grow() {
+        int capacity = time.length * 2;
+        time = Arrays.copyOf(time, capacity);
+        power = Arrays.copyOf(power, capacity);
+        irradiance = Arrays.copyOf(irradiance, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+    }
+
+    private PvgisHourlySeries series(double lat, double lon) {
+        return new PvgisHourlySeries(lat, lon, Arrays.copyOf(time, rows), Arrays.copyOf(power, rows),
+                Arrays.copyOf(irradiance, rows), Arrays.copyOf(temperature, rows));
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected)
+            throw new IOException("Unexpected PVGIS series JSON: " + actual + " where " + expected + " belongs");
+    }
+}
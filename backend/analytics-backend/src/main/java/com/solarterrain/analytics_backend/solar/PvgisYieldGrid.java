@@ -0,0 +1,199 @@
+package com.solarterrain.analytics_backend.solar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Regular lat/lng grid of PVGIS monthly energy per kWp, filled node by node
+ * by {@link PvgisYieldHarvester} and saved as a compact binary file that
+ * doubles as the harvest checkpoint.
+ *
+ * <p>
+ * Layout (little endian): a 64 byte header (magic, version, min lat, min lng,
+ * step, rows, cols, months, system loss) followed by twelve 16-bit
+ * fixed-point monthly values per node (kWh/kWp x 100), node-major. A node
+ * not harvested yet holds {@link Short#MIN_VALUE} in its first month; one
+ * PVGIS has no data for (at sea) holds {@code Short.MIN_VALUE + 1}.
+ */
+final class PvgisYieldGrid {
+
+    static final int MONTHS = 12;
+
+    private static final int MAGIC = 0x31475950; // "PYG1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final double SCALE = 100;
+    private static final short MISSING = Short.MIN_VALUE;
+    private static final short UNAVAILABLE = Short.MIN_VALUE + 1;
+
+    private final ByteBuffer buffer;
+    private final double minLat;
+    private final double minLng;
+    private final double step;
+    private final int rows;
+    private final int cols;
+    private final int lossPercent;
+
+    private PvgisYieldGrid(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Not a PVGIS yield grid (bad magic or version)");
+        this.minLat = buffer.getDouble(8);
+        this.minLng = buffer.getDouble(16);
+        this.step = buffer.getDouble(24);
+        this.rows = buffer.getInt(32);
+        this.cols = buffer.getInt(36);
+        if (buffer.getInt(40) != MONTHS)
+            throw new IllegalArgumentException("PVGIS yield grid has an unexpected shape");
+        this.lossPercent = buffer.getInt(44);
+        long expected = HEADER_BYTES + (long) rows * cols * MONTHS * Short.BYTES;
+        if (buffer.capacity() != expected)
+            throw new IllegalArgumentException("PVGIS yield grid is truncated");
+    }
+
+    /**
+     * An empty grid with {@code rows x cols} nodes from
+     * ({@code minLat}, {@code minLng}), for systems with the given loss.
+     */
+    static PvgisYieldGrid create(double minLat, double minLng, double step, int rows, int cols, int lossPercent) {
+        if (rows < 2 || cols < 2)
+            throw new IllegalArgumentException("A yield grid needs at least 2x2 nodes");
+        var buffer = ByteBuffer.allocate(HEADER_BYTES + rows * cols * MONTHS * Short.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putDouble(8, minLat)
+                .putDouble(16, minLng)
+                .putDouble(24, step)
+                .putInt(32, rows)
+                .putInt(36, cols)
+                .putInt(40, MONTHS)
+                .putInt(44, lossPercent);
+        for (int n = 0; n < rows * cols; n++) {
+            buffer.putShort(offset(n), MISSING);
+        }
+        return new PvgisYieldGrid(buffer);
+    }
+
+    /** Reads a grid file into memory; the harvester keeps filling the copy. */
+    static PvgisYieldGrid read(Path file) throws IOException {
+        return new PvgisYieldGrid(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /** Whether {@code other} has the same nodes and system, so its values can be reused. */
+    boolean sameLayout(PvgisYieldGrid other) {
+        return minLat == other.minLat && minLng == other.minLng && step == other.step && rows == other.rows
+                && cols == other.cols && lossPercent == other.lossPercent;
+    }
+
+    /**
+     * Writes the grid atomically, so a crash mid-checkpoint leaves the
+     * previous checkpoint intact.
+     */
+    synchronized void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var source = buffer.duplicate().clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int nodes() {
+        return rows * cols;
+    }
+
+    double nodeLat(int node) {
+        return minLat + (node / cols) * step;
+    }
+
+    double nodeLng(int node) {
+        return minLng + (node % cols) * step;
+    }
+
+    double step() {
+        return step;
+    }
+
+    /** Whether the node holds PVGIS values. */
+    synchronized boolean has(int node) {
+        short first = buffer.getShort(offset(node));
+        return first != MISSING && first != UNAVAILABLE;
+    }
+
+    /** Whether the node needs no more harvesting: it has values, or PVGIS has none to give. */
+    synchronized boolean settled(int node) {
+        return buffer.getShort(offset(node)) != MISSING;
+    }
+
+    synchronized int harvested() {
+        int count = 0;
+        for (int n = 0; n < nodes(); n++) {
+            if (has(n))
+                count++;
+        }
+        return count;
+    }
+
+    /** Records that PVGIS has no data for the node, so it is not asked again. */
+    synchronized void markUnavailable(int node) {
+        buffer.putShort(offset(node), UNAVAILABLE);
+    }
+
+    /** Stores a node's monthly kWh/kWp, January first. */
+    synchronized void put(int node, double[] monthlyKWhPerKWp) {
+        if (monthlyKWhPerKWp.length != MONTHS)
+            throw new IllegalArgumentException("Expected " + MONTHS + " monthly values");
+        for (int m = 0; m < MONTHS; m++) {
+            double scaled = Math.round(monthlyKWhPerKWp[m] * SCALE);
+            buffer.putShort(offset(node) + m * Short.BYTES,
+                    (short) Math.max(UNAVAILABLE + 1, Math.min(Short.MAX_VALUE, scaled)));
+        }
+    }
+
+    /**
+     * Bilinearly interpolated monthly kWh/kWp at a point, or null when the
+     * point is outside the grid or any of the four surrounding nodes has no
+     * values.
+     */
+    synchronized double[] sample(double lat, double lng) {
+        double y = (lat - minLat) / step;
+        double x = (lng - minLng) / step;
+        if (y < 0 || x < 0 || y > rows - 1 || x > cols - 1)
+            return null;
+        int r0 = Math.min((int) y, rows - 2);
+        int c0 = Math.min((int) x, cols - 2);
+        double fy = y - r0;
+        double fx = x - c0;
+        int n00 = r0 * cols + c0;
+        int n10 = n00 + cols;
+        if (!has(n00) || !has(n00 + 1) || !has(n10) || !has(n10 + 1))
+            return null;
+
+        double[] out = new double[MONTHS];
+        for (int m = 0; m < MONTHS; m++) {
+            double v = (1 - fy) * ((1 - fx) * value(n00, m) + fx * value(n00 + 1, m))
+                    + fy * ((1 - fx) * value(n10, m) + fx * value(n10 + 1, m));
+            out[m] = v / SCALE;
+        }
+        return out;
+    }
+
+    private short value(int node, int month) {
+        return buffer.getShort(offset(node) + month * Short.BYTES);
+    }
+
+    private static int offset(int node) {
+        return HEADER_BYTES + node * MONTHS * Short.BYTES;
+    }
+}
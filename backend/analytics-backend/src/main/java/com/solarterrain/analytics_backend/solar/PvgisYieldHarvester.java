@@ -0,0 +1,151 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Fills the {@link PvgisYieldStore} grid with one PVGIS call per missing
+ * node, at background priority so the shared PVGIS quota serves interactive
+ * calls first. At most {@code pvgis.harvest.concurrency} calls are in flight.
+ * The grid is checkpointed every {@code checkpoint-every} nodes and at the
+ * end, and nodes already saved are skipped, so an interrupted harvest resumes
+ * where it stopped. Failed nodes stay missing until the next run.
+ *
+ * <p>
+ * Only nodes that a point in a supported region interpolates from are
+ * harvested: those within one grid step of a {@link RegionRegistry} region.
+ * The rest of the bounding box is open sea. A node PVGIS rejects (HTTP 400,
+ * e.g. "Location over the sea" on a coastal node) is recorded in the grid
+ * as having no data and is not asked for again.
+ */
+@Component
+public class PvgisYieldHarvester {
+    private static final Logger log = LoggerFactory.getLogger(PvgisYieldHarvester.class);
+
+    @Value("${pvgis.harvest.enabled:false}")
+    boolean enabled;
+    @Value("${pvgis.harvest.concurrency:4}")
+    int concurrency;
+    @Value("${pvgis.harvest.checkpoint-every:50}")
+    int checkpointEvery;
+
+    private final PvgisYieldStore store;
+    private final PVGISClient client;
+    private final RegionRegistry regions;
+    private volatile boolean stopped;
+
+    public PvgisYieldHarvester(PvgisYieldStore store, PVGISClient client, RegionRegistry regions) {
+        this.store = store;
+        this.client = client;
+        this.regions = regions;
+    }
+
+    /**
+     * @param fetched  nodes harvested by this run
+     * @param failed   nodes whose call failed; retried on the next run
+     * @param rejected nodes PVGIS has no data for, found by this run
+     * @param skipped  nodes not asked for: already settled, or away from
+     *                 every region
+     */
+    public record Report(int fetched, int failed, int rejected, int skipped) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        var thread = new Thread(() -> {
+            var report = harvest();
+            log.info("PVGIS harvest: {} nodes fetched, {} failed, {} without data, {} skipped", report.fetched(),
+                    report.failed(), report.rejected(), report.skipped());
+        }, "pvgis-harvest");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Harvests every missing node, blocking until done or {@link #stop()}ped. */
+    public Report harvest() {
+        var grid = store.grid();
+        double step = grid.step();
+        var missing = new ArrayList<Integer>();
+        for (int n = 0; n < grid.nodes(); n++) {
+            double lat = grid.nodeLat(n);
+            double lng = grid.nodeLng(n);
+            if (!grid.settled(n) && regions.intersects(lat - step, lng - step, lat + step, lng + step))
+                missing.add(n);
+        }
+        int skipped = grid.nodes() - missing.size();
+        int fetched = 0;
+        int failed = 0;
+        int rejected = 0;
+        int sinceCheckpoint = 0;
+        for (int i = 0; i < missing.size() && !stopped; i += concurrency) {
+            var batch = missing.subList(i, Math.min(missing.size(), i + concurrency));
+            var calls = batch.stream()
+                    .map(n -> client.fetchPerKwpAsync(grid.nodeLat(n), grid.nodeLng(n), UpstreamContext.background()))
+                    .toList();
+            for (int b = 0; b < batch.size(); b++) {
+                PVGISClient.PVGISResult result;
+                try {
+                    result = calls.get(b).join();
+                } catch (CompletionException e) {
+                    if (rejectsLocation(e)) {
+                        grid.markUnavailable(batch.get(b));
+                        rejected++;
+                        sinceCheckpoint++;
+                    } else {
+                        failed++;
+                    }
+                    continue;
+                }
+                if (result.monthlyKWh().size() != PvgisYieldGrid.MONTHS) {
+                    failed++;
+                    continue;
+                }
+                grid.put(batch.get(b), result.monthlyKWh().stream().mapToDouble(Double::doubleValue).toArray());
+                fetched++;
+                sinceCheckpoint++;
+            }
+            if (sinceCheckpoint >= checkpointEvery) {
+                checkpoint();
+                sinceCheckpoint = 0;
+            }
+        }
+        if (sinceCheckpoint > 0)
+            checkpoint();
+        return new Report(fetched, failed, rejected, skipped);
+    }
+
+    // The request is otherwise fixed, so a 400 is about the location
+    private static boolean rejectsLocation(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof UpstreamHttpException http && http.getStatusCode() == 400;
+    }
+
+    private void checkpoint() {
+        try {
+            store.checkpoint();
+        } catch (IOException e) {
+            log.warn("PVGIS yield grid checkpoint failed: {}", e.getMessage());
+        }
+    }
+}
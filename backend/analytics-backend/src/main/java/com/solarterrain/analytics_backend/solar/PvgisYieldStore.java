@@ -0,0 +1,79 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.climate.ClimatologyImporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Local PVGIS yields per kWp over the supported area, in
+ * {@code ${solar.data-dir}/pvgis}. The grid starts empty and is filled by
+ * {@link PvgisYieldHarvester}; a saved grid for another step or system loss
+ * is ignored and harvested again.
+ */
+@Component
+public class PvgisYieldStore {
+    private static final Logger log = LoggerFactory.getLogger(PvgisYieldStore.class);
+
+    static final String GRID_FILE = "yield-grid.bin";
+
+    private final PvgisYieldGrid grid;
+    private final Path file; // null keeps the grid in memory only
+
+    @Autowired
+    public PvgisYieldStore(@Value("${solar.data-dir:./data}") String dataDir,
+            @Value("${pvgis.grid.step-deg:0.1}") double step) {
+        this(Path.of(dataDir, "pvgis", GRID_FILE), emptyGrid(step));
+    }
+
+    PvgisYieldStore(Path file, PvgisYieldGrid empty) {
+        this.file = file;
+        this.grid = file == null ? empty : load(file, empty);
+    }
+
+    /** An empty grid over the estimator's supported bounds. */
+    static PvgisYieldGrid emptyGrid(double step) {
+        int rows = (int) Math.ceil((ClimatologyImporter.MAX_LAT - ClimatologyImporter.MIN_LAT) / step - 1e-9) + 1;
+        int cols = (int) Math.ceil((ClimatologyImporter.MAX_LNG - ClimatologyImporter.MIN_LNG) / step - 1e-9) + 1;
+        return PvgisYieldGrid.create(ClimatologyImporter.MIN_LAT, ClimatologyImporter.MIN_LNG, step, rows, cols,
+                PVGISClient.LOSS_PERCENT);
+    }
+
+    /** Interpolated monthly kWh/kWp, or null where the grid is not harvested yet. */
+    public double[] lookup(double lat, double lng) {
+        return grid.sample(lat, lng);
+    }
+
+    PvgisYieldGrid grid() {
+        return grid;
+    }
+
+    /** Saves the grid as harvested so far; a restart resumes from here. */
+    void checkpoint() throws IOException {
+        if (file != null)
+            grid.write(file);
+    }
+
+    private static PvgisYieldGrid load(Path file, PvgisYieldGrid empty) {
+        if (!Files.exists(file))
+            return empty;
+        try {
+            var saved = PvgisYieldGrid.read(file);
+            if (saved.sameLayout(empty)) {
+                log.info("Loaded PVGIS yield grid {} ({}/{} nodes harvested)", file, saved.harvested(),
+                        saved.nodes());
+                return saved;
+            }
+            log.info("PVGIS yield grid {} has another layout, starting over", file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("PVGIS yield grid {} unreadable, starting over: {}", file, e.getMessage());
+        }
+        return empty;
+    }
+}
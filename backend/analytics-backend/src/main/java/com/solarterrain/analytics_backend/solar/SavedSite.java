@@ -1,19 +1,33 @@
 package com.solarterrain.analytics_backend.solar;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.solarterrain.analytics_backend.geo.GeometryCodec;
+import com.solarterrain.analytics_backend.geo.LatLng;
 import jakarta.persistence.*;
+
 import java.time.Instant;
+import java.util.List;
 
 @Entity
 public class SavedSite {
+    // Pooled sequence: ids are handed out 50 at a time without a round trip,
+    // so inserts can be batched (IDENTITY forces one insert per statement)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saved_site_seq")
+    @SequenceGenerator(name = "saved_site_seq", sequenceName = "saved_site_seq", allocationSize = 50)
     private Long id;
     private String userId;
     private String siteName;
     @Column(length = 500)
     private String description;
-    @Column(length = 8000)
-    private String polygonGeoJson;
+    // Delta-encoded fixed-point ring (GeometryCodec), no size limit;
+    // GeoJSON is only produced when the site is serialised
+    @Lob
+    @Column(name = "polygon")
+    private byte[] polygon;
+    @Transient
+    private List<LatLng> ring;
     private double areaM2;
     private double usableAreaM2;
     private double systemKWp;
@@ -33,6 +47,11 @@ public class SavedSite {
         return id;
     }
 
+    /** Forgets an id assigned in a transaction that rolled back, so the site can be persisted again. */
+    void discardId() {
+        id = null;
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -57,12 +76,22 @@ public class SavedSite {
         this.description = description;
     }
 
+    @JsonProperty("polygonGeoJson")
     public String getPolygonGeoJson() {
-        return polygonGeoJson;
+        return polygon == null ? null : GeometryCodec.toGeoJson(polygon);
+    }
+
+    /** Polygon vertices as drawn, decoded on first use. */
+    @JsonIgnore
+    public List<LatLng> getPolygon() {
+        if (ring == null && polygon != null)
+            ring = GeometryCodec.decode(polygon);
+        return ring;
     }
 
-    public void setPolygonGeoJson(String polygonGeoJson) {
-        this.polygonGeoJson = polygonGeoJson;
+    public void setPolygon(List<LatLng> points) {
+        this.polygon = GeometryCodec.encode(points);
+        this.ring = List.copyOf(points);
     }
 
     public double getAreaM2() {
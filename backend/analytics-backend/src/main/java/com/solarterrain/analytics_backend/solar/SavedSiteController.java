@@ -1,21 +1,45 @@
 package com.solarterrain.analytics_backend.solar;
 
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/solar/sites")
 public class SavedSiteController {
     private final SavedSiteRepository repo;
     private final SolarEstimationService estimationService;
+    private final SavedSiteWriter writer;
+    private final SavedSiteExporter exporter;
+
+    @Value("${solar.sites.max-bulk-sites:500}")
+    int maxBulkSites;
 
-    public SavedSiteController(SavedSiteRepository repo, SolarEstimationService estimationService) {
+    public SavedSiteController(SavedSiteRepository repo, SolarEstimationService estimationService,
+            SavedSiteWriter writer, SavedSiteExporter exporter) {
         this.repo = repo;
         this.estimationService = estimationService;
+        this.writer = writer;
+        this.exporter = exporter;
     }
 
     private String uid(Authentication auth) {
@@ -28,41 +52,137 @@ public class SavedSiteController {
     }
 
     @PostMapping
-    public Map<String, Object> save(@RequestBody Map<String, Object> body, Authentication auth) {
+    public CompletableFuture<Map<String, Object>> save(@RequestBody Map<String, Object> body, Authentication auth) {
+        String userId = uid(auth);
+        var points = points(body);
+        // Responds once the write has committed; the servlet thread is released meanwhile
+        return estimationService.estimateAsync(points)
+                .thenCompose(est -> writer.save(toSite(userId, body, points, est))
+                        .thenApply(s -> Map.of(
+                                "id", s.getId(),
+                                "message", "Terreno salvo com sucesso!",
+                                "estimate", est)));
+    }
+
+    /**
+     * Saves many sites at once, e.g. an imported portfolio. Estimates run at
+     * batch priority and all sites are written together; a site whose
+     * estimate fails is reported and skipped.
+     */
+    @PostMapping("/bulk")
+    public CompletableFuture<Map<String, Object>> saveBulk(@RequestBody Map<String, Object> body,
+            Authentication auth) {
         String userId = uid(auth);
         @SuppressWarnings("unchecked")
-        var points = (List<Map<String, Object>>) body.get("points");
-        String siteName = (String) body.getOrDefault("name", "Terreno Solar");
-        String description = (String) body.getOrDefault("description", "");
+        var entries = (List<Map<String, Object>>) body.get("sites");
+        if (entries == null || entries.isEmpty())
+            throw new IllegalArgumentException("sites is required");
+        if (entries.size() > maxBulkSites)
+            throw new IllegalArgumentException("At most " + maxBulkSites + " sites per request");
 
-        var latLngs = points.stream()
-                .map(m -> new com.solarterrain.analytics_backend.geo.LatLng(
+        var sites = new SavedSite[entries.size()];
+        var failed = new ConcurrentLinkedQueue<Map<String, Object>>();
+        var estimates = new CompletableFuture<?>[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            int index = i;
+            var entry = entries.get(i);
+            CompletableFuture<SolarEstimate> est;
+            try {
+                var points = points(entry);
+                est = estimationService.estimateAsync(points, UpstreamContext.batch())
+                        .thenApply(e -> {
+                            sites[index] = toSite(userId, entry, points, e);
+                            return e;
+                        });
+            } catch (RuntimeException e) {
+                est = CompletableFuture.failedFuture(e);
+            }
+            estimates[i] = est.exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                failed.add(Map.of("index", index, "error", String.valueOf(cause.getMessage())));
+                return null;
+            });
+        }
+
+        return CompletableFuture.allOf(estimates).thenCompose(v -> {
+            var ok = Arrays.stream(sites).filter(Objects::nonNull).toList();
+            return writer.saveAll(ok).thenApply(saved -> {
+                var ids = new ArrayList<Map<String, Object>>();
+                for (int i = 0; i < sites.length; i++) {
+                    if (sites[i] != null)
+                        ids.add(Map.of("index", i, "id", sites[i].getId()));
+                }
+                var failures = failed.stream()
+                        .sorted(Comparator.comparingInt(f -> (Integer) f.get("index")))
+                        .toList();
+                return Map.<String, Object>of(
+                        "saved", ids,
+                        "failed", failures,
+                        "message", ids.size() + " terrenos salvos com sucesso!");
+            });
+        });
+    }
+
+    private static List<LatLng> points(Map<String, Object> body) {
+        @SuppressWarnings("unchecked")
+        var points = (List<Map<String, Object>>) body.get("points");
+        if (points == null)
+            throw new IllegalArgumentException("points is required");
+        return points.stream()
+                .map(m -> new LatLng(
                         ((Number) m.get("lat")).doubleValue(),
                         ((Number) m.get("lng")).doubleValue()))
                 .toList();
+    }
 
-        var est = estimationService.estimate(latLngs);
+    private static SavedSite toSite(String userId, Map<String, Object> body, List<LatLng> points,
+            SolarEstimate est) {
         SavedSite s = new SavedSite();
         s.setUserId(userId);
-        s.setSiteName(siteName);
-        s.setDescription(description);
-
-        String coords = points.stream().map(m -> "[" + m.get("lng") + "," + m.get("lat") + "]")
-                .reduce((a, b) -> a + "," + b).orElse("");
-        s.setPolygonGeoJson("{\"type\":\"Polygon\",\"coordinates\":[[" + coords + "]]}");
+        s.setSiteName((String) body.getOrDefault("name", "Terreno Solar"));
+        s.setDescription((String) body.getOrDefault("description", ""));
+        s.setPolygon(points);
         s.setAreaM2(est.areaM2());
         s.setUsableAreaM2(est.usableAreaM2());
         s.setSystemKWp(est.assumedSystemKWp());
         s.setAnnualEnergyKWh(est.annualEnergyKWh());
-        // Campos removidos que não existem mais na nova estrutura
-        // s.setAnnualIrradiationKWhM2(est.annualIrradiationKWhM2());
-        // s.setPerformanceRatio(est.performanceRatio());
-
-        repo.save(s);
-        return Map.of(
-                "id", s.getId(),
-                "message", "Terreno salvo com sucesso!",
-                "estimate", est);
+        s.setAnnualIrradiationKWhM2(est.annualIrradiationKWhM2());
+        s.setPerformanceRatio(est.performanceRatio());
+        return s;
+    }
+
+    /**
+     * Streams all of the user's sites as {@code geojson} (a FeatureCollection),
+     * {@code csv} or {@code ndjson}, straight from a database cursor.
+     * {@code heatmap=true} re-estimates each site to include its heatmap;
+     * {@code gzip=true} downloads a {@code .gz} file instead.
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(defaultValue = "geojson") String format,
+            @RequestParam(defaultValue = "false") boolean heatmap,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Authentication auth, HttpServletResponse response) throws IOException {
+        SavedSiteExporter.Format exportFormat;
+        try {
+            exportFormat = SavedSiteExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be geojson, csv or ndjson");
+            return;
+        }
+        String filename = "terrenos." + exportFormat.extension();
+        if (!gzip) {
+            response.setContentType(exportFormat.contentType());
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            exporter.export(uid(auth), exportFormat, heatmap, response.getOutputStream());
+            return;
+        }
+        // A .gz file, not a compressed transfer: clients must not decompress it on the way
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + ".gz\"");
+        try (var out = new GZIPOutputStream(response.getOutputStream(), 1 << 16)) {
+            exporter.export(uid(auth), exportFormat, heatmap, out);
+        }
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,290 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a user's saved sites to a stream as GeoJSON, CSV or NDJSON. Sites
+ * are read through a database cursor inside one read-only transaction and
+ * each is written and detached before the next is read, so memory stays
+ * constant whatever the portfolio size.
+ *
+ * <p>
+ * Heatmaps are not stored with a site; when requested, each site is
+ * estimated again at batch priority as it is written, which makes the
+ * export as slow as that many estimates. The sites are then read in chunks
+ * instead of through the cursor, so no transaction is open while they are
+ * estimated. A site whose estimate fails is exported without its heatmap.
+ */
+@Component
+public class SavedSiteExporter {
+    private static final Logger log = LoggerFactory.getLogger(SavedSiteExporter.class);
+
+    public enum Format {
+        GEOJSON("application/geo+json", "geojson"),
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    // Sites loaded per transaction when heatmaps are estimated between them
+    private static final int HEATMAP_CHUNK = 50;
+
+    private static final String CSV_HEADER = "id,name,description,createdAt,updatedAt,areaM2,usableAreaM2,systemKWp,"
+            + "annualEnergyKWh,annualIrradiationKWhM2,performanceRatio,polygonGeoJson";
+
+    private final SavedSiteRepository repo;
+    private final SolarEstimationService estimationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTx;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SavedSiteExporter(SavedSiteRepository repo, SolarEstimationService estimationService,
+            ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.repo = repo;
+        this.estimationService = estimationService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** Streams all of {@code userId}'s sites, oldest first; returns how many were written. */
+    public int export(String userId, Format format, boolean includeHeatmap, OutputStream out) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        var json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null); // NDJSON lines are ended explicitly
+        try {
+            begin(format, includeHeatmap, json, writer);
+            int written = includeHeatmap ? writeWithHeatmaps(userId, format, json, writer)
+                    : writeFromCursor(userId, format, json, writer);
+            end(format, json);
+            return written;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            json.close();
+            writer.flush();
+        }
+    }
+
+    private int writeFromCursor(String userId, Format format, JsonGenerator json, Writer writer) {
+        Integer count = readOnlyTx.execute(status -> {
+            try (var sites = repo.streamByUserIdOrderByCreatedAt(userId)) {
+                int written = 0;
+                for (var it = sites.iterator(); it.hasNext();) {
+                    var site = it.next();
+                    write(format, json, writer, site, false, null);
+                    entityManager.detach(site);
+                    written++;
+                }
+                return written;
+            }
+        });
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Estimates take seconds each, too long to hold a connection for, so
+     * sites are loaded a chunk at a time in short transactions and estimated
+     * with none open.
+     */
+    private int writeWithHeatmaps(String userId, Format format, JsonGenerator json, Writer writer) {
+        List<Long> ids = readOnlyTx.execute(status -> repo.findIdsByUserIdOrderByCreatedAt(userId));
+        if (ids == null)
+            return 0;
+        int written = 0;
+        for (int from = 0; from < ids.size(); from += HEATMAP_CHUNK) {
+            var chunk = ids.subList(from, Math.min(ids.size(), from + HEATMAP_CHUNK));
+            List<SavedSite> sites = readOnlyTx.execute(status -> {
+                var loaded = repo.findAllById(chunk);
+                loaded.forEach(entityManager::detach);
+                return loaded;
+            });
+            if (sites == null)
+                continue;
+            var byId = sites.stream().collect(Collectors.toMap(SavedSite::getId, Function.identity()));
+            for (Long id : chunk) {
+                var site = byId.get(id);
+                if (site == null)
+                    continue; // deleted since the ids were read
+                write(format, json, writer, site, true, heatmap(site));
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private void write(Format format, JsonGenerator json, Writer writer, SavedSite site, boolean includeHeatmap,
+            HeatmapGrid heatmap) {
+        try {
+            switch (format) {
+                case GEOJSON -> writeFeature(json, site, includeHeatmap, heatmap);
+                case NDJSON -> {
+                    writeRecord(json, site, includeHeatmap, heatmap);
+                    json.flush();
+                    writer.write('\n');
+                }
+                case CSV -> writeCsvRow(writer, site, includeHeatmap, heatmap);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void begin(Format format, boolean includeHeatmap, JsonGenerator json, Writer writer)
+            throws IOException {
+        switch (format) {
+            case GEOJSON -> {
+                json.writeStartObject();
+                json.writeStringField("type", "FeatureCollection");
+                json.writeArrayFieldStart("features");
+            }
+            case CSV -> {
+                writer.write(includeHeatmap ? CSV_HEADER + ",heatmap" : CSV_HEADER);
+                writer.write('\n');
+            }
+            case NDJSON -> {
+            }
+        }
+    }
+
+    private void end(Format format, JsonGenerator json) throws IOException {
+        if (format == Format.GEOJSON) {
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        json.flush();
+    }
+
+    private HeatmapGrid heatmap(SavedSite site) {
+        try {
+            return estimationService.estimateAsync(site.getPolygon(), UpstreamContext.batch()).join()
+                    .enhancedHeatmapData();
+        } catch (CompletionException | IllegalArgumentException e) {
+            log.warn("Export: no heatmap for site {} ({})", site.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeFeature(JsonGenerator json, SavedSite site, boolean includeHeatmap,
+            HeatmapGrid heatmap) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", "Feature");
+        json.writeNumberField("id", site.getId());
+        json.writeFieldName("geometry");
+        String geometry = site.getPolygonGeoJson();
+        if (geometry == null)
+            json.writeNull();
+        else
+            json.writeRawValue(geometry);
+        json.writeObjectFieldStart("properties");
+        writeProperties(json, site);
+        if (includeHeatmap)
+            json.writeObjectField("heatmap", heatmap);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void writeRecord(JsonGenerator json, SavedSite site, boolean includeHeatmap,
+            HeatmapGrid heatmap) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", site.getId());
+        writeProperties(json, site);
+        json.writeStringField("polygonGeoJson", site.getPolygonGeoJson());
+        if (includeHeatmap)
+            json.writeObjectField("heatmap", heatmap);
+        json.writeEndObject();
+    }
+
+    private static void writeProperties(JsonGenerator json, SavedSite site) throws IOException {
+        json.writeStringField("name", site.getSiteName());
+        json.writeStringField("description", site.getDescription());
+        json.writeStringField("createdAt", String.valueOf(site.getCreatedAt()));
+        json.writeStringField("updatedAt", String.valueOf(site.getUpdatedAt()));
+        json.writeNumberField("areaM2", site.getAreaM2());
+        json.writeNumberField("usableAreaM2", site.getUsableAreaM2());
+        json.writeNumberField("systemKWp", site.getSystemKWp());
+        json.writeNumberField("annualEnergyKWh", site.getAnnualEnergyKWh());
+        json.writeNumberField("annualIrradiationKWhM2", site.getAnnualIrradiationKWhM2());
+        json.writeNumberField("performanceRatio", site.getPerformanceRatio());
+    }
+
+    private void writeCsvRow(Writer writer, SavedSite site, boolean includeHeatmap,
+            HeatmapGrid heatmap) throws IOException {
+        writer.write(String.valueOf(site.getId()));
+        writer.write(',');
+        writeCsvText(writer, site.getSiteName());
+        writer.write(',');
+        writeCsvText(writer, site.getDescription());
+        writer.write(',');
+        writer.write(String.valueOf(site.getCreatedAt()));
+        writer.write(',');
+        writer.write(String.valueOf(site.getUpdatedAt()));
+        for (double value : new double[] { site.getAreaM2(), site.getUsableAreaM2(), site.getSystemKWp(),
+                site.getAnnualEnergyKWh(), site.getAnnualIrradiationKWhM2(), site.getPerformanceRatio() }) {
+            writer.write(',');
+            writer.write(Double.toString(value));
+        }
+        writer.write(',');
+        writeCsvText(writer, site.getPolygonGeoJson());
+        if (includeHeatmap) {
+            // One JSON column, so spreadsheet rows stay one per site
+            writer.write(',');
+            writeCsvText(writer, heatmap == null ? null : objectMapper.writeValueAsString(heatmap));
+        }
+        writer.write('\n');
+    }
+
+    /** RFC 4180 field: quoted when it holds a separator, quote or line break. */
+    private static void writeCsvText(Writer writer, String text) throws IOException {
+        if (text == null)
+            return;
+        boolean quote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+                || text.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
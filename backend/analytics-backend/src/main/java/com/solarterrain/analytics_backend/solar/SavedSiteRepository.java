@@ -1,8 +1,26 @@
 package com.solarterrain.analytics_backend.solar;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface SavedSiteRepository extends JpaRepository<SavedSite, Long> {
     List<SavedSite> findByUserIdOrderByCreatedAtDesc(String userId);
+
+    /** Cursor over a user's sites for export; must be consumed inside a transaction and closed. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+    @Query("select s from SavedSite s where s.userId = :userId order by s.createdAt, s.id")
+    Stream<SavedSite> streamByUserIdOrderByCreatedAt(@Param("userId") String userId);
+
+    /** A user's site ids in export order, for exports that work outside a transaction. */
+    @Query("select s.id from SavedSite s where s.userId = :userId order by s.createdAt, s.id")
+    List<Long> findIdsByUserIdOrderByCreatedAt(@Param("userId") String userId);
 }
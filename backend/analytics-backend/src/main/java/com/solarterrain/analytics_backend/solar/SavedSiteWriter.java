@@ -0,0 +1,199 @@
+package com.solarterrain.analytics_backend.solar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence of new saved sites. Writes are queued and a
+ * single worker commits them in groups of up to {@code batch-size}, one
+ * transaction per group, so Hibernate sends them as JDBC batches. The
+ * returned future completes only once the site's transaction has
+ * committed, so a caller that waits for it still reads its own write.
+ *
+ * <p>
+ * A group waits at most {@code max-delay-ms} for more writes. When the
+ * queue is full, or write-behind is disabled, the caller writes the site
+ * itself. If a group fails, its sites are retried one transaction each so
+ * one bad row cannot fail the others. On shutdown the queue is drained
+ * after the web server has stopped accepting requests.
+ */
+@Component
+public class SavedSiteWriter implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(SavedSiteWriter.class);
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final SavedSiteRepository repo;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingWrite> queue;
+
+    // Producers hold the read lock from the running check to the offer, so
+    // nothing is queued after stop() has drained the queue
+    private final ReadWriteLock accepting = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread worker;
+
+    private record PendingWrite(SavedSite site, CompletableFuture<SavedSite> ack) {
+    }
+
+    public SavedSiteWriter(SavedSiteRepository repo, PlatformTransactionManager transactionManager,
+            @Value("${solar.sites.write-behind.enabled:true}") boolean enabled,
+            @Value("${solar.sites.write-behind.batch-size:50}") int batchSize,
+            @Value("${solar.sites.write-behind.max-delay-ms:20}") long maxDelayMs,
+            @Value("${solar.sites.write-behind.queue-capacity:2000}") int queueCapacity) {
+        this.repo = repo;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /** Persists a new site; completes with the site, id assigned, once committed. */
+    public CompletableFuture<SavedSite> save(SavedSite site) {
+        var write = new PendingWrite(site, new CompletableFuture<>());
+        accepting.readLock().lock();
+        try {
+            if (running && queue.offer(write))
+                return write.ack();
+        } finally {
+            accepting.readLock().unlock();
+        }
+        flush(List.of(write));
+        return write.ack();
+    }
+
+    /** Persists new sites; completes once all of them have committed. */
+    public CompletableFuture<List<SavedSite>> saveAll(List<SavedSite> sites) {
+        if (!enabled) {
+            // Still a single batched transaction, on the caller's thread
+            var writes = sites.stream().map(s -> new PendingWrite(s, new CompletableFuture<>())).toList();
+            for (int from = 0; from < writes.size(); from += batchSize) {
+                flush(writes.subList(from, Math.min(writes.size(), from + batchSize)));
+            }
+            return CompletableFuture.allOf(writes.stream().map(PendingWrite::ack).toArray(CompletableFuture[]::new))
+                    .thenApply(v -> sites);
+        }
+        var acks = sites.stream().map(this::save).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(acks).thenApply(v -> sites);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled)
+            return;
+        running = true;
+        worker = new Thread(this::drainLoop, "saved-site-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running)
+            return;
+        accepting.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            accepting.writeLock().unlock();
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the worker did not get to is written here
+        var rest = new ArrayList<PendingWrite>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            flush(rest.subList(from, Math.min(rest.size(), from + batchSize)));
+        }
+        log.info("Saved-site writer stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stops after the web server (DEFAULT_PHASE - 2048), before the datasource closes
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        var batch = new ArrayList<PendingWrite>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    // Once stopping, write what has been queued without waiting for more
+                    if (batch.size() >= batchSize || remaining <= 0 || !running)
+                        break;
+                    var next = queue.poll(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null)
+                        batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } catch (RuntimeException e) {
+                // flush() completes every ack itself; keep the worker alive regardless
+                log.error("Saved-site writer failed on a batch of {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> writes) {
+        if (writes.isEmpty())
+            return;
+        try {
+            tx.executeWithoutResult(status -> repo.saveAll(writes.stream().map(PendingWrite::site).toList()));
+            writes.forEach(w -> w.ack().complete(w.site()));
+            return;
+        } catch (RuntimeException e) {
+            if (writes.size() == 1) {
+                writes.get(0).ack().completeExceptionally(e);
+                return;
+            }
+            log.warn("Batch of {} saved sites failed ({}), retrying one by one", writes.size(), e.getMessage());
+        }
+        for (var w : writes) {
+            try {
+                w.site().discardId();
+                tx.executeWithoutResult(status -> repo.save(w.site()));
+                w.ack().complete(w.site());
+            } catch (RuntimeException e) {
+                w.ack().completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Beam shading loss of each terrain sample per sky patch, from which the
+ * month x hour-of-day loss of a sample or of the whole site is derived.
+ * Built by {@link EnhancedShadingService#shadingLosses}.
+ */
+public final class ShadingLossMatrix {
+    private final SkyPatches patches;
+    private final int cells;
+    private final double[] patchLoss; // cells x patches
+    private final double[] sitePatchLoss;
+
+    ShadingLossMatrix(SkyPatches patches, int cells, double[] patchLoss) {
+        this.patches = patches;
+        this.cells = cells;
+        this.patchLoss = patchLoss;
+        int count = patches.count();
+        this.sitePatchLoss = new double[count];
+        for (int c = 0; c < cells; c++) {
+            for (int p = 0; p < count; p++) {
+                sitePatchLoss[p] += patchLoss[c * count + p] / cells;
+            }
+        }
+    }
+
+    /** Samples of several matrices over the same patches, as one site. */
+    static ShadingLossMatrix concat(SkyPatches patches, List<ShadingLossMatrix> parts) {
+        int count = patches.count();
+        int cells = parts.stream().mapToInt(ShadingLossMatrix::cells).sum();
+        double[] loss = new double[cells * count];
+        int offset = 0;
+        for (var part : parts) {
+            System.arraycopy(part.patchLoss, 0, loss, offset, part.cells * count);
+            offset += part.cells * count;
+        }
+        return new ShadingLossMatrix(patches, cells, loss);
+    }
+
+    public int cells() {
+        return cells;
+    }
+
+    public boolean isEmpty() {
+        return cells == 0;
+    }
+
+    /** Month x hour beam loss of terrain sample {@code cell}, index {@code month0 * 24 + hour}. */
+    public double[] cellMonthHour(int cell) {
+        return patches.monthHourLoss(cellPatchLoss(cell));
+    }
+
+    public double cellAnnualLoss(int cell) {
+        return patches.annualLoss(cellPatchLoss(cell));
+    }
+
+    /** Month x hour beam loss averaged over the site. */
+    public double[] siteMonthHour() {
+        return patches.monthHourLoss(sitePatchLoss);
+    }
+
+    public double siteAnnualLoss() {
+        return patches.annualLoss(sitePatchLoss);
+    }
+
+    /** Site beam loss per daylight step, for the hourly simulation. */
+    public float[] siteStepLoss() {
+        return patches.stepLoss(sitePatchLoss);
+    }
+
+    /** Site matrix as 12 rows of 24 hourly values, for JSON. */
+    public List<List<Double>> siteMonthHourRows() {
+        double[] matrix = siteMonthHour();
+        var rows = new ArrayList<List<Double>>(12);
+        for (int m = 0; m < 12; m++) {
+            var row = new ArrayList<Double>(24);
+            for (int h = 0; h < 24; h++) {
+                row.add(matrix[m * 24 + h]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private double[] cellPatchLoss(int cell) {
+        int count = patches.count();
+        double[] loss = new double[count];
+        System.arraycopy(patchLoss, cell * count, loss, 0, count);
+        return loss;
+    }
+}
@@ -1,27 +1,83 @@
 package com.solarterrain.analytics_backend.solar;
 
 import com.solarterrain.analytics_backend.geo.PolygonAreaRequest;
+import com.solarterrain.analytics_backend.geo.SweepRequest;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/solar")
 public class SolarController {
     private final SolarEstimationService service;
+    private final OrientationOptimizer orientationOptimizer;
 
-    public SolarController(SolarEstimationService service) {
+    @Value("${solar.deadline.default-ms:8000}")
+    long defaultDeadlineMs;
+    @Value("${solar.deadline.max-ms:30000}")
+    long maxDeadlineMs;
+
+    public SolarController(SolarEstimationService service, OrientationOptimizer orientationOptimizer) {
         this.service = service;
+        this.orientationOptimizer = orientationOptimizer;
     }
 
     @PostMapping("/estimate")
-    public Map<String, Object> estimate(@RequestBody PolygonAreaRequest req) {
-        var est = service.estimate(req.points());
-        return Map.ofEntries(
-                Map.entry("areaM2", est.areaM2()),
-                Map.entry("usableAreaM2", est.usableAreaM2()),
-                Map.entry("assumedSystemKWp", est.assumedSystemKWp()),
-                Map.entry("annualEnergyKWh", est.annualEnergyKWh()),
-                Map.entry("enhancedHeatmapData", est.enhancedHeatmapData()),
-                Map.entry("enhancedAnalysisData", est.enhancedAnalysisData()));
+    public CompletableFuture<Map<String, Object>> estimate(@RequestBody PolygonAreaRequest req) {
+        var options = options(req);
+        var context = UpstreamContext.interactive().withBudget(deadline(req.deadlineMs()));
+        // Async return releases the servlet thread while upstream calls are in flight
+        return service.estimateAsync(req.points(), options, context)
+                .thenApply(est -> Map.ofEntries(
+                        Map.entry("areaM2", est.areaM2()),
+                        Map.entry("usableAreaM2", est.usableAreaM2()),
+                        Map.entry("assumedSystemKWp", est.assumedSystemKWp()),
+                        Map.entry("annualEnergyKWh", est.annualEnergyKWh()),
+                        Map.entry("monthlyEnergyKWh", est.monthlyEnergyKWh()),
+                        Map.entry("annualIrradiationKWhM2", est.annualIrradiationKWhM2()),
+                        Map.entry("performanceRatio", est.performanceRatio()),
+                        Map.entry("enhancedHeatmapData", est.enhancedHeatmapData()),
+                        Map.entry("enhancedAnalysisData", est.enhancedAnalysisData()),
+                        Map.entry("degradedComponents", est.degradedComponents())));
+    }
+
+    /**
+     * The client's time budget, capped at {@code solar.deadline.max-ms}, or
+     * {@code solar.deadline.default-ms}. Upstream stages still pending when
+     * it runs out answer from their fallbacks.
+     */
+    private Duration deadline(Integer deadlineMs) {
+        if (deadlineMs == null)
+            return Duration.ofMillis(defaultDeadlineMs);
+        if (deadlineMs <= 0)
+            throw new IllegalArgumentException("deadlineMs must be positive");
+        return Duration.ofMillis(Math.min(deadlineMs, maxDeadlineMs));
+    }
+
+    /**
+     * Tilt and azimuth with the highest yield for the polygon, shading
+     * included, and the yield surface searched; tilt and azimuth in the
+     * request only set the starting point.
+     */
+    @PostMapping("/orientation")
+    public CompletableFuture<OrientationOptimizer.Result> orientation(@RequestBody PolygonAreaRequest req) {
+        var context = UpstreamContext.interactive().withBudget(deadline(req.deadlineMs()));
+        return orientationOptimizer.optimizeAsync(req.points(), options(req), context);
+    }
+
+    /** Every combination of the requested parameter values, ranked by annual energy. */
+    @PostMapping("/estimate/sweep")
+    public CompletableFuture<EstimateSweep> sweep(@RequestBody SweepRequest req) {
+        var configurations = service.sweepConfigurations(req);
+        var context = UpstreamContext.interactive().withBudget(deadline(req.deadlineMs()));
+        return service.sweepAsync(req.points(), configurations, context);
+    }
+
+    private static EstimateOptions options(PolygonAreaRequest req) {
+        return new EstimateOptions(req.panelEfficiency(), req.performanceRatio(), req.dcPowerPerM2(),
+                req.usableFraction(), req.tiltDeg(), req.azimuthDeg());
     }
 }
@@ -8,6 +8,10 @@ public record SolarEstimate(
         double usableAreaM2,
         double assumedSystemKWp,
         double annualEnergyKWh,
-        List<Map<String, Object>> enhancedHeatmapData,
-        Map<String, Object> enhancedAnalysisData) {
+        List<Double> monthlyEnergyKWh,
+        double annualIrradiationKWhM2, // plane of array
+        double performanceRatio,
+        HeatmapGrid enhancedHeatmapData, // serialized as a list of cell objects
+        Map<String, Object> enhancedAnalysisData,
+        List<String> degradedComponents) { // answered from fallbacks to meet the deadline
 }
@@ -1,106 +1,750 @@
 package com.solarterrain.analytics_backend.solar;
 
 import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.PolygonPreprocessor;
+import com.solarterrain.analytics_backend.geo.PolygonTiler;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.geo.SweepRequest;
+import com.solarterrain.analytics_backend.pv.PvSimulationEngine;
+import com.solarterrain.analytics_backend.pv.PvSimulationResult;
+import com.solarterrain.analytics_backend.pv.PvSystemConfig;
+import com.solarterrain.analytics_backend.pv.SiteIrradiance;
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import jakarta.annotation.PreDestroy;
 import net.sf.geographiclib.Geodesic;
 import net.sf.geographiclib.PolygonArea;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 
 @Service
 public class SolarEstimationService {
 
-    @Autowired
-    private GoogleSolarClient googleSolarClient;
-
-    @Autowired
-    private GoogleWeatherClient googleWeatherClient;
-
-    @Autowired
-    private EnhancedShadingService enhancedShadingService;
+    private final GoogleSolarClient googleSolarClient;
+    private final GoogleWeatherClient googleWeatherClient;
+    private final EnhancedShadingService enhancedShadingService;
+    private final PvSimulationEngine pvEngine;
+    private final RegionRegistry regions;
 
     @Value("${solar.default.panel-efficiency:0.20}")
     double defaultPanelEfficiency; // module efficiency
-    @Value("${solar.default.performance-ratio:0.75}")
-    double defaultPerformanceRatio; // after losses
+    @Value("${solar.default.system-losses:0.14}")
+    double defaultSystemLosses; // wiring, soiling, mismatch
+    @Value("${solar.default.tilt-deg:35}")
+    double defaultTiltDeg;
+    @Value("${solar.default.azimuth-deg:180}")
+    double defaultAzimuthDeg; // compass bearing, 180 = south
     @Value("${solar.default.usable-fraction:0.7}")
     double defaultUsableFraction;
+    @Value("${solar.polygon.simplify-tolerance-m:0.5}")
+    double simplifyToleranceM;
+    @Value("${solar.polygon.simplify-relative-tolerance:0.001}")
+    double simplifyRelativeTolerance; // of the bounding-box diagonal
+    @Value("${solar.tiling.threshold-m2:200000}")
+    double tilingThresholdM2; // parcels larger than this are estimated tile by tile; 0 disables
+    @Value("${solar.tiling.tile-size-m:250}")
+    double tileSizeM;
+    @Value("${solar.tiling.halo-m:150}")
+    double tileHaloM; // terrain around each tile that may shade it
+    @Value("${solar.stages.cache-size:32}")
+    int stageCacheSize; // polygons whose stages are kept; 0 disables
+    @Value("${solar.stages.max-age-s:600}")
+    long stageMaxAgeS;
+    @Value("${solar.sweep.max-configurations:1000}")
+    int maxSweepConfigurations;
+    @Value("${solar.deadline.compute-reserve-ms:300}")
+    long computeReserveMs; // of a deadline, kept for the CPU stages after the upstream ones
+
+    /** Components of an estimate that can degrade to a fallback, as named in the response. */
+    static final String GOOGLE_SOLAR = "googleSolar";
+    static final String SHADING = "shading";
+
+    // Mainland average GHI, kWh/m2/year, for regions that set none
+    static final double NATIONAL_GHI_KWH_M2 = 1650.0;
+    // Heatmap base intensity at the national GHI, kWh/m2/year equivalent
+    private static final double NATIONAL_BASE_INTENSITY = 1400.0;
+
+    private record CachedStages(EstimateStages stages, long createdNanos) {
+    }
+
+    // Fallback timers of stages with a deadline; a stage that completes first drops its timer
+    private final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "estimate-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Sun-hour scales of the national patterns, per region without a climatology grid and 0.1 deg of latitude
+    private final Map<String, Double> sunScales = new ConcurrentHashMap<>();
+
+    private final Map<List<LatLng>, CachedStages> stageCache = Collections
+            .synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<LatLng>, CachedStages> eldest) {
+                    return size() > stageCacheSize;
+                }
+            });
+
+    public SolarEstimationService(GoogleSolarClient googleSolarClient, GoogleWeatherClient googleWeatherClient,
+            EnhancedShadingService enhancedShadingService, PvSimulationEngine pvEngine, RegionRegistry regions) {
+        this.googleSolarClient = googleSolarClient;
+        this.googleWeatherClient = googleWeatherClient;
+        this.enhancedShadingService = enhancedShadingService;
+        this.pvEngine = pvEngine;
+        this.regions = regions;
+        this.deadlines.setRemoveOnCancelPolicy(true);
+    }
 
-    public SolarEstimationService() {
+    @PreDestroy
+    void shutdown() {
+        deadlines.shutdownNow();
     }
 
     public SolarEstimate estimate(List<LatLng> points) {
-        if (points == null || points.size() < 3)
-            throw new IllegalArgumentException("Polygon requires >=3 points");
+        try {
+            return estimateAsync(points).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
 
-        // Accurate geodesic area (GeographicLib returns signed area meters^2).
-        PolygonArea poly = new PolygonArea(Geodesic.WGS84, false);
-        for (LatLng p : points)
-            poly.AddPoint(p.lat(), p.lng());
-        var r = poly.Compute();
-        double areaM2 = Math.abs(r.area);
+    /**
+     * Non-blocking estimate pipeline: the Google Solar samples and the
+     * elevation fetch for shading run concurrently without holding a thread,
+     * and the CPU stages run as each input completes. Validation errors are
+     * thrown immediately, not through the future.
+     */
+    public CompletableFuture<SolarEstimate> estimateAsync(List<LatLng> points) {
+        return estimateAsync(points, UpstreamContext.interactive());
+    }
+
+    /**
+     * As {@link #estimateAsync(List)}, drawing upstream quota at the context's
+     * priority so bulk work queues behind interactive requests.
+     */
+    public CompletableFuture<SolarEstimate> estimateAsync(List<LatLng> points, UpstreamContext context) {
+        return estimateAsync(points, EstimateOptions.DEFAULTS, context);
+    }
 
-        double usableArea = areaM2 * defaultUsableFraction; // can refine (roof tilt/spacing)
+    /**
+     * As {@link #estimateAsync(List, UpstreamContext)} for the given system
+     * parameters. The parameter-independent stages are cached per polygon
+     * ({@code solar.stages.*}), so estimating the same polygon again with
+     * other parameters only re-runs the final aggregation.
+     */
+    public CompletableFuture<SolarEstimate> estimateAsync(List<LatLng> points, EstimateOptions options,
+            UpstreamContext context) {
+        return stagesAsync(points, context).thenApply(stages -> aggregate(stages, options));
+    }
 
-        double centroidLat = points.stream().mapToDouble(LatLng::lat).average().orElse(0);
-        double centroidLon = points.stream().mapToDouble(LatLng::lng).average().orElse(0);
+    /**
+     * Evaluates every configuration against one polygon. The stages are
+     * computed once; the hourly simulation runs once per distinct
+     * orientation, in parallel, and everything else scales linearly with the
+     * system's peak power.
+     */
+    public CompletableFuture<EstimateSweep> sweepAsync(List<LatLng> points, List<EstimateOptions> configurations,
+            UpstreamContext context) {
+        if (configurations.isEmpty())
+            throw new IllegalArgumentException("No configurations to sweep");
+        if (configurations.size() > maxSweepConfigurations)
+            throw new IllegalArgumentException(
+                    "Sweep has " + configurations.size() + " configurations, limit is " + maxSweepConfigurations);
+        long start = System.nanoTime();
+        return stagesAsync(points, context).thenApplyAsync(stages -> sweep(stages, configurations, start));
+    }
 
-        // Portugal (continental) rough bounding box validation
-        if (centroidLat < 36.8 || centroidLat > 42.3 || centroidLon < -9.6 || centroidLon > -6.0) {
-            throw new IllegalArgumentException("Area centroid outside Portugal supported bounds");
+    /**
+     * Every combination of the requested values, one per dimension, for
+     * {@link #sweepAsync}; a dimension left null or empty takes the default.
+     * The count is checked against {@code solar.sweep.max-configurations}
+     * before any combination is built.
+     */
+    List<EstimateOptions> sweepConfigurations(SweepRequest req) {
+        var dimensions = List.of(valuesOrDefault(req.panelEfficiency()), valuesOrDefault(req.performanceRatio()),
+                valuesOrDefault(req.usableFraction()), valuesOrDefault(req.tiltDeg()),
+                valuesOrDefault(req.azimuthDeg()));
+        long count = 1;
+        for (var values : dimensions) {
+            count *= values.size(); // at most the limit times an int: no overflow
+            if (count > maxSweepConfigurations)
+                throw new IllegalArgumentException(
+                        "Sweep has over " + maxSweepConfigurations + " configurations, the limit");
         }
+        var configurations = new ArrayList<EstimateOptions>((int) count);
+        for (Double efficiency : dimensions.get(0))
+            for (Double pr : dimensions.get(1))
+                for (Double usable : dimensions.get(2))
+                    for (Double tilt : dimensions.get(3))
+                        for (Double azimuth : dimensions.get(4))
+                            configurations.add(new EstimateOptions(efficiency, pr, null, usable, tilt, azimuth));
+        return configurations;
+    }
+
+    /** A missing dimension sweeps the single value null, i.e. the default. */
+    private static List<Double> valuesOrDefault(List<Double> values) {
+        return values == null || values.isEmpty() ? Arrays.asList((Double) null) : values;
+    }
+
+    /**
+     * The CPU stages of {@link #estimateAsync} on the calling thread, with
+     * elevations from {@code terrain}, the local climatology and no Google
+     * Solar samples, so nothing goes upstream. Parcels are not tiled. Used to
+     * warm up the JIT before the instance takes traffic.
+     */
+    SolarEstimate estimateOffline(List<LatLng> points, ToDoubleFunction<LatLng> terrain) {
+        var shape = PolygonPreprocessor.prepare(points, simplifyToleranceM, simplifyRelativeTolerance);
+        double areaM2 = polygonAreaM2(shape.exact());
+        double centroidLat = shape.exact().stream().mapToDouble(LatLng::lat).average().orElse(0);
+        double centroidLon = shape.exact().stream().mapToDouble(LatLng::lng).average().orElse(0);
+
+        var region = supportedRegion(shape.exact());
+        var polygon = shape.sampling().stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList();
+        var monthlyWeatherData = monthlyWeather(region, centroidLat, centroidLon);
+        var shadingAnalysis = enhancedShadingService.calculateDetailedShading(centroidLat, centroidLon, polygon,
+                terrain);
+        return aggregate(stages(shape, region, centroidLat, areaM2, List.of(), monthlyWeatherData,
+                shadingAnalysis, Set.of()), EstimateOptions.DEFAULTS);
+    }
+
+    /**
+     * The parameter-independent stages for a polygon, from the cache when a
+     * recent copy exists. Validation errors are thrown immediately, not
+     * through the future.
+     */
+    CompletableFuture<EstimateStages> stagesAsync(List<LatLng> points, UpstreamContext context) {
+        var key = List.copyOf(points);
+        var cached = stageCache.get(key);
+        if (cached != null && System.nanoTime() - cached.createdNanos() < stageMaxAgeS * 1_000_000_000L)
+            return CompletableFuture.completedFuture(cached.stages());
+
+        var future = computeStagesAsync(points, context);
+        if (stageCacheSize <= 0)
+            return future;
+        // Cached before any dependent runs, so a caller that waits for the result sees the entry;
+        // stages built on fallbacks are not, the next request may get the real data in time
+        return future.thenApply(stages -> {
+            if (stages.degraded().isEmpty())
+                stageCache.put(key, new CachedStages(stages, System.nanoTime()));
+            return stages;
+        });
+    }
+
+    private CompletableFuture<EstimateStages> computeStagesAsync(List<LatLng> points, UpstreamContext context) {
+        // Repaired exact ring for the area, simplified ring for sampling
+        var shape = PolygonPreprocessor.prepare(points, simplifyToleranceM, simplifyRelativeTolerance);
+        var exact = shape.exact();
+        var sampling = shape.sampling();
+
+        double areaM2 = polygonAreaM2(exact);
+
+        double centroidLat = exact.stream().mapToDouble(LatLng::lat).average().orElse(0);
+        double centroidLon = exact.stream().mapToDouble(LatLng::lng).average().orElse(0);
+
+        var region = supportedRegion(exact);
+
+        if (tilingThresholdM2 > 0 && tileSizeM > 0 && areaM2 > tilingThresholdM2)
+            return tiledStagesAsync(shape, region, centroidLat, centroidLon, areaM2, context);
 
         // **NEW: Get enhanced data from multiple sources**
 
+        var polygon = sampling.stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList();
+        Set<String> degraded = ConcurrentHashMap.newKeySet();
+
         // 1. Get Google Solar data for comparison
-        var googleSolarData = googleSolarClient.getSolarDataForRegion(
-                points.stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList());
+        var googleSolarFuture = googleSolarSamples(region, polygon, context, degraded);
 
         // 2. Get weather data for meteorological effects
-        var monthlyWeatherData = googleWeatherClient.getMonthlyWeatherPatterns(centroidLat, centroidLon);
+        var monthlyWeatherData = monthlyWeather(region, centroidLat, centroidLon);
 
         // 3. Get enhanced shading analysis
-        var shadingAnalysis = enhancedShadingService.calculateDetailedShading(
-                centroidLat, centroidLon,
-                points.stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList());
+        var shadingFuture = withinDeadline(
+                enhancedShadingService.calculateDetailedShadingAsync(centroidLat, centroidLon, polygon, context),
+                context, SHADING, degraded,
+                () -> enhancedShadingService.getBasicShadingAnalysis(centroidLat, centroidLon));
+
+        return googleSolarFuture.thenCombineAsync(shadingFuture,
+                (googleSolarData, shadingAnalysis) -> stages(shape, region, centroidLat, areaM2, googleSolarData,
+                        monthlyWeatherData, shadingAnalysis, degraded));
+    }
+
+    /** Google Solar samples over the polygon; none where the region has no Google Solar coverage. */
+    private CompletableFuture<List<GoogleSolarClient.GoogleSolarDataPoint>> googleSolarSamples(
+            RegionRegistry.Region region, List<Map<String, Double>> polygon, UpstreamContext context,
+            Set<String> degraded) {
+        if (!region.has(RegionRegistry.GOOGLE_SOLAR))
+            return CompletableFuture.completedFuture(List.of());
+        return withinDeadline(googleSolarClient.getSolarDataForRegionAsync(polygon, context), context,
+                GOOGLE_SOLAR, degraded, List::of);
+    }
 
+    /**
+     * {@code stage}, or {@code fallback} if the context's deadline (less the
+     * compute reserve) comes first, in which case {@code component} is
+     * recorded as degraded and {@code stage} cancelled. Without a deadline,
+     * {@code stage} as is.
+     */
+    private <T> CompletableFuture<T> withinDeadline(CompletableFuture<T> stage, UpstreamContext context,
+            String component, Set<String> degraded, Supplier<T> fallback) {
+        if (!context.hasDeadline())
+            return stage;
+        long budgetNanos = Math.max(0L, context.remainingNanos() - computeReserveMs * 1_000_000L);
+        var bounded = new CompletableFuture<T>();
+        var settled = new AtomicBoolean();
+        var timer = deadlines.schedule(() -> {
+            if (!settled.compareAndSet(false, true))
+                return;
+            degraded.add(component);
+            stage.cancel(true);
+            bounded.completeAsync(fallback);
+        }, budgetNanos, TimeUnit.NANOSECONDS);
+        stage.whenComplete((result, error) -> {
+            timer.cancel(false);
+            if (!settled.compareAndSet(false, true))
+                return;
+            if (error != null)
+                bounded.completeExceptionally(error);
+            else
+                bounded.complete(result);
+        });
+        return bounded;
+    }
+
+    /**
+     * Large parcels: one grid over the whole polygon would either
+     * under-sample it or grow without bound, so the polygon is cut into
+     * fixed-size tiles. Each tile gets its own terrain grid, with a halo of
+     * surrounding terrain, and its own heatmap and hourly simulation, all
+     * running concurrently; the Google Solar samples and the climate are
+     * shared. Energies add up and heatmaps are concatenated.
+     */
+    private CompletableFuture<EstimateStages> tiledStagesAsync(PolygonPreprocessor.Result shape,
+            RegionRegistry.Region region, double centroidLat, double centroidLon, double areaM2,
+            UpstreamContext context) {
+        var pieces = PolygonTiler.tile(shape.sampling(), tileSizeM);
+        var polygon = shape.sampling().stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList();
+        Set<String> degraded = ConcurrentHashMap.newKeySet();
+        var googleSolarFuture = googleSolarSamples(region, polygon, context, degraded);
+        var monthlyWeatherData = monthlyWeather(region, centroidLat, centroidLon);
+        var site = prepareSite(centroidLat, monthlyWeatherData);
+        var patches = SkyPatches.of(site);
+
+        // Tiles still pending at the deadline take the basic analysis; finished ones are kept
+        var tileFutures = pieces.stream()
+                .map(piece -> withinDeadline(enhancedShadingService.calculateTileShadingAsync(centroidLat,
+                        centroidLon, piece.ring(), tileSizeM, tileHaloM, patches, context),
+                        context, SHADING, degraded,
+                        () -> enhancedShadingService.basicTileShading(centroidLat, centroidLon, patches)))
+                .toList();
+
+        var allTiles = CompletableFuture.allOf(tileFutures.toArray(CompletableFuture[]::new));
+        return googleSolarFuture.thenCombineAsync(allTiles,
+                (googleSolarData, done) -> tiledStages(shape, region, centroidLat, areaM2, pieces,
+                        tileFutures.stream().map(CompletableFuture::join).toList(), googleSolarData,
+                        monthlyWeatherData, site, patches, degraded));
+    }
+
+    private EstimateStages stages(PolygonPreprocessor.Result shape, RegionRegistry.Region region,
+            double centroidLat, double areaM2,
+            List<GoogleSolarClient.GoogleSolarDataPoint> googleSolarData,
+            List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeatherData,
+            EnhancedShadingService.ShadingAnalysis shadingAnalysis, Set<String> degraded) {
+        // **Enhanced heatmap generation**
+        var enhancedHeatmap = generateEnhancedHeatmap(region, shape.sampling(), googleSolarData, shadingAnalysis,
+                monthlyWeatherData);
+
+        // **Site climate and terrain shading per sky patch, for the hourly simulation**
+        var site = prepareSite(centroidLat, monthlyWeatherData);
+        var losses = enhancedShadingService.shadingLosses(shadingAnalysis.getElevationData(), SkyPatches.of(site));
+        var part = new EstimateStages.Part(1.0, losses.isEmpty() ? null : losses.siteStepLoss());
+        return new EstimateStages(shape, region, areaM2, centroidLat, googleSolarData, monthlyWeatherData,
+                shadingAnalysis, site, losses, List.of(part), enhancedHeatmap, 0, sorted(degraded));
+    }
+
+    private EstimateStages tiledStages(PolygonPreprocessor.Result shape, RegionRegistry.Region region,
+            double centroidLat, double areaM2,
+            List<PolygonTiler.Piece> pieces, List<EnhancedShadingService.TileShading> tiles,
+            List<GoogleSolarClient.GoogleSolarDataPoint> googleSolarData,
+            List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeatherData, SiteIrradiance site,
+            SkyPatches patches, Set<String> degraded) {
+        // Whole-site views: samples pooled over tiles, shading fractions weighted by tile area
+        var losses = ShadingLossMatrix.concat(patches,
+                tiles.stream().map(EnhancedShadingService.TileShading::losses).toList());
+        var shadingAnalysis = mergeTileShading(pieces, tiles);
+        float[] siteLoss = losses.isEmpty() ? null : losses.siteStepLoss();
+
+        // Per tile: its share of the system with the tile's own shading, and its heatmap, in parallel.
+        // A tile with no terrain sample inside it takes the site's shading.
+        int n = pieces.size();
+        var parts = new ArrayList<EstimateStages.Part>(n);
+        for (int t = 0; t < n; t++) {
+            var tileLosses = tiles.get(t).losses();
+            parts.add(new EstimateStages.Part(pieces.get(t).areaFraction(),
+                    tileLosses.isEmpty() ? siteLoss : tileLosses.siteStepLoss()));
+        }
+        var tileHeatmaps = new ArrayList<HeatmapGrid>(Collections.nCopies(n, null));
+        SolarKernels.parallelFor(n, 1, (from, to) -> {
+            for (int t = from; t < to; t++) {
+                var tileAnalysis = tiles.get(t).losses().isEmpty() ? shadingAnalysis : tiles.get(t).analysis();
+                tileHeatmaps.set(t, generateEnhancedHeatmap(region, pieces.get(t).ring(), googleSolarData,
+                        tileAnalysis, monthlyWeatherData));
+            }
+        });
+
+        return new EstimateStages(shape, region, areaM2, centroidLat, googleSolarData, monthlyWeatherData,
+                shadingAnalysis, site, losses, parts, HeatmapGrid.concat(tileHeatmaps), n, sorted(degraded));
+    }
+
+    private static List<String> sorted(Set<String> components) {
+        return components.stream().sorted().toList();
+    }
+
+    /**
+     * One analysis for the whole parcel: shading fractions averaged over
+     * tiles by area, terrain samples pooled, and the shadow map of the
+     * largest tile.
+     */
+    private static EnhancedShadingService.ShadingAnalysis mergeTileShading(List<PolygonTiler.Piece> pieces,
+            List<EnhancedShadingService.TileShading> tiles) {
+        double[] sums = new double[6];
+        var elevationData = new ArrayList<EnhancedShadingService.ElevationPoint>();
+        List<List<Double>> shadowMap = List.of();
+        double largest = -1;
+        for (int t = 0; t < tiles.size(); t++) {
+            var analysis = tiles.get(t).analysis();
+            double w = pieces.get(t).areaFraction();
+            sums[0] += w * analysis.getAverageShading();
+            sums[1] += w * analysis.getMorningShading();
+            sums[2] += w * analysis.getNoonShading();
+            sums[3] += w * analysis.getEveningShading();
+            sums[4] += w * analysis.getWinterShading();
+            sums[5] += w * analysis.getSummerShading();
+            elevationData.addAll(analysis.getElevationData());
+            if (w > largest) {
+                largest = w;
+                shadowMap = analysis.getShadowMap();
+            }
+        }
+        return new EnhancedShadingService.ShadingAnalysis(sums[0], sums[1], sums[2], sums[3], sums[4], sums[5],
+                elevationData, shadowMap);
+    }
+
+    /**
+     * Hourly simulation of 1 kWp at one orientation, unshaded and with each
+     * part's shading. Output is linear in peak power, so any system size is a
+     * multiple of this.
+     *
+     * @param shadedMonthlyKWh  shaded AC energy per month, parts weighted
+     * @param shadedIrradiation shaded plane-of-array irradiation, kWh/m2
+     */
+    private record UnitYield(PvSimulationResult unshaded, double shadedKWh, double[] shadedMonthlyKWh,
+            double shadedIrradiation) {
+    }
+
+    private UnitYield unitYield(EstimateStages stages, double tiltDeg, double azimuthDeg) {
+        var config = PvSystemConfig.of(1.0, tiltDeg, azimuthDeg, defaultSystemLosses);
+        var unshaded = pvEngine.simulate(stages.site(), config);
+        var parts = stages.parts();
+        var results = new PvSimulationResult[parts.size()];
+        SolarKernels.parallelFor(parts.size(), 1, (from, to) -> {
+            for (int p = from; p < to; p++) {
+                float[] beamLoss = parts.get(p).beamLoss();
+                results[p] = beamLoss == null ? unshaded : pvEngine.simulate(stages.site(), config, beamLoss);
+            }
+        });
+        double annual = 0;
+        double irradiation = 0;
+        double[] monthly = new double[12];
+        for (int p = 0; p < results.length; p++) {
+            double w = parts.get(p).weight();
+            annual += w * results[p].annualEnergyKWh();
+            irradiation += w * results[p].annualIrradiationKWhM2();
+            for (int m = 0; m < 12; m++) {
+                monthly[m] += w * results[p].monthlyEnergyKWh()[m];
+            }
+        }
+        return new UnitYield(unshaded, annual, monthly, irradiation);
+    }
+
+    /**
+     * Annual AC energy per kWp at one orientation, with terrain shading and
+     * the requested performance ratio; the quantity the sweep and the
+     * orientation search rank by.
+     */
+    double specificYield(EstimateStages stages, EstimateOptions options, double tiltDeg, double azimuthDeg) {
+        var unit = unitYield(stages, tiltDeg, azimuthDeg);
+        return unit.shadedKWh() * performanceRatioScale(unit, options) * flatFactor(stages);
+    }
+
+    private double usableFraction(EstimateStages stages, EstimateOptions options) {
+        return options.usableFraction() != null ? options.usableFraction() : usableFraction(stages.region());
+    }
+
+    private double kwpPerM2(EstimateStages stages, EstimateOptions options) {
+        if (options.dcPowerPerM2() != null)
+            return options.dcPowerPerM2();
+        if (options.panelEfficiency() != null)
+            return options.panelEfficiency(); // kWp per m2 at the 1 kW/m2 rating irradiance
         // **Calculate enhanced solar potential**
-        double enhancedKwpPerM2 = calculateEnhancedKwpPerM2(googleSolarData, monthlyWeatherData);
-        double systemKWp = usableArea * enhancedKwpPerM2;
+        return calculateEnhancedKwpPerM2(stages.region(), stages.googleSolarData(), stages.monthlyWeatherData());
+    }
+
+    double tiltDeg(EstimateStages stages, EstimateOptions options) {
+        return options.tiltDeg() != null ? options.tiltDeg() : tiltDeg(stages.region());
+    }
+
+    double azimuthDeg(EstimateStages stages, EstimateOptions options) {
+        return options.azimuthDeg() != null ? options.azimuthDeg() : azimuthDeg(stages.region());
+    }
+
+    /** Region defaults where the region sets them, else the global {@code solar.default.*}. */
+    double usableFraction(RegionRegistry.Region region) {
+        var value = region.defaults().usableFraction();
+        return value != null ? value : defaultUsableFraction;
+    }
+
+    private double tiltDeg(RegionRegistry.Region region) {
+        var value = region.defaults().tiltDeg();
+        return value != null ? value : defaultTiltDeg;
+    }
+
+    private double azimuthDeg(RegionRegistry.Region region) {
+        var value = region.defaults().azimuthDeg();
+        return value != null ? value : defaultAzimuthDeg;
+    }
+
+    /** Annual GHI of the region in kWh/m2, the national average where it sets none. */
+    double ghiKWhPerM2(RegionRegistry.Region region) {
+        var value = region.defaults().ghiKWhPerM2();
+        return value != null ? value : NATIONAL_GHI_KWH_M2;
+    }
+
+    /**
+     * Monthly weather at a point: from the climatology grid where the region
+     * has one, else the national patterns with their sun hours scaled until
+     * the modelled annual GHI is the region's.
+     */
+    List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeather(RegionRegistry.Region region, double lat,
+            double lng) {
+        if (region.has(RegionRegistry.CLIMATOLOGY_GRID))
+            return googleWeatherClient.getMonthlyWeatherPatterns(lat, lng);
+        double scale = sunScales.computeIfAbsent(region.id() + "@" + Math.round(lat * 10),
+                key -> sunScale(lat, ghiKWhPerM2(region)));
+        return googleWeatherClient.getScaledNationalPatterns(scale);
+    }
+
+    /** Bisects for the scale of the national sun hours that models {@code ghiKWhPerM2} at {@code lat}. */
+    private double sunScale(double lat, double ghiKWhPerM2) {
+        double low = 0;
+        double high = 1.5;
+        for (int i = 0; i < 12; i++) {
+            double mid = (low + high) / 2;
+            var site = prepareSite(lat, googleWeatherClient.getScaledNationalPatterns(mid));
+            if (site.annualGhiKWhM2() < ghiKWhPerM2)
+                low = mid;
+            else
+                high = mid;
+        }
+        return (low + high) / 2;
+    }
+
+    /** Scale from the modelled loss chain to a requested performance ratio. */
+    private static double performanceRatioScale(UnitYield unit, EstimateOptions options) {
+        double modelled = unit.unshaded().performanceRatio();
+        return options.performanceRatio() != null && modelled > 0 ? options.performanceRatio() / modelled : 1.0;
+    }
+
+    /** Without terrain samples (elevation unavailable) fall back to the flat average from the basic analysis. */
+    private static double flatFactor(EstimateStages stages) {
+        return stages.losses().isEmpty() ? 1.0 - stages.shadingAnalysis().getAverageShading() : 1.0;
+    }
+
+    private SolarEstimate aggregate(EstimateStages stages, EstimateOptions options) {
+        double usableFraction = usableFraction(stages, options);
+        double usableArea = stages.areaM2() * usableFraction; // can refine (roof tilt/spacing)
+        double kwpPerM2 = kwpPerM2(stages, options);
+        double systemKWp = usableArea * kwpPerM2;
+        double tilt = tiltDeg(stages, options);
+        double azimuth = azimuthDeg(stages, options);
 
         // **Calculate weather-adjusted production**
-        double averageWeatherFactor = monthlyWeatherData.stream()
+        double averageWeatherFactor = stages.monthlyWeatherData().stream()
                 .mapToDouble(wd -> wd.getSolarEfficiencyFactor())
                 .average()
                 .orElse(0.8);
 
-        // **Calculate shading-adjusted production**
-        double shadingFactor = 1.0 - shadingAnalysis.getAverageShading();
-
-        // **Enhanced heatmap generation**
-        var enhancedHeatmap = generateEnhancedHeatmap(points, googleSolarData, shadingAnalysis, monthlyWeatherData);
-
-        // **Final production calculations with all factors**
-        double baseAnnualKwh = systemKWp * getPortugalAverageGhi() * defaultPerformanceRatio;
-        double weatherAdjustedKwh = baseAnnualKwh * averageWeatherFactor;
-        double finalAnnualKwh = weatherAdjustedKwh * shadingFactor;
+        // **Hourly simulation over the site's climate, with terrain shading per sky patch**
+        var unit = unitYield(stages, tilt, azimuth);
+        double scale = systemKWp * performanceRatioScale(unit, options);
+        double flatFactor = flatFactor(stages);
+        double unshadedKWh = unit.unshaded().annualEnergyKWh();
+        double shadingFactor = stages.losses().isEmpty() || unshadedKWh <= 0 ? flatFactor
+                : unit.shadedKWh() / unshadedKWh;
+        var monthlyKwh = new ArrayList<Double>(12);
+        for (double kwh : unit.shadedMonthlyKWh()) {
+            monthlyKwh.add(kwh * scale * flatFactor);
+        }
+        double finalAnnualKwh = unit.shadedKWh() * scale * flatFactor;
+        double irradiation = unit.shadedIrradiation();
+        double performanceRatio = systemKWp > 0 && irradiation > 0
+                ? unit.shadedKWh() * scale / (systemKWp * irradiation)
+                : 0.0;
+
+        var losses = stages.losses();
+        var shape = stages.shape();
+        var analysisData = createEnhancedAnalysisData(stages.googleSolarData(), stages.monthlyWeatherData(),
+                stages.shadingAnalysis(), averageWeatherFactor, shadingFactor);
+        if (!losses.isEmpty()) {
+            analysisData.put("annualBeamShadingLoss", losses.siteAnnualLoss());
+            analysisData.put("shadingLossMatrix", losses.siteMonthHourRows()); // 12 months x 24 hours
+        }
+        analysisData.put("polygon", Map.of(
+                "inputVertices", shape.inputVertices(),
+                "vertices", shape.exact().size(),
+                "samplingVertices", shape.sampling().size(),
+                "repaired", shape.repaired()));
+        if (stages.tiles() > 0)
+            analysisData.put("tiles", Map.of("count", stages.tiles(), "tileSizeM", tileSizeM, "haloM", tileHaloM));
+        var region = stages.region();
+        analysisData.put("region", Map.of(
+                "id", region.id(),
+                "name", region.name(),
+                "ghiKWhPerM2", ghiKWhPerM2(region),
+                "absentProviders", region.absentProviders()));
+        analysisData.put("system", Map.of(
+                "tiltDeg", tilt,
+                "azimuthDeg", azimuth,
+                "usableFraction", usableFraction,
+                "kwpPerM2", kwpPerM2,
+                "performanceRatioOverride", options.performanceRatio() != null));
 
         return new SolarEstimate(
-                areaM2,
+                stages.areaM2(),
                 usableArea,
                 systemKWp,
                 finalAnnualKwh,
-                enhancedHeatmap,
-                createEnhancedAnalysisData(googleSolarData, monthlyWeatherData, shadingAnalysis, averageWeatherFactor,
-                        shadingFactor));
+                monthlyKwh,
+                irradiation,
+                performanceRatio,
+                stages.heatmap(),
+                analysisData,
+                stages.degraded());
+    }
+
+    EstimateSweep sweep(EstimateStages stages, List<EstimateOptions> configurations, long startNanos) {
+        long sweepStart = System.nanoTime();
+        record Orientation(double tiltDeg, double azimuthDeg) {
+        }
+
+        // One hourly simulation per distinct orientation
+        var orientations = new ArrayList<Orientation>();
+        var orientationIndex = new HashMap<Orientation, Integer>();
+        int[] orientationOf = new int[configurations.size()];
+        for (int i = 0; i < configurations.size(); i++) {
+            var options = configurations.get(i);
+            var orientation = new Orientation(tiltDeg(stages, options), azimuthDeg(stages, options));
+            orientationOf[i] = orientationIndex.computeIfAbsent(orientation, o -> {
+                orientations.add(o);
+                return orientations.size() - 1;
+            });
+        }
+        var units = new UnitYield[orientations.size()];
+        SolarKernels.parallelFor(units.length, 1, (from, to) -> {
+            for (int o = from; o < to; o++) {
+                units[o] = unitYield(stages, orientations.get(o).tiltDeg(), orientations.get(o).azimuthDeg());
+            }
+        });
+
+        double flatFactor = flatFactor(stages);
+        var rows = new ArrayList<EstimateSweep.Row>(configurations.size());
+        int best = -1;
+        for (int i = 0; i < configurations.size(); i++) {
+            var options = configurations.get(i);
+            var unit = units[orientationOf[i]];
+            var orientation = orientations.get(orientationOf[i]);
+            double usableArea = stages.areaM2() * usableFraction(stages, options);
+            double systemKWp = usableArea * kwpPerM2(stages, options);
+            double specificYield = unit.shadedKWh() * performanceRatioScale(unit, options) * flatFactor;
+            double irradiation = unit.shadedIrradiation();
+            rows.add(new EstimateSweep.Row(options, orientation.tiltDeg(), orientation.azimuthDeg(), usableArea,
+                    systemKWp, specificYield * systemKWp, specificYield,
+                    irradiation > 0 ? specificYield / flatFactor / irradiation : 0.0));
+            if (best < 0 || rows.get(i).annualEnergyKWh() > rows.get(best).annualEnergyKWh())
+                best = i;
+        }
+        long end = System.nanoTime();
+        return new EstimateSweep(stages.areaM2(), rows, best, (sweepStart - startNanos) / 1_000_000,
+                (end - sweepStart) / 1_000_000, stages.degraded());
+    }
+
+    PvSimulationResult simulatePv(double latitude, double systemKWp,
+            List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeatherData) {
+        return simulatePv(prepareSite(latitude, monthlyWeatherData), systemKWp, null);
+    }
+
+    PvSimulationResult simulatePv(SiteIrradiance site, double systemKWp, float[] beamLoss) {
+        return pvEngine.simulate(site, defaultPvConfig(systemKWp), beamLoss);
+    }
+
+    /** As {@link #simulatePv(SiteIrradiance, double, float[])} at the region's default orientation. */
+    PvSimulationResult simulatePv(SiteIrradiance site, RegionRegistry.Region region, double systemKWp,
+            float[] beamLoss) {
+        var config = PvSystemConfig.of(systemKWp, tiltDeg(region), azimuthDeg(region), defaultSystemLosses);
+        return pvEngine.simulate(site, config, beamLoss);
+    }
+
+    SiteIrradiance prepareSite(double latitude, List<GoogleWeatherClient.MonthlyWeatherData> monthlyWeatherData) {
+        double[] sunHours = new double[12];
+        double[] temperature = new double[12];
+        for (var month : monthlyWeatherData) {
+            sunHours[month.getMonth() - 1] = month.getAverageSunHours();
+            temperature[month.getMonth() - 1] = month.getTemperature();
+        }
+        return pvEngine.prepare(latitude, sunHours, temperature);
+    }
+
+    PvSystemConfig defaultPvConfig(double systemKWp) {
+        return PvSystemConfig.of(systemKWp, defaultTiltDeg, defaultAzimuthDeg, defaultSystemLosses);
+    }
+
+    /** The supported region containing the whole polygon; anything else is rejected. */
+    RegionRegistry.Region supportedRegion(List<LatLng> ring) {
+        return regions.regionOf(ring).orElseThrow(() -> new IllegalArgumentException(
+                "Area outside the supported regions (mainland Portugal, Madeira, Azores)"));
     }
 
-    private double calculateEnhancedKwpPerM2(List<GoogleSolarClient.GoogleSolarDataPoint> googleData,
+    /**
+     * Accurate geodesic area (GeographicLib returns signed area meters^2).
+     */
+    double polygonAreaM2(List<LatLng> points) {
+        PolygonArea poly = new PolygonArea(Geodesic.WGS84, false);
+        for (LatLng p : points)
+            poly.AddPoint(p.lat(), p.lng());
+        var r = poly.Compute();
+        return Math.abs(r.area);
+    }
+
+    double calculateEnhancedKwpPerM2(RegionRegistry.Region region,
+            List<GoogleSolarClient.GoogleSolarDataPoint> googleData,
             List<GoogleWeatherClient.MonthlyWeatherData> weatherData) {
         if (googleData != null && !googleData.isEmpty()) {
             // Use Google Solar data if available
@@ -112,7 +756,7 @@ public class SolarEstimationService {
 
             if (avgGoogleSolar > 0) {
                 // Convert Google's kWh/year to kWp/m2 equivalent
-                return Math.min(avgGoogleSolar / (getPortugalAverageGhi() * 365 * 24), 0.25); // Cap at 25% efficiency
+                return Math.min(avgGoogleSolar / (ghiKWhPerM2(region) * 365 * 24), 0.25); // Cap at 25% efficiency
             }
         }
 
@@ -125,7 +769,72 @@ public class SolarEstimationService {
         return defaultPanelEfficiency * weatherEfficiency;
     }
 
-    private List<Map<String, Object>> generateEnhancedHeatmap(List<LatLng> points,
+    HeatmapGrid generateEnhancedHeatmap(RegionRegistry.Region region, List<LatLng> points,
+            List<GoogleSolarClient.GoogleSolarDataPoint> googleData,
+            EnhancedShadingService.ShadingAnalysis shadingAnalysis,
+            List<GoogleWeatherClient.MonthlyWeatherData> weatherData) {
+        var bounds = calculateBounds(points);
+        int gridSize = 20; // 20x20 grid for detailed heatmap
+
+        double latStep = (bounds.maxLat() - bounds.minLat()) / (gridSize - 1);
+        double lngStep = (bounds.maxLng() - bounds.minLng()) / (gridSize - 1);
+
+        double avgWeatherFactor = weatherData.stream()
+                .mapToDouble(wd -> wd.getSolarEfficiencyFactor())
+                .average()
+                .orElse(0.8);
+
+        // Cells inside the polygon, in grid order
+        double[] cellLat = new double[gridSize * gridSize];
+        double[] cellLng = new double[gridSize * gridSize];
+        int cells = 0;
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                double lat = bounds.minLat() + (i * latStep);
+                double lng = bounds.minLng() + (j * lngStep);
+                if (isPointInPolygon(lat, lng, points)) {
+                    cellLat[cells] = lat;
+                    cellLng[cells] = lng;
+                    cells++;
+                }
+            }
+        }
+        cellLat = Arrays.copyOf(cellLat, cells);
+        cellLng = Arrays.copyOf(cellLng, cells);
+
+        // Nearest Google sample and nearest elevation sample per cell, in parallel
+        var google = googleData != null ? googleData : List.<GoogleSolarClient.GoogleSolarDataPoint>of();
+        int[] nearestGoogle = SolarKernels.nearest(cellLat, cellLng,
+                google.stream().mapToDouble(GoogleSolarClient.GoogleSolarDataPoint::getLatitude).toArray(),
+                google.stream().mapToDouble(GoogleSolarClient.GoogleSolarDataPoint::getLongitude).toArray());
+        var terrain = shadingAnalysis.getElevationData();
+        int[] nearestTerrain = SolarKernels.nearest(cellLat, cellLng,
+                terrain.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLatitude).toArray(),
+                terrain.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLongitude).toArray());
+        double meanElevation = terrain.stream().mapToDouble(ep -> ep.getElevation()).average().orElse(0);
+        double baseSolarIntensity = baseSolarIntensity(region);
+
+        var heatmap = new HeatmapGrid(avgWeatherFactor,
+                weatherData.stream().mapToDouble(wd -> wd.getSolarEfficiencyFactor()).toArray(), cells);
+        for (int c = 0; c < cells; c++) {
+            double googleSolarFactor = nearestGoogle[c] < 0 ? 1.0
+                    : googleSolarFactor(google.get(nearestGoogle[c]).getYearlyEnergyDcKwh());
+            double shadingFactor = nearestTerrain[c] < 0 ? shadingAnalysis.getAverageShading()
+                    : localShadingFactor(shadingAnalysis.getAverageShading(),
+                            terrain.get(nearestTerrain[c]).getElevation(), meanElevation);
+            double finalIntensity = cellIntensity(baseSolarIntensity, googleSolarFactor, avgWeatherFactor,
+                    shadingFactor);
+            heatmap.add(cellLat[c], cellLng[c], finalIntensity, baseSolarIntensity, googleSolarFactor, shadingFactor,
+                    colorClass(finalIntensity, shadingFactor, avgWeatherFactor));
+        }
+        return heatmap;
+    }
+
+    /**
+     * Scalar reference for {@link #generateEnhancedHeatmap}, kept to check
+     * the kernels against.
+     */
+    List<Map<String, Object>> generateEnhancedHeatmapReference(RegionRegistry.Region region, List<LatLng> points,
             List<GoogleSolarClient.GoogleSolarDataPoint> googleData,
             EnhancedShadingService.ShadingAnalysis shadingAnalysis,
             List<GoogleWeatherClient.MonthlyWeatherData> weatherData) {
@@ -149,33 +858,10 @@ public class SolarEstimationService {
                 double lng = bounds.minLng() + (j * lngStep);
 
                 if (isPointInPolygon(lat, lng, points)) {
-                    // Base solar intensity calculation
-                    double baseSolarIntensity = calculateBaseSolarIntensity(lat, lng);
-
-                    // Apply Google Solar data if available
                     double googleSolarFactor = getGoogleSolarFactor(lat, lng, googleData);
-                    double enhancedIntensity = baseSolarIntensity * googleSolarFactor;
-
-                    // Apply weather effects
-                    double weatherAdjustedIntensity = enhancedIntensity * avgWeatherFactor;
-
-                    // Apply shading effects
                     double shadingFactor = getShadingFactorForPoint(lat, lng, shadingAnalysis);
-                    double finalIntensity = weatherAdjustedIntensity * (1.0 - shadingFactor);
-
-                    // Create enhanced color based on multiple factors
-                    String color = calculateEnhancedColor(finalIntensity, shadingFactor, avgWeatherFactor);
-
-                    var point = new HashMap<String, Object>();
-                    point.put("lat", lat);
-                    point.put("lng", lng);
-                    point.put("intensity", finalIntensity);
-                    point.put("baseIntensity", baseSolarIntensity);
-                    point.put("googleSolarFactor", googleSolarFactor);
-                    point.put("weatherFactor", avgWeatherFactor);
-                    point.put("shadowFactor", shadingFactor);
-                    point.put("color", color);
-                    point.put("monthlyProduction", calculateMonthlyProduction(finalIntensity, weatherData));
+                    var point = heatmapPoint(region, lat, lng, googleSolarFactor, shadingFactor,
+                            avgWeatherFactor, weatherData);
 
                     heatmapData.add(point);
                 }
@@ -185,6 +871,32 @@ public class SolarEstimationService {
         return heatmapData;
     }
 
+    /**
+     * One heatmap cell from its local factors, as a map; for the incremental
+     * session, which sends cells one by one. Estimates use {@link HeatmapGrid}.
+     */
+    Map<String, Object> heatmapPoint(RegionRegistry.Region region, double lat, double lng,
+            double googleSolarFactor, double shadingFactor, double avgWeatherFactor,
+            List<GoogleWeatherClient.MonthlyWeatherData> weatherData) {
+        double baseSolarIntensity = baseSolarIntensity(region);
+        double finalIntensity = cellIntensity(baseSolarIntensity, googleSolarFactor, avgWeatherFactor, shadingFactor);
+
+        // Create enhanced color based on multiple factors
+        String color = HeatmapGrid.COLORS[colorClass(finalIntensity, shadingFactor, avgWeatherFactor)];
+
+        var point = new HashMap<String, Object>();
+        point.put("lat", lat);
+        point.put("lng", lng);
+        point.put("intensity", finalIntensity);
+        point.put("baseIntensity", baseSolarIntensity);
+        point.put("googleSolarFactor", googleSolarFactor);
+        point.put("weatherFactor", avgWeatherFactor);
+        point.put("shadowFactor", shadingFactor);
+        point.put("color", color);
+        point.put("monthlyProduction", calculateMonthlyProduction(finalIntensity, weatherData));
+        return point;
+    }
+
     private double getGoogleSolarFactor(double lat, double lng,
             List<GoogleSolarClient.GoogleSolarDataPoint> googleData) {
         if (googleData == null || googleData.isEmpty()) {
@@ -196,17 +908,28 @@ public class SolarEstimationService {
                 .min((a, b) -> Double.compare(
                         calculateDistance(lat, lng, a.getLatitude(), a.getLongitude()),
                         calculateDistance(lat, lng, b.getLatitude(), b.getLongitude())))
-                .map(point -> {
-                    if (point.getYearlyEnergyDcKwh() != null) {
-                        // Normalize Google's data to our scale (0.5 to 1.5 factor)
-                        double normalizedValue = point.getYearlyEnergyDcKwh() / 1500.0; // Assume 1500 kWh as baseline
-                        return Math.max(0.5, Math.min(1.5, normalizedValue));
-                    }
-                    return 1.0;
-                })
+                .map(point -> googleSolarFactor(point.getYearlyEnergyDcKwh()))
                 .orElse(1.0);
     }
 
+    static double googleSolarFactor(Double yearlyEnergyDcKwh) {
+        if (yearlyEnergyDcKwh != null) {
+            // Normalize Google's data to our scale (0.5 to 1.5 factor)
+            double normalizedValue = yearlyEnergyDcKwh / 1500.0; // Assume 1500 kWh as baseline
+            return Math.max(0.5, Math.min(1.5, normalizedValue));
+        }
+        return 1.0;
+    }
+
+    /**
+     * Local shading from the site's average and a point's elevation relative
+     * to the site mean: higher ground is less shaded.
+     */
+    static double localShadingFactor(double averageShading, double elevation, double meanElevation) {
+        double elevationFactor = Math.max(0, Math.min(0.5, (elevation - meanElevation) / 100.0)); // ±50m = ±0.5
+        return Math.max(0, averageShading - elevationFactor);
+    }
+
     private double getShadingFactorForPoint(double lat, double lng,
             EnhancedShadingService.ShadingAnalysis shadingAnalysis) {
         // Get shading factor for this specific point from the detailed analysis
@@ -225,17 +948,26 @@ public class SolarEstimationService {
                     // Calculate local shading based on elevation difference
                     double avgElevation = elevationData.stream().mapToDouble(ep -> ep.getElevation()).average()
                             .orElse(0);
-                    double elevationDiff = point.getElevation() - avgElevation;
-
-                    // Higher elevation = less shading, lower elevation = more shading
-                    double elevationFactor = Math.max(0, Math.min(0.5, elevationDiff / 100.0)); // ±50m = ±0.5 shading
-                                                                                                // factor
-                    return Math.max(0, shadingAnalysis.getAverageShading() - elevationFactor);
+                    return localShadingFactor(shadingAnalysis.getAverageShading(), point.getElevation(),
+                            avgElevation);
                 })
                 .orElse(shadingAnalysis.getAverageShading());
     }
 
-    private String calculateEnhancedColor(double intensity, double shadingFactor, double weatherFactor) {
+    private static double cellIntensity(double baseSolarIntensity, double googleSolarFactor, double weatherFactor,
+            double shadingFactor) {
+        // Apply Google Solar data if available
+        double enhancedIntensity = baseSolarIntensity * googleSolarFactor;
+
+        // Apply weather effects
+        double weatherAdjustedIntensity = enhancedIntensity * weatherFactor;
+
+        // Apply shading effects
+        return weatherAdjustedIntensity * (1.0 - shadingFactor);
+    }
+
+    /** Index into {@link HeatmapGrid#COLORS}. */
+    private static int colorClass(double intensity, double shadingFactor, double weatherFactor) {
         // Enhanced color calculation considering multiple factors
         double normalizedIntensity = Math.max(0, Math.min(1, intensity / 2000.0)); // Normalize to 0-1
 
@@ -243,24 +975,20 @@ public class SolarEstimationService {
         double colorIntensity = normalizedIntensity * (1.0 - shadingFactor * 0.5) * weatherFactor;
 
         if (colorIntensity >= 0.8)
-            return "#00FF00"; // Excellent (bright green)
+            return 4; // Excellent (bright green)
         if (colorIntensity >= 0.6)
-            return "#80FF00"; // Very good (yellow-green)
+            return 3; // Very good (yellow-green)
         if (colorIntensity >= 0.4)
-            return "#FFFF00"; // Good (yellow)
+            return 2; // Good (yellow)
         if (colorIntensity >= 0.2)
-            return "#FF8000"; // Fair (orange)
-        return "#FF0000"; // Poor (red)
+            return 1; // Fair (orange)
+        return 0; // Poor (red)
     }
 
     private List<Double> calculateMonthlyProduction(double intensity,
             List<GoogleWeatherClient.MonthlyWeatherData> weatherData) {
         return weatherData.stream()
-                .map(monthData -> {
-                    double monthlyIntensity = intensity * monthData.getSolarEfficiencyFactor();
-                    double daysInMonth = 30.44; // Average days per month
-                    return monthlyIntensity * daysInMonth;
-                })
+                .map(monthData -> HeatmapGrid.monthlyProduction(intensity, monthData.getSolarEfficiencyFactor()))
                 .toList();
     }
 
@@ -385,11 +1113,6 @@ public class SolarEstimationService {
         return recommendations;
     }
 
-    private double getPortugalAverageGhi() {
-        // Portugal average Global Horizontal Irradiance in kWh/m2/year
-        return 1650.0; // Typical for Portugal
-    }
-
     private double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
         // Simple distance calculation (Haversine formula approximation)
         double dLat = Math.toRadians(lat2 - lat1);
@@ -413,7 +1136,7 @@ public class SolarEstimationService {
     }
 
     // ray casting algo
-    private boolean isPointInPolygon(double lat, double lng, List<LatLng> points) {
+    boolean isPointInPolygon(double lat, double lng, List<LatLng> points) {
         int count = 0;
         for (int i = 0, j = points.size() - 1; i < points.size(); j = i++) {
             if ((points.get(i).lat() > lat) != (points.get(j).lat() > lat) &&
@@ -426,20 +1149,13 @@ public class SolarEstimationService {
         return count % 2 == 1;
     }
 
-    private double calculateBaseSolarIntensity(double lat, double lng) {
-        // Simple estimate (real lookup would use terrain/climate data)
-        // For Portugal: decent solar irradiance,
-        // but varies N-S, terrain, etc.
-        // Return kWh/m2/year equivalent
-        double avgSolarPortugal = 1400; // rough average
-
-        // Apply latitude effect (Northern Portugal gets a bit less)
-        double latFactor = 1.0 - (lat - 36.8) * 0.02; // small decrease northward
-        double baseSolar = avgSolarPortugal * latFactor;
-
-        // Apply longitude effect (coastal vs inland)
-        double lngFactor = 1.0 + (lng + 8.0) * 0.02; // slight coastal bonus
-
-        return baseSolar * lngFactor;
+    /**
+     * Heatmap intensity before the local Google Solar, weather and shading
+     * factors, in proportion to the region's GHI. Variation within a region
+     * comes from those factors; the climatology grid already carries the
+     * north-south gradient through the weather factor.
+     */
+    private double baseSolarIntensity(RegionRegistry.Region region) {
+        return NATIONAL_BASE_INTENSITY * ghiKWhPerM2(region) / NATIONAL_GHI_KWH_M2;
     }
 }
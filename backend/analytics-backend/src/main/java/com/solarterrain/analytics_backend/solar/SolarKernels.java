@@ -0,0 +1,244 @@
+package com.solarterrain.analytics_backend.solar;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Primitive-array kernels behind the terrain shading analysis and the
+ * heatmap, split into blocks on the common fork-join pool.
+ *
+ * <p>
+ * Each kernel evaluates exactly the expressions of the scalar reference in
+ * {@link EnhancedShadingService#analyzeShadingReference} and
+ * {@link SolarEstimationService#generateEnhancedHeatmapReference}, in the
+ * same order per element; only independent elements run concurrently, and
+ * reductions are done sequentially afterwards, so results match the
+ * reference exactly. Pairwise distances, which the reference recomputes
+ * for every sun position, are computed once.
+ */
+final class SolarKernels {
+    private static final double EARTH_RADIUS_M = 6371000;
+
+    // Leaf sizes: below these a block is not worth a task
+    private static final int DISTANCE_ROWS_PER_TASK = 16;
+    private static final int SHADOW_POINTS_PER_TASK = 32;
+    private static final int CELLS_PER_TASK = 64;
+
+    private SolarKernels() {
+    }
+
+    /** Haversine distance in metres, as in both reference implementations. */
+    static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_M * c;
+    }
+
+    /**
+     * Row-major {@code n x n} matrix of pairwise distances. Haversine is
+     * symmetric bit for bit, so each pair is evaluated once.
+     */
+    static double[] distanceMatrix(double[] lat, double[] lng) {
+        int n = lat.length;
+        double[] dist = new double[n * n];
+        parallelFor(n, DISTANCE_ROWS_PER_TASK, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double d = distance(lat[i], lng[i], lat[j], lng[j]);
+                    dist[i * n + j] = d;
+                    dist[j * n + i] = d;
+                }
+            }
+        });
+        return dist;
+    }
+
+    /**
+     * Mean shadow intensity over the shaded points, for each sun elevation
+     * (degrees). A point is shaded when a higher point lies within the
+     * shadow length it casts; its intensity is the tallest shadow cast on it
+     * by any point, normalised to 100 m. Samples and points are split
+     * together into blocks.
+     */
+    static double[] meanShadowIntensity(double[] elevation, double[] dist, double[] sunElevationDeg) {
+        return meanShadowIntensity(elevation, dist, sunElevationDeg, elevation.length);
+    }
+
+    /**
+     * As above, over the first {@code receivers} points only; all points
+     * still cast shadows on them.
+     */
+    static double[] meanShadowIntensity(double[] elevation, double[] dist, double[] sunElevationDeg,
+            int receivers) {
+        int n = elevation.length;
+        int samples = sunElevationDeg.length;
+        double[] tan = new double[samples];
+        double[] sin = new double[samples];
+        for (int s = 0; s < samples; s++) {
+            tan[s] = Math.tan(Math.toRadians(sunElevationDeg[s]));
+            sin[s] = Math.sin(Math.toRadians(sunElevationDeg[s]));
+        }
+
+        double[] intensity = new double[samples * receivers];
+        boolean[] shaded = new boolean[samples * receivers];
+        parallelFor(samples * receivers, SHADOW_POINTS_PER_TASK, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                int s = k / receivers;
+                intensity[k] = shadow(elevation, dist, n, k % receivers, tan[s], sin[s], shaded, k);
+            }
+        });
+
+        // Sequential reduction in point order keeps the reference's rounding
+        double[] mean = new double[samples];
+        for (int s = 0; s < samples; s++) {
+            double total = 0.0;
+            int count = 0;
+            for (int i = 0; i < receivers; i++) {
+                if (shaded[s * receivers + i]) {
+                    total += intensity[s * receivers + i];
+                    count++;
+                }
+            }
+            mean[s] = count > 0 ? total / count : 0.0;
+        }
+        return mean;
+    }
+
+    /**
+     * Shadow intensity on each of the first {@code count} points with the
+     * sun at its own elevation, whether or not the point counts as shaded.
+     */
+    static double[] shadowIntensity(double[] elevation, double[] dist, double[] sunElevationDeg, int count) {
+        int n = elevation.length;
+        double[] intensity = new double[count];
+        boolean[] unused = new boolean[count];
+        parallelFor(count, SHADOW_POINTS_PER_TASK, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double radians = Math.toRadians(sunElevationDeg[i]);
+                intensity[i] = shadow(elevation, dist, n, i, Math.tan(radians), Math.sin(radians), unused, i);
+            }
+        });
+        return intensity;
+    }
+
+    private static double shadow(double[] elevation, double[] dist, int n, int i, double tanSun, double sinSun,
+            boolean[] shaded, int slot) {
+        double own = elevation[i];
+        double maxShadowHeight = 0.0;
+        boolean inShadow = false;
+        int row = i * n;
+        for (int j = 0; j < n; j++) {
+            if (j == i)
+                continue;
+            double elevationDiff = elevation[j] - own;
+            if (dist[row + j] <= elevationDiff / tanSun) {
+                inShadow |= elevation[j] > own;
+                maxShadowHeight = Math.max(maxShadowHeight, elevationDiff / sinSun);
+            }
+        }
+        shaded[slot] = inShadow;
+        return Math.min(1.0, maxShadowHeight / 100.0);
+    }
+
+    /**
+     * Terrain horizon seen from each point: for each azimuth sector of
+     * {@code sectorDeg} (compass, from north), the highest elevation angle in
+     * degrees of any other point whose bearing falls in that sector.
+     * Row-major {@code n x sectors}; 0 where no point is higher.
+     */
+    static double[] horizonProfiles(double[] lat, double[] lng, double[] elevation, double[] dist, int sectorDeg) {
+        return horizonProfiles(lat, lng, elevation, dist, sectorDeg, lat.length);
+    }
+
+    /**
+     * As above, for the first {@code receivers} points only, against all
+     * points. Row-major {@code receivers x sectors}.
+     */
+    static double[] horizonProfiles(double[] lat, double[] lng, double[] elevation, double[] dist, int sectorDeg,
+            int receivers) {
+        int n = lat.length;
+        int sectors = 360 / sectorDeg;
+        double[] horizon = new double[receivers * sectors];
+        parallelFor(receivers, SHADOW_POINTS_PER_TASK, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double cosLat = Math.cos(Math.toRadians(lat[i]));
+                for (int j = 0; j < n; j++) {
+                    double rise = elevation[j] - elevation[i];
+                    if (j == i || rise <= 0 || dist[i * n + j] <= 0)
+                        continue;
+                    double bearing = Math.toDegrees(Math.atan2((lng[j] - lng[i]) * cosLat, lat[j] - lat[i]));
+                    if (bearing < 0)
+                        bearing += 360;
+                    int slot = i * sectors + Math.min(sectors - 1, (int) (bearing / sectorDeg));
+                    horizon[slot] = Math.max(horizon[slot], Math.toDegrees(Math.atan2(rise, dist[i * n + j])));
+                }
+            }
+        });
+        return horizon;
+    }
+
+    /**
+     * Index of the nearest reference point for each query point, -1 when
+     * there are no references. Ties go to the earliest reference.
+     */
+    static int[] nearest(double[] lat, double[] lng, double[] refLat, double[] refLng) {
+        int[] nearest = new int[lat.length];
+        parallelFor(lat.length, CELLS_PER_TASK, (from, to) -> {
+            for (int q = from; q < to; q++) {
+                int best = -1;
+                double bestDistance = 0;
+                for (int r = 0; r < refLat.length; r++) {
+                    double d = distance(lat[q], lng[q], refLat[r], refLng[r]);
+                    if (best < 0 || Double.compare(d, bestDistance) < 0) { // as Stream.min: first of equals wins
+                        best = r;
+                        bestDistance = d;
+                    }
+                }
+                nearest[q] = best;
+            }
+        });
+        return nearest;
+    }
+
+    @FunctionalInterface
+    interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /** Runs {@code body} over {@code [0, size)} in blocks of at most {@code grain}. */
+    static void parallelFor(int size, int grain, RangeBody body) {
+        if (size <= grain) {
+            body.run(0, size);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RangeTask(0, size, grain, body));
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.solarterrain.analytics_backend.terrain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * One {@value #SIZE} x {@value #SIZE} block of the global elevation lattice.
+ * Node {@code (r, c)} of tile {@code (row, col)} is lattice node
+ * {@code (row * SIZE + r, col * SIZE + c)}.
+ *
+ * <p>
+ * Values are int16 decimetres (-3276.7 m .. 3276.7 m, enough for Portugal's
+ * 2351 m), so a tile is 512 bytes plus a 16-byte little-endian header: magic,
+ * version, size, tile row, tile col.
+ */
+final class ElevationTile {
+    static final int SIZE = 16;
+    static final int NODES = SIZE * SIZE;
+
+    private static final int MAGIC = 0x31454C54; // "TLE1"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final short MISSING = Short.MIN_VALUE;
+
+    final int row;
+    final int col;
+    private final short[] decimetres;
+
+    private ElevationTile(int row, int col, short[] decimetres) {
+        this.row = row;
+        this.col = col;
+        this.decimetres = decimetres;
+    }
+
+    /** Builds a tile from node elevations in metres, row-major; NaN marks no data. */
+    static ElevationTile of(int row, int col, double[] metres, int offset) {
+        var values = new short[NODES];
+        for (int i = 0; i < NODES; i++) {
+            double m = metres[offset + i];
+            values[i] = Double.isNaN(m) ? MISSING
+                    : (short) Math.max(-Short.MAX_VALUE, Math.min(Short.MAX_VALUE, Math.round(m * 10.0)));
+        }
+        return new ElevationTile(row, col, values);
+    }
+
+    /** Elevation of node {@code (r, c)} in metres, NaN when the API had none. */
+    double node(int r, int c) {
+        short v = decimetres[r * SIZE + c];
+        return v == MISSING ? Double.NaN : v / 10.0;
+    }
+
+    static ElevationTile read(Path file) throws IOException {
+        var buf = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() != HEADER_BYTES + NODES * 2 || buf.getInt() != MAGIC || buf.getShort() != VERSION
+                || buf.getShort() != SIZE)
+            throw new IOException("Not an elevation tile: " + file);
+        int row = buf.getInt();
+        int col = buf.getInt();
+        var values = new short[NODES];
+        buf.asShortBuffer().get(values);
+        return new ElevationTile(row, col, values);
+    }
+
+    /** Writes atomically so a concurrent reader never sees a partial tile. */
+    void write(Path file) throws IOException {
+        var buf = ByteBuffer.allocate(HEADER_BYTES + NODES * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putShort(VERSION).putShort((short) SIZE).putInt(row).putInt(col);
+        buf.asShortBuffer().put(decimetres);
+        Files.createDirectories(file.getParent());
+        var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, buf.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
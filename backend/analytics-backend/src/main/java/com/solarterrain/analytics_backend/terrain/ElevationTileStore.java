@@ -0,0 +1,268 @@
+package com.solarterrain.analytics_backend.terrain;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.solar.GoogleElevationClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Elevation on a global lattice aligned to multiples of {@code step}
+ * degrees, so neighbouring and overlapping parcels share samples.
+ *
+ * <p>
+ * The lattice is fetched in {@link ElevationTile#SIZE}-square tiles, each
+ * exactly one Elevation API request, and kept in an LRU memory cache backed
+ * by one small file per tile under {@code ${solar.data-dir}/elevation}.
+ * Arbitrary points are answered by bilinear interpolation between the four
+ * surrounding nodes, so a polygon near one seen before needs no upstream
+ * call at all. Concurrent requests for the same missing tile share one fetch.
+ *
+ * <p>
+ * A very large, sparsely sampled area would need many whole tiles for few
+ * points; beyond {@code max-tiles-per-request} missing tiles the points are
+ * fetched directly instead and nothing is stored.
+ */
+@Component
+public class ElevationTileStore {
+    private static final Logger log = LoggerFactory.getLogger(ElevationTileStore.class);
+
+    public static final double DEFAULT_STEP_DEG = 0.0003; // ~33 m north-south, close to the source DEM resolution
+
+    private final GoogleElevationClient client;
+    private final Path dir; // null keeps tiles in memory only
+    private final double step;
+    private final int maxTilesPerRequest;
+    private final Map<Long, ElevationTile> cache;
+    private final Map<Long, CompletableFuture<ElevationTile>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ElevationTileStore(GoogleElevationClient client,
+            @Value("${solar.data-dir:./data}") String dataDir,
+            @Value("${solar.elevation.persist:true}") boolean persist,
+            @Value("${solar.elevation.lattice-step-deg:0.0003}") double step,
+            @Value("${solar.elevation.cache-tiles:4096}") int cacheTiles,
+            @Value("${solar.elevation.max-tiles-per-request:32}") int maxTilesPerRequest) {
+        // Tiles of different lattices never mix: the step is part of the path
+        this(client, persist ? Path.of(dataDir, "elevation", String.format(Locale.US, "%.6f", step)) : null, step,
+                cacheTiles, maxTilesPerRequest);
+    }
+
+    public ElevationTileStore(GoogleElevationClient client, Path dir, double step, int cacheTiles,
+            int maxTilesPerRequest) {
+        this.client = client;
+        this.dir = dir;
+        this.step = step;
+        this.maxTilesPerRequest = maxTilesPerRequest;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ElevationTile> eldest) {
+                return size() > cacheTiles;
+            }
+        });
+    }
+
+    /** Memory-only store on the default lattice, for tools that run without a data directory. */
+    public static ElevationTileStore inMemory(GoogleElevationClient client) {
+        return new ElevationTileStore(client, null, DEFAULT_STEP_DEG, 4096, 32);
+    }
+
+    public double step() {
+        return step;
+    }
+
+    /**
+     * Elevations in metres for all points, in input order. Points on tiles
+     * that could not be fetched read 0.0, as with the client itself.
+     */
+    public CompletableFuture<double[]> getElevationsAsync(List<LatLng> points, UpstreamContext context) {
+        if (points.isEmpty())
+            return CompletableFuture.completedFuture(new double[0]);
+
+        var needed = new LinkedHashSet<Long>();
+        for (var p : points) {
+            long i = (long) Math.floor(p.lat() / step);
+            long j = (long) Math.floor(p.lng() / step);
+            for (long di = 0; di <= 1; di++) {
+                for (long dj = 0; dj <= 1; dj++) {
+                    needed.add(tileKey(i + di, j + dj));
+                }
+            }
+        }
+
+        var tiles = new HashMap<Long, CompletableFuture<ElevationTile>>();
+        var missing = new ArrayList<Long>();
+        for (long key : needed) {
+            var tile = cached(key);
+            var pending = tile == null ? inFlight.get(key) : null;
+            if (tile != null)
+                tiles.put(key, CompletableFuture.completedFuture(tile));
+            else if (pending != null)
+                tiles.put(key, pending);
+            else
+                missing.add(key);
+        }
+        if (missing.size() > maxTilesPerRequest)
+            return client.getElevationsAsync(points, context);
+        tiles.putAll(fetchTiles(missing, context));
+
+        return CompletableFuture.allOf(tiles.values().toArray(CompletableFuture[]::new))
+                .handle((done, error) -> interpolate(points, resolved(tiles)));
+    }
+
+    /** Tile from memory, else from disk (promoted to memory), else null. */
+    private ElevationTile cached(long key) {
+        var tile = cache.get(key);
+        if (tile != null || dir == null)
+            return tile;
+        try {
+            tile = ElevationTile.read(tilePath(key));
+            cache.put(key, tile);
+            return tile;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable elevation tile {}: {}", tilePath(key), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the given tiles in one batched call. Tiles another request
+     * started in the meantime are joined instead of fetched twice.
+     */
+    private Map<Long, CompletableFuture<ElevationTile>> fetchTiles(List<Long> keys, UpstreamContext context) {
+        var result = new HashMap<Long, CompletableFuture<ElevationTile>>();
+        var owned = new ArrayList<Long>();
+        for (long key : keys) {
+            var mine = new CompletableFuture<ElevationTile>();
+            var existing = inFlight.putIfAbsent(key, mine);
+            result.put(key, existing != null ? existing : mine);
+            if (existing == null)
+                owned.add(key);
+        }
+        if (owned.isEmpty())
+            return result;
+
+        var nodes = new ArrayList<LatLng>(owned.size() * ElevationTile.NODES);
+        for (long key : owned) {
+            long baseRow = (long) tileRow(key) * ElevationTile.SIZE;
+            long baseCol = (long) tileCol(key) * ElevationTile.SIZE;
+            for (int r = 0; r < ElevationTile.SIZE; r++) {
+                for (int c = 0; c < ElevationTile.SIZE; c++) {
+                    nodes.add(new LatLng((baseRow + r) * step, (baseCol + c) * step));
+                }
+            }
+        }
+        log.debug("Fetching {} elevation tiles ({} nodes)", owned.size(), nodes.size());
+
+        client.getElevationsStrictAsync(nodes, context).whenComplete((values, error) -> {
+            for (int k = 0; k < owned.size(); k++) {
+                long key = owned.get(k);
+                var future = result.get(key);
+                if (error != null) {
+                    inFlight.remove(key, future);
+                    future.completeExceptionally(error);
+                    continue;
+                }
+                var tile = ElevationTile.of(tileRow(key), tileCol(key), values, k * ElevationTile.NODES);
+                cache.put(key, tile);
+                persist(key, tile);
+                inFlight.remove(key, future);
+                future.complete(tile);
+            }
+            if (error != null)
+                log.warn("Elevation tile fetch failed: {}", error.getMessage());
+        });
+        return result;
+    }
+
+    private void persist(long key, ElevationTile tile) {
+        if (dir == null)
+            return;
+        try {
+            tile.write(tilePath(key));
+        } catch (IOException e) {
+            log.warn("Could not persist elevation tile {}: {}", tilePath(key), e.getMessage());
+        }
+    }
+
+    private static Map<Long, ElevationTile> resolved(Map<Long, CompletableFuture<ElevationTile>> tiles) {
+        var resolved = new HashMap<Long, ElevationTile>(tiles.size() * 2);
+        tiles.forEach((key, future) -> {
+            if (!future.isCompletedExceptionally())
+                resolved.put(key, future.join());
+        });
+        return resolved;
+    }
+
+    private double[] interpolate(List<LatLng> points, Map<Long, ElevationTile> tiles) {
+        double[] elevations = new double[points.size()];
+        for (int n = 0; n < elevations.length; n++) {
+            double y = points.get(n).lat() / step;
+            double x = points.get(n).lng() / step;
+            long i = (long) Math.floor(y);
+            long j = (long) Math.floor(x);
+            double ty = y - i;
+            double tx = x - j;
+
+            // Weighted over the nodes that have data; none at all reads as 0.0
+            double sum = 0, weight = 0;
+            for (int di = 0; di <= 1; di++) {
+                for (int dj = 0; dj <= 1; dj++) {
+                    double value = node(tiles, i + di, j + dj);
+                    if (Double.isNaN(value))
+                        continue;
+                    double w = (di == 0 ? 1 - ty : ty) * (dj == 0 ? 1 - tx : tx);
+                    sum += w * value;
+                    weight += w;
+                }
+            }
+            elevations[n] = weight > 0 ? sum / weight : 0.0;
+        }
+        return elevations;
+    }
+
+    private static double node(Map<Long, ElevationTile> tiles, long i, long j) {
+        var tile = tiles.get(tileKey(i, j));
+        if (tile == null)
+            return Double.NaN;
+        return tile.node((int) Math.floorMod(i, ElevationTile.SIZE), (int) Math.floorMod(j, ElevationTile.SIZE));
+    }
+
+    private Path tilePath(long key) {
+        // One directory per tile row keeps directories small
+        return dir.resolve(Integer.toString(tileRow(key))).resolve(tileCol(key) + ".tile");
+    }
+
+    private static long tileKey(long nodeRow, long nodeCol) {
+        long row = Math.floorDiv(nodeRow, ElevationTile.SIZE);
+        long col = Math.floorDiv(nodeCol, ElevationTile.SIZE);
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    private static int tileRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int tileCol(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,14 @@
+package com.solarterrain.analytics_backend.upstream;
+
+/**
+ * An upstream call was not made because it could not get quota within its
+ * priority's wait budget. Callers treat it like any other upstream failure
+ * and use their fallback.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(UpstreamApi api, UpstreamPriority priority, String reason) {
+        super("Quota for " + api.key() + " not available to " + priority.key() + " call: " + reason, null, false,
+                false);
+    }
+}
@@ -0,0 +1,87 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests: while a call for a key is in
+ * flight, further callers with an equal key join it instead of starting
+ * another, and all of them get its result. The key is forgotten as soon as
+ * the call completes, so nothing is cached beyond the call's lifetime.
+ *
+ * <p>
+ * A call runs with its starter's {@link UpstreamContext}, so a caller only
+ * joins one that serves it at least as well: started at the same priority
+ * (an interactive estimate never waits in a background queue) and with a
+ * deadline no earlier than its own. Otherwise it starts its own call, which
+ * later callers join instead. If a joined call fails for lack of quota or
+ * time, a joiner whose deadline has not passed re-issues it rather than
+ * falling back; other failures reach every caller.
+ *
+ * <p>
+ * Each caller receives its own future: cancelling or completing it does not
+ * affect the others. Results are shared, so they must not be mutated.
+ */
+public final class SingleFlight<K, V> {
+
+    private record FlightKey<K>(K key, UpstreamPriority priority) {
+    }
+
+    private record Flight<V>(UpstreamContext context, CompletableFuture<V> future) {
+    }
+
+    private final Map<FlightKey<K>, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Result of {@code call} for {@code key}, started with {@code context}
+     * unless an equal key is in flight that serves it as well.
+     */
+    public CompletableFuture<V> run(K key, UpstreamContext context, Supplier<CompletableFuture<V>> call) {
+        var flightKey = new FlightKey<>(key, context.priority());
+        var mine = new Flight<V>(context, new CompletableFuture<>());
+        var joined = inFlight.compute(flightKey,
+                (k, existing) -> existing != null && existing.context().outlasts(context) ? existing : mine);
+        if (joined != mine) {
+            coalesced.increment();
+            return joined.future().exceptionallyCompose(error -> lackedQuotaOrTime(error) && !context.expired()
+                    ? run(key, context, call)
+                    : CompletableFuture.failedFuture(error));
+        }
+
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(flightKey, mine);
+            if (error != null)
+                mine.future().completeExceptionally(error);
+            else
+                mine.future().complete(result);
+        });
+        return mine.future().copy();
+    }
+
+    private static boolean lackedQuotaOrTime(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof QuotaExceededException || cause instanceof TimeoutException;
+    }
+
+    /** Calls currently in flight. */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /** Callers that joined a call in flight instead of starting one, since startup. */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,36 @@
+package com.solarterrain.analytics_backend.upstream;
+
+/**
+ * Upstream APIs with their own quota. Defaults follow the published
+ * per-project limits (Google) and per-IP limit (PVGIS) with some headroom;
+ * override with {@code upstream.quota.<api>.requests-per-second} and
+ * {@code upstream.quota.<api>.burst}.
+ */
+public enum UpstreamApi {
+    SOLAR("solar", 10, 25),
+    WEATHER("weather", 10, 20),
+    ELEVATION("elevation", 80, 80),
+    PVGIS("pvgis", 25, 25);
+
+    private final String key;
+    private final double defaultRequestsPerSecond;
+    private final int defaultBurst;
+
+    UpstreamApi(String key, double defaultRequestsPerSecond, int defaultBurst) {
+        this.key = key;
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+        this.defaultBurst = defaultBurst;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    double defaultRequestsPerSecond() {
+        return defaultRequestsPerSecond;
+    }
+
+    int defaultBurst() {
+        return defaultBurst;
+    }
+}
@@ -0,0 +1,75 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import java.time.Duration;
+
+/**
+ * Per-estimate information that travels with every upstream call it makes:
+ * its priority and, optionally, the instant by which the estimate must be
+ * answered. Calls that cannot finish by the deadline fail instead, so the
+ * caller's fallback takes over.
+ */
+public final class UpstreamContext {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final UpstreamContext INTERACTIVE = new UpstreamContext(UpstreamPriority.INTERACTIVE, NO_DEADLINE);
+    private static final UpstreamContext BATCH = new UpstreamContext(UpstreamPriority.BATCH, NO_DEADLINE);
+    private static final UpstreamContext BACKGROUND = new UpstreamContext(UpstreamPriority.BACKGROUND, NO_DEADLINE);
+
+    private final UpstreamPriority priority;
+    private final long deadlineNanos; // System.nanoTime() scale
+
+    private UpstreamContext(UpstreamPriority priority, long deadlineNanos) {
+        this.priority = priority;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static UpstreamContext interactive() {
+        return INTERACTIVE;
+    }
+
+    public static UpstreamContext batch() {
+        return BATCH;
+    }
+
+    public static UpstreamContext background() {
+        return BACKGROUND;
+    }
+
+    public UpstreamPriority priority() {
+        return priority;
+    }
+
+    /**
+     * This context with a deadline {@code budget} from now, or its own
+     * deadline if that is earlier.
+     */
+    public UpstreamContext withBudget(Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        if (hasDeadline() && deadlineNanos - deadline <= 0)
+            return this;
+        return new UpstreamContext(priority, deadline);
+    }
+
+    public boolean hasDeadline() {
+        return deadlineNanos != NO_DEADLINE;
+    }
+
+    /** Time left until the deadline, never negative; {@link Long#MAX_VALUE} without one. */
+    public long remainingNanos() {
+        if (!hasDeadline())
+            return Long.MAX_VALUE;
+        return Math.max(0L, deadlineNanos - System.nanoTime());
+    }
+
+    /** Whether this context's deadline is no earlier than {@code other}'s. */
+    public boolean outlasts(UpstreamContext other) {
+        if (!hasDeadline())
+            return true;
+        return other.hasDeadline() && deadlineNanos - other.deadlineNanos >= 0;
+    }
+
+    public boolean expired() {
+        return hasDeadline() && deadlineNanos - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Shared non-blocking HTTP client for all upstream APIs. Requests are
+ * multiplexed over the JDK client's selector thread, so an in-flight call
+ * holds a socket, not a thread. Bodies are mapped with the application's
+ * {@link ObjectMapper}. A call times out at {@code request-timeout-ms} or
+ * at its {@link UpstreamContext}'s deadline, whichever is first.
+ */
+@Component
+public class UpstreamHttpClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+
+    public UpstreamHttpClient(ObjectMapper objectMapper,
+            @Value("${upstream.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${upstream.http.request-timeout-ms:15000}") long requestTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * GET {@code uri} and map a 2xx JSON body to {@code type}. Any other
+     * status completes the future with {@link UpstreamHttpException}.
+     */
+    public <T> CompletableFuture<T> getJson(URI uri, Class<T> type, UpstreamContext context) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout(context))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return abortable(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()), response -> {
+            if (response.statusCode() / 100 != 2) {
+                throw new UpstreamHttpException(response.statusCode(), uri);
+            }
+            try {
+                return objectMapper.readValue(response.body(), type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * GET {@code uri} and hand over the 2xx body as a stream once the headers
+     * have arrived, for responses too large to buffer. The caller reads and
+     * closes it. Any other status completes the future with
+     * {@link UpstreamHttpException}.
+     */
+    public CompletableFuture<InputStream> getStream(URI uri, UpstreamContext context) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout(context))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return abortable(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()), response -> {
+            if (response.statusCode() / 100 != 2) {
+                try {
+                    response.body().close();
+                } catch (IOException ignored) {
+                    // the status is the error worth reporting
+                }
+                throw new UpstreamHttpException(response.statusCode(), uri);
+            }
+            return response.body();
+        });
+    }
+
+    /** The request timeout, cut to the time left before the context's deadline. */
+    private Duration timeout(UpstreamContext context) {
+        long remainingNanos = context.remainingNanos();
+        return remainingNanos < requestTimeout.toNanos() ? Duration.ofNanos(Math.max(1L, remainingNanos))
+                : requestTimeout;
+    }
+
+    /**
+     * {@code sent} mapped by {@code body}; failing or cancelling the result
+     * first, e.g. when the caller's deadline passes, aborts the exchange.
+     */
+    private static <R, T> CompletableFuture<T> abortable(CompletableFuture<HttpResponse<R>> sent,
+            Function<HttpResponse<R>, T> body) {
+        var mapped = sent.thenApply(body);
+        mapped.whenComplete((result, error) -> {
+            if (error != null)
+                sent.cancel(true);
+        });
+        return mapped;
+    }
+}
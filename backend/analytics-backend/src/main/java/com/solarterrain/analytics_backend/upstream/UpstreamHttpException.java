@@ -0,0 +1,20 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import java.net.URI;
+
+/**
+ * Non-2xx answer from an upstream API.
+ */
+public class UpstreamHttpException extends RuntimeException {
+    private final int statusCode;
+
+    public UpstreamHttpException(int statusCode, URI uri) {
+        super("Upstream returned status " + statusCode + " for " + uri.getScheme() + "://" + uri.getAuthority()
+                + uri.getPath());
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
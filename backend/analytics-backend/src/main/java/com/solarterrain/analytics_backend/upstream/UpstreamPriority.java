@@ -0,0 +1,31 @@
+package com.solarterrain.analytics_backend.upstream;
+
+/**
+ * Scheduling class of an upstream call. Waiting callers are served in this
+ * order, and each class gives up (degrades to its fallback) once its wait
+ * would exceed {@code upstream.quota.<priority>.max-wait-ms}.
+ */
+public enum UpstreamPriority {
+    /** A user is waiting on the response. */
+    INTERACTIVE("interactive", 2_000),
+    /** Bulk work requested by a user, e.g. imports and sweeps. */
+    BATCH("batch", 30_000),
+    /** Work nobody is waiting for, e.g. prefetching and warm-up. */
+    BACKGROUND("background", 300_000);
+
+    private final String key;
+    private final long defaultMaxWaitMillis;
+
+    UpstreamPriority(String key, long defaultMaxWaitMillis) {
+        this.key = key;
+        this.defaultMaxWaitMillis = defaultMaxWaitMillis;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    long defaultMaxWaitMillis() {
+        return defaultMaxWaitMillis;
+    }
+}
@@ -0,0 +1,259 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide token buckets, one per {@link UpstreamApi}, shared by every
+ * concurrent estimate. A call either takes a token immediately or waits in
+ * a priority queue (interactive before batch before background); if its
+ * expected wait exceeds its priority's budget it is refused with
+ * {@link QuotaExceededException} instead of being sent and bouncing off a
+ * 429. An upstream 429 empties the bucket so the burst backs off.
+ *
+ * <p>
+ * Remaining tokens and queue depth are published as the gauges
+ * {@code upstream.quota.remaining} and {@code upstream.quota.queued}, tagged
+ * by {@code api}; refusals count in {@code upstream.quota.degraded}.
+ */
+@Component
+public class UpstreamQuotaManager {
+    private static final Logger log = LoggerFactory.getLogger(UpstreamQuotaManager.class);
+
+    private final Map<UpstreamApi, Bucket> buckets = new EnumMap<>(UpstreamApi.class);
+    private final Map<UpstreamPriority, Long> maxWaitNanos = new EnumMap<>(UpstreamPriority.class);
+    private final int maxQueued;
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+
+    public UpstreamQuotaManager(Environment env, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.maxQueued = env.getProperty("upstream.quota.max-queued", Integer.class, 500);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "upstream-quota");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            long ms = env.getProperty("upstream.quota." + priority.key() + ".max-wait-ms", Long.class,
+                    priority.defaultMaxWaitMillis());
+            maxWaitNanos.put(priority, TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+        for (UpstreamApi api : UpstreamApi.values()) {
+            double rate = env.getProperty("upstream.quota." + api.key() + ".requests-per-second", Double.class,
+                    api.defaultRequestsPerSecond());
+            int burst = env.getProperty("upstream.quota." + api.key() + ".burst", Integer.class, api.defaultBurst());
+            buckets.put(api, new Bucket(api, rate, burst));
+
+            Gauge.builder("upstream.quota.remaining", this, m -> m.remaining(api))
+                    .description("Upstream requests that can be sent right now without queueing")
+                    .tag("api", api.key())
+                    .register(meterRegistry);
+            Gauge.builder("upstream.quota.queued", this, m -> m.queued(api))
+                    .description("Upstream requests waiting for quota")
+                    .tag("api", api.key())
+                    .register(meterRegistry);
+            log.info("Upstream quota {}: {} req/s, burst {}", api.key(), rate, burst);
+        }
+    }
+
+    /**
+     * Runs {@code request} once a token for {@code api} is granted to the
+     * context's priority. The returned future fails with
+     * {@link QuotaExceededException} when no token can be had in time, i.e.
+     * within the priority's wait budget and before the context's deadline,
+     * and with a {@link java.util.concurrent.TimeoutException} when the
+     * response does not arrive by the deadline.
+     */
+    public <T> CompletableFuture<T> call(UpstreamApi api, UpstreamContext context,
+            Supplier<CompletableFuture<T>> request) {
+        var bucket = buckets.get(api);
+        var priority = context.priority();
+        var granted = context.expired() ? bucket.refuse(priority, "deadline passed")
+                : bucket.acquire(priority, Math.min(maxWaitNanos.get(priority), context.remainingNanos()));
+        return granted
+                .thenCompose(ok -> {
+                    var response = request.get();
+                    return context.hasDeadline()
+                            ? response.orTimeout(context.remainingNanos(), TimeUnit.NANOSECONDS)
+                            : response;
+                })
+                .whenComplete((result, error) -> {
+                    if (isThrottled(error)) {
+                        onThrottled(api);
+                    }
+                });
+    }
+
+    public CompletableFuture<Void> acquire(UpstreamApi api, UpstreamPriority priority) {
+        return buckets.get(api).acquire(priority, maxWaitNanos.get(priority));
+    }
+
+    /**
+     * Upstream answered 429: spend the remaining burst so queued callers wait
+     * for fresh tokens.
+     */
+    public void onThrottled(UpstreamApi api) {
+        log.warn("Upstream {} throttled us, draining local bucket", api.key());
+        buckets.get(api).drainTokens();
+    }
+
+    public double remaining(UpstreamApi api) {
+        return buckets.get(api).remaining();
+    }
+
+    public int queued(UpstreamApi api) {
+        return buckets.get(api).queued();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static boolean isThrottled(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof UpstreamHttpException http && http.getStatusCode() == 429;
+    }
+
+    private record Waiter(UpstreamPriority priority, long seq, long deadline, CompletableFuture<Void> future) {
+    }
+
+    private final class Bucket {
+        private final UpstreamApi api;
+        private final double tokensPerNano;
+        private final double capacity;
+        private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+                Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::seq));
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private long seq;
+        private boolean drainScheduled;
+
+        Bucket(UpstreamApi api, double requestsPerSecond, int burst) {
+            this.api = api;
+            this.tokensPerNano = requestsPerSecond / 1e9;
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+
+        CompletableFuture<Void> acquire(UpstreamPriority priority, long maxWait) {
+            long now = System.nanoTime();
+            synchronized (this) {
+                refill(now);
+                if (waiting.isEmpty() && tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                // Everyone queued at our priority or above is served first
+                long ahead = waiting.stream().filter(w -> w.priority().compareTo(priority) <= 0).count();
+                long expectedWait = (long) ((ahead + 1 - tokens) / tokensPerNano);
+                if (expectedWait > maxWait) {
+                    return refuse(priority, "expected wait " + TimeUnit.NANOSECONDS.toMillis(expectedWait) + " ms");
+                }
+                if (waiting.size() >= maxQueued) {
+                    return refuse(priority, "queue full");
+                }
+
+                var waiter = new Waiter(priority, seq++, now + maxWait, new CompletableFuture<>());
+                waiting.add(waiter);
+                scheduleDrain();
+                return waiter.future();
+            }
+        }
+
+        private void drain() {
+            var granted = new ArrayList<Waiter>();
+            var expired = new ArrayList<Waiter>();
+            synchronized (this) {
+                drainScheduled = false;
+                long now = System.nanoTime();
+                refill(now);
+                while (!waiting.isEmpty() && tokens >= 1.0) {
+                    granted.add(waiting.poll());
+                    tokens -= 1.0;
+                }
+                waiting.removeIf(w -> {
+                    boolean late = now - w.deadline() > 0 || w.future().isDone();
+                    if (late)
+                        expired.add(w);
+                    return late;
+                });
+                if (!waiting.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+            // Complete outside the lock: dependents start the HTTP call inline
+            for (Waiter w : granted) {
+                if (!w.future().complete(null)) {
+                    refund();
+                }
+            }
+            for (Waiter w : expired) {
+                meterRegistry.counter("upstream.quota.degraded", "api", api.key(), "priority", w.priority().key())
+                        .increment();
+                w.future().completeExceptionally(new QuotaExceededException(api, w.priority(), "wait budget spent"));
+            }
+        }
+
+        private CompletableFuture<Void> refuse(UpstreamPriority priority, String reason) {
+            Counter.builder("upstream.quota.degraded")
+                    .tag("api", api.key())
+                    .tag("priority", priority.key())
+                    .register(meterRegistry)
+                    .increment();
+            return CompletableFuture.failedFuture(new QuotaExceededException(api, priority, reason));
+        }
+
+        private void scheduleDrain() {
+            if (drainScheduled)
+                return;
+            drainScheduled = true;
+            long delay = tokens >= 1.0 ? 0L : (long) Math.ceil((1.0 - tokens) / tokensPerNano);
+            scheduler.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1.0);
+        }
+
+        synchronized void drainTokens() {
+            refill(System.nanoTime());
+            tokens = Math.min(tokens, 0.0);
+        }
+
+        synchronized double remaining() {
+            refill(System.nanoTime());
+            return Math.max(0.0, Math.floor(tokens));
+        }
+
+        synchronized int queued() {
+            return waiting.size();
+        }
+    }
+}
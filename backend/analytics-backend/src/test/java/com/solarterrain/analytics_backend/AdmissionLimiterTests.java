@@ -0,0 +1,79 @@
+package com.solarterrain.analytics_backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionLimiterTests {
+
+	@Test
+	void freedSlotsGoToWaitingClientsInTurn() {
+		var limiter = new AdmissionLimiter(1, 1, 10, 60_000, 0.5, 10, 3);
+		var running = limiter.acquire("ip:a").join();
+
+		// a floods the queue before b arrives; b is still served second
+		var a1 = limiter.acquire("ip:a");
+		var a2 = limiter.acquire("ip:a");
+		var a3 = limiter.acquire("ip:a");
+		var b1 = limiter.acquire("uid:b");
+		assertNull(limiter.acquire("ip:a"), "per-client queue is full");
+		assertEquals(4, limiter.queued());
+
+		var order = new ArrayList<String>();
+		a1.thenRun(() -> order.add("a1"));
+		a2.thenRun(() -> order.add("a2"));
+		a3.thenRun(() -> order.add("a3"));
+		b1.thenRun(() -> order.add("b1"));
+		// a2 gives up waiting: its turn is skipped
+		assertTrue(a2.cancel(false));
+		assertEquals(3, limiter.queued());
+
+		List<CompletableFuture<AdmissionLimiter.Permit>> served = List.of(a1, b1, a3);
+		running.release(false);
+		for (var ticket : served) {
+			ticket.join().release(false);
+		}
+		assertEquals(List.of("a1", "b1", "a3"), order);
+		assertEquals(0, limiter.inFlight());
+		assertEquals(0, limiter.queued());
+	}
+
+	@Test
+	void limitGrowsUnderFastSaturatedLoadAndBacksOffOnSlowOrFailedRequests() {
+		var limiter = new AdmissionLimiter(2, 2, 4, 60_000, 0.5, 0, 0);
+
+		// Fast requests with the limit in use: +1/limit each
+		for (int i = 0; i < 4; i++) {
+			var first = limiter.acquire("ip:a").join();
+			var second = limiter.acquire("ip:a").join();
+			first.release(false);
+			second.release(false);
+		}
+		assertEquals(3, limiter.limit());
+		// No queue at all: a request over the limit is refused at once
+		var held = new ArrayList<AdmissionLimiter.Permit>();
+		for (int i = 0; i < 3; i++) {
+			held.add(limiter.acquire("ip:a").join());
+		}
+		assertNull(limiter.acquire("ip:b"));
+
+		// Failures halve it, down to the minimum
+		held.forEach(permit -> permit.release(true));
+		assertEquals(2, limiter.limit());
+		assertTrue(limiter.retryAfterSeconds() >= 1);
+
+		// Releasing twice counts once
+		var permit = limiter.acquire("ip:a").join();
+		permit.release(false);
+		permit.release(false);
+		assertEquals(0, limiter.inFlight());
+		assertFalse(limiter.acquire("ip:a").isCompletedExceptionally());
+	}
+}
@@ -0,0 +1,88 @@
+package com.solarterrain.analytics_backend.climate;
+
+import com.solarterrain.analytics_backend.climate.ClimatologyGrid.Variable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClimatologyGridTests {
+
+	@Test
+	void bilinearSampleBetweenNodes() {
+		int perNode = ClimatologyGrid.MONTHS * ClimatologyGrid.VARIABLES;
+		double[] values = new double[2 * 2 * perNode];
+		// Temperature in January: 10 / 20 on the bottom row, 30 / 40 on the top row
+		double[] corners = { 10, 20, 30, 40 };
+		for (int n = 0; n < 4; n++) {
+			values[n * perNode + ClimatologyGrid.index(1, Variable.TEMPERATURE)] = corners[n];
+		}
+		var grid = ClimatologyGrid.create(38.0, -8.0, 1.0, 2, 2, values);
+
+		double[] mid = grid.sample(38.5, -7.5);
+		assertEquals(25.0, mid[ClimatologyGrid.index(1, Variable.TEMPERATURE)], 1e-9);
+		double[] corner = grid.sample(39.0, -8.0);
+		assertEquals(30.0, corner[ClimatologyGrid.index(1, Variable.TEMPERATURE)], 1e-9);
+	}
+
+	@Test
+	void writtenFileMapsBackIdentically(@TempDir Path dir) throws Exception {
+		var stations = """
+				station,lat,lng,month,temperature_c,sunshine_hours,humidity_pct,rainy_days
+				""" + station("North", 41.8, -6.7, 5, 110) + station("South", 37.0, -8.0, 15, 180);
+		var grid = ClimatologyImporter.importStations(new StringReader(stations), 0.5);
+		Path file = dir.resolve("grid.bin");
+		grid.write(file);
+
+		var mapped = ClimatologyGrid.open(file);
+		assertEquals(grid.rows(), mapped.rows());
+		assertArrayEquals(grid.sample(39.3, -7.7), mapped.sample(39.3, -7.7), 1e-12);
+	}
+
+	@Test
+	void bundledNormalsDistinguishNorthFromSouth() {
+		var store = ClimatologyStore.fromBundledStations();
+		var braganca = store.lookup(41.80, -6.74);
+		var faro = store.lookup(37.02, -7.97);
+
+		assertTrue(braganca.get(1, Variable.TEMPERATURE) < faro.get(1, Variable.TEMPERATURE) - 5);
+		assertTrue(braganca.get(12, Variable.SUN_HOURS) < faro.get(12, Variable.SUN_HOURS));
+		assertTrue(braganca.get(1, Variable.EFFICIENCY) < faro.get(1, Variable.EFFICIENCY));
+		assertNull(store.lookup(32.65, -16.9)); // Madeira is outside the grid
+	}
+
+	@Test
+	void gridBuiltFromOtherInputsIsRebuilt(@TempDir Path dataDir) throws Exception {
+		// A grid left behind by another version: tiny, and without the bundled normals' fingerprint
+		Path file = dataDir.resolve("climatology").resolve(ClimatologyStore.GRID_FILE);
+		int perNode = ClimatologyGrid.MONTHS * ClimatologyGrid.VARIABLES;
+		ClimatologyGrid.create(38.0, -8.0, 1.0, 2, 2, new double[4 * perNode]).write(file);
+
+		var store = new ClimatologyStore(dataDir.toString());
+		assertNotNull(store.lookup(41.80, -6.74));
+		long source = ClimatologyGrid.open(file).source();
+		assertNotEquals(0L, source);
+
+		// Up to date: reused as is
+		new ClimatologyStore(dataDir.toString());
+		assertEquals(source, ClimatologyGrid.open(file).source());
+		assertNotEquals(source, ClimatologyStore.fingerprint(new byte[0], ClimatologyImporter.DEFAULT_STEP));
+	}
+
+	private static String station(String name, double lat, double lng, double temperature, double sunshine) {
+		var csv = new StringBuilder();
+		for (int month = 1; month <= 12; month++) {
+			csv.append(name).append(',').append(lat).append(',').append(lng).append(',').append(month).append(',')
+					.append(temperature + month).append(',').append(sunshine + 10 * month).append(",70,8\n");
+		}
+		return csv.toString();
+	}
+}
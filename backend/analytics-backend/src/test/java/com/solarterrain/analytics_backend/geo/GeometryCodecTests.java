@@ -0,0 +1,58 @@
+package com.solarterrain.analytics_backend.geo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeometryCodecTests {
+
+	private static final List<LatLng> PARCEL = List.of(new LatLng(38.7223, -9.1393), new LatLng(38.72235, -9.1381),
+			new LatLng(38.7215123, -9.13805), new LatLng(38.7212, -9.1392));
+
+	@Test
+	void roundTripsAtSevenDecimals() {
+		assertEquals(PARCEL, GeometryCodec.decode(GeometryCodec.encode(PARCEL)));
+
+		var rounded = GeometryCodec.decode(GeometryCodec.encode(List.of(new LatLng(-0.123456789, 179.99999999))));
+		assertEquals(-0.1234568, rounded.get(0).lat(), 1e-12);
+		assertEquals(180.0, rounded.get(0).lng(), 1e-12);
+	}
+
+	@Test
+	void geoJsonIsClosedAndExact() throws Exception {
+		String json = GeometryCodec.toGeoJson(GeometryCodec.encode(PARCEL));
+		assertEquals("{\"type\":\"Polygon\",\"coordinates\":[[[-9.1393,38.7223],[-9.1381,38.72235],"
+				+ "[-9.13805,38.7215123],[-9.1392,38.7212],[-9.1393,38.7223]]]}", json);
+
+		var tree = new ObjectMapper().readTree(GeometryCodec.toGeoJson(GeometryCodec.encode(
+				List.of(new LatLng(0.0000001, -0.05), new LatLng(1, 0), new LatLng(0, 1)))));
+		assertEquals(1e-7, tree.at("/coordinates/0/0/1").asDouble(), 0);
+		assertEquals(-0.05, tree.at("/coordinates/0/0/0").asDouble(), 0);
+	}
+
+	@Test
+	void largeParcelsStayCompact() {
+		// A 5000-vertex ring ~1 m between vertices, far past the old 8000-character column
+		var ring = new ArrayList<LatLng>();
+		for (int i = 0; i < 5000; i++) {
+			double a = 2 * Math.PI * i / 5000;
+			ring.add(new LatLng(39.5 + 0.007 * Math.sin(a), -8.0 + 0.009 * Math.cos(a)));
+		}
+		byte[] encoded = GeometryCodec.encode(ring);
+		assertTrue(encoded.length < 5000 * 6, "bytes " + encoded.length);
+		assertTrue(GeometryCodec.toGeoJson(encoded).length() > 8000);
+		assertEquals(5000, GeometryCodec.decode(encoded).size());
+	}
+
+	@Test
+	void rejectsUnknownEncodings() {
+		assertThrows(IllegalArgumentException.class, () -> GeometryCodec.decode(new byte[] { 9, 1 }));
+		assertThrows(IllegalArgumentException.class, () -> GeometryCodec.decode(new byte[] { 1, 2, (byte) 0x80 }));
+	}
+}
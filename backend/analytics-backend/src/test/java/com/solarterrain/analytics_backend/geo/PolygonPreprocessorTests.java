@@ -0,0 +1,71 @@
+package com.solarterrain.analytics_backend.geo;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolygonPreprocessorTests {
+
+	private static boolean isCcw(List<LatLng> ring) {
+		var coords = new Coordinate[ring.size() + 1];
+		for (int i = 0; i < ring.size(); i++)
+			coords[i] = new Coordinate(ring.get(i).lng(), ring.get(i).lat());
+		coords[ring.size()] = coords[0];
+		return Orientation.isCCW(coords);
+	}
+
+	@Test
+	void dropsDuplicatesAndOrientsCounterClockwise() {
+		// Clockwise, with a repeated vertex and an explicit closing point
+		var input = List.of(new LatLng(38.70, -9.10), new LatLng(38.71, -9.10), new LatLng(38.71, -9.10),
+				new LatLng(38.71, -9.09), new LatLng(38.70, -9.09), new LatLng(38.70, -9.10));
+		var result = PolygonPreprocessor.prepare(input, 0, 0);
+
+		assertEquals(4, result.exact().size());
+		assertFalse(result.repaired());
+		assertEquals(6, result.inputVertices());
+		assertTrue(isCcw(result.exact()));
+	}
+
+	@Test
+	void repairsSelfIntersection() {
+		// Bow-tie: the larger lobe is kept
+		var input = List.of(new LatLng(38.70, -9.10), new LatLng(38.72, -9.08), new LatLng(38.72, -9.10),
+				new LatLng(38.70, -9.09));
+		var result = PolygonPreprocessor.prepare(input, 0, 0);
+
+		assertTrue(result.repaired());
+		assertTrue(isCcw(result.exact()));
+		assertTrue(result.exact().size() >= 3);
+	}
+
+	@Test
+	void simplifiesDenseRingsForSamplingOnly() {
+		var input = new ArrayList<LatLng>();
+		for (int i = 0; i < 5000; i++) {
+			double a = 2 * Math.PI * i / 5000;
+			input.add(new LatLng(39.5 + 0.004 * Math.sin(a), -8.0 + 0.005 * Math.cos(a)));
+		}
+		var result = PolygonPreprocessor.prepare(input, 0.5, 0.001);
+
+		assertEquals(5000, result.exact().size());
+		assertTrue(result.sampling().size() < 200, "sampling vertices " + result.sampling().size());
+		assertTrue(isCcw(result.sampling()));
+	}
+
+	@Test
+	void rejectsDegeneratePolygons() {
+		var line = List.of(new LatLng(38.70, -9.10), new LatLng(38.70, -9.10), new LatLng(38.71, -9.10));
+		assertThrows(IllegalArgumentException.class, () -> PolygonPreprocessor.prepare(line, 0, 0));
+		var collinear = List.of(new LatLng(38.70, -9.10), new LatLng(38.71, -9.10), new LatLng(38.72, -9.10));
+		assertThrows(IllegalArgumentException.class, () -> PolygonPreprocessor.prepare(collinear, 0, 0));
+	}
+}
@@ -0,0 +1,38 @@
+package com.solarterrain.analytics_backend.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolygonTilerTests {
+
+	@Test
+	void tilesCoverThePolygonExactly() {
+		// ~1 km x ~1 km
+		var square = List.of(new LatLng(39.5, -8.0), new LatLng(39.5, -7.98836), new LatLng(39.509, -7.98836),
+				new LatLng(39.509, -8.0));
+		var pieces = PolygonTiler.tile(square, 250);
+
+		assertTrue(pieces.size() >= 16 && pieces.size() <= 25, "pieces " + pieces.size());
+		assertEquals(1.0, pieces.stream().mapToDouble(PolygonTiler.Piece::areaFraction).sum(), 1e-9);
+	}
+
+	@Test
+	void concaveTileYieldsOnePiecePerPart() {
+		// A U open to the north, ~200 m across: one tile holds both arms
+		var u = List.of(new LatLng(39.5, -8.0), new LatLng(39.5, -7.9977), new LatLng(39.5018, -7.9977),
+				new LatLng(39.5018, -7.9983), new LatLng(39.5006, -7.9983), new LatLng(39.5006, -7.9994),
+				new LatLng(39.5018, -7.9994), new LatLng(39.5018, -8.0));
+		var whole = PolygonTiler.tile(u, 1000);
+		assertEquals(1, whole.size());
+
+		// Tiles ~70 m tall: the top row cuts through both arms separately
+		var pieces = PolygonTiler.tile(u, 70);
+		assertEquals(1.0, pieces.stream().mapToDouble(PolygonTiler.Piece::areaFraction).sum(), 1e-9);
+		assertTrue(pieces.stream().allMatch(p -> p.ring().size() >= 3));
+		assertTrue(pieces.size() > whole.size());
+	}
+}
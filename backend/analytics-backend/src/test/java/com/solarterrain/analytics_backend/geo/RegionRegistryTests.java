@@ -0,0 +1,64 @@
+package com.solarterrain.analytics_backend.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionRegistryTests {
+
+	private final RegionRegistry registry = RegionRegistry.bundled();
+
+	private String regionAt(double lat, double lng) {
+		return registry.regionAt(lat, lng).map(RegionRegistry.Region::id).orElse(null);
+	}
+
+	@Test
+	void bundledBoundariesCoverTheIslandsAndExcludeSpainAndTheSea() {
+		assertEquals("mainland", regionAt(38.571, -7.912)); // Évora
+		assertEquals("mainland", regionAt(41.15, -8.61)); // Porto
+		assertEquals("mainland", regionAt(37.02, -7.93)); // Faro, on the coast
+		assertEquals("madeira", regionAt(32.65, -16.91)); // Funchal
+		assertEquals("madeira", regionAt(33.07, -16.34)); // Porto Santo
+		assertEquals("azores", regionAt(37.74, -25.67)); // Ponta Delgada
+		assertEquals("azores", regionAt(39.45, -31.20)); // Flores
+
+		// Inside the old continental box, but Spain or open sea
+		assertNull(regionAt(38.88, -6.97)); // Badajoz
+		assertNull(regionAt(42.23, -8.72)); // Vigo
+		assertNull(regionAt(37.50, -9.30)); // off the Alentejo coast
+		assertNull(regionAt(38.0, -20.0)); // between the archipelagos
+
+		var acrossTheBorder = List.of(new LatLng(38.86, -7.20), new LatLng(38.86, -6.95), new LatLng(38.90, -6.95),
+				new LatLng(38.90, -7.20));
+		assertTrue(registry.regionOf(acrossTheBorder).isEmpty());
+		var parcel = List.of(new LatLng(32.66, -16.93), new LatLng(32.66, -16.92), new LatLng(32.67, -16.92));
+		assertEquals("madeira", registry.regionOf(parcel).orElseThrow().id());
+	}
+
+	@Test
+	void regionsCarryTheirProvidersAndDefaults() throws Exception {
+		var geoJson = """
+				{"type":"FeatureCollection","features":[{"type":"Feature",
+				"properties":{"id":"test","name":"Test","providers":["pvgis"],"defaults":{"tiltDeg":25}},
+				"geometry":{"type":"Polygon","coordinates":[[[0,0],[1,0],[1,1],[0,1],[0,0]]]}}]}""";
+		var custom = new RegionRegistry(new ByteArrayInputStream(geoJson.getBytes(StandardCharsets.UTF_8)), 0);
+
+		var region = custom.regionAt(0.5, 0.5).orElseThrow();
+		assertTrue(region.has("pvgis"));
+		assertEquals(List.of(RegionRegistry.GOOGLE_SOLAR, RegionRegistry.GOOGLE_ELEVATION,
+				RegionRegistry.CLIMATOLOGY_GRID, RegionRegistry.PVGIS_YIELD_GRID), region.absentProviders());
+		assertEquals(25.0, region.defaults().tiltDeg());
+		assertNull(region.defaults().usableFraction());
+		assertTrue(custom.regionAt(1.5, 0.5).isEmpty());
+
+		var azores = registry.regions().stream().filter(r -> r.id().equals("azores")).findFirst().orElseThrow();
+		assertTrue(azores.defaults().fallbackKWhPerKWp() < 1400);
+		assertTrue(azores.defaults().ghiKWhPerM2() < 1650);
+	}
+}
@@ -0,0 +1,70 @@
+package com.solarterrain.analytics_backend.pv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PvSimulationEngineTests {
+
+	// Lisbon-like normals: daily sunshine hours and mean temperature
+	private static final double[] SUN_HOURS = { 4.6, 5.6, 6.7, 7.8, 9.4, 10.1, 11.1, 10.6, 8.4, 6.5, 5.1, 4.4 };
+	private static final double[] TEMPERATURE = { 11.6, 12.7, 14.9, 15.9, 18.2, 21.4, 23.2, 23.6, 22.4, 19.3, 15.3,
+			12.8 };
+
+	private final PvSimulationEngine engine = new PvSimulationEngine();
+	private final SiteIrradiance lisbon = engine.prepare(38.72, SUN_HOURS, TEMPERATURE);
+
+	@Test
+	void irradiationAndYieldAreInPortugueseRange() {
+		// Published GHI for Lisbon is about 1700-1800 kWh/m2, PVGIS yield for an optimal fixed system ~1500 kWh/kWp
+		assertTrue(lisbon.annualGhiKWhM2() > 1550 && lisbon.annualGhiKWhM2() < 1950, "GHI " + lisbon.annualGhiKWhM2());
+
+		var result = engine.simulate(lisbon, PvSystemConfig.of(1.0, 33, 180, 0.14));
+		assertTrue(result.annualEnergyKWh() > 1300 && result.annualEnergyKWh() < 1750,
+				"yield " + result.annualEnergyKWh());
+		assertTrue(result.performanceRatio() > 0.7 && result.performanceRatio() < 0.85);
+
+		double monthlySum = 0;
+		for (double kwh : result.monthlyEnergyKWh()) {
+			monthlySum += kwh;
+		}
+		assertEquals(result.annualEnergyKWh(), monthlySum, 1e-6);
+		assertTrue(result.monthlyEnergyKWh()[6] > result.monthlyEnergyKWh()[11], "July beats December");
+	}
+
+	@Test
+	void southFacingTiltBeatsEastAndFlat() {
+		double south = engine.simulate(lisbon, PvSystemConfig.of(1.0, 33, 180, 0.14)).annualEnergyKWh();
+		double east = engine.simulate(lisbon, PvSystemConfig.of(1.0, 33, 90, 0.14)).annualEnergyKWh();
+		double flat = engine.simulate(lisbon, PvSystemConfig.of(1.0, 0, 180, 0.14)).annualEnergyKWh();
+		double north = engine.simulate(lisbon, PvSystemConfig.of(1.0, 33, 0, 0.14)).annualEnergyKWh();
+
+		assertTrue(south > flat && flat > east && east > north);
+	}
+
+	@Test
+	void undersizedInverterClips() {
+		var base = PvSystemConfig.of(10.0, 33, 180, 0.14);
+		var undersized = new PvSystemConfig(10.0, 33, 180, 0.14, 0.96, 2.0, -0.004, 45.0, 0.2);
+
+		var normal = engine.simulate(lisbon, base);
+		var clipped = engine.simulate(lisbon, undersized);
+		assertTrue(clipped.clippedEnergyKWh() > normal.clippedEnergyKWh());
+		assertEquals(normal.annualEnergyKWh() + normal.clippedEnergyKWh(),
+				clipped.annualEnergyKWh() + clipped.clippedEnergyKWh(), 1e-6);
+	}
+
+	@Test
+	void fullBeamLossLeavesOnlyDiffuse() {
+		var config = PvSystemConfig.of(1.0, 33, 180, 0.14);
+		float[] shaded = new float[lisbon.hours()];
+		Arrays.fill(shaded, 1f);
+
+		double open = engine.simulate(lisbon, config).annualEnergyKWh();
+		double blocked = engine.simulate(lisbon, config, shaded).annualEnergyKWh();
+		assertTrue(blocked < open * 0.6 && blocked > 0);
+	}
+}
@@ -0,0 +1,83 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.PARCEL;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EstimateDeadlineTests {
+
+	// Slow terrain: answers after a second
+	private final GoogleElevationClient elevation = new GoogleElevationClient(null, null) {
+		@Override
+		public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points, UpstreamContext context) {
+			return CompletableFuture.supplyAsync(() -> points.stream().mapToDouble(p -> 200.0).toArray(),
+					CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS));
+		}
+	};
+
+	private SolarEstimationService service() {
+		var service = EstimationFixtures.service(noSamples(), elevation);
+		service.stageCacheSize = 8;
+		service.stageMaxAgeS = 600;
+		service.computeReserveMs = 50;
+		service.maxSweepConfigurations = 10;
+		return service;
+	}
+
+	private static UpstreamContext budget(long ms) {
+		return UpstreamContext.interactive().withBudget(Duration.ofMillis(ms));
+	}
+
+	@Test
+	void stagesStillPendingAtTheDeadlineFallBackAndAreReported() throws Exception {
+		var service = service();
+		long start = System.nanoTime();
+		var degraded = service.estimateAsync(PARCEL, budget(300)).get(5, TimeUnit.SECONDS);
+
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		assertEquals(List.of(SolarEstimationService.SHADING), degraded.degradedComponents());
+		assertTrue(degraded.annualEnergyKWh() > 0);
+
+		// The fallback was not cached: given time for the terrain, the estimate is complete
+		var complete = service.estimateAsync(PARCEL, budget(5_000)).get(5, TimeUnit.SECONDS);
+		assertEquals(List.of(), complete.degradedComponents());
+	}
+
+	@Test
+	void sweepsAndOrientationSearchesAnswerByTheDeadlineToo() throws Exception {
+		var sweep = service().sweepAsync(PARCEL, List.of(EstimateOptions.DEFAULTS), budget(300))
+				.get(5, TimeUnit.SECONDS);
+		assertEquals(List.of(SolarEstimationService.SHADING), sweep.degradedComponents());
+
+		var optimizer = new OrientationOptimizer(service());
+		optimizer.tiltStepDeg = 1;
+		optimizer.azimuthStepDeg = 1;
+		optimizer.minStepDeg = 0.01;
+		optimizer.timeBudgetMs = 60_000;
+		long start = System.nanoTime();
+		var result = optimizer.optimizeAsync(PARCEL, EstimateOptions.DEFAULTS, budget(600)).get(5, TimeUnit.SECONDS);
+
+		// The search stops at the request's deadline, well inside its own budget
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		assertEquals(List.of(SolarEstimationService.SHADING), result.degradedComponents());
+		assertFalse(result.converged());
+	}
+
+	@Test
+	void withoutADeadlineNothingIsDegraded() {
+		var estimate = service().estimate(PARCEL);
+
+		assertEquals(List.of(), estimate.degradedComponents());
+	}
+}
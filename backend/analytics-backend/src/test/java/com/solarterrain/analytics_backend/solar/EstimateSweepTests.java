@@ -0,0 +1,122 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.RestExceptionHandler;
+import com.solarterrain.analytics_backend.geo.SweepRequest;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.PARCEL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EstimateSweepTests {
+
+	private final AtomicInteger solarCalls = new AtomicInteger();
+
+	// A ridge to the south, so terrain shading depends on the orientation
+	private final GoogleElevationClient ridge = EstimationFixtures.terrain(p -> p.lat() < 38.572 ? 240.0 : 200.0);
+
+	private final GoogleSolarClient countingSolar = new GoogleSolarClient(null, null) {
+		@Override
+		public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude,
+				UpstreamContext context) {
+			solarCalls.incrementAndGet();
+			return CompletableFuture.completedFuture(null);
+		}
+	};
+
+	private SolarEstimationService service(int stageCacheSize) {
+		var service = EstimationFixtures.service(countingSolar, ridge);
+		service.stageCacheSize = stageCacheSize;
+		service.stageMaxAgeS = 600;
+		service.maxSweepConfigurations = 100;
+		return service;
+	}
+
+	private static SolarEstimate estimate(SolarEstimationService service, EstimateOptions options) {
+		return service.estimateAsync(PARCEL, options, UpstreamContext.interactive()).join();
+	}
+
+	@Test
+	void sweepRowsMatchIndividualEstimates() {
+		var service = service(0);
+		var configurations = new ArrayList<EstimateOptions>();
+		for (double tilt : new double[] { 10, 35 })
+			for (double azimuth : new double[] { 90, 180 })
+				for (Double pr : new Double[] { null, 0.8 })
+					configurations.add(new EstimateOptions(0.21, pr, null, 0.6, tilt, azimuth));
+
+		var sweep = service.sweepAsync(PARCEL, configurations, UpstreamContext.interactive()).join();
+
+		assertEquals(configurations.size(), sweep.configurations().size());
+		for (int i = 0; i < configurations.size(); i++) {
+			var row = sweep.configurations().get(i);
+			var single = estimate(service, configurations.get(i));
+			assertSame(configurations.get(i), row.options());
+			assertEquals(single.assumedSystemKWp(), row.systemKWp(), 1e-9);
+			assertEquals(single.annualEnergyKWh(), row.annualEnergyKWh(), single.annualEnergyKWh() * 1e-9);
+			assertEquals(single.performanceRatio(), row.performanceRatio(), 1e-9);
+			assertTrue(row.annualEnergyKWh() <= sweep.configurations().get(sweep.best()).annualEnergyKWh());
+		}
+		assertEquals(180.0, sweep.configurations().get(sweep.best()).azimuthDeg());
+	}
+
+	@Test
+	void optionsScaleTheSystemAndOverrideTheLossChain() {
+		var service = service(0);
+		var base = estimate(service, new EstimateOptions(0.20, null, null, null, null, null));
+		var denser = estimate(service, new EstimateOptions(0.20, null, 0.25, 0.35, null, null));
+		var perfect = estimate(service, new EstimateOptions(0.20, 1.0, null, null, null, null));
+
+		assertEquals(base.areaM2() * 0.7 * 0.20, base.assumedSystemKWp(), 1e-9);
+		// dcPowerPerM2 wins over efficiency; half the area at 1.25x density
+		assertEquals(base.areaM2() * 0.35 * 0.25, denser.assumedSystemKWp(), 1e-9);
+		assertEquals(base.annualEnergyKWh() * 0.5 * 1.25, denser.annualEnergyKWh(), base.annualEnergyKWh() * 1e-9);
+		// A lossless system still loses its terrain shading
+		assertTrue(perfect.annualEnergyKWh() > base.annualEnergyKWh());
+		assertTrue(perfect.performanceRatio() <= 1.0 + 1e-9);
+		assertTrue(perfect.performanceRatio() > base.performanceRatio());
+		assertThrows(IllegalArgumentException.class, () -> new EstimateOptions(1.5, null, null, null, null, null));
+	}
+
+	@Test
+	void stagesAreComputedOnceAcrossEstimatesAndSweeps() {
+		var service = service(4);
+		estimate(service, EstimateOptions.DEFAULTS);
+		int callsPerStages = solarCalls.get();
+		assertTrue(callsPerStages > 0);
+
+		estimate(service, new EstimateOptions(null, 0.75, null, null, 20.0, 200.0));
+		var flat = new EstimateOptions(null, null, null, null, 0.0, 0.0);
+		service.sweepAsync(PARCEL, List.of(EstimateOptions.DEFAULTS, flat), UpstreamContext.interactive()).join();
+		assertEquals(callsPerStages, solarCalls.get());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> service.sweepAsync(PARCEL, List.of(), UpstreamContext.interactive()));
+	}
+
+	@Test
+	void oversizedSweepsAreRefusedBeforeTheirCombinationsAreBuilt() {
+		var service = service(0);
+		var hundred = IntStream.range(0, 100).mapToObj(i -> 0.1 + i * 0.001).toList();
+		// 10^10 combinations: refused on the product of the list sizes, without allocating them
+		var huge = new SweepRequest(PARCEL, hundred, hundred, hundred, hundred, hundred, null);
+		var refused = assertThrows(IllegalArgumentException.class, () -> service.sweepConfigurations(huge));
+		assertEquals(HttpStatus.BAD_REQUEST, new RestExceptionHandler().handleBadRequest(refused).getStatusCode());
+
+		var small = service.sweepConfigurations(new SweepRequest(PARCEL, List.of(0.2, 0.22), null, null,
+				List.of(10.0, 20.0, 30.0), List.of(), null));
+		assertEquals(6, small.size());
+		assertEquals(new EstimateOptions(0.2, null, null, null, 10.0, null), small.get(0));
+		assertEquals(new EstimateOptions(0.22, null, null, null, 30.0, null), small.get(5));
+	}
+}
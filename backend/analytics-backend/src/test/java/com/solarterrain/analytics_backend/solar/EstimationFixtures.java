@@ -0,0 +1,71 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.climate.ClimatologyStore;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.pv.PvSimulationEngine;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToDoubleFunction;
+
+// An estimation service over stubbed upstream clients, for tests that run the whole pipeline
+final class EstimationFixtures {
+
+	// About 7 ha near Évora
+	static final List<LatLng> PARCEL = List.of(new LatLng(38.571, -7.912), new LatLng(38.571, -7.909),
+			new LatLng(38.5735, -7.909), new LatLng(38.5735, -7.912));
+
+	private EstimationFixtures() {
+	}
+
+	/** Terrain answered at once from {@code height}. */
+	static GoogleElevationClient terrain(ToDoubleFunction<LatLng> height) {
+		return new GoogleElevationClient(null, null) {
+			@Override
+			public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points,
+					UpstreamContext context) {
+				return CompletableFuture.completedFuture(points.stream().mapToDouble(height).toArray());
+			}
+		};
+	}
+
+	static GoogleElevationClient flat() {
+		return terrain(p -> 200.0);
+	}
+
+	/** Google Solar with no coverage anywhere, so estimates use the climatology. */
+	static GoogleSolarClient noSamples() {
+		return new GoogleSolarClient(null, null) {
+			@Override
+			public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude,
+					UpstreamContext context) {
+				return CompletableFuture.completedFuture(null);
+			}
+		};
+	}
+
+	/** Shading on a 10x10 grid over {@code elevation}. */
+	static EnhancedShadingService shading(GoogleElevationClient elevation) {
+		var shading = new EnhancedShadingService(ElevationTileStore.inMemory(elevation));
+		shading.gridSize = 10;
+		return shading;
+	}
+
+	/** The service with the application.yml defaults and a 10x10 shading grid. */
+	static SolarEstimationService service(GoogleSolarClient solar, GoogleElevationClient elevation) {
+		var service = new SolarEstimationService(solar,
+				new GoogleWeatherClient(null, null, ClimatologyStore.fromBundledStations()), shading(elevation),
+				new PvSimulationEngine(), RegionRegistry.bundled());
+		service.defaultPanelEfficiency = 0.20;
+		service.defaultSystemLosses = 0.14;
+		service.defaultTiltDeg = 35;
+		service.defaultAzimuthDeg = 180;
+		service.defaultUsableFraction = 0.7;
+		service.simplifyToleranceM = 0.5;
+		service.simplifyRelativeTolerance = 0.001;
+		return service;
+	}
+}
@@ -0,0 +1,101 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.flat;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EstimationSessionHandlerTests {
+
+	private final List<String> sent = new ArrayList<>();
+
+	private EstimationSessionHandler handler() {
+		var tiles = ElevationTileStore.inMemory(flat());
+		var handler = new EstimationSessionHandler(EstimationFixtures.service(noSamples(), flat()), noSamples(),
+				tiles, new EnhancedShadingService(tiles), new ObjectMapper());
+		handler.maxPerClient = 2;
+		handler.messagesPerSecond = 0.001;
+		handler.messageBurst = 2;
+		return handler;
+	}
+
+	/** Handshake from {@code ip}; the connection's attributes when admitted, else null. */
+	private static Map<String, Object> handshake(EstimationSessionHandler handler, String ip) {
+		var request = new MockHttpServletRequest("GET", "/ws/solar/estimate");
+		request.setRemoteAddr(ip);
+		var response = new MockHttpServletResponse();
+		var attributes = new HashMap<String, Object>();
+		boolean admitted = handler.beforeHandshake(new ServletServerHttpRequest(request),
+				new ServletServerHttpResponse(response), handler, attributes);
+		if (!admitted) {
+			assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+			return null;
+		}
+		return attributes;
+	}
+
+	private WebSocketSession socket(String id, Map<String, Object> attributes) throws Exception {
+		var socket = mock(WebSocketSession.class);
+		when(socket.getId()).thenReturn(id);
+		when(socket.getAttributes()).thenReturn(attributes);
+		when(socket.isOpen()).thenReturn(true);
+		doAnswer(call -> sent.add(call.<TextMessage>getArgument(0).getPayload())).when(socket).sendMessage(any());
+		return socket;
+	}
+
+	@Test
+	void eachClientHoldsAtMostItsShareOfConnections() throws Exception {
+		var handler = handler();
+		var first = handshake(handler, "10.0.0.1");
+		assertNotNull(handshake(handler, "10.0.0.1"));
+		assertNull(handshake(handler, "10.0.0.1"));
+		// Another client is unaffected
+		assertNotNull(handshake(handler, "10.0.0.2"));
+
+		// Closing a connection frees its slot
+		var socket = socket("a", first);
+		handler.afterConnectionEstablished(socket);
+		handler.afterConnectionClosed(socket, CloseStatus.NORMAL);
+		assertNotNull(handshake(handler, "10.0.0.1"));
+	}
+
+	@Test
+	void messagesOverTheBudgetAreRefusedWithoutBeingHandled() throws Exception {
+		var handler = handler();
+		var socket = socket("a", handshake(handler, "10.0.0.1"));
+		handler.afterConnectionEstablished(socket);
+
+		for (int i = 0; i < 3; i++)
+			handler.handleMessage(socket, new TextMessage("{\"type\":\"noop\"}"));
+
+		assertEquals(3, sent.size());
+		assertTrue(sent.get(0).contains("Unknown message type"));
+		assertTrue(sent.get(1).contains("Unknown message type"));
+		assertTrue(sent.get(2).contains("Too many messages"));
+		assertFalse(sent.get(2).contains("Unknown"));
+	}
+}
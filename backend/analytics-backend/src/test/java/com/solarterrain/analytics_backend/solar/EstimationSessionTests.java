@@ -0,0 +1,132 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EstimationSessionTests {
+
+	private final List<Map<String, Object>> sent = new ArrayList<>();
+	private final Set<LatLng> elevationPointsRequested = new HashSet<>();
+	private int elevationPointsRefetched;
+	private int solarRequests;
+
+	private final GoogleElevationClient elevation = new GoogleElevationClient(null, null) {
+		@Override
+		public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points, UpstreamContext context) {
+			for (var p : points) {
+				if (!elevationPointsRequested.add(p))
+					elevationPointsRefetched++;
+			}
+			double[] values = new double[points.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = 100 + (points.get(i).lat() - 38.7) * 1e4; // gentle north-facing slope
+			}
+			return CompletableFuture.completedFuture(values);
+		}
+	};
+
+	private final GoogleSolarClient solar = new GoogleSolarClient(null, null) {
+		@Override
+		public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude,
+				UpstreamContext context) {
+			solarRequests++;
+			return CompletableFuture.completedFuture(null);
+		}
+	};
+
+	private EstimationSession session() {
+		var service = EstimationFixtures.service(solar, elevation);
+		// The session fetches terrain through its own tile store, so counted requests are its own
+		var tiles = ElevationTileStore.inMemory(elevation);
+		var settings = new EstimationSession.Settings(10, 3, 0.002, 20000);
+		return new EstimationSession(service, solar, tiles, new EnhancedShadingService(tiles), settings, sent::add);
+	}
+
+	// ~100 m x ~90 m around Lisbon
+	private static List<LatLng> square(double east) {
+		return List.of(new LatLng(38.7000, -9.1500), new LatLng(38.7000, -9.1490 + east),
+				new LatLng(38.7008, -9.1490 + east), new LatLng(38.7008, -9.1500));
+	}
+
+	private Map<String, Object> lastUpdate() {
+		var message = sent.get(sent.size() - 1);
+		assertEquals("update", message.get("type"));
+		return message;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> totals(Map<String, Object> update) {
+		return (Map<String, Object>) update.get("totals");
+	}
+
+	@Test
+	void editRecomputesOnlyTheCellsItUncoversOrCovers() {
+		var session = session();
+		session.updatePolygon(square(0));
+		assertEquals("session", sent.get(0).get("type"));
+		var first = lastUpdate();
+		int initialCells = ((List<?>) first.get("added")).size();
+		assertTrue(initialCells > 50, "cells " + initialCells);
+		assertEquals(initialCells, totals(first).get("coveredCells"));
+		assertEquals(0, totals(first).get("pendingCells"));
+		int terrainAfterFirst = elevationPointsRequested.size();
+		int solarAfterFirst = solarRequests;
+
+		// Drag the east edge ~26 m further east: only a strip is new
+		session.updatePolygon(square(0.0003));
+		var grown = lastUpdate();
+		int addedCells = ((List<?>) grown.get("added")).size();
+		assertTrue(addedCells > 0 && addedCells < initialCells / 2, "added " + addedCells);
+		assertTrue(((List<?>) grown.get("removed")).isEmpty());
+		assertTrue(terrainAfterFirst > 0);
+		assertEquals(0, elevationPointsRefetched, "terrain fetched again");
+		assertTrue((double) totals(grown).get("annualEnergyKWh") > (double) totals(first).get("annualEnergyKWh"));
+
+		// Dragging back uncovers exactly that strip and needs no fetches
+		int terrainBefore = elevationPointsRequested.size();
+		int solarBefore = solarRequests;
+		session.updatePolygon(square(0));
+		var shrunk = lastUpdate();
+		assertTrue(((List<?>) shrunk.get("added")).isEmpty());
+		assertEquals(addedCells, ((List<?>) shrunk.get("removed")).size());
+		assertEquals(terrainBefore, elevationPointsRequested.size());
+		assertEquals(0, elevationPointsRefetched);
+		assertEquals(solarBefore, solarRequests);
+		assertEquals(initialCells, totals(shrunk).get("coveredCells"));
+		assertEquals((double) totals(first).get("annualEnergyKWh"), (double) totals(shrunk).get("annualEnergyKWh"),
+				1e-6);
+		assertTrue(solarAfterFirst > 0);
+	}
+
+	@Test
+	void refreshResendsEveryCell() {
+		var session = session();
+		session.updatePolygon(square(0));
+		int cells = ((List<?>) lastUpdate().get("added")).size();
+
+		session.refresh();
+		var refreshed = lastUpdate();
+		assertEquals(true, refreshed.get("reset"));
+		assertEquals(cells, ((List<?>) refreshed.get("added")).size());
+	}
+
+	@Test
+	void rejectsPolygonsOutsideSupportedArea() {
+		var session = session();
+		assertThrows(IllegalArgumentException.class, () -> session.updatePolygon(
+				List.of(new LatLng(48.85, 2.35), new LatLng(48.85, 2.36), new LatLng(48.86, 2.36))));
+	}
+}
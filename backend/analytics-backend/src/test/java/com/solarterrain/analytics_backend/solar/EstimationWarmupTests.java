@@ -0,0 +1,35 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.PARCEL;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.flat;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.service;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EstimationWarmupTests {
+
+	// No HTTP client behind either: any upstream call fails
+	private final GoogleElevationClient offlineElevation = new GoogleElevationClient(null, null);
+	private final GoogleSolarClient offlineSolar = new GoogleSolarClient(null, null);
+
+	@Test
+	void offlineEstimateMatchesTheUpstreamPipelineOnTheSameTerrain() {
+		var online = service(noSamples(), flat()).estimate(PARCEL);
+		var offline = service(offlineSolar, offlineElevation).estimateOffline(PARCEL, p -> 200.0);
+
+		assertEquals(online.areaM2(), offline.areaM2(), 1e-9);
+		assertEquals(online.annualEnergyKWh(), offline.annualEnergyKWh(), online.annualEnergyKWh() * 1e-9);
+		assertEquals(online.enhancedHeatmapData().toMaps(), offline.enhancedHeatmapData().toMaps());
+	}
+
+	@Test
+	void warmupRunsEveryIterationWithoutUpstream() {
+		var warmup = new EstimationWarmup(service(offlineSolar, offlineElevation), new ObjectMapper());
+		warmup.iterations = 3;
+
+		assertEquals(3, warmup.run());
+	}
+}
@@ -0,0 +1,48 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HeatmapGridTests {
+
+	private static final double[] MONTHLY = { 0.6, 0.65, 0.75, 0.8, 0.9, 0.95, 1.0, 0.98, 0.88, 0.75, 0.62, 0.58 };
+
+	private static HeatmapGrid grid(int cells, double latOffset) {
+		var grid = new HeatmapGrid(0.79, MONTHLY, 1); // grows past its capacity
+		for (int i = 0; i < cells; i++) {
+			grid.add(38.5 + latOffset + i * 1e-4, -7.9 - i * 1e-4, 900.0 + i, 1300.0 + i, 1.1, 0.05 * (i % 3), i % 5);
+		}
+		return grid;
+	}
+
+	@Test
+	void serializesToTheLegacyCellObjects() throws Exception {
+		var mapper = new ObjectMapper();
+		var grid = grid(7, 0);
+
+		var json = mapper.readTree(mapper.writeValueAsString(grid));
+		assertEquals(mapper.valueToTree(grid.toMaps()), json);
+		assertEquals(7, json.size());
+		assertEquals(12, json.get(3).get("monthlyProduction").size());
+		assertEquals(903.0 * 0.8 * 30.44, json.get(3).get("monthlyProduction").get(3).asDouble(), 1e-9);
+		assertEquals("#80FF00", json.get(3).get("color").asText());
+	}
+
+	@Test
+	void concatKeepsTileOrderAndRejectsMixedWeather() {
+		var joined = HeatmapGrid.concat(List.of(grid(3, 0), grid(4, 0.01)));
+
+		assertEquals(7, joined.size());
+		assertEquals(38.5 + 0.01 + 1e-4, joined.lat(4), 1e-12);
+		assertEquals(901.0, joined.intensity(4));
+		assertEquals(grid(4, 0.01).toMaps().get(1), joined.toMaps().get(4));
+
+		var otherWeather = new HeatmapGrid(0.7, MONTHLY, 1);
+		assertThrows(IllegalArgumentException.class, () -> HeatmapGrid.concat(List.of(grid(2, 0), otherWeather)));
+	}
+}
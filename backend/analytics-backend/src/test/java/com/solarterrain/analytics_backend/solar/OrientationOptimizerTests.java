@@ -0,0 +1,75 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.PARCEL;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.flat;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.service;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrientationOptimizerTests {
+
+	private OrientationOptimizer optimizer(long timeBudgetMs) {
+		var service = service(noSamples(), flat());
+		// Off the optimum, so the search has to move
+		service.defaultTiltDeg = 10;
+		service.defaultAzimuthDeg = 120;
+		var optimizer = new OrientationOptimizer(service);
+		optimizer.tiltStepDeg = 15;
+		optimizer.azimuthStepDeg = 45;
+		optimizer.minStepDeg = 1;
+		optimizer.timeBudgetMs = timeBudgetMs;
+		return optimizer;
+	}
+
+	@Test
+	void findsAnEquatorFacingOptimumAboveEveryGridPoint() {
+		var result = optimizer(60_000).optimizeAsync(PARCEL, EstimateOptions.DEFAULTS, UpstreamContext.interactive())
+				.join();
+
+		assertTrue(result.converged());
+		var surface = result.surface();
+		assertEquals(7, surface.tiltDeg().length); // 0, 15, ..., 90
+		assertEquals(8, surface.azimuthDeg().length); // 0, 45, ..., 315
+		double optimum = result.optimum().specificYieldKWhPerKWp();
+		for (var row : surface.specificYield()) {
+			for (Double yield : row) {
+				assertNotNull(yield);
+				assertTrue(yield <= optimum + 1e-9);
+			}
+		}
+		// Flat terrain at 38.6 N: due south, tilted near the latitude minus a few degrees
+		assertEquals(180, result.optimum().azimuthDeg(), 10);
+		assertTrue(result.optimum().tiltDeg() > 20 && result.optimum().tiltDeg() < 40);
+		assertTrue(optimum > result.defaultOrientation().specificYieldKWhPerKWp());
+		assertEquals(10, result.defaultOrientation().tiltDeg());
+	}
+
+	@Test
+	void spentBudgetStillAnswersWithTheBestOrientationSeen() {
+		var result = optimizer(0).optimizeAsync(PARCEL, EstimateOptions.DEFAULTS, UpstreamContext.interactive())
+				.join();
+
+		assertFalse(result.converged());
+		assertTrue(result.evaluations() >= 1);
+		assertTrue(result.optimum().specificYieldKWhPerKWp() >= result.defaultOrientation().specificYieldKWhPerKWp());
+	}
+
+	@Test
+	void budgetStartsOnceTheStagesAreAvailable() {
+		var stages = service(noSamples(), flat()).stagesAsync(PARCEL, UpstreamContext.interactive()).join();
+		// Stages that took a minute to fetch leave the whole budget to the search
+		long requestStart = System.nanoTime() - 60_000_000_000L;
+
+		var result = optimizer(60_000).optimize(stages, EstimateOptions.DEFAULTS, requestStart,
+				UpstreamContext.interactive());
+
+		assertTrue(result.converged());
+		assertTrue(result.elapsedMs() >= 60_000);
+	}
+}
@@ -0,0 +1,122 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PvgisSeriesTests {
+
+	@TempDir
+	Path dataDir;
+
+	private HttpServer server;
+
+	@AfterEach
+	void stopStub() {
+		if (server != null)
+			server.stop(0);
+	}
+
+	/** Two years of hourly rows shaped like seriescalc output, with the members the parser must skip. */
+	private static String seriescalc(int firstYear) {
+		var json = new StringBuilder("""
+				{"inputs":{"location":{"latitude":38.57,"longitude":-7.91,"elevation":240.0},
+				"mounting_system":{"fixed":{"slope":{"value":33,"optimal":true},"azimuth":{"value":0}}}},
+				"outputs":{"hourly":[""");
+		var t = LocalDateTime.of(firstYear, 1, 1, 0, 10);
+		boolean first = true;
+		while (t.getYear() < firstYear + 2) {
+			json.append(first ? "" : ",");
+			first = false;
+			double p = Math.max(0, 800 * Math.sin(Math.PI * (t.getHour() - 6) / 12));
+			json.append(String.format(Locale.US,
+					"{\"time\":\"%04d%02d%02d:%02d%02d\",\"P\":%.2f,\"G(i)\":%.2f,\"H_sun\":12.5,\"T2m\":%.2f,"
+							+ "\"WS10m\":2.1,\"Int\":0.0}",
+					t.getYear(), t.getMonthValue(), t.getDayOfMonth(), t.getHour(), t.getMinute(), p, p * 1.2,
+					10 + t.getMonthValue() * 0.5));
+			t = t.plusHours(1);
+		}
+		json.append("""
+				]},"meta":{"inputs":{"location":{"description":"Selected location"}},"outputs":{"hourly":{"type":"time series",
+				"variables":{"P":{"units":"W"}}}}}}""");
+		return json.toString();
+	}
+
+	@Test
+	void parsesOnlyTheHourlyColumnsAndRoundTripsThroughTheColumnarFile() throws Exception {
+		var bytes = seriescalc(2019).getBytes(StandardCharsets.UTF_8);
+		var series = PvgisSeriesParser.parse(new ByteArrayInputStream(bytes), new ObjectMapper().getFactory(),
+				38.57, -7.91);
+
+		assertEquals(365 * 24 + 366 * 24, series.size());
+		long noonFeb29 = LocalDateTime.of(2020, 2, 29, 12, 10).toEpochSecond(ZoneOffset.UTC);
+		int i = (int) ((noonFeb29 - series.time(0)) / 3600);
+		assertEquals(noonFeb29, series.time(i));
+		assertEquals(800f, series.powerW(i), 0.01f);
+		assertEquals(960f, series.irradianceWm2(i), 0.01f);
+		assertEquals(11f, series.temperatureC(i), 0.01f);
+
+		var file = dataDir.resolve("series.bin");
+		series.write(file);
+		var read = PvgisHourlySeries.read(file);
+		assertEquals(series.size(), read.size());
+		assertEquals(series.time(i), read.time(i));
+		assertEquals(series.powerW(i), read.powerW(i));
+		// A day of this profile is 0.8 kW x sum of sin(k pi / 12), k = 1..11, i.e. cot(pi / 24); 31 days each January
+		assertEquals(31 * 0.8 / Math.tan(Math.PI / 24), read.monthlyMeanKWh()[0], 0.01);
+	}
+
+	@Test
+	void clientDownloadsALocationOnceAndServesItFromTheFileCache() throws Exception {
+		var calls = new AtomicInteger();
+		var body = seriescalc(2019).getBytes(StandardCharsets.UTF_8);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/seriescalc", exchange -> {
+			calls.incrementAndGet();
+			assertTrue(exchange.getRequestURI().getQuery().contains("peakpower=1"));
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+
+		var env = new MockEnvironment().withProperty("upstream.quota.pvgis.requests-per-second", "10");
+		var mapper = new ObjectMapper();
+		var client = new PvgisSeriesClient(new UpstreamHttpClient(mapper, 1000, 5000),
+				new UpstreamQuotaManager(env, new SimpleMeterRegistry()), mapper, dataDir.toString(), 1, 2);
+		client.pvgisBaseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+		client.startYear = 2019;
+		client.endYear = 2020;
+
+		var first = client.hourlyPerKwpAsync(38.571, -7.912, UpstreamContext.background());
+		// Asked again while downloading: shares the download
+		var concurrent = client.hourlyPerKwpAsync(38.572, -7.911, UpstreamContext.background());
+		assertEquals(first.join().size(), concurrent.join().size());
+		// Same 0.01 degree cell: answered from the file
+		var second = client.hourlyPerKwpAsync(38.574, -7.908, UpstreamContext.background()).join();
+
+		assertEquals(1, calls.get());
+		assertEquals(first.join().size(), second.size());
+		assertEquals(38.57, second.lat());
+		assertTrue(dataDir.resolve("pvgis/series/38.57_-7.91_2019-2020.bin").toFile().isFile());
+	}
+}
@@ -0,0 +1,175 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.upstream.UpstreamHttpClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamQuotaManager;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PvgisYieldHarvesterTests {
+
+	// 3x3 nodes, 0.1 deg apart, around Évora
+	private static final double MIN_LAT = 38.5;
+	private static final double MIN_LNG = -8.0;
+
+	@TempDir
+	Path dataDir;
+
+	private final AtomicInteger calls = new AtomicInteger();
+	// What the centre node answers: an error status, or 0 for its yield
+	private final AtomicInteger centreStatus = new AtomicInteger(500);
+	private HttpServer server;
+	private UpstreamQuotaManager quota; // daemon scheduler, left to the JVM
+
+	@AfterEach
+	void stopStub() {
+		if (server != null)
+			server.stop(0);
+	}
+
+	/** Local PVGIS: yearly yield falls with latitude and rises eastwards; the centre node answers centreStatus. */
+	private String startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/PVcalc", exchange -> {
+			calls.incrementAndGet();
+			var query = new HashMap<String, String>();
+			for (var pair : exchange.getRequestURI().getRawQuery().split("&")) {
+				var kv = pair.split("=", 2);
+				query.put(kv[0], kv[1]);
+			}
+			double lat = Double.parseDouble(query.get("lat"));
+			double lng = Double.parseDouble(query.get("lon"));
+			double peak = Double.parseDouble(query.get("peakpower"));
+			if (centreStatus.get() != 0 && Math.abs(lat - 38.6) < 1e-6 && Math.abs(lng + 7.9) < 1e-6) {
+				exchange.sendResponseHeaders(centreStatus.get(), -1);
+				exchange.close();
+				return;
+			}
+			var body = new StringBuilder("{\"outputs\":{\"monthly\":{\"fixed\":[");
+			double yearly = 0;
+			for (int m = 0; m < 12; m++) {
+				double em = peak * monthly(lat, lng, m);
+				yearly += em;
+				body.append(m > 0 ? "," : "").append(String.format(Locale.US, "{\"month\":%d,\"E_m\":%.4f}", m + 1, em));
+			}
+			body.append(String.format(Locale.US, "]},\"totals\":{\"fixed\":{\"E_y\":%.4f}}}}", yearly));
+			byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+			exchange.close();
+		});
+		server.start();
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	private static double monthly(double lat, double lng, int month) {
+		return (1600 - (lat - 37) * 35 + (lng + 8) * 20) / 12 * (0.7 + 0.05 * Math.min(month, 11 - month));
+	}
+
+	private PVGISClient client(String baseUrl, PvgisYieldStore store) {
+		if (quota == null) {
+			var env = new MockEnvironment()
+					.withProperty("upstream.quota.pvgis.requests-per-second", "50")
+					.withProperty("upstream.quota.pvgis.burst", "10");
+			quota = new UpstreamQuotaManager(env, new SimpleMeterRegistry());
+		}
+		var client = new PVGISClient(new UpstreamHttpClient(new ObjectMapper(), 1000, 5000), quota, store,
+				RegionRegistry.bundled());
+		client.pvgisBaseUrl = baseUrl;
+		return client;
+	}
+
+	private PvgisYieldStore store() {
+		return store(MIN_LAT, MIN_LNG);
+	}
+
+	private PvgisYieldStore store(double minLat, double minLng) {
+		return new PvgisYieldStore(dataDir.resolve(PvgisYieldStore.GRID_FILE),
+				PvgisYieldGrid.create(minLat, minLng, 0.1, 3, 3, PVGISClient.LOSS_PERCENT));
+	}
+
+	private static PvgisYieldHarvester harvester(PvgisYieldStore store, PVGISClient client) {
+		var harvester = new PvgisYieldHarvester(store, client, RegionRegistry.bundled());
+		harvester.concurrency = 2;
+		harvester.checkpointEvery = 3;
+		return harvester;
+	}
+
+	@Test
+	void harvestResumesFromItsCheckpointAndFetchesOnlyMissingNodes() throws Exception {
+		String baseUrl = startStub();
+		var first = store();
+		assertEquals(new PvgisYieldHarvester.Report(8, 1, 0, 0), harvester(first, client(baseUrl, first)).harvest());
+		assertEquals(9, calls.get());
+		// The centre node is missing, so every cell around it still needs PVGIS
+		assertNull(first.lookup(38.55, -7.95));
+
+		// A restart reloads the checkpoint and asks only for the failed node
+		centreStatus.set(0);
+		var resumed = store();
+		assertEquals(8, resumed.grid().harvested());
+		assertEquals(new PvgisYieldHarvester.Report(1, 0, 0, 8), harvester(resumed, client(baseUrl, resumed)).harvest());
+		assertEquals(10, calls.get());
+		assertEquals(9, store().grid().harvested());
+	}
+
+	@Test
+	void nodesAtSeaAreNeitherQueuedNorRetried() throws Exception {
+		String baseUrl = startStub();
+		// Open Atlantic, well west of Cabo da Roca: nothing to harvest
+		var offshore = store(38.5, -12.0);
+		assertEquals(new PvgisYieldHarvester.Report(0, 0, 0, 9),
+				harvester(offshore, client(baseUrl, offshore)).harvest());
+		assertEquals(0, calls.get());
+
+		// PVGIS says it has no data for the centre: recorded, and not asked again after a restart
+		centreStatus.set(400);
+		var first = store();
+		assertEquals(new PvgisYieldHarvester.Report(8, 0, 1, 0), harvester(first, client(baseUrl, first)).harvest());
+		var resumed = store();
+		assertEquals(new PvgisYieldHarvester.Report(0, 0, 0, 9), harvester(resumed, client(baseUrl, resumed)).harvest());
+		assertEquals(9, calls.get());
+		assertEquals(8, resumed.grid().harvested());
+	}
+
+	@Test
+	void clientAnswersFromTheGridAndCallsOutOnlyOutsideIt() throws Exception {
+		String baseUrl = startStub();
+		centreStatus.set(0);
+		var store = store();
+		var client = client(baseUrl, store);
+		harvester(store, client).harvest();
+		int harvestCalls = calls.get();
+
+		// Inside the grid: bilinear in a field that is linear in lat and lng, scaled by peak power
+		var local = client.pvcalcAsync(38.63, -7.84, 5.0).join();
+		assertEquals(harvestCalls, calls.get());
+		for (int m = 0; m < 12; m++) {
+			assertEquals(5.0 * monthly(38.63, -7.84, m), local.monthlyKWh().get(m), 0.01 * 5);
+		}
+		assertEquals(local.monthlyKWh().stream().mapToDouble(Double::doubleValue).sum(), local.annualKWh(), 1e-9);
+
+		// Outside: one remote call, same result the stub gives directly
+		var remote = client.pvcalcAsync(39.2, -7.84, 2.0).join();
+		assertEquals(harvestCalls + 1, calls.get());
+		for (int m = 0; m < 12; m++) {
+			assertEquals(2.0 * monthly(39.2, -7.84, m), remote.monthlyKWh().get(m), 1e-3);
+		}
+	}
+}
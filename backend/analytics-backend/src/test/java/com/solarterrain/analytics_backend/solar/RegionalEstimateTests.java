@@ -0,0 +1,53 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.PARCEL;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.flat;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.service;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionalEstimateTests {
+
+	// Inland São Miguel, outside the climatology and PVGIS yield grids
+	private static final List<LatLng> AZORES = List.of(new LatLng(37.770, -25.560), new LatLng(37.770, -25.557),
+			new LatLng(37.7725, -25.557), new LatLng(37.7725, -25.560));
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> region(SolarEstimate estimate) {
+		return (Map<String, Object>) estimate.enhancedAnalysisData().get("region");
+	}
+
+	private static double baseIntensity(SolarEstimate estimate) {
+		return (double) estimate.enhancedHeatmapData().toMaps().get(0).get("baseIntensity");
+	}
+
+	@Test
+	void islandsUseTheirOwnIrradiationAndReportTheProvidersTheyLack() {
+		var service = service(noSamples(), flat());
+		var mainland = service.estimate(PARCEL);
+		var azores = service.estimate(AZORES);
+
+		assertEquals("azores", region(azores).get("id"));
+		assertEquals(List.of(RegionRegistry.CLIMATOLOGY_GRID, RegionRegistry.PVGIS_YIELD_GRID),
+				region(azores).get("absentProviders"));
+		assertEquals(List.of(), region(mainland).get("absentProviders"));
+
+		// Scaled by GHI alone, not by mainland latitude and longitude terms
+		assertEquals(1400.0 * 1350 / 1650, baseIntensity(azores), 1e-9);
+		assertEquals(1400.0, baseIntensity(mainland), 1e-9);
+
+		// Cloudier than the Alentejo, but not by half
+		double azoresYield = azores.annualEnergyKWh() / azores.assumedSystemKWp();
+		double mainlandYield = mainland.annualEnergyKWh() / mainland.assumedSystemKWp();
+		assertTrue(azoresYield < mainlandYield, azoresYield + " vs " + mainlandYield);
+		assertTrue(azoresYield > 0.7 * mainlandYield, azoresYield + " vs " + mainlandYield);
+	}
+}
@@ -0,0 +1,119 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// The exporter opens its own read-only transaction around the cursor
+@DataJpaTest
+@Import(SavedSiteExporter.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SavedSiteExporterTests {
+
+	@Autowired
+	private SavedSiteExporter exporter;
+
+	@Autowired
+	private SavedSiteRepository repo;
+
+	@MockitoBean
+	private SolarEstimationService estimationService;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@BeforeEach
+	void sites() {
+		repo.deleteAll();
+		for (int i = 0; i < 3; i++) {
+			var s = new SavedSite();
+			s.setUserId("uid-1");
+			s.setSiteName(i == 1 ? "Quinta \"Sol\", Évora" : "Terreno " + i);
+			s.setDescription("");
+			s.setPolygon(List.of(new LatLng(38.57, -7.9 + i * 0.01), new LatLng(38.57, -7.89 + i * 0.01),
+					new LatLng(38.58, -7.89 + i * 0.01)));
+			s.setAnnualEnergyKWh(1000 * (i + 1));
+			repo.save(s);
+		}
+		var other = new SavedSite();
+		other.setUserId("uid-2");
+		other.setSiteName("not mine");
+		repo.save(other);
+	}
+
+	private String export(SavedSiteExporter.Format format, boolean heatmap) throws Exception {
+		var out = new ByteArrayOutputStream();
+		int written = exporter.export("uid-1", format, heatmap, out);
+		assertEquals(3, written);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void geoJsonIsAFeatureCollection() throws Exception {
+		var tree = mapper.readTree(export(SavedSiteExporter.Format.GEOJSON, false));
+
+		assertEquals("FeatureCollection", tree.get("type").asText());
+		assertEquals(3, tree.get("features").size());
+		var feature = tree.get("features").get(1);
+		assertEquals("Polygon", feature.at("/geometry/type").asText());
+		assertEquals(4, feature.at("/geometry/coordinates/0").size());
+		assertEquals("Quinta \"Sol\", Évora", feature.at("/properties/name").asText());
+		assertEquals(2000.0, feature.at("/properties/annualEnergyKWh").asDouble());
+	}
+
+	@Test
+	void csvQuotesFieldsAndKeepsOneRowPerSite() throws Exception {
+		var lines = export(SavedSiteExporter.Format.CSV, false).split("\n");
+
+		assertEquals(4, lines.length);
+		assertTrue(lines[0].startsWith("id,name,description,"));
+		assertTrue(lines[2].contains(",\"Quinta \"\"Sol\"\", Évora\","), lines[2]);
+		assertTrue(lines[3].endsWith("]]]}\""), lines[3]);
+	}
+
+	@Test
+	void ndjsonCarriesHeatmapsWhenAsked() throws Exception {
+		var heatmap = new HeatmapGrid(0.9, new double[12], 1);
+		heatmap.add(38.575, -7.895, 0.8, 1.0, 1.0, 0.1, 4);
+		var inTransaction = new AtomicBoolean();
+		when(estimationService.estimateAsync(any(), any())).thenAnswer(call -> {
+			inTransaction.compareAndSet(false, TransactionSynchronizationManager.isActualTransactionActive());
+			return CompletableFuture.completedFuture(
+					new SolarEstimate(1, 1, 1, 1, List.of(), 1, 1, heatmap, Map.of(), List.of()));
+		});
+
+		var lines = export(SavedSiteExporter.Format.NDJSON, true).split("\n");
+		assertEquals(3, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			var record = mapper.readTree(lines[i]);
+			assertEquals(0.8, record.at("/heatmap/0/intensity").asDouble());
+			assertTrue(record.get("polygonGeoJson").asText().startsWith("{\"type\":\"Polygon\""));
+			assertEquals(1000.0 * (i + 1), record.get("annualEnergyKWh").asDouble(), "oldest first");
+		}
+		// Estimates run with no connection held
+		assertFalse(inTransaction.get());
+	}
+}
@@ -0,0 +1,102 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The writer commits on its own thread, so tests must not run inside a test transaction
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(SavedSiteWriter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SavedSiteWriterTests {
+
+	@Autowired
+	private SavedSiteWriter writer;
+
+	@Autowired
+	private SavedSiteRepository repo;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@BeforeEach
+	void clean() {
+		repo.deleteAll();
+	}
+
+	private static SavedSite site(String name) {
+		var s = new SavedSite();
+		s.setUserId("uid-1");
+		s.setSiteName(name);
+		s.setPolygon(List.of(new LatLng(38.7, -9.1), new LatLng(38.7, -9.0), new LatLng(38.8, -9.0)));
+		s.setSystemKWp(12.5);
+		return s;
+	}
+
+	@Test
+	void concurrentSavesShareTransactions() throws Exception {
+		var stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+
+		var acks = new ArrayList<CompletableFuture<SavedSite>>();
+		for (int i = 0; i < 120; i++)
+			acks.add(writer.save(site("site " + i)));
+		CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+		var ids = new HashSet<Long>();
+		acks.forEach(a -> ids.add(a.join().getId()));
+		assertEquals(120, ids.size());
+		assertEquals(120, repo.count());
+		assertTrue(stats.getTransactionCount() <= 10, "transactions " + stats.getTransactionCount());
+	}
+
+	@Test
+	void badRowDoesNotFailItsBatch() throws Exception {
+		var bad = site("too long");
+		bad.setDescription("x".repeat(600)); // column is 500
+		var acks = writer.saveAll(List.of(site("a"), site("b")));
+		var badAck = writer.save(bad);
+		acks.get(10, TimeUnit.SECONDS);
+
+		assertThrows(CompletionException.class, badAck::join);
+		assertEquals(2, repo.count());
+	}
+
+	@Test
+	void stopFlushesQueuedWrites() throws Exception {
+		// Long delay and large batches: nothing would be written before stop() without the flush
+		var slow = new SavedSiteWriter(repo, transactionManager, true, 1000, 60_000, 100);
+		slow.start();
+		var acks = new ArrayList<CompletableFuture<SavedSite>>();
+		for (int i = 0; i < 10; i++)
+			acks.add(slow.save(site("queued " + i)));
+		slow.stop();
+
+		assertTrue(acks.stream().allMatch(a -> a.isDone() && !a.isCompletedExceptionally()));
+		assertEquals(10, repo.count());
+		// Writes after shutdown still go through, on the caller's thread
+		assertTrue(slow.save(site("late")).get(1, TimeUnit.SECONDS).getId() != null);
+	}
+}
@@ -0,0 +1,91 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.pv.PvSimulationEngine;
+import com.solarterrain.analytics_backend.pv.SiteIrradiance;
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShadingLossMatrixTests {
+
+	private static final double[] SUN_HOURS = { 4.6, 5.6, 6.7, 7.8, 9.4, 10.1, 11.1, 10.6, 8.4, 6.5, 5.1, 4.4 };
+	private static final double[] TEMPERATURE = { 11.6, 12.7, 14.9, 15.9, 18.2, 21.4, 23.2, 23.6, 22.4, 19.3, 15.3,
+			12.8 };
+
+	private final SiteIrradiance site = new PvSimulationEngine().prepare(38.72, SUN_HOURS, TEMPERATURE);
+	private final SkyPatches patches = SkyPatches.of(site);
+	private final EnhancedShadingService shading = new EnhancedShadingService(ElevationTileStore.inMemory(null));
+
+	// 10 x 10 samples ~40 m apart; the southern rows rise into a ridge
+	private static List<EnhancedShadingService.ElevationPoint> ridgeToTheSouth(double ridgeHeight) {
+		var points = new ArrayList<EnhancedShadingService.ElevationPoint>();
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				double elevation = 100 + (i < 2 ? ridgeHeight : 0) + 0.5 * j;
+				points.add(new EnhancedShadingService.ElevationPoint(38.72 + i * 0.00036, -9.14 + j * 0.00046,
+						elevation));
+			}
+		}
+		return points;
+	}
+
+	@Test
+	void sunPathFitsInAboutOneHundredFiftyPatches() {
+		assertTrue(patches.count() > 100 && patches.count() < 200, "patches " + patches.count());
+		double[] allLost = new double[patches.count()];
+		Arrays.fill(allLost, 1.0);
+		assertEquals(1.0, patches.annualLoss(allLost), 1e-12);
+	}
+
+	@Test
+	void flatGroundLosesNothing() {
+		var losses = shading.shadingLosses(ridgeToTheSouth(0), patches);
+		assertEquals(0.0, losses.siteAnnualLoss(), 0.01);
+	}
+
+	@Test
+	void southernRidgeShadesWinterMoreThanSummer() {
+		var losses = shading.shadingLosses(ridgeToTheSouth(150), patches);
+		// A sample just north of the ridge
+		double[] matrix = losses.cellMonthHour(30);
+		double winterNoon = matrix[11 * 24 + 12];
+		double summerNoon = matrix[5 * 24 + 12];
+		assertTrue(winterNoon > 0.5, "December noon " + winterNoon);
+		assertTrue(summerNoon < 0.05, "June noon " + summerNoon);
+		assertTrue(losses.cellAnnualLoss(30) > losses.cellAnnualLoss(90));
+	}
+
+	@Test
+	void patchBinningTracksHourByHourEvaluation() {
+		var terrain = ridgeToTheSouth(150);
+		var losses = shading.shadingLosses(terrain, patches);
+
+		double[] lat = terrain.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLatitude).toArray();
+		double[] lng = terrain.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getLongitude).toArray();
+		double[] elev = terrain.stream().mapToDouble(EnhancedShadingService.ElevationPoint::getElevation).toArray();
+		double[] horizon = SolarKernels.horizonProfiles(lat, lng, elev, SolarKernels.distanceMatrix(lat, lng),
+				SkyPatches.SECTOR_DEG);
+
+		// Every daylight hour: beam is lost when the sun is below the horizon
+		for (int cell : new int[] { 20, 30, 45, 95 }) {
+			double lost = 0, total = 0;
+			for (int i = 0; i < site.hours(); i++) {
+				double elevation = Math.toDegrees(Math.asin(Math.min(1.0, site.cosZenith(i))));
+				double azimuth = Math.toDegrees(Math.atan2(site.sunEast(i), site.sunNorth(i)));
+				int sector = (int) ((azimuth + 360) % 360 / SkyPatches.SECTOR_DEG);
+				double beam = site.dni(i) * site.cosZenith(i);
+				total += beam;
+				if (elevation < horizon[cell * SkyPatches.SECTORS + sector])
+					lost += beam;
+			}
+			assertEquals(lost / total, losses.cellAnnualLoss(cell), 0.02, "cell " + cell);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.flat;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolarKernelsTests {
+
+	private static final double TOLERANCE = 1e-12;
+
+	private final EnhancedShadingService shading = new EnhancedShadingService(ElevationTileStore.inMemory(null));
+
+	// Steep synthetic hills so that a good share of points is shaded
+	private static List<EnhancedShadingService.ElevationPoint> terrain(int side) {
+		var points = new ArrayList<EnhancedShadingService.ElevationPoint>();
+		for (int i = 0; i < side; i++) {
+			for (int j = 0; j < side; j++) {
+				double lat = 39.5 + i * 0.0004;
+				double lng = -8.0 + j * 0.0005;
+				double elevation = 300 + 60 * Math.sin(lat * 900) * Math.cos(lng * 700) + 15 * Math.sin(i * 1.7 + j);
+				points.add(new EnhancedShadingService.ElevationPoint(lat, lng, elevation));
+			}
+		}
+		return points;
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 3, 10, 25 })
+	void shadingKernelsMatchReference(int side) {
+		var points = terrain(side);
+		var kernel = shading.analyzeShading(39.5, -8.0, points);
+		var reference = shading.analyzeShadingReference(39.5, -8.0, points);
+
+		assertEquals(reference.getAverageShading(), kernel.getAverageShading(), TOLERANCE);
+		assertEquals(reference.getMorningShading(), kernel.getMorningShading(), TOLERANCE);
+		assertEquals(reference.getNoonShading(), kernel.getNoonShading(), TOLERANCE);
+		assertEquals(reference.getEveningShading(), kernel.getEveningShading(), TOLERANCE);
+		assertEquals(reference.getWinterShading(), kernel.getWinterShading(), TOLERANCE);
+		assertEquals(reference.getSummerShading(), kernel.getSummerShading(), TOLERANCE);
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				assertEquals(reference.getShadowMap().get(i).get(j), kernel.getShadowMap().get(i).get(j), TOLERANCE);
+			}
+		}
+		if (side >= 10)
+			assertTrue(kernel.getWinterShading() > 0, "terrain should cast shadows");
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 0, 1, 9 })
+	void heatmapKernelsMatchReference(int googleSamples) {
+		var service = EstimationFixtures.service(noSamples(), flat());
+		var polygon = List.of(new LatLng(39.5, -8.0), new LatLng(39.5, -7.988), new LatLng(39.509, -7.986),
+				new LatLng(39.51, -7.999));
+
+		var google = new ArrayList<GoogleSolarClient.GoogleSolarDataPoint>();
+		for (int k = 0; k < googleSamples; k++) {
+			Double yearly = k % 4 == 3 ? null : 1200.0 + 70 * k;
+			google.add(new GoogleSolarClient.GoogleSolarDataPoint(39.5 + (k / 3) * 0.004, -8.0 + (k % 3) * 0.005, null,
+					yearly, null));
+		}
+		var analysis = shading.analyzeShading(39.505, -7.993, terrain(10));
+		var region = RegionRegistry.bundled().regionAt(39.505, -7.993).orElseThrow();
+		var monthly = service.monthlyWeather(region, 39.505, -7.993);
+
+		var kernel = service.generateEnhancedHeatmap(region, polygon, google, analysis, monthly);
+		var reference = service.generateEnhancedHeatmapReference(region, polygon, google, analysis, monthly);
+		assertTrue(kernel.size() > 100);
+		assertEquals(reference, kernel.toMaps());
+	}
+}
@@ -0,0 +1,70 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.pv.PvSimulationEngine;
+import com.solarterrain.analytics_backend.pv.SkyPatches;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.noSamples;
+import static com.solarterrain.analytics_backend.solar.EstimationFixtures.terrain;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TiledEstimateTests {
+
+	// ~800 m x ~670 m near Abrantes, ~54 ha
+	private static final List<LatLng> PARCEL = List.of(new LatLng(39.46, -8.20), new LatLng(39.46, -8.19072),
+			new LatLng(39.466, -8.19072), new LatLng(39.466, -8.20));
+
+	// Ridge south of latitude 39.4598, 60 m above the plain
+	private static double ridge(LatLng p) {
+		return p.lat() < 39.4598 ? 160 : 100;
+	}
+
+	private SolarEstimationService service(double tilingThresholdM2) {
+		var service = EstimationFixtures.service(noSamples(), terrain(p -> 100.0));
+		service.tilingThresholdM2 = tilingThresholdM2;
+		service.tileSizeM = 250;
+		service.tileHaloM = 150;
+		return service;
+	}
+
+	@Test
+	void tiledEstimateMatchesSingleGridOnFlatGround() {
+		var single = service(0).estimate(PARCEL);
+		var tiled = service(200_000).estimate(PARCEL);
+
+		@SuppressWarnings("unchecked")
+		var tiles = (Map<String, Object>) tiled.enhancedAnalysisData().get("tiles");
+		assertTrue((Integer) tiles.get("count") >= 9, "tiles " + tiles);
+		assertEquals(single.areaM2(), tiled.areaM2(), 1e-6);
+		assertEquals(single.assumedSystemKWp(), tiled.assumedSystemKWp(), 1e-9);
+		assertEquals(single.annualEnergyKWh(), tiled.annualEnergyKWh(), single.annualEnergyKWh() * 1e-6);
+		// Each tile gets its own heatmap grid
+		assertTrue(tiled.enhancedHeatmapData().size() > 4 * single.enhancedHeatmapData().size());
+	}
+
+	@Test
+	void haloCarriesShadowsAcrossTileBorders() {
+		var patches = SkyPatches.of(new PvSimulationEngine().prepare(39.46,
+				new double[] { 4.6, 5.6, 6.7, 7.8, 9.4, 10.1, 11.1, 10.6, 8.4, 6.5, 5.1, 4.4 },
+				new double[] { 10, 11, 13, 15, 18, 22, 24, 24, 22, 18, 13, 11 }));
+		// The southernmost strip of the parcel; the ridge lies just outside it
+		var piece = List.of(new LatLng(39.46, -8.20), new LatLng(39.46, -8.19709), new LatLng(39.4609, -8.19709),
+				new LatLng(39.4609, -8.20));
+		var shading = EstimationFixtures.shading(terrain(TiledEstimateTests::ridge));
+
+		var withHalo = shading.calculateTileShadingAsync(39.46, -8.2, piece, 100, 150, patches,
+				UpstreamContext.interactive()).join();
+		var withoutHalo = shading.calculateTileShadingAsync(39.46, -8.2, piece, 100, 0, patches,
+				UpstreamContext.interactive()).join();
+
+		assertEquals(withHalo.losses().cells(), withoutHalo.losses().cells());
+		assertEquals(0.0, withoutHalo.losses().siteAnnualLoss(), 1e-12);
+		assertTrue(withHalo.losses().siteAnnualLoss() > 0.05, "loss " + withHalo.losses().siteAnnualLoss());
+	}
+}
@@ -0,0 +1,94 @@
+package com.solarterrain.analytics_backend.terrain;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.solar.GoogleElevationClient;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ElevationTileStoreTests {
+
+	private static final double STEP = 0.0003;
+
+	@TempDir
+	Path dir;
+
+	private int requests;
+	private boolean failing;
+
+	// Planar terrain, so bilinear interpolation between nodes is exact
+	private static double plane(double lat, double lng) {
+		return 200.0 + (lat - 38.7) * 5000.0 - (lng + 9.15) * 3000.0;
+	}
+
+	private final GoogleElevationClient client = new GoogleElevationClient(null, null) {
+		@Override
+		public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points, UpstreamContext context) {
+			requests++;
+			if (failing)
+				return CompletableFuture.failedFuture(new IllegalStateException("Elevation API status OVER_QUERY_LIMIT"));
+			return CompletableFuture.completedFuture(points.stream().mapToDouble(p -> plane(p.lat(), p.lng())).toArray());
+		}
+	};
+
+	private ElevationTileStore store() {
+		return new ElevationTileStore(client, dir, STEP, 64, 32);
+	}
+
+	private static double[] elevations(ElevationTileStore store, List<LatLng> points) {
+		return store.getElevationsAsync(points, UpstreamContext.interactive()).join();
+	}
+
+	@Test
+	void neighbouringParcelsAreServedFromStoredTiles() {
+		var first = List.of(new LatLng(38.70012, -9.15031), new LatLng(38.70091, -9.14987));
+		var store = store();
+		double[] values = elevations(store, first);
+		assertEquals(1, requests, "one batched fetch for all tiles");
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(plane(first.get(i).lat(), first.get(i).lng()), values[i], 0.1);
+		}
+
+		// A parcel next door, then the same area after a restart: no upstream calls
+		var neighbour = List.of(new LatLng(38.70140, -9.15002), new LatLng(38.70205, -9.15090));
+		elevations(store, neighbour);
+		assertEquals(1, requests);
+
+		double[] reloaded = elevations(store(), neighbour);
+		assertEquals(1, requests);
+		assertEquals(plane(38.70205, -9.15090), reloaded[1], 0.1);
+	}
+
+	@Test
+	void failedFetchIsNotStoredAndRetriedLater() {
+		var points = List.of(new LatLng(39.5001, -8.0002));
+		var store = store();
+		failing = true;
+		assertEquals(0.0, elevations(store, points)[0]);
+
+		failing = false;
+		assertEquals(plane(39.5001, -8.0002), elevations(store, points)[0], 0.1);
+		assertEquals(2, requests);
+	}
+
+	@Test
+	void sparseSamplingOverManyTilesFallsBackToDirectFetch() {
+		var store = new ElevationTileStore(new GoogleElevationClient(null, null) {
+			@Override
+			public CompletableFuture<double[]> getElevationsAsync(List<LatLng> points, UpstreamContext context) {
+				requests++;
+				return CompletableFuture.completedFuture(new double[points.size()]);
+			}
+		}, null, STEP, 64, 2);
+
+		var spread = List.of(new LatLng(38.70, -9.15), new LatLng(38.75, -9.10), new LatLng(38.80, -9.05));
+		elevations(store, spread);
+		assertEquals(1, requests);
+	}
+}
@@ -0,0 +1,135 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTests {
+
+	private final SingleFlight<String, String> flight = new SingleFlight<>();
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private CompletableFuture<String> call(String key, CompletableFuture<String> upstream) {
+		return call(key, UpstreamContext.interactive(), upstream);
+	}
+
+	private CompletableFuture<String> call(String key, UpstreamContext context, CompletableFuture<String> upstream) {
+		return flight.run(key, context, () -> {
+			calls.incrementAndGet();
+			return upstream;
+		});
+	}
+
+	@Test
+	void concurrentCallersShareOneCallAndItsResult() {
+		var upstream = new CompletableFuture<String>();
+		var first = call("a", upstream);
+		var second = call("a", new CompletableFuture<>());
+		var other = call("b", CompletableFuture.completedFuture("B"));
+
+		// A caller cancelling its copy leaves the others waiting
+		second.cancel(true);
+		var third = call("a", new CompletableFuture<>());
+		assertEquals(2, calls.get());
+		assertEquals(1, flight.inFlight());
+
+		upstream.complete("A");
+		assertEquals("A", first.join());
+		assertEquals("A", third.join());
+		assertEquals("B", other.join());
+		assertEquals(2, flight.coalesced());
+
+		// Completed calls are forgotten: the next one goes upstream again
+		assertEquals(0, flight.inFlight());
+		assertEquals("A2", call("a", CompletableFuture.completedFuture("A2")).join());
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	void failureReachesEveryCallerAndIsNotRemembered() {
+		var upstream = new CompletableFuture<String>();
+		var first = call("a", upstream);
+		var second = call("a", new CompletableFuture<>());
+
+		var error = new IllegalStateException("upstream down");
+		upstream.completeExceptionally(error);
+		assertSame(error, assertThrows(CompletionException.class, first::join).getCause());
+		assertSame(error, assertThrows(CompletionException.class, second::join).getCause());
+
+		var thrown = flight.run("a", UpstreamContext.interactive(), () -> {
+			throw new IllegalArgumentException("bad request");
+		});
+		assertThrows(CompletionException.class, thrown::join);
+		assertFalse(call("a", CompletableFuture.completedFuture("A")).isCompletedExceptionally());
+		assertEquals(0, flight.inFlight());
+	}
+
+	@Test
+	void callersOnlyJoinCallsOfTheirOwnPriority() {
+		var background = new CompletableFuture<String>();
+		var harvest = call("a", UpstreamContext.background(), background);
+		// An estimate does not queue behind the harvester: it sends its own call, which the next one joins
+		var estimate = call("a", CompletableFuture.completedFuture("A"));
+		var sweep = call("a", UpstreamContext.batch(), new CompletableFuture<>());
+		assertEquals(3, calls.get());
+		assertEquals("A", estimate.join());
+		assertFalse(sweep.isDone());
+
+		background.complete("A");
+		assertEquals("A", harvest.join());
+		assertEquals(0, flight.coalesced());
+	}
+
+	@Test
+	void callersOnlyJoinCallsThatLastAsLongAsTheirDeadline() {
+		var short1 = new CompletableFuture<String>();
+		var early = call("a", UpstreamContext.interactive().withBudget(Duration.ofSeconds(1)), short1);
+		// No deadline: not bound by the first call's, so it sends its own, which later callers join
+		var unbounded = new CompletableFuture<String>();
+		var late = call("a", unbounded);
+		var joinsLate = call("a", UpstreamContext.interactive().withBudget(Duration.ofMinutes(1)),
+				new CompletableFuture<>());
+		assertEquals(2, calls.get());
+		assertEquals(1, flight.coalesced());
+
+		short1.complete("A");
+		unbounded.complete("A2");
+		assertEquals("A", early.join());
+		assertEquals("A2", late.join());
+		assertEquals("A2", joinsLate.join());
+	}
+
+	@Test
+	void joinersWithTimeLeftResendACallThatRanOutOfQuotaOrTime() {
+		var upstream = new CompletableFuture<String>();
+		var first = call("a", upstream);
+		var withBudget = call("a", CompletableFuture.completedFuture("A"));
+		var expired = call("a", UpstreamContext.interactive().withBudget(Duration.ZERO), new CompletableFuture<>());
+		assertEquals(1, calls.get());
+
+		var refused = new QuotaExceededException(UpstreamApi.PVGIS, UpstreamPriority.INTERACTIVE, "queue full");
+		upstream.completeExceptionally(refused);
+		// The sender and a joiner out of time get the failure; a joiner with time sends the call again
+		assertSame(refused, assertThrows(CompletionException.class, first::join).getCause());
+		assertSame(refused, assertThrows(CompletionException.class, expired::join).getCause());
+		assertEquals("A", withBudget.join());
+		assertEquals(2, calls.get());
+
+		var timedOut = new CompletableFuture<String>();
+		var second = call("a", timedOut);
+		var retried = call("a", CompletableFuture.completedFuture("A2"));
+		timedOut.completeExceptionally(new TimeoutException());
+		assertThrows(CompletionException.class, second::join);
+		assertEquals("A2", retried.join());
+		assertEquals(0, flight.inFlight());
+	}
+}
@@ -0,0 +1,56 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamHttpClientTests {
+
+	private final CountDownLatch answer = new CountDownLatch(1);
+	private HttpServer server;
+
+	@AfterEach
+	void stopStub() {
+		answer.countDown();
+		if (server != null)
+			server.stop(0);
+	}
+
+	@Test
+	void aRequestGivesUpAtItsDeadlineRatherThanTheRequestTimeout() throws Exception {
+		// Holds every request until the test ends
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/slow", exchange -> {
+			try {
+				answer.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+		var http = new UpstreamHttpClient(new ObjectMapper(), 1000, 10_000);
+		var uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/slow");
+
+		long start = System.nanoTime();
+		var call = http.getJson(uri, Map.class, UpstreamContext.interactive().withBudget(Duration.ofMillis(200)));
+		var error = assertThrows(CompletionException.class, call::join);
+
+		assertInstanceOf(HttpTimeoutException.class, error.getCause());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+	}
+}
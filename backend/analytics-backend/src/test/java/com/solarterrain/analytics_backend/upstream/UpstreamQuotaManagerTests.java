@@ -0,0 +1,105 @@
+package com.solarterrain.analytics_backend.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamQuotaManagerTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private UpstreamQuotaManager quota;
+
+	@AfterEach
+	void shutdown() {
+		quota.shutdown();
+	}
+
+	private UpstreamQuotaManager manager(double rps, int burst) {
+		var env = new MockEnvironment()
+				.withProperty("upstream.quota.solar.requests-per-second", String.valueOf(rps))
+				.withProperty("upstream.quota.solar.burst", String.valueOf(burst))
+				.withProperty("upstream.quota.interactive.max-wait-ms", "2000")
+				.withProperty("upstream.quota.background.max-wait-ms", "100");
+		quota = new UpstreamQuotaManager(env, registry);
+		return quota;
+	}
+
+	@Test
+	void burstIsGrantedImmediatelyThenCallersQueue() throws Exception {
+		var quota = manager(20, 2);
+		assertTrue(quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE).isDone());
+		assertTrue(quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE).isDone());
+
+		var queued = quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE);
+		assertEquals(0.0, quota.remaining(UpstreamApi.SOLAR));
+		queued.get(1, TimeUnit.SECONDS);
+		assertEquals(0.0, registry.get("upstream.quota.queued").tag("api", "solar").gauge().value());
+	}
+
+	@Test
+	void backgroundWorkIsRefusedWhenItCannotBeServedInTime() {
+		var quota = manager(1, 1);
+		quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE);
+
+		var refused = quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.BACKGROUND);
+		var error = assertThrows(CompletionException.class, refused::join);
+		assertInstanceOf(QuotaExceededException.class, error.getCause());
+		assertEquals(1.0, registry.get("upstream.quota.degraded").tag("priority", "background").counter().count());
+	}
+
+	@Test
+	void interactiveCallersOvertakeQueuedBatchWork() throws Exception {
+		var quota = manager(20, 1);
+		quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE);
+
+		var order = new CopyOnWriteArrayList<UpstreamPriority>();
+		var batch = quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.BATCH)
+				.thenRun(() -> order.add(UpstreamPriority.BATCH));
+		var interactive = quota.acquire(UpstreamApi.SOLAR, UpstreamPriority.INTERACTIVE)
+				.thenRun(() -> order.add(UpstreamPriority.INTERACTIVE));
+
+		CompletableFuture.allOf(batch, interactive).get(2, TimeUnit.SECONDS);
+		assertEquals(List.of(UpstreamPriority.INTERACTIVE, UpstreamPriority.BATCH), order);
+	}
+
+	@Test
+	void throttledResponseDrainsTheBucket() {
+		var quota = manager(1, 5);
+		var throttled = quota.call(UpstreamApi.SOLAR, UpstreamContext.interactive(),
+				() -> CompletableFuture.failedFuture(new UpstreamHttpException(429, URI.create("http://x"))));
+
+		assertThrows(CompletionException.class, throttled::join);
+		assertEquals(0.0, quota.remaining(UpstreamApi.SOLAR));
+	}
+
+	@Test
+	void deadlineBoundsBothTheWaitAndTheResponse() throws Exception {
+		var quota = manager(20, 5);
+		var context = UpstreamContext.interactive().withBudget(Duration.ofMillis(100));
+
+		var slow = quota.call(UpstreamApi.SOLAR, context, CompletableFuture<String>::new);
+		var error = assertThrows(CompletionException.class, slow::join);
+		assertInstanceOf(TimeoutException.class, error.getCause());
+
+		// Past the deadline nothing is sent, and no token is spent
+		double remaining = quota.remaining(UpstreamApi.SOLAR);
+		var late = quota.call(UpstreamApi.SOLAR, context, () -> CompletableFuture.completedFuture("sent"));
+		assertInstanceOf(QuotaExceededException.class, assertThrows(CompletionException.class, late::join).getCause());
+		assertEquals(remaining, quota.remaining(UpstreamApi.SOLAR));
+	}
+}
@@ -0,0 +1,126 @@
+package com.solarterrain.analytics_backend.bench;
+
+import com.solarterrain.analytics_backend.geo.LatLng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of synthetic but realistic parcels across continental Portugal.
+ * Parcels are star-shaped around a jittered anchor town, so they are always
+ * simple polygons, and are rescaled to hit a log-uniform target area inside
+ * their size class. Everything is seeded so benchmark runs are comparable.
+ */
+public final class SyntheticParcels {
+
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+
+    /** Target ground area range in m2. */
+    public enum SizeClass {
+        ROOFTOP(50, 400),
+        PLOT(400, 5_000),
+        FARM(5_000, 50_000),
+        ESTATE(50_000, 300_000);
+
+        final double minAreaM2;
+        final double maxAreaM2;
+
+        SizeClass(double minAreaM2, double maxAreaM2) {
+            this.minAreaM2 = minAreaM2;
+            this.maxAreaM2 = maxAreaM2;
+        }
+    }
+
+    private record Anchor(String name, double lat, double lng) {
+    }
+
+    // Towns spread over the supported bounds, from Minho to Algarve
+    private static final List<Anchor> ANCHORS = List.of(
+            new Anchor("Braga", 41.55, -8.42),
+            new Anchor("Porto", 41.15, -8.61),
+            new Anchor("Braganca", 41.81, -6.76),
+            new Anchor("Viseu", 40.66, -7.91),
+            new Anchor("Guarda", 40.54, -7.27),
+            new Anchor("Coimbra", 40.21, -8.43),
+            new Anchor("Castelo Branco", 39.82, -7.49),
+            new Anchor("Leiria", 39.74, -8.81),
+            new Anchor("Santarem", 39.24, -8.69),
+            new Anchor("Lisboa", 38.72, -9.14),
+            new Anchor("Evora", 38.57, -7.91),
+            new Anchor("Beja", 38.02, -7.86),
+            new Anchor("Portimao", 37.14, -8.54),
+            new Anchor("Faro", 37.02, -7.93));
+
+    private SyntheticParcels() {
+    }
+
+    /**
+     * Deterministic batch of parcels of the given size class and vertex count.
+     */
+    public static List<List<LatLng>> sample(long seed, SizeClass sizeClass, int vertexCount, int count) {
+        Random rnd = new Random(seed);
+        var parcels = new ArrayList<List<LatLng>>(count);
+        for (int i = 0; i < count; i++) {
+            parcels.add(generate(rnd, sizeClass, vertexCount));
+        }
+        return parcels;
+    }
+
+    /**
+     * One parcel with exactly {@code vertexCount} vertices (open ring).
+     */
+    public static List<LatLng> generate(Random rnd, SizeClass sizeClass, int vertexCount) {
+        if (vertexCount < 3)
+            throw new IllegalArgumentException("Parcel requires >=3 vertices");
+
+        Anchor anchor = ANCHORS.get(rnd.nextInt(ANCHORS.size()));
+        // Up to ~5 km away from the town centre
+        double centerLat = anchor.lat() + (rnd.nextDouble() - 0.5) * 0.09;
+        double centerLng = anchor.lng() + (rnd.nextDouble() - 0.5) * 0.12;
+
+        double logMin = Math.log(sizeClass.minAreaM2);
+        double logMax = Math.log(sizeClass.maxAreaM2);
+        double targetArea = Math.exp(logMin + rnd.nextDouble() * (logMax - logMin));
+
+        // Sorted jittered angles keep the ring simple around the centre
+        double[] angles = new double[vertexCount];
+        double slice = 2 * Math.PI / vertexCount;
+        for (int i = 0; i < vertexCount; i++) {
+            angles[i] = i * slice + rnd.nextDouble() * slice * 0.8;
+        }
+        Arrays.sort(angles);
+
+        // Elongation and rotation mimic field strips, radial noise mimics hedges
+        double elongation = 1.0 + rnd.nextDouble() * 1.5;
+        double rotation = rnd.nextDouble() * Math.PI;
+        double[] x = new double[vertexCount];
+        double[] y = new double[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            double r = 1.0 + (rnd.nextDouble() - 0.5) * 0.3;
+            double px = Math.cos(angles[i]) * r * elongation;
+            double py = Math.sin(angles[i]) * r;
+            x[i] = px * Math.cos(rotation) - py * Math.sin(rotation);
+            y[i] = px * Math.sin(rotation) + py * Math.cos(rotation);
+        }
+
+        double scale = Math.sqrt(targetArea / shoelaceArea(x, y));
+        double metersPerDegLng = METERS_PER_DEG_LAT * Math.cos(Math.toRadians(centerLat));
+        var ring = new ArrayList<LatLng>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            ring.add(new LatLng(
+                    centerLat + y[i] * scale / METERS_PER_DEG_LAT,
+                    centerLng + x[i] * scale / metersPerDegLng));
+        }
+        return ring;
+    }
+
+    private static double shoelaceArea(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0, j = x.length - 1; i < x.length; j = i++) {
+            sum += x[j] * y[i] - x[i] * y[j];
+        }
+        return Math.abs(sum) / 2.0;
+    }
+}
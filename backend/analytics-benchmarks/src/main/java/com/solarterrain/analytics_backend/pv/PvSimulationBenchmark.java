@@ -0,0 +1,59 @@
+package com.solarterrain.analytics_backend.pv;
+
+import com.solarterrain.analytics_backend.climate.ClimatologyGrid.Variable;
+import com.solarterrain.analytics_backend.climate.ClimatologyStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hourly PV simulation: the per-site preparation and the per-configuration
+ * pass that estimates and orientation sweeps repeat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PvSimulationBenchmark {
+
+    private final PvSimulationEngine engine = new PvSimulationEngine();
+    private double[] sunHours;
+    private double[] temperature;
+    private SiteIrradiance site;
+    private PvSystemConfig config;
+
+    @Setup
+    public void setup() {
+        // Evora
+        var climate = ClimatologyStore.fromBundledStations().lookup(38.57, -7.91);
+        sunHours = new double[12];
+        temperature = new double[12];
+        for (int m = 1; m <= 12; m++) {
+            sunHours[m - 1] = climate.get(m, Variable.SUN_HOURS);
+            temperature[m - 1] = climate.get(m, Variable.TEMPERATURE);
+        }
+        site = engine.prepare(38.57, sunHours, temperature);
+        config = PvSystemConfig.of(100.0, 32, 180, 0.14);
+    }
+
+    @Benchmark
+    public SiteIrradiance prepare() {
+        return engine.prepare(38.57, sunHours, temperature);
+    }
+
+    @Benchmark
+    public PvSimulationResult simulate() {
+        return engine.simulate(site, config);
+    }
+}
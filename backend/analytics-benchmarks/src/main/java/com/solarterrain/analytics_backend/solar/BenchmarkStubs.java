@@ -0,0 +1,111 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.climate.ClimatologyStore;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import com.solarterrain.analytics_backend.pv.PvSimulationEngine;
+import com.solarterrain.analytics_backend.terrain.ElevationTileStore;
+import com.solarterrain.analytics_backend.upstream.UpstreamContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Offline stand-ins for the upstream clients so benchmarks measure our own
+ * code and never touch Google. Responses are deterministic functions of the
+ * location so nearest-neighbour lookups still see realistic variation.
+ */
+final class BenchmarkStubs {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ClimatologyStore CLIMATOLOGY = ClimatologyStore.fromBundledStations();
+
+    private BenchmarkStubs() {
+    }
+
+    static SolarEstimationService estimationService() {
+        return estimationService(10);
+    }
+
+    static SolarEstimationService estimationService(int shadingGridSize) {
+        var service = new SolarEstimationService(new StubSolarClient(), weatherClient(),
+                shadingService(shadingGridSize), new PvSimulationEngine(), RegionRegistry.bundled());
+        service.defaultPanelEfficiency = 0.20;
+        service.defaultSystemLosses = 0.14;
+        service.defaultTiltDeg = 35;
+        service.defaultAzimuthDeg = 180;
+        service.defaultUsableFraction = 0.7;
+        return service;
+    }
+
+    static GoogleWeatherClient weatherClient() {
+        return new GoogleWeatherClient(null, null, CLIMATOLOGY);
+    }
+
+    static EnhancedShadingService shadingService(int gridSize) {
+        var shading = new EnhancedShadingService(ElevationTileStore.inMemory(new StubElevationClient()));
+        shading.gridSize = gridSize;
+        return shading;
+    }
+
+    static List<Map<String, Double>> toMaps(List<LatLng> points) {
+        return points.stream().map(p -> Map.of("lat", p.lat(), "lng", p.lng())).toList();
+    }
+
+    /**
+     * Rolling hills with ~700 m wavelength on top of a regional slope, in
+     * meters.
+     */
+    static double syntheticElevation(double lat, double lng) {
+        return 150.0
+                + (42.3 - lat) * 20.0
+                + 35.0 * Math.sin(lat * 1000.0) * Math.cos(lng * 1000.0)
+                + 8.0 * Math.sin(lat * 4100.0 + lng * 3700.0);
+    }
+
+    static final class StubSolarClient extends GoogleSolarClient {
+        StubSolarClient() {
+            super(null, null);
+        }
+
+        @Override
+        public CompletableFuture<GoogleSolarResult> getSolarDataAsync(double latitude, double longitude,
+                UpstreamContext context) {
+            double yearly = 1350.0 + (42.3 - latitude) * 60.0 + 40.0 * Math.sin(longitude * 800.0);
+            String json = String.format(Locale.US,
+                    "{\"solarPotential\":{\"yearlyEnergyDcKwh\":%.3f,\"sunshineQuantiles\":[%.1f,%.1f,%.1f]},"
+                            + "\"imageryDate\":{\"year\":2023,\"month\":6,\"day\":1}}",
+                    yearly, yearly * 0.8, yearly, yearly * 1.1);
+            try {
+                return CompletableFuture.completedFuture(MAPPER.readValue(json, GoogleSolarResult.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    static final class StubElevationClient extends GoogleElevationClient {
+        StubElevationClient() {
+            super(null, null);
+        }
+
+        @Override
+        public CompletableFuture<double[]> getElevationsAsync(List<LatLng> points, UpstreamContext context) {
+            return getElevationsStrictAsync(points, context);
+        }
+
+        @Override
+        public CompletableFuture<double[]> getElevationsStrictAsync(List<LatLng> points, UpstreamContext context) {
+            double[] elevations = new double[points.size()];
+            for (int i = 0; i < elevations.length; i++) {
+                elevations[i] = syntheticElevation(points.get(i).lat(), points.get(i).lng());
+            }
+            return CompletableFuture.completedFuture(elevations);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link SolarEstimationService#estimate} with stubbed upstream
+ * clients, so only geometry, shading, heatmap and aggregation are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EstimationBenchmark {
+
+    private static final int PARCELS = 32;
+
+    @Param({ "ROOFTOP", "PLOT", "FARM", "ESTATE" })
+    SyntheticParcels.SizeClass sizeClass;
+
+    @Param({ "8", "64", "512" })
+    int vertices;
+
+    private SolarEstimationService service;
+    private List<List<LatLng>> parcels;
+    private int next;
+
+    @Setup
+    public void setup() {
+        service = BenchmarkStubs.estimationService();
+        parcels = SyntheticParcels.sample(42L, sizeClass, vertices, PARCELS);
+    }
+
+    @Benchmark
+    public SolarEstimate estimate() {
+        next = (next + 1) % PARCELS;
+        return service.estimate(parcels.get(next));
+    }
+}
@@ -0,0 +1,76 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-polygon and geodesic area as a function of vertex count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({ "4", "16", "64", "256", "1024" })
+    int vertices;
+
+    private SolarEstimationService service;
+    private List<LatLng> parcel;
+    private double[] queryLat;
+    private double[] queryLng;
+
+    @Setup
+    public void setup() {
+        service = BenchmarkStubs.estimationService();
+        parcel = SyntheticParcels.sample(3L, SyntheticParcels.SizeClass.FARM, vertices, 1).get(0);
+
+        double minLat = parcel.stream().mapToDouble(LatLng::lat).min().orElse(0);
+        double maxLat = parcel.stream().mapToDouble(LatLng::lat).max().orElse(0);
+        double minLng = parcel.stream().mapToDouble(LatLng::lng).min().orElse(0);
+        double maxLng = parcel.stream().mapToDouble(LatLng::lng).max().orElse(0);
+        Random rnd = new Random(5L);
+        queryLat = new double[QUERIES];
+        queryLng = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryLat[i] = minLat + rnd.nextDouble() * (maxLat - minLat);
+            queryLng[i] = minLng + rnd.nextDouble() * (maxLng - minLng);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int pointInPolygon() {
+        int inside = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (service.isPointInPolygon(queryLat[i], queryLng[i], parcel))
+                inside++;
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public double geodesicArea() {
+        return service.polygonAreaM2(parcel);
+    }
+}
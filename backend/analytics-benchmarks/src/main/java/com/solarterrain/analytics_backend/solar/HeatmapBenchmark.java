@@ -0,0 +1,80 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import com.solarterrain.analytics_backend.geo.RegionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heatmap generation alone, with upstream samples and shading precomputed
+ * in setup; the JSON variants include writing the response body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeatmapBenchmark {
+
+    @Param({ "8", "64", "512" })
+    int vertices;
+
+    private SolarEstimationService service;
+    private RegionRegistry.Region region;
+    private List<LatLng> parcel;
+    private List<GoogleSolarClient.GoogleSolarDataPoint> googleData;
+    private EnhancedShadingService.ShadingAnalysis shadingAnalysis;
+    private List<GoogleWeatherClient.MonthlyWeatherData> weatherData;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Setup
+    public void setup() {
+        service = BenchmarkStubs.estimationService();
+        parcel = SyntheticParcels.sample(11L, SyntheticParcels.SizeClass.FARM, vertices, 1).get(0);
+        List<Map<String, Double>> polygon = BenchmarkStubs.toMaps(parcel);
+        double lat = parcel.stream().mapToDouble(LatLng::lat).average().orElse(0);
+        double lng = parcel.stream().mapToDouble(LatLng::lng).average().orElse(0);
+        region = RegionRegistry.bundled().regionAt(lat, lng).orElseThrow();
+
+        googleData = new BenchmarkStubs.StubSolarClient().getSolarDataForRegion(polygon);
+        shadingAnalysis = BenchmarkStubs.shadingService(10).calculateDetailedShading(lat, lng, polygon);
+        weatherData = BenchmarkStubs.weatherClient().getMonthlyWeatherPatterns(lat, lng);
+    }
+
+    @Benchmark
+    public HeatmapGrid heatmap() {
+        return service.generateEnhancedHeatmap(region, parcel, googleData, shadingAnalysis, weatherData);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> heatmapReference() {
+        return service.generateEnhancedHeatmapReference(region, parcel, googleData, shadingAnalysis, weatherData);
+    }
+
+    @Benchmark
+    public byte[] heatmapJson() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(heatmap());
+    }
+
+    @Benchmark
+    public byte[] heatmapReferenceJson() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(heatmapReference());
+    }
+}
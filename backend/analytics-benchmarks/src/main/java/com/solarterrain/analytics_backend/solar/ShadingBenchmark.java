@@ -0,0 +1,70 @@
+package com.solarterrain.analytics_backend.solar;
+
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+import com.solarterrain.analytics_backend.geo.LatLng;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EnhancedShadingService#calculateDetailedShading} over synthetic
+ * terrain for growing elevation grids (gridSize x gridSize samples), and the
+ * shadow analysis alone: fork-join kernels against the scalar reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShadingBenchmark {
+
+    @Param({ "5", "10", "20", "30" })
+    int gridSize;
+
+    @Param({ "PLOT", "FARM" })
+    SyntheticParcels.SizeClass sizeClass;
+
+    private EnhancedShadingService shading;
+    private List<Map<String, Double>> polygon;
+    private double centroidLat;
+    private double centroidLng;
+    private List<EnhancedShadingService.ElevationPoint> elevationData;
+
+    @Setup
+    public void setup() {
+        shading = BenchmarkStubs.shadingService(gridSize);
+        List<LatLng> parcel = SyntheticParcels.sample(7L, sizeClass, 24, 1).get(0);
+        polygon = BenchmarkStubs.toMaps(parcel);
+        centroidLat = parcel.stream().mapToDouble(LatLng::lat).average().orElse(0);
+        centroidLng = parcel.stream().mapToDouble(LatLng::lng).average().orElse(0);
+        elevationData = shading.calculateDetailedShading(centroidLat, centroidLng, polygon).getElevationData();
+    }
+
+    @Benchmark
+    public EnhancedShadingService.ShadingAnalysis detailedShading() {
+        return shading.calculateDetailedShading(centroidLat, centroidLng, polygon);
+    }
+
+    @Benchmark
+    public EnhancedShadingService.ShadingAnalysis analyzeKernels() {
+        return shading.analyzeShading(centroidLat, centroidLng, elevationData);
+    }
+
+    @Benchmark
+    public EnhancedShadingService.ShadingAnalysis analyzeReference() {
+        return shading.analyzeShadingReference(centroidLat, centroidLng, elevationData);
+    }
+}
@@ -0,0 +1,83 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --key=value}. Per-upstream settings
+ * use a suffix, e.g. {@code --latency.elevation=fixed:20} or
+ * {@code --errors.solar=0.05}; without a suffix they apply to every stub.
+ * Options prefixed {@code backend.} are handed to the backend with the prefix
+ * stripped, e.g. {@code --backend.upstream.quota.solar.burst=5}.
+ */
+record HarnessOptions(
+        double[] ratesPerSecond,
+        int stepSeconds,
+        int warmupSeconds,
+        Map<String, Double> mix,
+        Map<UpstreamSimulator.Endpoint, UpstreamSimulator.Behaviour> upstream,
+        int users,
+        SyntheticParcels.SizeClass parcelSize,
+        int parcelVertices,
+        double sloP99Millis,
+        double maxErrorRate,
+        int maxInFlight,
+        boolean stopAtSaturation,
+        List<String> backendArgs) {
+
+    static HarnessOptions parse(String[] args) {
+        var raw = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            int eq = arg.indexOf('=');
+            raw.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        double[] rates = Arrays.stream(raw.getOrDefault("rates", "2,5,10,20,40,80").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+
+        var mix = new HashMap<String, Double>();
+        for (String entry : raw.getOrDefault("mix", "estimate:0.8,sites-save:0.1,sites-list:0.1").split(",")) {
+            String[] kv = entry.split(":");
+            mix.put(kv[0], Double.parseDouble(kv[1]));
+        }
+
+        var upstream = new EnumMap<UpstreamSimulator.Endpoint, UpstreamSimulator.Behaviour>(
+                UpstreamSimulator.Endpoint.class);
+        for (UpstreamSimulator.Endpoint endpoint : UpstreamSimulator.Endpoint.values()) {
+            String suffix = "." + endpoint.name().toLowerCase(Locale.ROOT);
+            String latency = raw.getOrDefault("latency" + suffix, raw.getOrDefault("latency", "lognormal:80:0.5"));
+            String errors = raw.getOrDefault("errors" + suffix, raw.getOrDefault("errors", "0.01"));
+            String status = raw.getOrDefault("error-status" + suffix, raw.getOrDefault("error-status", "500"));
+            upstream.put(endpoint, new UpstreamSimulator.Behaviour(
+                    LatencyModel.parse(latency), Double.parseDouble(errors), Integer.parseInt(status)));
+        }
+
+        var backendArgs = raw.entrySet().stream()
+                .filter(e -> e.getKey().startsWith("backend."))
+                .map(e -> "--" + e.getKey().substring("backend.".length()) + "=" + e.getValue())
+                .toList();
+
+        return new HarnessOptions(
+                rates,
+                Integer.parseInt(raw.getOrDefault("step-seconds", "30")),
+                Integer.parseInt(raw.getOrDefault("warmup-seconds", "10")),
+                mix,
+                upstream,
+                Integer.parseInt(raw.getOrDefault("users", "50")),
+                SyntheticParcels.SizeClass.valueOf(raw.getOrDefault("parcel-size", "PLOT").toUpperCase(Locale.ROOT)),
+                Integer.parseInt(raw.getOrDefault("parcel-vertices", "12")),
+                Double.parseDouble(raw.getOrDefault("slo-p99-ms", "3000")),
+                Double.parseDouble(raw.getOrDefault("max-error-rate", "0.01")),
+                Integer.parseInt(raw.getOrDefault("max-in-flight", "5000")),
+                Boolean.parseBoolean(raw.getOrDefault("stop-at-saturation", "true")),
+                backendArgs);
+    }
+}
@@ -0,0 +1,43 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response delay distribution of a simulated upstream, in milliseconds.
+ * Parsed from specs such as {@code fixed:40}, {@code uniform:20:120} or
+ * {@code lognormal:80:0.6} (median ms, sigma).
+ */
+@FunctionalInterface
+public interface LatencyModel {
+
+    long nextDelayMillis();
+
+    static LatencyModel parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (parts[0]) {
+                case "none":
+                    return () -> 0L;
+                case "fixed": {
+                    long ms = Long.parseLong(parts[1]);
+                    return () -> ms;
+                }
+                case "uniform": {
+                    long min = Long.parseLong(parts[1]);
+                    long max = Long.parseLong(parts[2]);
+                    return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+                }
+                case "lognormal": {
+                    double mu = Math.log(Double.parseDouble(parts[1]));
+                    double sigma = Double.parseDouble(parts[2]);
+                    return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown latency model " + parts[0]);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency spec '" + spec + "'", e);
+        }
+    }
+}
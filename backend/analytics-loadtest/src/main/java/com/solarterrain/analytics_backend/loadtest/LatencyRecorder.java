@@ -0,0 +1,48 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects response times (nanoseconds, measured from the intended send
+ * time) and reports exact percentiles. Sized for one load step.
+ */
+class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    synchronized void record(long nanos, boolean ok) {
+        if (!ok) {
+            errors++;
+            return;
+        }
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted, errors);
+    }
+
+    record Snapshot(long[] sorted, long errors) {
+        long ok() {
+            return sorted.length;
+        }
+
+        double percentileMillis(double p) {
+            if (sorted.length == 0)
+                return Double.NaN;
+            int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1_000_000.0;
+        }
+
+        double errorRate() {
+            long total = sorted.length + errors;
+            return total == 0 ? 0.0 : (double) errors / total;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import com.solarterrain.analytics_backend.bench.SyntheticParcels;
+import com.solarterrain.analytics_backend.geo.LatLng;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are issued on a fixed schedule at the
+ * target rate regardless of how fast the backend answers, and latency is
+ * measured from the scheduled send time so queueing inside the backend is
+ * not hidden (no coordinated omission).
+ */
+class LoadDriver implements AutoCloseable {
+
+    static final String ESTIMATE = "estimate";
+    static final String SITES_SAVE = "sites-save";
+    static final String SITES_LIST = "sites-list";
+
+    record StepResult(double targetRps, double achievedRps, long dropped,
+            Map<String, LatencyRecorder.Snapshot> byOperation, LatencyRecorder.Snapshot overall) {
+    }
+
+    private final String backendUrl;
+    private final HarnessOptions options;
+    private final ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+    private final HttpClient client;
+    private final List<String> parcelsJson;
+    private final String[] operations;
+    private final double[] cumulativeWeights;
+    private final Random rnd = new Random(17L);
+
+    LoadDriver(String backendUrl, HarnessOptions options) {
+        this.backendUrl = backendUrl;
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientExecutor)
+                .build();
+
+        this.parcelsJson = new ArrayList<>();
+        for (List<LatLng> parcel : SyntheticParcels.sample(23L, options.parcelSize(), options.parcelVertices(), 256)) {
+            parcelsJson.add(pointsJson(parcel));
+        }
+
+        this.operations = options.mix().keySet().toArray(String[]::new);
+        this.cumulativeWeights = new double[operations.length];
+        double total = options.mix().values().stream().mapToDouble(Double::doubleValue).sum();
+        double acc = 0;
+        for (int i = 0; i < operations.length; i++) {
+            acc += options.mix().get(operations[i]) / total;
+            cumulativeWeights[i] = acc;
+        }
+    }
+
+    StepResult runStep(double targetRps, int seconds) throws InterruptedException {
+        var recorders = new LinkedHashMap<String, LatencyRecorder>();
+        for (String op : operations)
+            recorders.put(op, new LatencyRecorder());
+        var overall = new LatencyRecorder();
+        var inFlight = new Semaphore(options.maxInFlight());
+        var lastCompletion = new AtomicLong();
+        long dropped = 0;
+
+        long total = Math.round(targetRps * seconds);
+        long intervalNanos = (long) (1_000_000_000L / targetRps);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            if (!inFlight.tryAcquire()) {
+                dropped++;
+                continue;
+            }
+            String op = pickOperation();
+            client.sendAsync(buildRequest(op), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((resp, err) -> {
+                        long now = System.nanoTime();
+                        boolean ok = err == null && resp.statusCode() < 400;
+                        recorders.get(op).record(now - intended, ok);
+                        overall.record(now - intended, ok);
+                        lastCompletion.accumulateAndGet(now, Math::max);
+                        inFlight.release();
+                    });
+        }
+        // Let the tail drain before measuring
+        if (!inFlight.tryAcquire(options.maxInFlight(), 120, TimeUnit.SECONDS)) {
+            dropped += options.maxInFlight() - inFlight.availablePermits();
+        } else {
+            inFlight.release(options.maxInFlight());
+        }
+
+        var overallSnapshot = overall.snapshot();
+        double elapsedSeconds = Math.max(lastCompletion.get() - start, 1L) / 1e9;
+        var byOperation = new LinkedHashMap<String, LatencyRecorder.Snapshot>();
+        recorders.forEach((op, rec) -> byOperation.put(op, rec.snapshot()));
+        return new StepResult(targetRps, overallSnapshot.ok() / elapsedSeconds, dropped, byOperation,
+                overallSnapshot);
+    }
+
+    private synchronized String pickOperation() {
+        double r = rnd.nextDouble();
+        for (int i = 0; i < operations.length; i++) {
+            if (r <= cumulativeWeights[i])
+                return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest buildRequest(String op) {
+        String parcel;
+        String uid;
+        synchronized (this) {
+            parcel = parcelsJson.get(rnd.nextInt(parcelsJson.size()));
+            uid = "user-" + rnd.nextInt(options.users());
+        }
+        var builder = HttpRequest.newBuilder().timeout(Duration.ofSeconds(60));
+        return switch (op) {
+            case ESTIMATE -> builder.uri(URI.create(backendUrl + "/api/solar/estimate"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"points\":" + parcel + "}"))
+                    .build();
+            case SITES_SAVE -> builder.uri(URI.create(backendUrl + "/api/solar/sites"))
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + LoadTestAuthFilter.TOKEN_PREFIX + uid)
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"name\":\"Load test\",\"description\":\"\",\"points\":" + parcel + "}"))
+                    .build();
+            case SITES_LIST -> builder.uri(URI.create(backendUrl + "/api/solar/sites"))
+                    .header("Authorization", "Bearer " + LoadTestAuthFilter.TOKEN_PREFIX + uid)
+                    .GET()
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown operation " + op);
+        };
+    }
+
+    private static String pointsJson(List<LatLng> parcel) {
+        var sb = new StringBuilder("[");
+        for (int i = 0; i < parcel.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(String.format(Locale.US, "{\"lat\":%.7f,\"lng\":%.7f}", parcel.get(i).lat(),
+                    parcel.get(i).lng()));
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public void close() {
+        clientExecutor.shutdownNow();
+    }
+}
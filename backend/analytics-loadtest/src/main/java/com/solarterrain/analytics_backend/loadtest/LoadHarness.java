@@ -0,0 +1,125 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Boots the backend in-process against {@link UpstreamSimulator}, then
+ * steps through the configured request rates and reports latency
+ * percentiles per operation and the point where the backend saturates
+ * (throughput falls behind the target, p99 breaks the SLO or errors exceed
+ * the budget).
+ *
+ * <pre>
+ * mvn -pl analytics-loadtest -am install -DskipTests
+ * mvn -pl analytics-loadtest exec:java -Dexec.args="--rates=5,10,20 --step-seconds=20 --latency.elevation=fixed:30"
+ * </pre>
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        HarnessOptions options = HarnessOptions.parse(args);
+
+        try (var simulator = new UpstreamSimulator(options.upstream())) {
+            simulator.start();
+            try (ConfigurableApplicationContext backend = startBackend(simulator, options.backendArgs());
+                    var driver = new LoadDriver(backendUrl(backend), options)) {
+
+                if (options.warmupSeconds() > 0) {
+                    System.out.printf(Locale.US, "Warming up at %.1f req/s for %ds%n", options.ratesPerSecond()[0],
+                            options.warmupSeconds());
+                    driver.runStep(options.ratesPerSecond()[0], options.warmupSeconds());
+                }
+
+                var results = new ArrayList<LoadDriver.StepResult>();
+                for (double rate : options.ratesPerSecond()) {
+                    System.out.printf(Locale.US, "Running %.1f req/s for %ds%n", rate, options.stepSeconds());
+                    var step = driver.runStep(rate, options.stepSeconds());
+                    results.add(step);
+                    printStep(step);
+                    if (saturated(step, options) && options.stopAtSaturation())
+                        break;
+                }
+                printSummary(results, options, simulator);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startBackend(UpstreamSimulator simulator, List<String> extraArgs) {
+        // Command line arguments outrank application.yml from the backend jar
+        var args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--google.api.key=loadtest",
+                "--google.api.solar.base-url=" + simulator.urlOf(UpstreamSimulator.Endpoint.SOLAR),
+                "--google.api.weather.base-url=" + simulator.urlOf(UpstreamSimulator.Endpoint.WEATHER),
+                "--google.api.elevation.base-url=" + simulator.urlOf(UpstreamSimulator.Endpoint.ELEVATION),
+                "--pvgis.api.base-url=" + simulator.urlOf(UpstreamSimulator.Endpoint.PVGIS),
+                "--solar.elevation.persist=false", // every run starts with a cold tile store
+                "--firebase.enabled=false",
+                "--logging.level.com.solarterrain.analytics_backend=INFO",
+                "--logging.level.org.springframework.web.client=WARN"));
+        args.addAll(extraArgs);
+        return new SpringApplicationBuilder(LoadTestBackend.class).run(args.toArray(String[]::new));
+    }
+
+    private static String backendUrl(ConfigurableApplicationContext backend) {
+        int port = ((WebServerApplicationContext) backend).getWebServer().getPort();
+        return "http://127.0.0.1:" + port;
+    }
+
+    static boolean saturated(LoadDriver.StepResult step, HarnessOptions options) {
+        return step.achievedRps() < step.targetRps() * 0.9
+                || step.dropped() > 0
+                || step.overall().percentileMillis(99) > options.sloP99Millis()
+                || step.overall().errorRate() > options.maxErrorRate();
+    }
+
+    private static void printStep(LoadDriver.StepResult step) {
+        System.out.printf(Locale.US, "  target %.1f req/s, achieved %.1f req/s, dropped %d%n", step.targetRps(),
+                step.achievedRps(), step.dropped());
+        System.out.printf(Locale.US, "  %-12s %8s %8s %9s %9s %9s %9s %9s%n", "operation", "ok", "err%", "p50 ms",
+                "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        step.byOperation().forEach((op, s) -> printRow(op, s));
+        printRow("all", step.overall());
+    }
+
+    private static void printRow(String op, LatencyRecorder.Snapshot s) {
+        System.out.printf(Locale.US, "  %-12s %8d %8.2f %9.1f %9.1f %9.1f %9.1f %9.1f%n", op, s.ok(),
+                s.errorRate() * 100, s.percentileMillis(50), s.percentileMillis(90), s.percentileMillis(99),
+                s.percentileMillis(99.9), s.percentileMillis(100));
+    }
+
+    private static void printSummary(List<LoadDriver.StepResult> results, HarnessOptions options,
+            UpstreamSimulator simulator) {
+        System.out.println();
+        System.out.println("Summary");
+        LoadDriver.StepResult lastGood = null;
+        LoadDriver.StepResult firstSaturated = null;
+        for (var step : results) {
+            if (saturated(step, options)) {
+                firstSaturated = step;
+                break;
+            }
+            lastGood = step;
+        }
+        System.out.printf(Locale.US, "  max sustainable rate: %s%n",
+                lastGood == null ? "none of the tested rates"
+                        : String.format(Locale.US, "%.1f req/s (p99 %.1f ms)", lastGood.targetRps(),
+                                lastGood.overall().percentileMillis(99)));
+        System.out.printf(Locale.US, "  saturation point:     %s%n",
+                firstSaturated == null ? "not reached"
+                        : String.format(Locale.US, "%.1f req/s (achieved %.1f, p99 %.1f ms, err %.2f%%)",
+                                firstSaturated.targetRps(), firstSaturated.achievedRps(),
+                                firstSaturated.overall().percentileMillis(99),
+                                firstSaturated.overall().errorRate() * 100));
+        for (UpstreamSimulator.Endpoint endpoint : UpstreamSimulator.Endpoint.values()) {
+            System.out.printf(Locale.US, "  upstream %-9s served %d, failed %d%n", endpoint,
+                    simulator.servedCount(endpoint), simulator.failedCount(endpoint));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import com.solarterrain.analytics_backend.FirebaseAuthFilter;
+import com.solarterrain.analytics_backend.FirebaseInitializer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+
+/**
+ * Trusts {@code Authorization: Bearer loadtest-<uid>} and authenticates the
+ * request as {@code <uid>}, mirroring what the Firebase filter does after a
+ * successful token verification.
+ */
+class LoadTestAuthFilter extends FirebaseAuthFilter {
+    static final String TOKEN_PREFIX = "loadtest-";
+
+    LoadTestAuthFilter(FirebaseInitializer firebase) {
+        super(firebase);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer " + TOKEN_PREFIX)) {
+            String uid = header.substring(("Bearer " + TOKEN_PREFIX).length());
+            SecurityContextHolder.getContext()
+                    .setAuthentication(new UsernamePasswordAuthenticationToken(uid, null, null));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,33 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import com.solarterrain.analytics_backend.AnalyticsBackendApplication;
+import com.solarterrain.analytics_backend.FirebaseAuthFilter;
+import com.solarterrain.analytics_backend.FirebaseInitializer;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+
+/**
+ * The real backend minus Firebase: same controllers, services, security
+ * rules and H2 persistence, but with token verification replaced by
+ * {@link LoadTestAuthFilter} so the harness can act as many users without
+ * credentials. The harness starts it with {@code firebase.enabled=false}.
+ */
+@Configuration
+@EnableAutoConfiguration
+@AutoConfigurationPackage(basePackageClasses = AnalyticsBackendApplication.class)
+@ComponentScan(basePackageClasses = AnalyticsBackendApplication.class, excludeFilters = {
+        @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                AnalyticsBackendApplication.class,
+                FirebaseAuthFilter.class }),
+        @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.solarterrain\\.analytics_backend\\.loadtest\\..*") })
+public class LoadTestBackend {
+
+    @Bean
+    public FirebaseAuthFilter firebaseAuthFilter(FirebaseInitializer firebase) {
+        return new LoadTestAuthFilter(firebase);
+    }
+}
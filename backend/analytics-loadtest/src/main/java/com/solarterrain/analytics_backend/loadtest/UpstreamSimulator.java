@@ -0,0 +1,200 @@
+package com.solarterrain.analytics_backend.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Google Solar, Weather, Elevation and PVGIS APIs.
+ * Each endpoint answers with a plausible payload after a delay drawn from
+ * its {@link LatencyModel}, and fails with the configured status at the
+ * configured rate. Delays are scheduled, not slept, so a handful of threads
+ * can hold thousands of slow responses in flight.
+ */
+public class UpstreamSimulator implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(UpstreamSimulator.class);
+
+    public enum Endpoint {
+        SOLAR("/solar/v1"),
+        WEATHER("/weather/v1"),
+        ELEVATION("/elevation/json"),
+        PVGIS("/pvgis/api/v5_2");
+
+        final String path;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+    }
+
+    public record Behaviour(LatencyModel latency, double errorRate, int errorStatus) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newFixedThreadPool(4);
+    private final ScheduledExecutorService delays = Executors.newScheduledThreadPool(2);
+    private final Map<Endpoint, Behaviour> behaviours;
+    private final Map<Endpoint, AtomicLong> served = new HashMap<>();
+    private final Map<Endpoint, AtomicLong> failed = new HashMap<>();
+
+    public UpstreamSimulator(Map<Endpoint, Behaviour> behaviours) throws IOException {
+        this.behaviours = behaviours;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        for (Endpoint endpoint : Endpoint.values()) {
+            served.put(endpoint, new AtomicLong());
+            failed.put(endpoint, new AtomicLong());
+        }
+        register(Endpoint.SOLAR, UpstreamSimulator::solarBody);
+        register(Endpoint.WEATHER, UpstreamSimulator::weatherBody);
+        register(Endpoint.ELEVATION, UpstreamSimulator::elevationBody);
+        register(Endpoint.PVGIS, UpstreamSimulator::pvgisBody);
+        server.setExecutor(handlers);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Upstream simulator listening on {}", baseUrl());
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String urlOf(Endpoint endpoint) {
+        return baseUrl() + endpoint.path;
+    }
+
+    public long servedCount(Endpoint endpoint) {
+        return served.get(endpoint).get();
+    }
+
+    public long failedCount(Endpoint endpoint) {
+        return failed.get(endpoint).get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        delays.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void register(Endpoint endpoint, Function<Map<String, String>, String> body) {
+        Behaviour behaviour = behaviours.get(endpoint);
+        server.createContext(endpoint.path, exchange -> {
+            long delay = Math.max(0, behaviour.latency().nextDelayMillis());
+            boolean fail = ThreadLocalRandom.current().nextDouble() < behaviour.errorRate();
+            delays.schedule(() -> respond(endpoint, exchange, fail, behaviour.errorStatus(), body),
+                    delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void respond(Endpoint endpoint, HttpExchange exchange, boolean fail, int errorStatus,
+            Function<Map<String, String>, String> body) {
+        try (exchange) {
+            String payload = fail
+                    ? "{\"error\":{\"code\":" + errorStatus + ",\"message\":\"simulated failure\"}}"
+                    : body.apply(query(exchange));
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(fail ? errorStatus : 200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            (fail ? failed : served).get(endpoint).incrementAndGet();
+        } catch (Exception e) {
+            log.debug("Simulator response for {} aborted: {}", endpoint, e.getMessage());
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        var params = new HashMap<String, String>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null)
+            return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static double param(Map<String, String> q, String key, double fallback) {
+        try {
+            return Double.parseDouble(q.getOrDefault(key, ""));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String solarBody(Map<String, String> q) {
+        double lat = param(q, "location.latitude", 39.5);
+        double yearly = 1350.0 + (42.3 - lat) * 60.0;
+        return String.format(Locale.US,
+                "{\"solarPotential\":{\"yearlyEnergyDcKwh\":%.2f,\"sunshineQuantiles\":[%.1f,%.1f,%.1f],"
+                        + "\"wholeRoofStats\":{\"areaMeters2\":120.0,\"groundAreaMeters2\":100.0}},"
+                        + "\"imageryDate\":{\"year\":2023,\"month\":6,\"day\":1}}",
+                yearly, yearly * 0.8, yearly, yearly * 1.1);
+    }
+
+    private static String weatherBody(Map<String, String> q) {
+        double lat = param(q, "location.latitude", 39.5);
+        return String.format(Locale.US,
+                "{\"currentConditions\":{\"temperature\":%.1f,\"humidity\":62.0,\"cloudCover\":35.0,"
+                        + "\"visibility\":16.0,\"uvIndex\":5}}",
+                24.0 - (lat - 37.0));
+    }
+
+    private static String elevationBody(Map<String, String> q) {
+        var sb = new StringBuilder("{\"results\":[");
+        String[] locations = q.getOrDefault("locations", "").split("\\|");
+        for (int i = 0; i < locations.length; i++) {
+            String[] ll = locations[i].split(",");
+            double lat = ll.length == 2 ? Double.parseDouble(ll[0]) : 39.5;
+            double lng = ll.length == 2 ? Double.parseDouble(ll[1]) : -8.0;
+            double elevation = 150.0 + (42.3 - lat) * 20.0
+                    + 35.0 * Math.sin(lat * 1000.0) * Math.cos(lng * 1000.0);
+            if (i > 0)
+                sb.append(',');
+            sb.append(String.format(Locale.US,
+                    "{\"elevation\":%.2f,\"location\":{\"lat\":%.6f,\"lng\":%.6f},\"resolution\":30.0}",
+                    elevation, lat, lng));
+        }
+        return sb.append("],\"status\":\"OK\"}").toString();
+    }
+
+    private static String pvgisBody(Map<String, String> q) {
+        double lat = param(q, "lat", 39.5);
+        double peak = param(q, "peakpower", 1.0);
+        double[] shares = { 0.055, 0.064, 0.085, 0.094, 0.107, 0.111, 0.121, 0.117, 0.093, 0.074, 0.056, 0.050 };
+        double yearly = peak * (1600.0 - (lat - 37.0) * 35.0);
+        var sb = new StringBuilder("{\"outputs\":{\"monthly\":{\"fixed\":[");
+        for (int m = 0; m < 12; m++) {
+            if (m > 0)
+                sb.append(',');
+            sb.append(String.format(Locale.US, "{\"month\":%d,\"E_m\":%.2f}", m + 1, yearly * shares[m]));
+        }
+        sb.append(String.format(Locale.US, "]},\"totals\":{\"fixed\":{\"E_y\":%.2f}}}}", yearly));
+        return sb.toString();
+    }
+}